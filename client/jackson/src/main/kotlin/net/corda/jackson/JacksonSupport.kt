@@ -19,10 +19,14 @@ import net.corda.core.node.services.IdentityService
 import net.corda.core.serialization.OpaqueBytes
 import net.corda.core.serialization.deserialize
 import net.corda.core.serialization.serialize
+import net.corda.core.utilities.loggerFor
 import net.i2p.crypto.eddsa.EdDSAPublicKey
 import org.bouncycastle.asn1.x500.X500Name
+import java.io.Closeable
+import java.io.OutputStream
 import java.math.BigDecimal
 import java.security.PublicKey
+import java.time.Duration
 import java.time.LocalDate
 import java.util.*
 
@@ -36,6 +40,12 @@ object JacksonSupport {
     // TODO: This API could use some tidying up - there should really only need to be one kind of mapper.
     // If you change this API please update the docs in the docsite (json.rst)
 
+    private val log = loggerFor<JacksonSupport>()
+
+    /** How long a party looked up over RPC is cached for, unless the network map reports a change sooner. */
+    @JvmField
+    val DEFAULT_IDENTITY_CACHE_TTL: Duration = Duration.ofMinutes(5)
+
     interface PartyObjectMapper {
         @Deprecated("Use partyFromX500Name instead")
         fun partyFromName(partyName: String): Party?
@@ -44,12 +54,36 @@ object JacksonSupport {
         fun partiesFromName(query: String): Set<Party>
     }
 
-    class RpcObjectMapper(val rpc: CordaRPCOps, factory: JsonFactory, val fuzzyIdentityMatch: Boolean) : PartyObjectMapper, ObjectMapper(factory) {
+    /**
+     * Looks parties up over RPC. The results are cached for [identityCacheTtl], and the nodes on the network map are
+     * cached for as long as they're on it, so a document which mentions the same parties many times doesn't make an
+     * RPC for every mention. The network map is followed from the first lookup onwards, until the mapper is closed.
+     */
+    class RpcObjectMapper @JvmOverloads constructor(val rpc: CordaRPCOps,
+                                                    factory: JsonFactory,
+                                                    val fuzzyIdentityMatch: Boolean,
+                                                    identityCacheTtl: Duration = DEFAULT_IDENTITY_CACHE_TTL) : PartyObjectMapper, ObjectMapper(factory), Closeable {
+        private val lazyPartyCache = lazy {
+            PartyCache(identityCacheTtl).apply {
+                try {
+                    followNetworkMap(rpc.networkMapFeed())
+                } catch (e: Exception) {
+                    log.warn("Unable to follow the network map, parties will only be cached for $identityCacheTtl", e)
+                }
+            }
+        }
+        private val partyCache by lazyPartyCache
+
         @Suppress("OverridingDeprecatedMember", "DEPRECATION")
         override fun partyFromName(partyName: String): Party? = rpc.partyFromName(partyName)
-        override fun partyFromX500Name(name: X500Name): Party? = rpc.partyFromX500Name(name)
-        override fun partyFromKey(owningKey: PublicKey): Party? = rpc.partyFromKey(owningKey)
-        override fun partiesFromName(query: String) = rpc.partiesFromName(query, fuzzyIdentityMatch)
+        override fun partyFromX500Name(name: X500Name): Party? = partyCache.partyFromX500Name(name) { rpc.partyFromX500Name(it) }
+        override fun partyFromKey(owningKey: PublicKey): Party? = partyCache.partyFromKey(owningKey) { rpc.partyFromKey(it) }
+        override fun partiesFromName(query: String) = partyCache.partiesFromName(query) { rpc.partiesFromName(it, fuzzyIdentityMatch) }
+
+        /** Stops following the network map, if it has been followed. The mapper may still be used afterwards. */
+        override fun close() {
+            if (lazyPartyCache.isInitialized()) partyCache.close()
+        }
     }
 
     class IdentityObjectMapper(val identityService: IdentityService, factory: JsonFactory, val fuzzyIdentityMatch: Boolean) : PartyObjectMapper, ObjectMapper(factory) {
@@ -117,10 +151,16 @@ object JacksonSupport {
      * If [fuzzyIdentityMatch] is false, fields mapped to [Party] objects must be in X.500 name form and precisely
      * match an identity known from the network map. If true, the name is matched more leniently but if the match
      * is ambiguous a [JsonParseException] is thrown.
+     *
+     * Parties are cached for [identityCacheTtl], see [RpcObjectMapper], which the returned mapper may be closed as once
+     * it is no longer needed.
      */
     @JvmStatic @JvmOverloads
     fun createDefaultMapper(rpc: CordaRPCOps, factory: JsonFactory = JsonFactory(),
-                            fuzzyIdentityMatch: Boolean = false): ObjectMapper = configureMapper(RpcObjectMapper(rpc, factory, fuzzyIdentityMatch))
+                            fuzzyIdentityMatch: Boolean = false,
+                            identityCacheTtl: Duration = DEFAULT_IDENTITY_CACHE_TTL): ObjectMapper {
+        return configureMapper(RpcObjectMapper(rpc, factory, fuzzyIdentityMatch, identityCacheTtl))
+    }
 
     /** For testing or situations where deserialising parties is not required */
     @JvmStatic @JvmOverloads
@@ -137,6 +177,25 @@ object JacksonSupport {
     fun createInMemoryMapper(identityService: IdentityService, factory: JsonFactory = JsonFactory(),
                              fuzzyIdentityMatch: Boolean = false) = configureMapper(IdentityObjectMapper(identityService, factory, fuzzyIdentityMatch))
 
+    /**
+     * Writes [values] to [output] as a JSON array with [mapper], one element at a time, so that a large result is
+     * never rendered in memory as a whole. The output is flushed after every [flushEvery] elements, so that a reader
+     * receives the array in chunks as it is produced. The output stream is not closed.
+     */
+    @JvmStatic @JvmOverloads
+    fun writeArray(mapper: ObjectMapper, output: OutputStream, values: Iterator<Any?>, flushEvery: Int = 100) {
+        val writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+        mapper.factory.createGenerator(output).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET).use { generator ->
+            generator.writeStartArray()
+            var written = 0
+            for (value in values) {
+                writer.writeValue(generator, value)
+                if (++written % flushEvery == 0) generator.flush()
+            }
+            generator.writeEndArray()
+        }
+    }
+
     private fun configureMapper(mapper: ObjectMapper): ObjectMapper = mapper.apply {
         enable(SerializationFeature.INDENT_OUTPUT)
         enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
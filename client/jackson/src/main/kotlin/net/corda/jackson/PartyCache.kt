@@ -0,0 +1,118 @@
+package net.corda.jackson
+
+import com.google.common.base.Ticker
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.ExecutionError
+import com.google.common.util.concurrent.UncheckedExecutionException
+import net.corda.core.identity.Party
+import net.corda.core.messaging.DataFeed
+import net.corda.core.node.NodeInfo
+import net.corda.core.node.services.NetworkMapCache.MapChange
+import org.bouncycastle.asn1.x500.X500Name
+import rx.Subscription
+import java.io.Closeable
+import java.security.PublicKey
+import java.time.Duration
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import javax.annotation.concurrent.ThreadSafe
+
+/**
+ * A cache of parties looked up by name or key, so that deserialising a document which mentions the same parties many
+ * times looks each one up once rather than once per mention. Lookups, including those which find nothing, are cached
+ * for [ttl], and at most [maximumSize] of each kind are held. Nodes on the network map can also be kept in the cache for
+ * as long as they are on the map, see [followNetworkMap]; [close] stops following it.
+ */
+@ThreadSafe
+class PartyCache @JvmOverloads constructor(private val ttl: Duration,
+                                           private val maximumSize: Long = DEFAULT_MAXIMUM_SIZE,
+                                           private val ticker: Ticker = Ticker.systemTicker()) : Closeable {
+    companion object {
+        const val DEFAULT_MAXIMUM_SIZE = 10000L
+    }
+
+    private val onMapByName = ConcurrentHashMap<X500Name, Party>()
+    private val onMapByKey = ConcurrentHashMap<PublicKey, Party>()
+    private val byName = newCache<X500Name, Optional<Party>>()
+    private val byKey = newCache<PublicKey, Optional<Party>>()
+    private val byQuery = newCache<String, Set<Party>>()
+    @Volatile private var networkMapSubscription: Subscription? = null
+
+    fun partyFromX500Name(name: X500Name, lookup: (X500Name) -> Party?): Party? {
+        return onMapByName[name] ?: byName.getOrLoad(name) { Optional.ofNullable(lookup(it)) }.orElse(null)
+    }
+
+    fun partyFromKey(key: PublicKey, lookup: (PublicKey) -> Party?): Party? {
+        return onMapByKey[key] ?: byKey.getOrLoad(key) { Optional.ofNullable(lookup(it)) }.orElse(null)
+    }
+
+    fun partiesFromName(query: String, lookup: (String) -> Set<Party>): Set<Party> = byQuery.getOrLoad(query, lookup)
+
+    /**
+     * Adds the identities of the nodes in [feed]'s snapshot to the cache, and keeps them there until the network map
+     * reports that they've changed or gone. The subscription to the feed's updates is held until [close].
+     */
+    fun followNetworkMap(feed: DataFeed<List<NodeInfo>, MapChange>) {
+        feed.snapshot.forEach { add(it) }
+        networkMapSubscription = feed.updates.subscribe { change ->
+            when (change) {
+                is MapChange.Added -> add(change.node)
+                is MapChange.Removed -> remove(change.node)
+                is MapChange.Modified -> {
+                    remove(change.previousNode)
+                    add(change.node)
+                }
+            }
+        }
+    }
+
+    /** Stops following the network map. Parties already cached can still be looked up. */
+    override fun close() {
+        networkMapSubscription?.unsubscribe()
+    }
+
+    private fun <K : Any, V : Any> newCache(): Cache<K, V> {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+                .maximumSize(maximumSize)
+                .ticker(ticker)
+                .build<K, V>()
+    }
+
+    private fun <K : Any, V : Any> Cache<K, V>.getOrLoad(key: K, load: (K) -> V): V {
+        try {
+            return get(key) { load(key) }
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        } catch (e: UncheckedExecutionException) {
+            throw e.cause ?: e
+        } catch (e: ExecutionError) {
+            throw e.cause ?: e
+        }
+    }
+
+    private fun identities(node: NodeInfo): List<Party> = listOf(node.legalIdentity) + node.advertisedServices.map { it.identity.party }
+
+    private fun add(node: NodeInfo) {
+        for (party in identities(node)) {
+            onMapByName[party.name] = party
+            onMapByKey[party.owningKey] = party
+        }
+        // A fuzzy match may now find another party.
+        byQuery.invalidateAll()
+    }
+
+    private fun remove(node: NodeInfo) {
+        for (party in identities(node)) {
+            onMapByName.remove(party.name)
+            onMapByKey.remove(party.owningKey)
+            // A lookup cached before the node joined the map may be stale too.
+            byName.invalidate(party.name)
+            byKey.invalidate(party.owningKey)
+        }
+        byQuery.invalidateAll()
+    }
+}
@@ -10,6 +10,7 @@ import net.corda.core.testing.PublicKeyGenerator
 import net.i2p.crypto.eddsa.EdDSAPublicKey
 import org.junit.Test
 import org.junit.runner.RunWith
+import java.io.ByteArrayOutputStream
 import java.security.PublicKey
 import java.util.*
 import kotlin.test.assertEquals
@@ -50,4 +51,13 @@ class JacksonSupportTest {
         val writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
         assertEquals("""{"notional":"25000000.00 USD"}""", writer.writeValueAsString(Dummy(Amount.parseCurrency("$25000000"))))
     }
+
+    @Test
+    fun writeArrayStreamsEveryElement() {
+        val values = (1..250).map { "value $it" }
+        val output = ByteArrayOutputStream()
+        JacksonSupport.writeArray(mapper, output, values.iterator(), flushEvery = 7)
+        val read = mapper.readValue(output.toByteArray(), Array<String>::class.java)
+        assertEquals(values, read.toList())
+    }
 }
@@ -0,0 +1,83 @@
+package net.corda.jackson
+
+import com.google.common.base.Ticker
+import net.corda.core.identity.Party
+import net.corda.core.messaging.DataFeed
+import net.corda.core.node.NodeInfo
+import net.corda.core.node.services.NetworkMapCache.MapChange
+import net.corda.core.utilities.ALICE
+import net.corda.core.utilities.ALICE_IDENTITY
+import net.corda.core.utilities.BOB
+import net.corda.core.utilities.BOB_IDENTITY
+import org.junit.Test
+import rx.subjects.PublishSubject
+import java.time.Duration
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class PartyCacheTest {
+    private class FakeTicker(var now: Duration = Duration.ZERO) : Ticker() {
+        override fun read() = now.toNanos()
+    }
+
+    private val ticker = FakeTicker()
+    private val cache = PartyCache(Duration.ofMinutes(1), PartyCache.DEFAULT_MAXIMUM_SIZE, ticker)
+    private var lookups = 0
+
+    private fun lookup(party: Party?): Party? {
+        lookups++
+        return party
+    }
+
+    @Test
+    fun `lookups are cached until they expire`() {
+        repeat(10) { assertEquals(ALICE, cache.partyFromX500Name(ALICE.name) { lookup(ALICE) }) }
+        assertEquals(1, lookups)
+        ticker.now += Duration.ofMinutes(2)
+        assertEquals(ALICE, cache.partyFromX500Name(ALICE.name) { lookup(ALICE) })
+        assertEquals(2, lookups)
+    }
+
+    @Test
+    fun `missing parties are cached too`() {
+        repeat(10) { assertNull(cache.partyFromKey(BOB.owningKey) { lookup(null) }) }
+        assertEquals(1, lookups)
+    }
+
+    @Test
+    fun `nodes on the network map are cached until removed`() {
+        val alice = NodeInfo(emptyList(), ALICE_IDENTITY, setOf(ALICE_IDENTITY), 1)
+        val bob = NodeInfo(emptyList(), BOB_IDENTITY, setOf(BOB_IDENTITY), 1)
+        val updates = PublishSubject.create<MapChange>()
+        cache.followNetworkMap(DataFeed(listOf(alice), updates))
+        updates.onNext(MapChange.Added(bob))
+        ticker.now += Duration.ofDays(1)
+        assertEquals(ALICE, cache.partyFromKey(ALICE.owningKey) { lookup(null) })
+        assertEquals(BOB, cache.partyFromX500Name(BOB.name) { lookup(null) })
+        assertEquals(0, lookups)
+
+        updates.onNext(MapChange.Removed(bob))
+        assertNull(cache.partyFromX500Name(BOB.name) { lookup(null) })
+        assertEquals(1, lookups)
+    }
+
+    @Test
+    fun `lookups beyond the maximum size are evicted`() {
+        val smallCache = PartyCache(Duration.ofMinutes(1), 1, ticker)
+        smallCache.partyFromX500Name(ALICE.name) { lookup(ALICE) }
+        smallCache.partyFromX500Name(BOB.name) { lookup(BOB) }
+        smallCache.partyFromX500Name(ALICE.name) { lookup(ALICE) }
+        assertEquals(3, lookups)
+    }
+
+    @Test
+    fun `closing stops following the network map`() {
+        val updates = PublishSubject.create<MapChange>()
+        cache.followNetworkMap(DataFeed(emptyList(), updates))
+        assertTrue(updates.hasObservers())
+        cache.close()
+        assertFalse(updates.hasObservers())
+    }
+}
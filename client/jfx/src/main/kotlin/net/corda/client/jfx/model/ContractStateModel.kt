@@ -2,13 +2,16 @@ package net.corda.client.jfx.model
 
 import javafx.collections.FXCollections
 import javafx.collections.ObservableList
-import net.corda.client.jfx.utils.fold
+import net.corda.client.jfx.utils.foldBatched
 import net.corda.client.jfx.utils.map
 import net.corda.contracts.asset.Cash
 import net.corda.core.contracts.ContractState
 import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
 import net.corda.core.node.services.Vault
 import rx.Observable
+import java.util.*
+import java.util.concurrent.TimeUnit
 
 data class Diff<out T : ContractState>(
         val added: Collection<StateAndRef<T>>,
@@ -17,6 +20,10 @@ data class Diff<out T : ContractState>(
 
 /**
  * This model exposes the list of owned contract states.
+ *
+ * Vault updates are coalesced off the FX thread into at most one [Diff] per [UPDATE_PERIOD_MILLIS], and each diff is
+ * applied to the list as a single removal and a single addition. Removed states are found through an index keyed by
+ * [StateRef], so applying a diff costs time proportional to the list and the diff rather than their product.
  */
 class ContractStateModel {
     private val vaultUpdates: Observable<Vault.Update> by observable(NodeMonitorModel::vaultUpdates)
@@ -27,14 +34,19 @@ class ContractStateModel {
     private val cashStatesDiff: Observable<Diff<Cash.State>> = contractStatesDiff.map {
         Diff(it.added.filterCashStateAndRefs(), it.removed.filterCashStateAndRefs())
     }
-    val cashStates: ObservableList<StateAndRef<Cash.State>> = cashStatesDiff.fold(FXCollections.observableArrayList()) { list: MutableList<StateAndRef<Cash.State>>, statesDiff ->
-        list.removeIf { it in statesDiff.removed }
-        list.addAll(statesDiff.added)
+    // Only touched on the FX thread.
+    private val cashStatesByRef = HashMap<StateRef, StateAndRef<Cash.State>>()
+    val cashStates: ObservableList<StateAndRef<Cash.State>> = cashStatesDiff.foldBatched(
+            FXCollections.observableArrayList(), UPDATE_PERIOD_MILLIS, TimeUnit.MILLISECONDS, { coalesce(it) }
+    ) { list: MutableList<StateAndRef<Cash.State>>, statesDiff ->
+        applyDiff(list, cashStatesByRef, statesDiff)
     }
 
     val cash = cashStates.map { it.state.data.amount }
 
     companion object {
+        private val UPDATE_PERIOD_MILLIS = 250L
+
         private fun Collection<StateAndRef<ContractState>>.filterCashStateAndRefs(): List<StateAndRef<Cash.State>> {
             return this.map { stateAndRef ->
                 @Suppress("UNCHECKED_CAST")
@@ -46,6 +58,33 @@ class ContractStateModel {
                 }
             }.filterNotNull()
         }
+
+        /** Merges consecutive diffs into one. A state both added and removed within them appears in neither side. */
+        internal fun <T : ContractState> coalesce(diffs: List<Diff<T>>): Diff<T> {
+            val added = LinkedHashMap<StateRef, StateAndRef<T>>()
+            val removed = LinkedHashMap<StateRef, StateAndRef<T>>()
+            for (diff in diffs) {
+                for (stateAndRef in diff.removed) {
+                    if (added.remove(stateAndRef.ref) == null) removed[stateAndRef.ref] = stateAndRef
+                }
+                for (stateAndRef in diff.added) added[stateAndRef.ref] = stateAndRef
+            }
+            return Diff(added.values, removed.values)
+        }
+
+        /**
+         * Applies [diff] to [list] with at most one removal and one addition, using [index] to find the states to
+         * remove. [index] must hold exactly the states in [list], and is kept up to date.
+         */
+        internal fun <T : ContractState> applyDiff(list: MutableList<StateAndRef<T>>,
+                                                   index: MutableMap<StateRef, StateAndRef<T>>,
+                                                   diff: Diff<T>) {
+            val removed = Collections.newSetFromMap(IdentityHashMap<StateAndRef<T>, Boolean>())
+            diff.removed.mapNotNullTo(removed) { index.remove(it.ref) }
+            if (removed.isNotEmpty()) list.removeAll(removed)
+            val added = diff.added.filter { index.put(it.ref, it) == null }
+            if (added.isNotEmpty()) list.addAll(added)
+        }
     }
 
 }
@@ -9,6 +9,7 @@ import net.corda.core.contracts.StateRef
 import net.corda.core.crypto.SecureHash
 import net.corda.core.transactions.SignedTransaction
 import org.fxmisc.easybind.EasyBind
+import java.util.concurrent.TimeUnit
 
 /**
  * [PartiallyResolvedTransaction] holds a [SignedTransaction] that has zero or more inputs resolved. The intent is
@@ -33,10 +34,19 @@ data class PartiallyResolvedTransaction(
         fun fromSignedTransaction(
                 transaction: SignedTransaction,
                 transactions: ObservableMap<SecureHash, SignedTransaction>
+        ) = fromSignedTransaction(transaction) { transactions.getObservableValue(it) }
+
+        /**
+         * Resolves the inputs of [transaction] through [transactionById], which should be shared between transactions
+         * (see [createObservableValueIndex]) so that each new transaction doesn't add a listener per input.
+         */
+        fun fromSignedTransaction(
+                transaction: SignedTransaction,
+                transactionById: (SecureHash) -> ObservableValue<SignedTransaction?>
         ) = PartiallyResolvedTransaction(
                 transaction = transaction,
                 inputs = transaction.tx.inputs.map { stateRef ->
-                    EasyBind.map(transactions.getObservableValue(stateRef.txhash)) {
+                    EasyBind.map(transactionById(stateRef.txhash)) {
                         if (it == null) {
                             InputResolution.Unresolved(stateRef)
                         } else {
@@ -53,10 +63,12 @@ data class PartiallyResolvedTransaction(
  */
 class TransactionDataModel {
     private val transactions by observable(NodeMonitorModel::transactions)
-    private val collectedTransactions = transactions.recordInSequence()
+    // Batched so that the index and the resolved list below update once per second rather than once per transaction.
+    private val collectedTransactions = transactions.recordInSequence(1, TimeUnit.SECONDS)
     private val transactionMap = collectedTransactions.associateBy(SignedTransaction::id)
+    private val transactionById = transactionMap.createObservableValueIndex()
 
     val partiallyResolvedTransactions = collectedTransactions.map {
-        PartiallyResolvedTransaction.fromSignedTransaction(it, transactionMap)
+        PartiallyResolvedTransaction.fromSignedTransaction(it, transactionById)
     }
 }
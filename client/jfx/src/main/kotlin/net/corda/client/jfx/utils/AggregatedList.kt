@@ -16,8 +16,8 @@ import javafx.collections.transformation.TransformationList
  * The ordering of the exposed list is based on the [hashCode] of keys.
  * The ordering of the groups themselves is based on the [hashCode] of elements.
  *
- * Warning: If there are two elements [E] in the source list that have the same [hashCode] then it is not deterministic
- * which one will be removed if one is removed from the source list!
+ * Groups are found through a hash index on the key, so keys with colliding hash codes still form separate groups, and
+ * an element is removed from its group by equality among the elements sharing its hash code.
  *
  * Example:
  *   val statesGroupedByCurrency = AggregatedList(states, { state -> state.currency }) { currency, group ->
@@ -51,6 +51,7 @@ class AggregatedList<A, E : Any, K : Any>(
 
     // Invariant: sorted by K.hashCode()
     private val aggregationList = mutableListOf<AggregationGroup<E, A>>()
+    private val aggregationsByKey = HashMap<K, AggregationGroup<E, A>>()
 
     init {
         list.forEach { addItem(it) }
@@ -94,39 +95,35 @@ class AggregatedList<A, E : Any, K : Any>(
 
     private fun removeItem(removedItem: E): Pair<Int, AggregationGroup<E, A>>? {
         val key = toKey(removedItem)
-        val keyHashCode = key.hashCode()
-
-        val index = aggregationList.binarySearch(
-                comparison = { group -> compareValues(keyHashCode, group.keyHashCode.hashCode()) }
-        )
-        if (index < 0) {
-            throw IllegalStateException("Removed element $removedItem does not map to an existing aggregation")
-        } else {
-            val aggregationGroup = aggregationList[index]
-            if (aggregationGroup.elements.size == 1) {
-                return Pair(index, aggregationList.removeAt(index))
-            }
-            val elementHashCode = removedItem.hashCode()
-            val removeIndex = aggregationGroup.elements.binarySearch(
-                    comparison = { element -> compareValues(elementHashCode, element.hashCode()) }
-            )
-            if (removeIndex < 0) {
-                throw IllegalStateException("Cannot find removed element $removedItem in group")
-            } else {
-                aggregationGroup.elements.removeAt(removeIndex)
-            }
+        val aggregationGroup = aggregationsByKey[key] ?:
+                throw IllegalStateException("Removed element $removedItem does not map to an existing aggregation")
+        if (aggregationGroup.elements.size == 1) {
+            aggregationsByKey.remove(key)
+            val index = indexOfGroup(aggregationGroup)
+            return Pair(index, aggregationList.removeAt(index))
+        }
+        val elements = aggregationGroup.elements
+        val elementHashCode = removedItem.hashCode()
+        val found = elements.binarySearch(comparison = { element -> compareValues(element.hashCode(), elementHashCode) })
+        if (found < 0) throw IllegalStateException("Cannot find removed element $removedItem in group")
+        // Several elements may share a hash code, so look either side of the one found for an equal element.
+        var removeIndex = found
+        while (removeIndex > 0 && elements[removeIndex - 1].hashCode() == elementHashCode) removeIndex--
+        while (removeIndex < elements.size && elements[removeIndex] != removedItem) {
+            if (elements[removeIndex].hashCode() != elementHashCode) throw IllegalStateException("Cannot find removed element $removedItem in group")
+            removeIndex++
         }
+        if (removeIndex == elements.size) throw IllegalStateException("Cannot find removed element $removedItem in group")
+        elements.removeAt(removeIndex)
         return null
     }
 
     private fun addItem(addedItem: E): Int? {
         val key = toKey(addedItem)
-        val keyHashCode = key.hashCode()
-        val aggregationIndex = aggregationList.binarySearch(
-                comparison = { group -> compareValues(keyHashCode, group.keyHashCode.hashCode()) }
-        )
-        if (aggregationIndex < 0) {
+        val existingGroup = aggregationsByKey[key]
+        if (existingGroup == null) {
             // New aggregation
+            val keyHashCode = key.hashCode()
             val observableGroupElements = FXCollections.observableArrayList<E>()
             observableGroupElements.add(addedItem)
             val aggregationGroup = AggregationGroup(
@@ -134,15 +131,15 @@ class AggregatedList<A, E : Any, K : Any>(
                     value = assemble(key, observableGroupElements),
                     elements = observableGroupElements
             )
-            val insertIndex = -aggregationIndex - 1
+            val found = aggregationList.binarySearch(comparison = { group -> compareValues(group.keyHashCode, keyHashCode) })
+            val insertIndex = if (found < 0) -found - 1 else found
             aggregationList.add(insertIndex, aggregationGroup)
+            aggregationsByKey[key] = aggregationGroup
             return insertIndex
         } else {
-            val elements = aggregationList[aggregationIndex].elements
+            val elements = existingGroup.elements
             val elementHashCode = addedItem.hashCode()
-            val elementIndex = elements.binarySearch(
-                    comparison = { element -> compareValues(elementHashCode, element.hashCode()) }
-            )
+            val elementIndex = elements.binarySearch(comparison = { element -> compareValues(element.hashCode(), elementHashCode) })
             val addIndex = if (elementIndex < 0) {
                 -elementIndex - 1
             } else {
@@ -153,4 +150,13 @@ class AggregatedList<A, E : Any, K : Any>(
             return null
         }
     }
+
+    private fun indexOfGroup(group: AggregationGroup<E, A>): Int {
+        val found = aggregationList.binarySearch(comparison = { compareValues(it.keyHashCode, group.keyHashCode) })
+        check(found >= 0) { "Aggregation is missing from the aggregation list" }
+        var index = found
+        while (index > 0 && aggregationList[index - 1].keyHashCode == group.keyHashCode) index--
+        while (aggregationList[index] !== group) index++
+        return index
+    }
 }
@@ -5,9 +5,9 @@ import javafx.beans.value.ObservableValue
 import javafx.collections.ObservableList
 import net.corda.client.jfx.model.ExchangeRate
 import net.corda.core.contracts.Amount
+import net.corda.core.contracts.sumOrNull
 import org.fxmisc.easybind.EasyBind
 import java.util.*
-import java.util.stream.Collectors
 
 /**
  * Utility bindings for the [Amount] type, similar in spirit to [Bindings]
@@ -15,10 +15,10 @@ import java.util.stream.Collectors
 object AmountBindings {
     fun <T : Any> sum(amounts: ObservableList<Amount<T>>, token: T) = EasyBind.map(
             Bindings.createLongBinding({
-                amounts.stream().collect(Collectors.summingLong {
+                amounts.sumOrNull()?.let {
                     require(it.token == token)
                     it.quantity
-                })
+                } ?: 0L
             }, arrayOf(amounts))
     ) { sum -> Amount(sum.toLong(), token) }
 
@@ -42,7 +42,7 @@ object AmountBindings {
             val (currencyValue, exchange: (Amount<Currency>) -> Long) = it
             EasyBind.map(
                     Bindings.createLongBinding({
-                        amounts.stream().collect(Collectors.summingLong { exchange(it) })
+                        amounts.fold(0L) { sum, amount -> Math.addExact(sum, exchange(amount)) }
                     }, arrayOf(amounts))
             ) { Amount(it.toLong(), currencyValue) }
         }
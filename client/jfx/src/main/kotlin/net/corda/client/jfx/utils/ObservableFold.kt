@@ -53,12 +53,40 @@ fun <T, R> Observable<T>.fold(accumulator: R, folderFun: (R, T) -> Unit): R {
     return accumulator
 }
 
+/**
+ * [foldBatched] buffers the stream for [period], merges each buffer into a single batch with [merge] off the FX thread,
+ * and then applies the batch to the accumulator on the FX thread with [folderFun]. This bounds the rate at which the
+ * FX thread is updated, and lets a burst of events be applied as one change rather than one per event.
+ * @param accumulator The accumulator for accumulating elements.
+ * @param merge Combines the events of one period into a batch. Called on an Rx computation thread.
+ * @param folderFun Applies a batch to the accumulator. Called on the FX thread.
+ */
+fun <T, B, R> Observable<T>.foldBatched(accumulator: R,
+                                        period: Long,
+                                        unit: TimeUnit,
+                                        merge: (List<T>) -> B,
+                                        folderFun: (R, B) -> Unit): R {
+    buffer(period, unit).filter { it.isNotEmpty() }.map(merge).subscribe { batch ->
+        Platform.runLater {
+            folderFun(accumulator, batch)
+        }
+    }
+    return accumulator
+}
+
 /**
  * [recordInSequence] records incoming events on the [rx.Observable] in sequence.
+ * @param batchPeriod If positive, the events of each period of this length are added to the list as a single change,
+ *     so that downstream lists and maps update once per batch rather than once per event.
  */
-fun <A> Observable<A>.recordInSequence(): ObservableList<A> {
-    return fold(FXCollections.observableArrayList()) { list, newElement ->
-        list.add(newElement)
+fun <A> Observable<A>.recordInSequence(batchPeriod: Long = 0, unit: TimeUnit = TimeUnit.SECONDS): ObservableList<A> {
+    if (batchPeriod <= 0) {
+        return fold(FXCollections.observableArrayList()) { list, newElement ->
+            list.add(newElement)
+        }
+    }
+    return foldBatched(FXCollections.observableArrayList<A>(), batchPeriod, unit, { it }) { list, newElements ->
+        list.addAll(newElements)
     }
 }
 
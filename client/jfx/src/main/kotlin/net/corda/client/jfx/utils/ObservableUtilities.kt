@@ -1,5 +1,6 @@
 package net.corda.client.jfx.utils
 
+import com.google.common.cache.CacheBuilder
 import javafx.beans.binding.Bindings
 import javafx.beans.binding.BooleanBinding
 import javafx.beans.property.ReadOnlyObjectWrapper
@@ -204,6 +205,31 @@ fun <K, V> ObservableMap<K, V>.getObservableValue(key: K): ObservableValue<V?> {
     return property
 }
 
+/**
+ * Like [getObservableValue], but shares a single map listener between all the keys looked up through the returned
+ * function, and a single value per key. Each map change then costs one hash lookup rather than a call to a listener
+ * per key ever looked up, which matters when looking up many keys, for example the inputs of every transaction.
+ * The values are only weakly held by the index, so those no longer used elsewhere are dropped.
+ *
+ * val nameToPerson: ObservableMap<String, Person> = (..)
+ * val personByName: (String) -> ObservableValue<Person?> = nameToPerson.createObservableValueIndex()
+ * val john: ObservableValue<Person?> = personByName("John")
+ */
+fun <K : Any, V> ObservableMap<K, V>.createObservableValueIndex(): (K) -> ObservableValue<V?> {
+    val properties = CacheBuilder.newBuilder().weakValues().build<K, SimpleObjectProperty<V?>>()
+    addListener { change: MapChangeListener.Change<out K, out V> ->
+        val property = properties.getIfPresent(change.key)
+        if (property != null) {
+            if (change.wasAdded()) {
+                property.set(change.valueAdded)
+            } else if (change.wasRemoved()) {
+                property.set(null)
+            }
+        }
+    }
+    return { key -> properties.get(key) { SimpleObjectProperty(get(key)) } }
+}
+
 /**
  * val nameToPerson: ObservableMap<String, Person> = (..)
  * val people: ObservableList<Person> = nameToPerson.getObservableValues()
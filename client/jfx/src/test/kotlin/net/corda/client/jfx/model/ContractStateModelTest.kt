@@ -0,0 +1,60 @@
+package net.corda.client.jfx.model
+
+import javafx.collections.FXCollections
+import javafx.collections.ListChangeListener
+import net.corda.core.contracts.DummyState
+import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
+import net.corda.core.contracts.TransactionState
+import net.corda.core.crypto.SecureHash
+import net.corda.core.utilities.DUMMY_NOTARY
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+import java.util.*
+
+class ContractStateModelTest {
+    private val existing = stateAndRef(1)
+    private val first = stateAndRef(2)
+    private val second = stateAndRef(3)
+
+    @Test
+    fun `state added and consumed in the same batch drops out`() {
+        val diff = ContractStateModel.coalesce(listOf(
+                Diff(listOf(first), emptyList()),
+                Diff(listOf(second), listOf(first, existing))))
+        assertThat(diff.added).containsExactly(second)
+        assertThat(diff.removed).containsExactly(existing)
+    }
+
+    @Test
+    fun `batched diff is applied as one removal and one addition`() {
+        val list = FXCollections.observableArrayList<StateAndRef<DummyState>>()
+        val index = HashMap<StateRef, StateAndRef<DummyState>>()
+        ContractStateModel.applyDiff(list, index, Diff(listOf(existing, first), emptyList()))
+
+        var changes = 0
+        list.addListener { _: ListChangeListener.Change<out StateAndRef<DummyState>> -> changes++ }
+        val diff = ContractStateModel.coalesce(listOf(
+                Diff(listOf(second), listOf(existing)),
+                Diff(listOf(stateAndRef(4)), listOf(first))))
+        ContractStateModel.applyDiff(list, index, diff)
+
+        assertThat(list).containsExactly(second, stateAndRef(4))
+        assertThat(index.values).containsOnlyElementsOf(list)
+        assertThat(changes).isEqualTo(2)
+    }
+
+    @Test
+    fun `state added twice is only listed once`() {
+        val list = FXCollections.observableArrayList<StateAndRef<DummyState>>()
+        val index = HashMap<StateRef, StateAndRef<DummyState>>()
+        ContractStateModel.applyDiff(list, index, Diff(listOf(first), emptyList()))
+        ContractStateModel.applyDiff(list, index, Diff(listOf(first), emptyList()))
+        assertThat(list).containsExactly(first)
+    }
+
+    private fun stateAndRef(magicNumber: Int): StateAndRef<DummyState> {
+        val ref = StateRef(SecureHash.sha256("tx$magicNumber"), 0)
+        return StateAndRef(TransactionState(DummyState(magicNumber), DUMMY_NOTARY), ref)
+    }
+}
@@ -97,6 +97,19 @@ class AggregatedListTest {
             }
         }
     }
-}
-
 
+    @Test
+    fun keysWithSameHashFormSeparateGroups() {
+        // "Aa" and "BB" have the same hash code.
+        val strings = FXCollections.observableArrayList<String>()
+        val groups = ReplayedList(AggregatedList(strings, { it.substring(0, 2) }) { prefix, group -> Pair(prefix, group) })
+        strings.addAll("Aa1", "BB1", "Aa2")
+        assertEquals(2, groups.size)
+        assertEquals(mapOf("Aa" to setOf("Aa1", "Aa2"), "BB" to setOf("BB1")), groups.associate { it.first to it.second.toSet() })
+
+        strings.remove("BB1")
+        assertEquals(listOf("Aa"), groups.map { it.first })
+        strings.remove("Aa1")
+        assertEquals(setOf("Aa2"), groups.single().second.toSet())
+    }
+}
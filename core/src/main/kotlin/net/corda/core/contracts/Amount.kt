@@ -182,9 +182,14 @@ data class Amount<T : Any>(val quantity: Long, val displayTokenSize: BigDecimal,
         return Amount(Math.subtractExact(quantity, other.quantity), displayTokenSize, token)
     }
 
-    private fun checkToken(other: Amount<T>) {
-        require(other.token == token) { "Token mismatch: ${other.token} vs $token" }
-        require(other.displayTokenSize == displayTokenSize) { "Token size mismatch: ${other.displayTokenSize} vs $displayTokenSize" }
+    private fun checkToken(other: Amount<T>) = checkToken(other.token, other.displayTokenSize)
+
+    // Amounts being combined very often share the same token instance, so compare identity before the full equals.
+    internal fun checkToken(otherToken: T, otherDisplayTokenSize: BigDecimal) {
+        require(otherToken === token || otherToken == token) { "Token mismatch: $otherToken vs $token" }
+        require(otherDisplayTokenSize === displayTokenSize || otherDisplayTokenSize == displayTokenSize) {
+            "Token size mismatch: $otherDisplayTokenSize vs $displayTokenSize"
+        }
     }
 
     /**
@@ -241,9 +246,66 @@ data class Amount<T : Any>(val quantity: Long, val displayTokenSize: BigDecimal,
 }
 
 
-fun <T : Any> Iterable<Amount<T>>.sumOrNull() = if (!iterator().hasNext()) null else sumOrThrow()
-fun <T : Any> Iterable<Amount<T>>.sumOrThrow() = reduce { left, right -> left + right }
-fun <T : Any> Iterable<Amount<T>>.sumOrZero(token: T) = if (iterator().hasNext()) sumOrThrow() else Amount.zero(token)
+/**
+ * Sums amounts of a single token into a primitive long, so that summing a collection allocates only the final
+ * [Amount] rather than one per element. The token of the first amount seen is checked against every later one.
+ */
+private class AmountAccumulator<T : Any> {
+    private var first: Amount<T>? = null
+    private var quantity: Long = 0
+
+    fun add(amount: Amount<T>) {
+        val first = this.first
+        if (first == null) {
+            this.first = amount
+        } else {
+            first.checkToken(amount.token, amount.displayTokenSize)
+        }
+        quantity = Math.addExact(quantity, amount.quantity)
+    }
+
+    fun toAmountOrNull(): Amount<T>? {
+        val first = this.first ?: return null
+        return if (first.quantity == quantity) first else Amount(quantity, first.displayTokenSize, first.token)
+    }
+}
+
+/**
+ * Sums the amounts selected from each element, skipping elements for which [selector] returns null, in a single
+ * pass and without allocating intermediate amounts. Returns null if nothing was selected.
+ *
+ * @throws ArithmeticException if the sum overflows.
+ * @throws IllegalArgumentException if the amounts are of different tokens.
+ */
+fun <E, T : Any> Iterable<E>.sumAmountsOrNull(selector: (E) -> Amount<T>?): Amount<T>? {
+    val accumulator = AmountAccumulator<T>()
+    for (element in this) {
+        accumulator.add(selector(element) ?: continue)
+    }
+    return accumulator.toAmountOrNull()
+}
+
+/**
+ * Sums the amounts selected from each element separately for each token, in a single pass and allocating one
+ * [Amount] per token rather than one per element. Tokens appear in the result in the order first seen.
+ *
+ * @throws ArithmeticException if any sum overflows.
+ */
+fun <E, T : Any> Iterable<E>.sumAmountsByToken(selector: (E) -> Amount<T>?): Map<T, Amount<T>> {
+    val accumulators = LinkedHashMap<T, AmountAccumulator<T>>()
+    for (element in this) {
+        val amount = selector(element) ?: continue
+        accumulators.getOrPut(amount.token) { AmountAccumulator() }.add(amount)
+    }
+    val result = LinkedHashMap<T, Amount<T>>(accumulators.size * 2)
+    for ((token, accumulator) in accumulators) result[token] = accumulator.toAmountOrNull()!!
+    return result
+}
+
+fun <T : Any> Iterable<Amount<T>>.sumOrNull() = sumAmountsOrNull { it }
+fun <T : Any> Iterable<Amount<T>>.sumOrThrow() = sumOrNull() ?: throw UnsupportedOperationException("Empty collection can't be reduced.")
+fun <T : Any> Iterable<Amount<T>>.sumOrZero(token: T) = sumOrNull() ?: Amount.zero(token)
+fun <T : Any> Iterable<Amount<T>>.sumByToken() = sumAmountsByToken { it }
 
 
 /**
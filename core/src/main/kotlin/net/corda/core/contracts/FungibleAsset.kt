@@ -55,8 +55,13 @@ interface FungibleAsset<T : Any> : OwnableState {
 // Small DSL extensions.
 
 /** Sums the asset states in the list, returning null if there are none. */
-fun <T : Any> Iterable<ContractState>.sumFungibleOrNull() = filterIsInstance<FungibleAsset<T>>().map { it.amount }.sumOrNull()
+@Suppress("UNCHECKED_CAST")
+fun <T : Any> Iterable<ContractState>.sumFungibleOrNull() = sumAmountsOrNull { (it as? FungibleAsset<T>)?.amount }
 
 /** Sums the asset states in the list, returning zero of the given token if there are none. */
-fun <T : Any> Iterable<ContractState>.sumFungibleOrZero(token: Issued<T>) = filterIsInstance<FungibleAsset<T>>().map { it.amount }.sumOrZero(token)
+fun <T : Any> Iterable<ContractState>.sumFungibleOrZero(token: Issued<T>) = sumFungibleOrNull<T>() ?: Amount.zero(token)
+
+/** Sums the asset states in the list separately for each issued token, in a single pass. */
+@Suppress("UNCHECKED_CAST")
+fun <T : Any> Iterable<ContractState>.sumFungibleByToken() = sumAmountsByToken { (it as? FungibleAsset<T>)?.amount }
 
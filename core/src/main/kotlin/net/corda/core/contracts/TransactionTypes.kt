@@ -6,6 +6,9 @@ import net.corda.core.serialization.DeserializeAsKotlinObjectDef
 import net.corda.core.transactions.LedgerTransaction
 import net.corda.core.transactions.TransactionBuilder
 import java.security.PublicKey
+import java.util.*
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
 
 /** Defines transaction build & validation logic for a specific transaction type */
 @CordaSerializable
@@ -19,12 +22,40 @@ sealed class TransactionType {
      */
     @Throws(TransactionVerificationException::class)
     fun verify(tx: LedgerTransaction) {
+        verifyCommonRules(tx)
+        verifyTransaction(tx)
+    }
+
+    /**
+     * As [verify], but the contracts of the transaction are verified on the given [contractExecutor], in parallel if
+     * there is more than one, rather than one after another on the calling thread.
+     */
+    @Throws(TransactionVerificationException::class)
+    fun verify(tx: LedgerTransaction, contractExecutor: ExecutorService) {
+        verifyPlatformRules(tx)
+        verifyContracts(tx, contractExecutor)
+    }
+
+    /** Check the transaction against the platform and transaction type rules, without running any contract code. */
+    @Throws(TransactionVerificationException::class)
+    fun verifyPlatformRules(tx: LedgerTransaction) {
+        verifyCommonRules(tx)
+        verifyTypeRules(tx)
+    }
+
+    /**
+     * Run the contract code which determines the validity of the transaction, if the transaction type has any. If a
+     * [contractExecutor] is given then independent contracts are verified on it in parallel.
+     */
+    @Throws(TransactionVerificationException::class)
+    open fun verifyContracts(tx: LedgerTransaction, contractExecutor: ExecutorService? = null) {}
+
+    private fun verifyCommonRules(tx: LedgerTransaction) {
         require(tx.notary != null || tx.timeWindow == null) { "Transactions with time-windows must be notarised" }
         val duplicates = detectDuplicateInputs(tx)
         if (duplicates.isNotEmpty()) throw TransactionVerificationException.DuplicateInputStates(tx.id, duplicates)
         val missing = verifySigners(tx)
         if (missing.isNotEmpty()) throw TransactionVerificationException.SignersMissing(tx.id, missing.toList())
-        verifyTransaction(tx)
     }
 
     /** Check that the list of signers includes all the necessary keys */
@@ -40,13 +71,12 @@ sealed class TransactionType {
 
     /** Check that the inputs are unique. */
     private fun detectDuplicateInputs(tx: LedgerTransaction): Set<StateRef> {
-        var seenInputs = emptySet<StateRef>()
-        var duplicates = emptySet<StateRef>()
+        val seenInputs = HashSet<StateRef>(tx.inputs.size)
+        val duplicates = LinkedHashSet<StateRef>()
         tx.inputs.forEach { state ->
-            if (seenInputs.contains(state.ref)) {
+            if (!seenInputs.add(state.ref)) {
                 duplicates += state.ref
             }
-            seenInputs += state.ref
         }
         return duplicates
     }
@@ -60,15 +90,25 @@ sealed class TransactionType {
     /** Implement type specific transaction validation logic */
     abstract fun verifyTransaction(tx: LedgerTransaction)
 
+    /**
+     * The part of [verifyTransaction] which does not run contract code. Types which have contract code must override
+     * this along with [verifyContracts].
+     */
+    protected open fun verifyTypeRules(tx: LedgerTransaction) = verifyTransaction(tx)
+
     /** A general transaction type where transaction validity is determined by custom contract code */
     object General : TransactionType(), DeserializeAsKotlinObjectDef {
         /** Just uses the default [TransactionBuilder] with no special logic */
         class Builder(notary: Party?) : TransactionBuilder(General, notary)
 
         override fun verifyTransaction(tx: LedgerTransaction) {
+            verifyTypeRules(tx)
+            verifyContracts(tx)
+        }
+
+        override fun verifyTypeRules(tx: LedgerTransaction) {
             verifyNoNotaryChange(tx)
             verifyEncumbrances(tx)
-            verifyContracts(tx)
         }
 
         /**
@@ -91,10 +131,9 @@ sealed class TransactionType {
         private fun verifyEncumbrances(tx: LedgerTransaction) {
             // Validate that all encumbrances exist within the set of input states.
             val encumberedInputs = tx.inputs.filter { it.state.encumbrance != null }
+            val inputRefs = tx.inputs.mapTo(HashSet(tx.inputs.size)) { it.ref }
             encumberedInputs.forEach { (state, ref) ->
-                val encumbranceStateExists = tx.inputs.any {
-                    it.ref.txhash == ref.txhash && it.ref.index == state.encumbrance
-                }
+                val encumbranceStateExists = StateRef(ref.txhash, state.encumbrance!!) in inputRefs
                 if (!encumbranceStateExists) {
                     throw TransactionVerificationException.TransactionMissingEncumbranceException(
                             tx.id,
@@ -119,21 +158,36 @@ sealed class TransactionType {
 
         /**
          * Check the transaction is contract-valid by running the verify() for each input and output state contract.
-         * If any contract fails to verify, the whole transaction is considered to be invalid.
+         * If any contract fails to verify, the whole transaction is considered to be invalid. When the contracts are
+         * verified in parallel and more than one fails, the failure reported is still that of the first contract in
+         * input then output order.
          */
-        private fun verifyContracts(tx: LedgerTransaction) {
+        override fun verifyContracts(tx: LedgerTransaction, contractExecutor: ExecutorService?) {
             val ctx = tx.toTransactionForContract()
             // TODO: This will all be replaced in future once the sandbox and contract constraints work is done.
             val contracts = (ctx.inputs.map { it.contract } + ctx.outputs.map { it.contract }).toSet()
-            for (contract in contracts) {
-                try {
-                    contract.verify(ctx)
-                } catch(e: Throwable) {
-                    throw TransactionVerificationException.ContractRejection(tx.id, contract, e)
+            if (contractExecutor == null || contracts.size < 2) {
+                contracts.forEach { verifyContract(tx, ctx, it) }
+            } else {
+                val verifications = contracts.map { contract -> contractExecutor.submit { verifyContract(tx, ctx, contract) } }
+                for (verification in verifications) {
+                    try {
+                        verification.get()
+                    } catch (e: ExecutionException) {
+                        throw e.cause!!
+                    }
                 }
             }
         }
 
+        private fun verifyContract(tx: LedgerTransaction, ctx: TransactionForContract, contract: Contract) {
+            try {
+                contract.verify(ctx)
+            } catch(e: Throwable) {
+                throw TransactionVerificationException.ContractRejection(tx.id, contract, e)
+            }
+        }
+
         override fun getRequiredSigners(tx: LedgerTransaction) = tx.commands.flatMap { it.signers }.toSet()
     }
 
@@ -370,14 +370,27 @@ object Crypto {
      */
     @Throws(IllegalArgumentException::class, InvalidKeyException::class, SignatureException::class)
     fun doSign(signatureScheme: SignatureScheme, privateKey: PrivateKey, clearData: ByteArray): ByteArray {
-        require(isSupportedSignatureScheme(signatureScheme)) { "Unsupported key/algorithm for schemeCodeName: ${signatureScheme.schemeCodeName}" }
-        val signature = Signature.getInstance(signatureScheme.signatureName, providerMap[signatureScheme.providerName])
+        val signature = newSignature(signatureScheme)
         if (clearData.isEmpty()) throw Exception("Signing of an empty array is not permitted!")
         signature.initSign(privateKey)
         signature.update(clearData)
         return signature.sign()
     }
 
+    /**
+     * Creates an uninitialised [Signature] engine for a signature scheme, from the provider that scheme uses. An engine
+     * initialised for signing is reset by [Signature.sign], so callers signing many messages with one key can reuse it
+     * rather than creating and initialising a new engine for each message.
+     * @param signatureScheme a [SignatureScheme] object, retrieved from supported signature schemes, see [Crypto].
+     * @return a new [Signature] engine for the scheme.
+     * @throws IllegalArgumentException if the signature scheme is not supported.
+     */
+    @Throws(IllegalArgumentException::class)
+    fun newSignature(signatureScheme: SignatureScheme): Signature {
+        require(isSupportedSignatureScheme(signatureScheme)) { "Unsupported key/algorithm for schemeCodeName: ${signatureScheme.schemeCodeName}" }
+        return Signature.getInstance(signatureScheme.signatureName, providerMap[signatureScheme.providerName])
+    }
+
     /**
      * Generic way to sign [MetaData] objects with a [PrivateKey].
      * [MetaData] is a wrapper over the transaction's Merkle root in order to attach extra information, such as a timestamp or partial and blind signature indicators.
@@ -25,6 +25,12 @@ open class FlowException(message: String?, cause: Throwable?) : CordaException(m
  * that we were not expecting), or the other side had an internal error, or the other side terminated when we
  * were waiting for a response.
  */
-class FlowSessionException(message: String?, cause: Throwable?) : CordaRuntimeException(message, cause) {
+open class FlowSessionException(message: String?, cause: Throwable?) : CordaRuntimeException(message, cause) {
     constructor(msg: String) : this(msg, null)
-}
\ No newline at end of file
+}
+
+/**
+ * Thrown when the counterparty refuses to start a session, for example because it has no flow registered for the
+ * initiating flow or it does not support the request.
+ */
+class FlowSessionRejectedException(message: String) : FlowSessionException(message, null)
\ No newline at end of file
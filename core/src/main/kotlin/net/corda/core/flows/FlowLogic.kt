@@ -141,6 +141,52 @@ abstract class FlowLogic<out T> {
     @Suspendable
     open fun send(otherParty: Party, payload: Any) = stateMachine.send(otherParty, payload, flowUsedForSessions)
 
+    /**
+     * Serializes and queues a payload for each of the given parties, then suspends until a response of type [R] has
+     * been received from every one of them. The counterparties work on their responses in parallel, so this takes
+     * roughly the time of the slowest round-trip rather than the sum of them all. If any counterparty ends its flow
+     * with an error then that error is thrown without waiting for the others.
+     *
+     * Remember that when receiving data from other parties the data should not be trusted until it's been thoroughly
+     * verified for consistency and that all expectations are satisfied, as a malicious peer may send you subtly
+     * corrupted data in order to exploit your code.
+     *
+     * @returns a map of each party to an [UntrustworthyData] wrapper around the object it sent back.
+     */
+    inline fun <reified R : Any> sendAndReceiveAll(payloads: Map<Party, Any>): Map<Party, UntrustworthyData<R>> {
+        return sendAndReceiveAll(R::class.java, payloads)
+    }
+
+    /** @see sendAndReceiveAll */
+    @Suspendable
+    open fun <R : Any> sendAndReceiveAll(receiveType: Class<R>, payloads: Map<Party, Any>): Map<Party, UntrustworthyData<R>> {
+        return stateMachine.sendAndReceiveAll(receiveType, payloads, flowUsedForSessions)
+    }
+
+    /**
+     * Suspends until every one of the specified [otherParties] has sent us a message of type [R].
+     *
+     * Remember that when receiving data from other parties the data should not be trusted until it's been thoroughly
+     * verified for consistency and that all expectations are satisfied, as a malicious peer may send you subtly
+     * corrupted data in order to exploit your code.
+     */
+    inline fun <reified R : Any> receiveAll(otherParties: Set<Party>): Map<Party, UntrustworthyData<R>> {
+        return receiveAll(R::class.java, otherParties)
+    }
+
+    /** @see receiveAll */
+    @Suspendable
+    open fun <R : Any> receiveAll(receiveType: Class<R>, otherParties: Set<Party>): Map<Party, UntrustworthyData<R>> {
+        return stateMachine.receiveAll(receiveType, otherParties, flowUsedForSessions)
+    }
+
+    /**
+     * Queues a payload for each of the given parties and continues without suspending more than once. The same delivery
+     * guarantees as [send] apply to each message.
+     */
+    @Suspendable
+    open fun sendAll(payloads: Map<Party, Any>) = stateMachine.sendAll(payloads, flowUsedForSessions)
+
     /**
      * Invokes the given subflow. This function returns once the subflow completes successfully with the result
      * returned by that subflow's [call] method. If the subflow has a progress tracker, it is attached to the
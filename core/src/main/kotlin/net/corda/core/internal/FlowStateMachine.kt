@@ -27,6 +27,17 @@ interface FlowStateMachine<R> {
     @Suspendable
     fun send(otherParty: Party, payload: Any, sessionFlow: FlowLogic<*>)
 
+    @Suspendable
+    fun <T : Any> sendAndReceiveAll(receiveType: Class<T>,
+                                    payloads: Map<Party, Any>,
+                                    sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>>
+
+    @Suspendable
+    fun <T : Any> receiveAll(receiveType: Class<T>, otherParties: Set<Party>, sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>>
+
+    @Suspendable
+    fun sendAll(payloads: Map<Party, Any>, sessionFlow: FlowLogic<*>)
+
     @Suspendable
     fun waitForLedgerCommit(hash: SecureHash, sessionFlow: FlowLogic<*>): SignedTransaction
 
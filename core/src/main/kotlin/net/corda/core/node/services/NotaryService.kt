@@ -13,6 +13,7 @@ import net.corda.core.serialization.serialize
 import net.corda.core.utilities.loggerFor
 import net.corda.flows.NotaryError
 import net.corda.flows.NotaryException
+import net.corda.flows.TransactionParts
 import org.slf4j.Logger
 
 abstract class NotaryService : SingletonSerializeAsToken() {
@@ -28,6 +29,13 @@ abstract class NotaryService : SingletonSerializeAsToken() {
      * changes.
      */
     abstract fun createServiceFlow(otherParty: Party, platformVersion: Int): FlowLogic<Void?>
+
+    /**
+     * Produces a notary service flow which has the corresponding sends and receives as [NotaryFlow.BatchClient], or
+     * null if this service only notarises one transaction per request. Batch requests to such a service are rejected,
+     * in which case [FinalityFlow] falls back to notarising the transactions one at a time.
+     */
+    open fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): FlowLogic<Void?>? = null
 }
 
 /**
@@ -54,22 +62,37 @@ abstract class TrustedAuthorityNotaryService : NotaryService() {
         try {
             uniquenessProvider.commit(inputs, txId, caller)
         } catch (e: UniquenessException) {
-            val conflicts = inputs.filterIndexed { i, stateRef ->
-                val consumingTx = e.error.stateHistory[stateRef]
-                consumingTx != null && consumingTx != UniquenessProvider.ConsumingTx(txId, i, caller)
-            }
-            if (conflicts.isNotEmpty()) {
-                // TODO: Create a new UniquenessException that only contains the conflicts filtered above.
-                log.warn("Notary conflicts for $txId: $conflicts")
-                throw notaryException(txId, e)
-            }
+            val conflict = checkConflict(inputs, txId, caller, e.error)
+            if (conflict != null) throw NotaryException(conflict)
         }
     }
 
-    private fun notaryException(txId: SecureHash, e: UniquenessException): NotaryException {
-        val conflictData = e.error.serialize()
+    /**
+     * Commits the input states of each of the given transactions, in order, returning the [NotaryError.Conflict] for
+     * each transaction which could not be committed or null for those which were.
+     */
+    fun commitInputStates(transactions: List<TransactionParts>, caller: Party): List<NotaryError.Conflict?> {
+        if (transactions.isEmpty()) return emptyList()
+        val conflicts = uniquenessProvider.commitAll(transactions.map { Pair(it.inputs, it.id) }, caller)
+        return transactions.zip(conflicts).map { (tx, conflict) ->
+            conflict?.let { checkConflict(tx.inputs, tx.id, caller, it) }
+        }
+    }
+
+    private fun checkConflict(inputs: List<StateRef>,
+                              txId: SecureHash,
+                              caller: Party,
+                              conflict: UniquenessProvider.Conflict): NotaryError.Conflict? {
+        val conflicts = inputs.filterIndexed { i, stateRef ->
+            val consumingTx = conflict.stateHistory[stateRef]
+            consumingTx != null && consumingTx != UniquenessProvider.ConsumingTx(txId, i, caller)
+        }
+        if (conflicts.isEmpty()) return null
+        // TODO: Create a new UniquenessException that only contains the conflicts filtered above.
+        log.warn("Notary conflicts for $txId: $conflicts")
+        val conflictData = conflict.serialize()
         val signedConflict = SignedData(conflictData, sign(conflictData.bytes))
-        return NotaryException(NotaryError.Conflict(txId, signedConflict))
+        return NotaryError.Conflict(txId, signedConflict)
     }
 
     fun sign(bits: ByteArray): DigitalSignature.WithKey {
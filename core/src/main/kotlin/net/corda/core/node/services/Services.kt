@@ -506,6 +506,17 @@ interface KeyManagementService {
      */
     @Suspendable
     fun sign(bytes: ByteArray, publicKey: PublicKey): DigitalSignature.WithKey
+
+    /**
+     * Signs each of the given payloads with the same key, as [sign] would. Implementations may look up the key and
+     * prepare the signing engine once for the whole batch, so this should be preferred when signing many payloads.
+     * @param payloads the data to sign, in order.
+     * @param publicKey as for [sign].
+     * @return the signatures, in the same order as [payloads].
+     * @throws IllegalArgumentException if the input key is not a member of [keys].
+     */
+    @Suspendable
+    fun signAll(payloads: List<ByteArray>, publicKey: PublicKey): List<DigitalSignature.WithKey> = payloads.map { sign(it, publicKey) }
 }
 
 /**
@@ -15,6 +15,22 @@ interface UniquenessProvider {
     /** Commits all input states of the given transaction */
     fun commit(states: List<StateRef>, txId: SecureHash, callerIdentity: Party)
 
+    /**
+     * Commits the input states of each of the given transactions in turn, returning the conflict for each transaction
+     * which could not be committed or null for those which were. Implementations should override this where a batch
+     * can be committed more cheaply than one transaction at a time.
+     */
+    fun commitAll(transactions: List<Pair<List<StateRef>, SecureHash>>, callerIdentity: Party): List<Conflict?> {
+        return transactions.map { (states, txId) ->
+            try {
+                commit(states, txId, callerIdentity)
+                null
+            } catch (e: UniquenessException) {
+                e.error
+            }
+        }
+    }
+
     /** Specifies the consuming transaction for every conflicting state */
     @CordaSerializable
     data class Conflict(val stateHistory: Map<StateRef, ConsumingTx>)
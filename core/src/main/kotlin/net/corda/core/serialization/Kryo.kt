@@ -7,10 +7,14 @@ import com.esotericsoftware.kryo.pool.KryoCallback
 import com.esotericsoftware.kryo.pool.KryoPool
 import com.esotericsoftware.kryo.util.MapReferenceResolver
 import com.google.common.annotations.VisibleForTesting
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.util.concurrent.UncheckedExecutionException
 import net.corda.core.contracts.*
 import net.corda.core.crypto.*
 import net.corda.core.identity.Party
 import net.corda.core.node.AttachmentsClassLoader
+import net.corda.core.node.services.AttachmentStorage
 import net.corda.core.transactions.WireTransaction
 import net.corda.core.utilities.LazyPool
 import net.i2p.crypto.eddsa.EdDSAPrivateKey
@@ -36,6 +40,7 @@ import java.security.cert.CertificateFactory
 import java.security.spec.InvalidKeySpecException
 import java.time.Instant
 import java.util.*
+import java.util.concurrent.ExecutionException
 import javax.annotation.concurrent.ThreadSafe
 import kotlin.reflect.KClass
 import kotlin.reflect.KMutableProperty
@@ -320,6 +325,21 @@ object WireTransactionSerializer : Serializer<WireTransaction>() {
     @VisibleForTesting
     internal val attachmentsClassLoaderEnabled = "attachments.class.loader.enabled"
 
+    // Attachments are immutable and addressed by their hash, so a class loader built for a given set of them can be
+    // shared by every transaction referring to that set, along with any classes it has already defined. A class loader
+    // reads through the attachment storage it was built from, so each storage has its own cache: several nodes may be
+    // running in this JVM, and one of them may have stopped. Storages are weak keys, so a stopped node's cache goes too.
+    private val attachmentsClassLoaderCaches: Cache<AttachmentStorage, Cache<Set<SecureHash>, AttachmentsClassLoader>> = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build()
+
+    private fun newAttachmentsClassLoaderCache(): Cache<Set<SecureHash>, AttachmentsClassLoader> {
+        return CacheBuilder.newBuilder()
+                .weakValues()
+                .maximumSize(1024)
+                .build()
+    }
+
     override fun write(kryo: Kryo, output: Output, obj: WireTransaction) {
         kryo.writeClassAndObject(output, obj.inputs)
         kryo.writeClassAndObject(output, obj.attachments)
@@ -334,13 +354,23 @@ object WireTransactionSerializer : Serializer<WireTransaction>() {
     private fun attachmentsClassLoader(kryo: Kryo, attachmentHashes: List<SecureHash>): ClassLoader? {
         kryo.context[attachmentsClassLoaderEnabled] as? Boolean ?: false || return null
         val serializationContext = kryo.serializationContext() ?: return null // Some tests don't set one.
+        val storage = serializationContext.serviceHub.attachments
         val missing = ArrayList<SecureHash>()
         val attachments = ArrayList<Attachment>()
         attachmentHashes.forEach { id ->
-            serializationContext.serviceHub.attachments.openAttachment(id)?.let { attachments += it } ?: run { missing += id }
+            storage.openAttachment(id)?.let { attachments += it } ?: run { missing += id }
         }
         missing.isNotEmpty() && throw MissingAttachmentsException(missing)
-        return AttachmentsClassLoader(attachments)
+        val key = attachmentHashes.toSet()
+        try {
+            // Loading through the caches means concurrent misses for the same set share a single class loader.
+            val cache = attachmentsClassLoaderCaches.get(storage) { newAttachmentsClassLoaderCache() }
+            return cache.get(key) { AttachmentsClassLoader(attachments) }
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        } catch (e: UncheckedExecutionException) {
+            throw e.cause ?: e
+        }
     }
 
     @Suppress("UNCHECKED_CAST")
@@ -1,7 +1,13 @@
 package net.corda.core.serialization.amqp
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.CacheLoader
+import com.google.common.cache.LoadingCache
 import com.google.common.primitives.Primitives
 import com.google.common.reflect.TypeResolver
+import com.google.common.util.concurrent.ExecutionError
+import com.google.common.util.concurrent.UncheckedExecutionException
 import net.corda.core.checkNotUnorderedHashMap
 import net.corda.core.serialization.AllWhitelist
 import net.corda.core.serialization.ClassWhitelist
@@ -15,6 +21,7 @@ import java.lang.reflect.WildcardType
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
 import javax.annotation.concurrent.ThreadSafe
 
 /**
@@ -27,7 +34,6 @@ import javax.annotation.concurrent.ThreadSafe
 // TODO: support for intern-ing of deserialized objects for some core types (e.g. PublicKey) for memory efficiency
 // TODO: maybe support for caching of serialized form of some core types for performance
 // TODO: profile for performance in general
-// TODO: use guava caches etc so not unbounded
 // TODO: do we need to support a transient annotation to exclude certain properties?
 // TODO: incorporate the class carpenter for classes not on the classpath.
 // TODO: apply class loader logic and an "app context" throughout this code.
@@ -42,10 +48,25 @@ import javax.annotation.concurrent.ThreadSafe
 // TODO: need to support super classes as well as interfaces with our current code base... what's involved?  If we continue to ban, what is the impact?
 @ThreadSafe
 class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
-    private val serializersByType = ConcurrentHashMap<Type, AMQPSerializer<Any>>()
-    private val serializersByDescriptor = ConcurrentHashMap<Any, AMQPSerializer<Any>>()
+    // Serializers other than custom ones can be rebuilt whenever they're needed, so these caches are bounded. A serializer
+    // found by descriptor is equivalent to the one for the same type found by type, so the two needn't evict together.
+    private val serializersByType: Cache<Type, AMQPSerializer<Any>> = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TYPES)
+            .build()
+    private val serializersByDescriptor: Cache<Any, AMQPSerializer<Any>> = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TYPES)
+            .build()
+    private val customSerializersByDescriptor = ConcurrentHashMap<Any, AMQPSerializer<Any>>()
     private val customSerializers = CopyOnWriteArrayList<CustomSerializer<out Any>>()
 
+    /**
+     * Results of walking the inheritance hierarchy to resolve type variables, keyed by actual class and declared type.
+     * This is the same for every instance of a given class so there is no need to repeat it for every object written.
+     */
+    private val inferredTypes: LoadingCache<Pair<Class<*>, ParameterizedType>, Type> = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TYPES)
+            .build(CacheLoader.from { key: Pair<Class<*>, ParameterizedType>? -> resolveTypeVariables(key!!.first, key.second) })
+
     /**
      * Look up, and manufacture if necessary, a serializer for the given type.
      *
@@ -58,11 +79,11 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
         if (declaredClass != null) {
             val actualType: Type = inferTypeVariables(actualClass, declaredClass, declaredType) ?: declaredType
             if (Collection::class.java.isAssignableFrom(declaredClass)) {
-                return serializersByType.computeIfAbsent(declaredType) {
+                return serializersByType.getOrMake(declaredType) {
                     CollectionSerializer(declaredType as? ParameterizedType ?: DeserializedParameterizedType(declaredClass, arrayOf(AnyType), null), this)
                 }
             } else if (Map::class.java.isAssignableFrom(declaredClass)) {
-                return serializersByType.computeIfAbsent(declaredClass) {
+                return serializersByType.getOrMake(declaredClass) {
                     makeMapSerializer(declaredType as? ParameterizedType ?: DeserializedParameterizedType(declaredClass, arrayOf(AnyType, AnyType), null))
                 }
             } else {
@@ -100,26 +121,33 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
             return null
         } else if (declaredClass.isAssignableFrom(actualClass)) {
             return if (actualClass.typeParameters.isNotEmpty()) {
-                // The actual class can never have type variables resolved, due to the JVM's use of type erasure, so let's try and resolve them
-                // Search for declared type in the inheritance hierarchy and then see if that fills in all the variables
-                val implementationChain: List<Type>? = findPathToDeclared(actualClass, declaredType, mutableListOf<Type>())
-                if (implementationChain != null) {
-                    val start = implementationChain.last()
-                    val rest = implementationChain.dropLast(1).drop(1)
-                    val resolver = rest.reversed().fold(TypeResolver().where(start, declaredType)) {
-                        resolved, chainEntry ->
-                        val newResolved = resolved.resolveType(chainEntry)
-                        TypeResolver().where(chainEntry, newResolved)
-                    }
-                    // The end type is a special case as it is a Class, so we need to fake up a ParameterizedType for it to get the TypeResolver to do anything.
-                    val endType = DeserializedParameterizedType(actualClass, actualClass.typeParameters)
-                    val resolvedType = resolver.resolveType(endType)
-                    resolvedType
-                } else throw NotSerializableException("No inheritance path between actual $actualClass and declared $declaredType.")
+                try {
+                    inferredTypes.get(actualClass to declaredType)
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
             } else actualClass
         } else throw NotSerializableException("Found object of type $actualClass in a property expecting $declaredType")
     }
 
+    private fun resolveTypeVariables(actualClass: Class<*>, declaredType: ParameterizedType): Type {
+        // The actual class can never have type variables resolved, due to the JVM's use of type erasure, so let's try and resolve them
+        // Search for declared type in the inheritance hierarchy and then see if that fills in all the variables
+        val implementationChain: List<Type>? = findPathToDeclared(actualClass, declaredType, mutableListOf<Type>())
+        if (implementationChain != null) {
+            val start = implementationChain.last()
+            val rest = implementationChain.dropLast(1).drop(1)
+            val resolver = rest.reversed().fold(TypeResolver().where(start, declaredType)) {
+                resolved, chainEntry ->
+                val newResolved = resolved.resolveType(chainEntry)
+                TypeResolver().where(chainEntry, newResolved)
+            }
+            // The end type is a special case as it is a Class, so we need to fake up a ParameterizedType for it to get the TypeResolver to do anything.
+            val endType = DeserializedParameterizedType(actualClass, actualClass.typeParameters)
+            return resolver.resolveType(endType)
+        } else throw NotSerializableException("No inheritance path between actual $actualClass and declared $declaredType.")
+    }
+
     // Stop when reach declared type or return null if we don't find it.
     private fun findPathToDeclared(startingType: Type, declaredType: Type, chain: MutableList<Type>): List<Type>? {
         chain.add(startingType)
@@ -148,20 +176,24 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
      */
     @Throws(NotSerializableException::class)
     fun get(typeDescriptor: Any, schema: Schema): AMQPSerializer<Any> {
-        return serializersByDescriptor[typeDescriptor] ?: {
+        return serializerForDescriptor(typeDescriptor) ?: {
             processSchema(schema)
-            serializersByDescriptor[typeDescriptor] ?: throw NotSerializableException("Could not find type matching descriptor $typeDescriptor.")
+            serializerForDescriptor(typeDescriptor) ?: throw NotSerializableException("Could not find type matching descriptor $typeDescriptor.")
         }()
     }
 
+    private fun serializerForDescriptor(typeDescriptor: Any): AMQPSerializer<Any>? {
+        return customSerializersByDescriptor[typeDescriptor] ?: serializersByDescriptor.getIfPresent(typeDescriptor)
+    }
+
     /**
      * Register a custom serializer for any type that cannot be serialized or deserialized by the default serializer
      * that expects to find getters and a constructor with a parameter for each property.
      */
     fun register(customSerializer: CustomSerializer<out Any>) {
-        if (!serializersByDescriptor.containsKey(customSerializer.typeDescriptor)) {
+        if (!customSerializersByDescriptor.containsKey(customSerializer.typeDescriptor)) {
             customSerializers += customSerializer
-            serializersByDescriptor[customSerializer.typeDescriptor] = customSerializer
+            customSerializersByDescriptor[customSerializer.typeDescriptor] = customSerializer
             for (additional in customSerializer.additionalSerializers) {
                 register(additional)
             }
@@ -182,7 +214,9 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
     }
 
     private fun processRestrictedType(typeNotation: RestrictedType) {
-        serializersByDescriptor.computeIfAbsent(typeNotation.descriptor.name!!) {
+        val typeDescriptor = typeNotation.descriptor.name!!
+        if (typeDescriptor in customSerializersByDescriptor) return
+        serializersByDescriptor.getOrMake(typeDescriptor) {
             // TODO: class loader logic, and compare the schema.
             val type = typeForName(typeNotation.name)
             get(null, type)
@@ -190,7 +224,9 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
     }
 
     private fun processCompositeType(typeNotation: CompositeType) {
-        serializersByDescriptor.computeIfAbsent(typeNotation.descriptor.name!!) {
+        val typeDescriptor = typeNotation.descriptor.name!!
+        if (typeDescriptor in customSerializersByDescriptor) return
+        serializersByDescriptor.getOrMake(typeDescriptor) {
             // TODO: class loader logic, and compare the schema.
             val type = typeForName(typeNotation.name)
             get(type.asClass() ?: throw NotSerializableException("Unable to build composite type for $type"), type)
@@ -198,7 +234,7 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
     }
 
     private fun makeClassSerializer(clazz: Class<*>, type: Type, declaredType: Type): AMQPSerializer<Any> {
-        return serializersByType.computeIfAbsent(type) {
+        return serializersByType.getOrMake(type) {
             if (isPrimitive(clazz)) {
                 AMQPPrimitiveSerializer(clazz)
             } else {
@@ -250,6 +286,18 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
                 || (type.superclass != null && hasAnnotationInHierarchy(type.superclass))
     }
 
+    private fun <K : Any> Cache<K, AMQPSerializer<Any>>.getOrMake(key: K, make: () -> AMQPSerializer<Any>): AMQPSerializer<Any> {
+        try {
+            return get(key) { make() }
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        } catch (e: UncheckedExecutionException) {
+            throw e.cause ?: e
+        } catch (e: ExecutionError) {
+            throw e.cause ?: e
+        }
+    }
+
     private fun makeMapSerializer(declaredType: ParameterizedType): AMQPSerializer<Any> {
         val rawType = declaredType.rawType as Class<*>
         rawType.checkNotUnorderedHashMap()
@@ -257,6 +305,8 @@ class SerializerFactory(val whitelist: ClassWhitelist = AllWhitelist) {
     }
 
     companion object {
+        private const val MAX_CACHED_TYPES = 10000L
+
         fun isPrimitive(type: Type): Boolean = primitiveTypeName(type) != null
 
         fun primitiveTypeName(type: Type): String? {
@@ -5,6 +5,7 @@ import net.corda.core.crypto.SecureHash
 import net.corda.core.identity.Party
 import net.corda.core.serialization.CordaSerializable
 import java.security.PublicKey
+import java.util.concurrent.ExecutorService
 
 /**
  * A LedgerTransaction is derived from a [WireTransaction]. It is the result of doing the following operations:
@@ -61,6 +62,10 @@ class LedgerTransaction(
     @Throws(TransactionVerificationException::class)
     fun verify() = type.verify(this)
 
+    /** As [verify], but verifies the contracts in parallel on the given [contractExecutor]. */
+    @Throws(TransactionVerificationException::class)
+    fun verify(contractExecutor: ExecutorService) = type.verify(this, contractExecutor)
+
     // TODO: When we upgrade to Kotlin 1.1 we can make this a data class again and have the compiler generate these.
 
     override fun equals(other: Any?): Boolean {
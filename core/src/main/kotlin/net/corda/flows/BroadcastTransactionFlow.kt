@@ -26,9 +26,10 @@ class BroadcastTransactionFlow(val notarisedTransaction: SignedTransaction,
     override fun call() {
         // TODO: Messaging layer should handle this broadcast for us
         val msg = NotifyTxRequest(notarisedTransaction)
-        participants.filter { it != serviceHub.myInfo.legalIdentity }.forEach { participant ->
+        val recipients = participants.filter { it != serviceHub.myInfo.legalIdentity }
+        if (recipients.isNotEmpty()) {
             // This pops out the other side in NotifyTransactionHandler
-            send(participant, msg)
+            sendAll(recipients.associate { it to msg })
         }
     }
 }
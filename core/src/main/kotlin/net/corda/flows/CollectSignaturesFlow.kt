@@ -101,8 +101,8 @@ class CollectSignaturesFlow(val partiallySignedTx: SignedTransaction,
         // If the unsigned counter-parties list is empty then we don't need to collect any more signatures here.
         if (unsigned.isEmpty()) return partiallySignedTx
 
-        // Collect signatures from all counter-parties and append them to the partially signed transaction.
-        val counterpartySignatures = keysToParties(unsigned).map { collectSignature(it) }
+        // Collect signatures from all counter-parties in parallel and append them to the partially signed transaction.
+        val counterpartySignatures = collectSignatures(keysToParties(unsigned))
         val stx = partiallySignedTx + counterpartySignatures
 
         // Verify all but the notary's signature if the transaction requires a notary, otherwise verify all signatures.
@@ -124,12 +124,15 @@ class CollectSignaturesFlow(val partiallySignedTx: SignedTransaction,
 
     // DOCSTART 1
     /**
-     * Get and check the required signature.
+     * Get and check the required signatures.
      */
-    @Suspendable private fun collectSignature(counterparty: Party): DigitalSignature.WithKey {
-        return sendAndReceive<DigitalSignature.WithKey>(counterparty, partiallySignedTx).unwrap {
-            require(counterparty.owningKey.isFulfilledBy(it.by)) { "Not signed by the required Party." }
-            it
+    @Suspendable private fun collectSignatures(counterparties: List<Party>): List<DigitalSignature.WithKey> {
+        val responses = sendAndReceiveAll<DigitalSignature.WithKey>(counterparties.associate { it to partiallySignedTx })
+        return responses.map { (counterparty, response) ->
+            response.unwrap {
+                require(counterparty.owningKey.isFulfilledBy(it.by)) { "Not signed by the required Party." }
+                it
+            }
         }
     }
     // DOCEND 1
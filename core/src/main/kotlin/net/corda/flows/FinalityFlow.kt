@@ -4,8 +4,10 @@ import co.paralleluniverse.fibers.Suspendable
 import net.corda.core.contracts.ContractState
 import net.corda.core.contracts.StateRef
 import net.corda.core.contracts.TransactionState
+import net.corda.core.crypto.SecureHash
 import net.corda.core.crypto.isFulfilledBy
 import net.corda.core.flows.FlowLogic
+import net.corda.core.flows.FlowSessionRejectedException
 import net.corda.core.identity.Party
 import net.corda.core.node.ServiceHub
 import net.corda.core.transactions.LedgerTransaction
@@ -27,7 +29,12 @@ import net.corda.core.utilities.ProgressTracker
  * If specified, the extra recipients are sent all the given transactions. The base set of parties to inform of each
  * transaction are calculated on a per transaction basis from the contract-given set of participants.
  *
- * The flow returns the same transactions, in the same order, with the additional signatures.
+ * Transactions which share a notary and do not depend on each other are notarised together, in as few requests as
+ * fit in a message.
+ *
+ * The flow returns the same transactions, in the same order, with the additional signatures. If the notary rejects
+ * any of them, the ones it has already signed are still recorded and distributed before a [NotaryException] is thrown
+ * for the first rejection. Transactions after the point of failure are not notarised.
  *
  * @param transactions What to commit.
  * @param extraRecipients A list of additional participants to inform of the transaction.
@@ -59,32 +66,109 @@ class FinalityFlow(val transactions: Iterable<SignedTransaction>,
         // Lookup the resolved transactions and use them to map each signed transaction to the list of participants.
         // Then send to the notary if needed, record locally and distribute.
         progressTracker.currentStep = NOTARISING
-        val notarisedTxns = notariseAndRecord(lookupParties(resolveDependenciesOf(transactions)))
+        val notarisedTxns = ArrayList<Pair<SignedTransaction, Set<Party>>>()
+        val failures = notariseAndRecord(lookupParties(resolveDependenciesOf(transactions)), notarisedTxns)
 
-        // Each transaction has its own set of recipients, but extra recipients get them all.
+        // Each transaction has its own set of recipients, but extra recipients get them all. Transactions the notary
+        // signed are committed, so they are distributed even if others were rejected.
         progressTracker.currentStep = BROADCASTING
         val me = serviceHub.myInfo.legalIdentity
         for ((stx, parties) in notarisedTxns) {
             subFlow(BroadcastTransactionFlow(stx, parties + extraRecipients - me))
         }
+        if (failures.isNotEmpty()) {
+            failures.drop(1).forEach { logger.warn("Notarisation failed: $it") }
+            throw NotaryException(failures[0])
+        }
         return notarisedTxns.map { it.first }
     }
 
     // TODO: API: Make some of these protected?
 
+    /**
+     * Notarises and records the transactions a batch at a time, adding each recorded transaction to [notarisedTxns].
+     * Every transaction in a batch is recorded unless the notary rejected it, but later batches may depend on a
+     * rejected transaction so none of them are attempted. Returns the errors for the rejected transactions.
+     */
+    @Suspendable
+    private fun notariseAndRecord(stxnsAndParties: List<Pair<SignedTransaction, Set<Party>>>,
+                                  notarisedTxns: MutableList<Pair<SignedTransaction, Set<Party>>>): List<NotaryError> {
+        val failures = ArrayList<NotaryError>()
+        for (batch in independentBatches(stxnsAndParties)) {
+            val results = notarise(batch.map { it.first }.filter { needsNotarySignature(it) })
+            for ((stx, parties) in batch) {
+                val result = results[stx.id]
+                if (result is NotarisationResult.Failure) {
+                    failures += result.error
+                } else {
+                    val notarised = (result as? NotarisationResult.Success)?.let { stx + it.signatures } ?: stx
+                    serviceHub.recordTransactions(listOf(notarised))
+                    notarisedTxns += Pair(notarised, parties)
+                }
+            }
+            if (failures.isNotEmpty()) break
+        }
+        return failures
+    }
+
+    /**
+     * Splits the topologically sorted transactions into consecutive batches in which no transaction depends on another
+     * one from the same batch, as a transaction can only be notarised once its dependencies have been recorded.
+     */
+    private fun independentBatches(stxnsAndParties: List<Pair<SignedTransaction, Set<Party>>>): List<List<Pair<SignedTransaction, Set<Party>>>> {
+        val batches = ArrayList<List<Pair<SignedTransaction, Set<Party>>>>()
+        var batch = ArrayList<Pair<SignedTransaction, Set<Party>>>()
+        val batchIds = HashSet<SecureHash>()
+        for (pair in stxnsAndParties) {
+            if (pair.first.tx.inputs.any { it.txhash in batchIds }) {
+                batches += batch
+                batch = ArrayList()
+                batchIds.clear()
+            }
+            batch += pair
+            batchIds += pair.first.id
+        }
+        if (batch.isNotEmpty()) batches += batch
+        return batches
+    }
+
+    /**
+     * Sends the transactions to their notaries, using [NotaryFlow.BatchClient] requests for those which share a notary,
+     * split so that each request fits in a message. If a notary does not support batches the transactions are notarised
+     * one at a time instead. Returns the result for each transaction, so that a rejection does not lose the signatures
+     * for the others.
+     */
     @Suspendable
-    private fun notariseAndRecord(stxnsAndParties: List<Pair<SignedTransaction, Set<Party>>>): List<Pair<SignedTransaction, Set<Party>>> {
-        return stxnsAndParties.map { pair ->
-            val stx = pair.first
-            val notarised = if (needsNotarySignature(stx)) {
-                val notarySignatures = subFlow(NotaryFlow.Client(stx))
-                stx + notarySignatures
-            } else {
-                stx
+    private fun notarise(stxns: List<SignedTransaction>): Map<SecureHash, NotarisationResult> {
+        val results = HashMap<SecureHash, NotarisationResult>()
+        for (stxnsForNotary in stxns.groupBy { it.tx.notary }.values) {
+            var batchesSupported = true
+            for (batch in NotaryFlow.BatchClient.batches(stxnsForNotary)) {
+                val batchResults = if (batchesSupported && batch.size > 1) {
+                    try {
+                        subFlow(NotaryFlow.BatchClient(batch))
+                    } catch (e: FlowSessionRejectedException) {
+                        logger.warn("Batch notarisation rejected, notarising transactions individually: ${e.message}")
+                        batchesSupported = false
+                        null
+                    }
+                } else {
+                    null
+                }
+                if (batchResults == null) {
+                    for (stx in batch) {
+                        results[stx.id] = try {
+                            NotarisationResult.Success(subFlow(NotaryFlow.Client(stx)))
+                        } catch (e: NotaryException) {
+                            NotarisationResult.Failure(e.error)
+                        }
+                    }
+                } else {
+                    batch.zip(batchResults).forEach { (stx, result) -> results[stx.id] = result }
+                }
             }
-            serviceHub.recordTransactions(listOf(notarised))
-            Pair(notarised, pair.second)
         }
+        return results
     }
 
     private fun needsNotarySignature(stx: SignedTransaction): Boolean {
@@ -47,22 +47,8 @@ object NotaryFlow {
         @Throws(NotaryException::class)
         override fun call(): List<DigitalSignature.WithKey> {
             progressTracker.currentStep = REQUESTING
-            val wtx = stx.tx
-            notaryParty = wtx.notary ?: throw IllegalStateException("Transaction does not specify a Notary")
-            check(wtx.inputs.all { stateRef -> serviceHub.loadState(stateRef).notary == notaryParty }) {
-                "Input states must have the same Notary"
-            }
-            try {
-                stx.verifySignatures(notaryParty.owningKey)
-            } catch (ex: SignedTransaction.SignaturesMissingException) {
-                throw NotaryException(NotaryError.SignaturesMissing(ex))
-            }
-
-            val payload: Any = if (serviceHub.networkMapCache.isValidatingNotary(notaryParty)) {
-                stx
-            } else {
-                wtx.buildFilteredTransaction(Predicate { it is StateRef || it is TimeWindow })
-            }
+            notaryParty = notaryOf(stx)
+            val payload = notarisationPayload(stx, notaryParty)
 
             val response = try {
                 sendAndReceiveWithRetry<List<DigitalSignature.WithKey>>(notaryParty, payload)
@@ -74,14 +60,101 @@ object NotaryFlow {
             }
 
             return response.unwrap { signatures ->
-                signatures.forEach { validateSignature(it, stx.id.bytes) }
+                signatures.forEach { validateSignature(it, stx.id.bytes, notaryParty) }
                 signatures
             }
         }
+    }
+
+    /**
+     * A flow for obtaining notary signatures for many transactions at once. All the transactions must use the same
+     * notary, and are sent to it in a single request, which the notary commits together. This saves a session,
+     * a round-trip and a checkpoint per transaction compared to running [Client] for each one.
+     *
+     * The transactions are committed in the order given, so two transactions in the batch which spend the same state
+     * result in the second one being reported as a conflict. A transaction may not depend on another one in the same
+     * batch if the notary is validating, as the notary will be unable to resolve it.
+     *
+     * Unlike [Client], a rejected transaction does not fail the whole flow: the returned list contains a
+     * [NotarisationResult] for each of the given transactions, in the same order.
+     *
+     * Every transaction must need notarising, that is have inputs or a time-window. A batch must be within
+     * [MAX_BATCH_SIZE] and [MAX_BATCH_BYTES] so that the request fits in a single message; use [batches] to split a
+     * larger list.
+     */
+    @InitiatingFlow
+    open class BatchClient(private val transactions: List<SignedTransaction>,
+                           override val progressTracker: ProgressTracker) : FlowLogic<List<NotarisationResult>>() {
+        constructor(transactions: List<SignedTransaction>) : this(transactions, Client.tracker())
+
+        companion object {
+            /** The most transactions sent to the notary in a single batch. */
+            const val MAX_BATCH_SIZE = 100
+            /**
+             * The most serialised transaction bytes sent to the notary in a single batch, which leaves room for signatures
+             * and framing below the largest message the node's messaging accepts (10 MiB).
+             */
+            const val MAX_BATCH_BYTES = 4 * 1024 * 1024
+
+            /**
+             * Splits [transactions] into consecutive batches within [MAX_BATCH_SIZE] and [MAX_BATCH_BYTES], keeping their
+             * order. A transaction which is larger than [MAX_BATCH_BYTES] on its own gets a batch of its own.
+             */
+            @JvmStatic
+            fun batches(transactions: List<SignedTransaction>): List<List<SignedTransaction>> {
+                val batches = ArrayList<List<SignedTransaction>>()
+                var batch = ArrayList<SignedTransaction>()
+                var batchBytes = 0
+                for (stx in transactions) {
+                    val bytes = stx.txBits.size
+                    if (batch.isNotEmpty() && (batch.size == MAX_BATCH_SIZE || batchBytes + bytes > MAX_BATCH_BYTES)) {
+                        batches += batch
+                        batch = ArrayList()
+                        batchBytes = 0
+                    }
+                    batch += stx
+                    batchBytes += bytes
+                }
+                if (batch.isNotEmpty()) batches += batch
+                return batches
+            }
+        }
+
+        init {
+            require(transactions.isNotEmpty()) { "There must be at least one transaction to notarise" }
+            require(transactions.size <= MAX_BATCH_SIZE) { "A batch may have at most $MAX_BATCH_SIZE transactions" }
+            require(transactions.size == 1 || transactions.sumBy { it.txBits.size } <= MAX_BATCH_BYTES) {
+                "A batch may have at most $MAX_BATCH_BYTES bytes of transactions"
+            }
+        }
+
+        lateinit var notaryParty: Party
 
-        private fun validateSignature(sig: DigitalSignature.WithKey, data: ByteArray) {
-            check(sig.by in notaryParty.owningKey.keys) { "Invalid signer for the notary result" }
-            sig.verify(data)
+        @Suspendable
+        @Throws(NotaryException::class)
+        override fun call(): List<NotarisationResult> {
+            progressTracker.currentStep = Client.Companion.REQUESTING
+            notaryParty = notaryOf(transactions[0])
+            val payloads = transactions.map {
+                check(notaryOf(it) == notaryParty) { "All transactions in a batch must have the same Notary" }
+                check(it.tx.inputs.isNotEmpty() || it.tx.timeWindow != null) { "Transaction ${it.id} does not need notarising" }
+                notarisationPayload(it, notaryParty)
+            }
+
+            val response = sendAndReceiveWithRetry<List<NotarisationResult>>(notaryParty, payloads)
+
+            progressTracker.currentStep = Client.Companion.VALIDATING
+            return response.unwrap { results ->
+                check(results.size == transactions.size) { "Expected ${transactions.size} results from the Notary but got ${results.size}" }
+                transactions.zip(results).forEach { (stx, result) ->
+                    if (result is NotarisationResult.Success) {
+                        result.signatures.forEach { validateSignature(it, stx.id.bytes, notaryParty) }
+                    } else if (result is NotarisationResult.Failure && result.error is NotaryError.Conflict) {
+                        result.error.conflict.verified()
+                    }
+                }
+                results
+            }
         }
     }
 
@@ -118,6 +191,84 @@ object NotaryFlow {
             send(otherSide, listOf(signature))
         }
     }
+
+    /**
+     * A flow run by a notary service that handles batched notarisation requests from [BatchClient].
+     *
+     * Each transaction is verified on its own, and the input states of all those which pass are then committed in a
+     * single call to the uniqueness provider. A failure to verify one transaction, whether a [NotaryException] or any
+     * other error, is reported back against that transaction only.
+     */
+    abstract class BatchService(val otherSide: Party, val service: TrustedAuthorityNotaryService) : FlowLogic<Void?>() {
+
+        @Suspendable
+        override fun call(): Void? {
+            val requests = receive<List<Any>>(otherSide).unwrap { it }
+            val results = arrayOfNulls<NotarisationResult>(requests.size)
+            val verified = ArrayList<Pair<Int, TransactionParts>>(requests.size)
+            for ((index, request) in requests.withIndex()) {
+                try {
+                    val parts = verifyTx(request)
+                    service.validateTimeWindow(parts.timestamp)
+                    verified += Pair(index, parts)
+                } catch (e: NotaryException) {
+                    results[index] = NotarisationResult.Failure(e.error)
+                } catch (e: Exception) {
+                    logger.warn("Unable to verify transaction ${index + 1} of the batch from $otherSide", e)
+                    results[index] = NotarisationResult.Failure(NotaryError.TransactionInvalid(e.toString()))
+                }
+            }
+            val conflicts = service.commitInputStates(verified.map { it.second }, otherSide)
+            verified.zip(conflicts).forEach { (indexAndParts, conflict) ->
+                val (index, parts) = indexAndParts
+                results[index] = conflict?.let { NotarisationResult.Failure(it) } ?:
+                        NotarisationResult.Success(listOf(service.sign(parts.id.bytes)))
+            }
+            send(otherSide, results.map { it!! })
+            return null
+        }
+
+        /**
+         * Implement custom logic to verify one of the transactions received in the batch, based on validity and
+         * privacy requirements. Throw a [NotaryException] to reject just this transaction.
+         */
+        @Suspendable
+        abstract fun verifyTx(request: Any): TransactionParts
+    }
+}
+
+/** The outcome of notarising one of the transactions sent by [NotaryFlow.BatchClient]. */
+@CordaSerializable
+sealed class NotarisationResult {
+    data class Success(val signatures: List<DigitalSignature.WithKey>) : NotarisationResult()
+    data class Failure(val error: NotaryError) : NotarisationResult()
+}
+
+private fun FlowLogic<*>.notaryOf(stx: SignedTransaction): Party {
+    val wtx = stx.tx
+    val notaryParty = wtx.notary ?: throw IllegalStateException("Transaction does not specify a Notary")
+    check(wtx.inputs.all { stateRef -> serviceHub.loadState(stateRef).notary == notaryParty }) {
+        "Input states must have the same Notary"
+    }
+    return notaryParty
+}
+
+private fun FlowLogic<*>.notarisationPayload(stx: SignedTransaction, notaryParty: Party): Any {
+    try {
+        stx.verifySignatures(notaryParty.owningKey)
+    } catch (ex: SignedTransaction.SignaturesMissingException) {
+        throw NotaryException(NotaryError.SignaturesMissing(ex))
+    }
+    return if (serviceHub.networkMapCache.isValidatingNotary(notaryParty)) {
+        stx
+    } else {
+        stx.tx.buildFilteredTransaction(Predicate { it is StateRef || it is TimeWindow })
+    }
+}
+
+private fun validateSignature(sig: DigitalSignature.WithKey, data: ByteArray, notaryParty: Party) {
+    check(sig.by in notaryParty.owningKey.keys) { "Invalid signer for the notary result" }
+    sig.verify(data)
 }
 
 /**
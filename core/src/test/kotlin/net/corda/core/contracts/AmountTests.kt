@@ -184,4 +184,15 @@ class AmountTests {
         assertEquals(originalTotals[Pair(partyB, GBP)], newTotals3[Pair(partyB, GBP)])
 
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `sums amounts per token in a single pass`() {
+        val amounts = listOf(Amount(100, GBP), Amount(250, USD), Amount(50, GBP), Amount(1, USD))
+        assertEquals(mapOf(GBP to Amount(150, GBP), USD to Amount(251, USD)), amounts.sumByToken())
+        assertEquals(Amount(150, GBP), amounts.sumAmountsOrNull { if (it.token == GBP) it else null })
+        assertEquals(null, amounts.sumAmountsOrNull<Amount<Currency>, Currency> { null })
+        assertEquals(Amount.zero(GBP), emptyList<Amount<Currency>>().sumOrZero(GBP))
+        assertFailsWith(IllegalArgumentException::class) { amounts.sumOrThrow() }
+        assertFailsWith(ArithmeticException::class) { listOf(Amount(Long.MAX_VALUE, GBP), Amount(1, GBP)).sumOrNull() }
+    }
+}
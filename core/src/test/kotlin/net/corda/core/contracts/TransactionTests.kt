@@ -5,6 +5,7 @@ import net.corda.core.crypto.CompositeKey
 import net.corda.core.crypto.SecureHash
 import net.corda.core.crypto.generateKeyPair
 import net.corda.core.crypto.sign
+import net.corda.core.identity.AbstractParty
 import net.corda.core.identity.Party
 import net.corda.core.serialization.SerializedBytes
 import net.corda.core.transactions.LedgerTransaction
@@ -13,6 +14,7 @@ import net.corda.core.transactions.WireTransaction
 import net.corda.core.utilities.*
 import org.junit.Test
 import java.security.KeyPair
+import java.util.concurrent.ForkJoinPool
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
 
@@ -170,4 +172,44 @@ class TransactionTests {
 
         assertFailsWith<TransactionVerificationException.NotaryChangeInWrongTransactionType> { transaction.type.verify(transaction) }
     }
+
+    @Test
+    fun `contracts verified in parallel report the first rejection`() {
+        val outputs = listOf(AcceptingContract(), RejectingContract("first"), RejectingContract("second")).map {
+            TransactionState(TestState(it), DUMMY_NOTARY)
+        }
+        val transaction = LedgerTransaction(
+                emptyList(),
+                outputs,
+                emptyList(),
+                emptyList(),
+                SecureHash.randomSHA256(),
+                null,
+                emptyList(),
+                null,
+                TransactionType.General
+        )
+
+        val executor = ForkJoinPool(2)
+        try {
+            val e = assertFailsWith<TransactionVerificationException.ContractRejection> { transaction.verify(executor) }
+            assertEquals("first", e.cause?.message)
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private class AcceptingContract : Contract {
+        override val legalContractReference = SecureHash.sha256("accepting")
+        override fun verify(tx: TransactionForContract) {}
+    }
+
+    private class RejectingContract(val reason: String) : Contract {
+        override val legalContractReference = SecureHash.sha256("rejecting")
+        override fun verify(tx: TransactionForContract) = throw IllegalArgumentException(reason)
+    }
+
+    private data class TestState(override val contract: Contract) : ContractState {
+        override val participants: List<AbstractParty> = emptyList()
+    }
 }
@@ -25,6 +25,7 @@ import java.util.jar.JarOutputStream
 import java.util.zip.ZipEntry
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
+import kotlin.test.assertNotEquals
 import kotlin.test.assertNotNull
 import kotlin.test.assertTrue
 
@@ -320,6 +321,52 @@ class AttachmentClassLoaderTests {
         }
     }
 
+    @Test
+    fun `deserializing transactions with the same attachments reuses the class loader`() {
+        val child = ClassLoaderForTests()
+        val contractClass = Class.forName("net.corda.contracts.isolated.AnotherDummyContract", true, child)
+        val contract = contractClass.newInstance() as DummyContractBackdoor
+        val tx = contract.generateInitial(MEGA_CORP.ref(0), 42, DUMMY_NOTARY)
+        val storage = MockAttachmentStorage()
+        kryo.addToWhitelist(contract.javaClass)
+        kryo.addToWhitelist(Class.forName("net.corda.contracts.isolated.AnotherDummyContract\$State", true, child))
+        kryo.addToWhitelist(Class.forName("net.corda.contracts.isolated.AnotherDummyContract\$Commands\$Create", true, child))
+
+        val bytes = kryo.withAttachmentStorage(storage) {
+            tx.addAttachment(importJar(storage))
+            tx.toWireTransaction().serialize(kryo)
+        }
+        kryo2.withAttachmentStorage(storage) {
+            val first = bytes.deserialize(kryo2).outputs[0].data
+            val second = bytes.deserialize(kryo2).outputs[0].data
+            assertTrue(first.javaClass.classLoader is AttachmentsClassLoader)
+            assertEquals(first.javaClass, second.javaClass)
+        }
+    }
+
+    @Test
+    fun `deserializing with another attachment storage does not reuse the class loader`() {
+        val child = ClassLoaderForTests()
+        val contractClass = Class.forName("net.corda.contracts.isolated.AnotherDummyContract", true, child)
+        val contract = contractClass.newInstance() as DummyContractBackdoor
+        val tx = contract.generateInitial(MEGA_CORP.ref(0), 42, DUMMY_NOTARY)
+        val storage = MockAttachmentStorage()
+        val otherStorage = MockAttachmentStorage()
+        kryo.addToWhitelist(contract.javaClass)
+        kryo.addToWhitelist(Class.forName("net.corda.contracts.isolated.AnotherDummyContract\$State", true, child))
+        kryo.addToWhitelist(Class.forName("net.corda.contracts.isolated.AnotherDummyContract\$Commands\$Create", true, child))
+
+        val bytes = kryo.withAttachmentStorage(storage) {
+            tx.addAttachment(importJar(storage))
+            tx.toWireTransaction().serialize(kryo)
+        }
+        // Both storages hold the same attachment, as two nodes in the same JVM would.
+        importJar(otherStorage)
+        val first = kryo2.withAttachmentStorage(storage) { bytes.deserialize(kryo2).outputs[0].data }
+        val second = kryo2.withAttachmentStorage(otherStorage) { bytes.deserialize(kryo2).outputs[0].data }
+        assertNotEquals(first.javaClass.classLoader, second.javaClass.classLoader)
+    }
+
     @Test
     fun `test deserialize of WireTransaction where contract cannot be found`() {
         val child = ClassLoaderForTests()
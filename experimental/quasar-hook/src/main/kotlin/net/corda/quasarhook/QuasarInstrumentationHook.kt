@@ -3,6 +3,7 @@ package net.corda.quasarhook
 import javassist.ClassPool
 import javassist.CtClass
 import java.io.ByteArrayInputStream
+import java.io.File
 import java.lang.instrument.ClassFileTransformer
 import java.lang.instrument.Instrumentation
 import java.security.ProtectionDomain
@@ -75,11 +76,15 @@ fun recordScannedClass(className: String?) {
  *     domains that we don't want to completely exclude, because later on classes may be loaded from those namespaces
  *     that require instrumentation.
  * @param separator The package part separator character used in the above lists.
+ * @param output An optional file to write the exclude expression and the instrumented classes to, one per line, so
+ *     that a build can consume them. The file starts with the expression, followed by the classes as `i <class>` lines
+ *     for instrumented classes and `u <class>` lines for those found to be used by fibers.
  */
 data class Arguments(
         val truncate: List<String>? = null,
         val expand: List<String>? = null,
-        val separator: Char = '.'
+        val separator: Char = '.',
+        val output: String? = null
 )
 
 /**
@@ -99,6 +104,7 @@ class QuasarInstrumentationHookAgent {
                         "truncate" -> arguments = arguments.copy(truncate = value.split(","))
                         "expand" -> arguments = arguments.copy(expand = value.split(","))
                         "separator" -> arguments = arguments.copy(separator = value.toCharArray()[0])
+                        "output" -> arguments = arguments.copy(output = value)
                     }
                 }
             }
@@ -130,8 +136,16 @@ class QuasarInstrumentationHookAgent {
                 globs.forEach {
                     println("  $it")
                 }
+                val excludeExpression = "x(${globs.joinToString(";")})"
                 println("Quasar exclude expression:")
-                println("  x(${globs.joinToString(";")})")
+                println("  $excludeExpression")
+                arguments.output?.let { output ->
+                    val lines = listOf(excludeExpression) +
+                            classRecorder.instrumentedClasses.sorted().map { "i $it" } +
+                            classRecorder.usedInstrumentedClasses.sorted().map { "u $it" }
+                    File(output).writeText(lines.joinToString("\n", postfix = "\n"))
+                    println("Written to $output")
+                }
             })
             instrumentation.addTransformer(QuasarInstrumentationHook)
         }
@@ -19,7 +19,7 @@ public class CandidacyStatus {
 
     private static final int MAX_CLASSLOADING_RECURSIVE_DEPTH = 500;
 
-    private static final String DETERMINISTIC_METHODS = "java8.scan.java.lang_and_util"; //"java8.scan.java.lang
+    static final String DETERMINISTIC_METHODS = "java8.scan.java.lang_and_util"; //"java8.scan.java.lang
 
     private final SortedMap<String, CandidateMethod> candidateMethods = new TreeMap<>();
 
@@ -0,0 +1,250 @@
+package net.corda.sandbox;
+
+import net.corda.sandbox.costing.CostAccountingMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of whitelist verdicts and cost-instrumented bytecode, keyed by a hash of the original class file, so
+ * that classes which have already been analysed by one WhitelistClassLoader are not walked and rewritten again
+ * by the next. The cache is thread safe and may be shared by any number of loaders.
+ * <p>
+ * A verdict depends on the classes that the analysed class refers to as well as on its own contents, so a cache
+ * must only be shared between loaders whose search paths hold the same classes and which have been given the
+ * same additional known deterministic methods. If a directory is given, entries are also written there and
+ * survive a restart.
+ */
+public final class WhitelistAnalysisCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WhitelistAnalysisCache.class);
+
+    private static final String VERDICT_SUFFIX = ".verdict";
+
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * The version of the whitelist checking and cost instrumentation, which is part of every key. Increment it
+     * whenever a change to the visitors alters the verdict on a class or the bytecode produced for it, so that
+     * entries persisted by an earlier version are not reused.
+     */
+    public static final int ANALYSIS_VERSION = 1;
+
+    private static final byte[] WHITELIST_DIGEST = digestWhitelist();
+
+    private final ConcurrentMap<String, Verdict> verdicts = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private WhitelistAnalysisCache(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return a cache that is held in memory only
+     */
+    public static WhitelistAnalysisCache inMemory() {
+        return new WhitelistAnalysisCache(null);
+    }
+
+    /**
+     * @param directory the directory to persist entries to, which is created if needed
+     * @return a cache that is held in memory and backed by the given directory
+     * @throws IOException if the directory cannot be created
+     */
+    public static WhitelistAnalysisCache persistentIn(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new WhitelistAnalysisCache(directory);
+    }
+
+    /**
+     * Computes the key for a class file. Stripping non-deterministic methods and the cost accounting mode
+     * change the transformed bytecode, so both are part of the key, as are the {@link #ANALYSIS_VERSION}
+     * and the contents of the whitelist of deterministic methods.
+     *
+     * @param originalClassContents
+     * @param stripNonDeterministic
+     * @param costAccountingMode
+     * @return the hex encoded SHA-256 hash of the class file, the modes, the version and the whitelist
+     */
+    public static String keyFor(final byte[] originalClassContents, final boolean stripNonDeterministic, final CostAccountingMode costAccountingMode) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(ANALYSIS_VERSION).array());
+            digest.update(WHITELIST_DIGEST);
+            digest.update(originalClassContents);
+            digest.update((byte) (stripNonDeterministic ? 1 : 0));
+            digest.update((byte) costAccountingMode.ordinal());
+            final StringBuilder sb = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] digestWhitelist() {
+        try (final InputStream in = WhitelistAnalysisCache.class.getClassLoader().getResourceAsStream(CandidacyStatus.DETERMINISTIC_METHODS)) {
+            if (in == null) {
+                throw new IllegalStateException("Whitelist " + CandidacyStatus.DETERMINISTIC_METHODS + " not found");
+            }
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return digest.digest();
+        } catch (IOException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param key
+     * @return the verdict cached under the key, or null if there is none
+     */
+    public Verdict get(final String key) {
+        Verdict verdict = verdicts.get(key);
+        if (verdict == null && directory != null) {
+            verdict = read(key);
+            if (verdict != null) {
+                verdicts.putIfAbsent(key, verdict);
+            }
+        }
+        (verdict == null ? misses : hits).incrementAndGet();
+        return verdict;
+    }
+
+    /**
+     * Caches a verdict, persisting it if the cache is backed by a directory. A failure to persist is logged and
+     * otherwise ignored, as the verdict can always be recomputed.
+     *
+     * @param key
+     * @param verdict
+     */
+    public void put(final String key, final Verdict verdict) {
+        if (verdicts.putIfAbsent(key, verdict) == null && directory != null) {
+            try {
+                write(key, verdict);
+            } catch (IOException ex) {
+                LOGGER.warn("Unable to persist whitelist verdict " + key, ex);
+            }
+        }
+    }
+
+    public int size() {
+        return verdicts.size();
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    private Verdict read(final String key) {
+        final Path verdictFile = directory.resolve(key + VERDICT_SUFFIX);
+        if (!Files.isRegularFile(verdictFile)) {
+            return null;
+        }
+        try {
+            final List<String> lines = Files.readAllLines(verdictFile, StandardCharsets.UTF_8);
+            final boolean loadable = Boolean.parseBoolean(lines.get(0));
+            // Trailing empty lines are dropped when reading, so the reason may be missing
+            final String reason = lines.size() < 2 || lines.get(1).isEmpty() ? null : lines.get(1);
+            final Set<String> disallowedMethods = new HashSet<>(lines.subList(Math.min(2, lines.size()), lines.size()));
+            final Path classFile = directory.resolve(key + CLASS_SUFFIX);
+            final byte[] transformed = Files.isRegularFile(classFile) ? Files.readAllBytes(classFile) : null;
+            return new Verdict(loadable, reason, disallowedMethods, transformed);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Ignoring unreadable whitelist verdict " + verdictFile, ex);
+            return null;
+        }
+    }
+
+    private void write(final String key, final Verdict verdict) throws IOException {
+        // Write the bytecode first and move each file into place, so that a reader never sees a verdict without
+        // its bytecode or a partially written file
+        if (verdict.getTransformedClass() != null) {
+            writeAtomically(directory.resolve(key + CLASS_SUFFIX), verdict.getTransformedClass());
+        }
+        final List<String> lines = new ArrayList<>();
+        lines.add(String.valueOf(verdict.isLoadable()));
+        lines.add(verdict.getReason() == null ? "" : verdict.getReason().replace('\n', ' '));
+        lines.addAll(verdict.getDisallowedMethods());
+        writeAtomically(directory.resolve(key + VERDICT_SUFFIX), String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeAtomically(final Path target, final byte[] contents) throws IOException {
+        final Path tmp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(tmp, contents);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * The outcome of analysing a single class.
+     */
+    public static final class Verdict {
+
+        private final boolean loadable;
+
+        private final String reason;
+
+        private final Set<String> disallowedMethods;
+
+        private final byte[] transformedClass;
+
+        /**
+         * @param loadable whether the class is deterministic
+         * @param reason the reason the class is not deterministic, or null
+         * @param disallowedMethods the methods that are removed in stripping mode
+         * @param transformedClass the instrumented bytecode, or null if the class is not to be defined
+         */
+        public Verdict(final boolean loadable, final String reason, final Set<String> disallowedMethods, final byte[] transformedClass) {
+            this.loadable = loadable;
+            this.reason = reason;
+            this.disallowedMethods = Collections.unmodifiableSet(new HashSet<>(disallowedMethods));
+            this.transformedClass = transformedClass;
+        }
+
+        public boolean isLoadable() {
+            return loadable;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public Set<String> getDisallowedMethods() {
+            return disallowedMethods;
+        }
+
+        public byte[] getTransformedClass() {
+            return transformedClass;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package net.corda.sandbox;
 
+import net.corda.sandbox.costing.CostAccountingMode;
+import net.corda.sandbox.visitors.BatchedCostInstrumentingMethodVisitor;
 import net.corda.sandbox.visitors.CostInstrumentingMethodVisitor;
 import net.corda.sandbox.visitors.WhitelistCheckingClassVisitor;
 import java.io.IOException;
@@ -9,6 +11,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import org.objectweb.asm.*;
 import org.objectweb.asm.commons.ClassRemapper;
 import org.slf4j.Logger;
@@ -34,6 +37,10 @@ public final class WhitelistClassLoader extends ClassLoader {
 
     private final boolean removeNonDeterministicMethods;
 
+    private final WhitelistAnalysisCache analysisCache;
+
+    private CostAccountingMode costAccountingMode = CostAccountingMode.PER_INSTRUCTION;
+
     private Path classDir;
 
     private String classInternalName;
@@ -41,10 +48,15 @@ public final class WhitelistClassLoader extends ClassLoader {
     private Path outputJarPath;
 
     private WhitelistClassLoader(final boolean stripNonDeterministicMethods) {
+        this(stripNonDeterministicMethods, WhitelistAnalysisCache.inMemory());
+    }
+
+    private WhitelistClassLoader(final boolean stripNonDeterministicMethods, final WhitelistAnalysisCache cache) {
         candidacyStatus = CandidacyStatus.of();
         loadedClasses = new HashMap<>();
         transformedClasses = new HashMap<>();
         removeNonDeterministicMethods = stripNonDeterministicMethods;
+        analysisCache = cache;
     }
 
     /* 
@@ -58,6 +70,8 @@ public final class WhitelistClassLoader extends ClassLoader {
         fileSystemSearchPath.addAll(other.fileSystemSearchPath);
         primaryClasspathSearchPath.addAll(other.primaryClasspathSearchPath);
         removeNonDeterministicMethods = other.removeNonDeterministicMethods;
+        analysisCache = other.analysisCache;
+        costAccountingMode = other.costAccountingMode;
     }
 
     /**
@@ -94,6 +108,23 @@ public final class WhitelistClassLoader extends ClassLoader {
         return of(auxiliaryJar, false);
     }
 
+    /**
+     * Static factory method for a classloader that shares its analysis results with
+     * other classloaders, so that classes already analysed by any of them are not
+     * scanned and instrumented again.
+     *
+     * @param auxiliaryJar
+     * @param stripNonDeterministic
+     * @param cache a cache shared only by classloaders with the same search path
+     * @return a suitably constructed whitelisting classloader
+     */
+    public static WhitelistClassLoader of(final Path auxiliaryJar, final boolean stripNonDeterministic, final WhitelistAnalysisCache cache) {
+        final WhitelistClassLoader out = new WhitelistClassLoader(stripNonDeterministic, cache);
+        out.candidacyStatus.setContextLoader(out);
+        out.fileSystemSearchPath.add(auxiliaryJar);
+        return out;
+    }
+
     /**
      * Static factory method. Used for recursive classloading
      * 
@@ -169,16 +200,25 @@ public final class WhitelistClassLoader extends ClassLoader {
             classInternalName = Utils.convertQualifiedClassNameToInternalForm(qualifiedClassName);
             classDir = locateClassfileDir(classInternalName);
             try {
-                final boolean isDeterministic = scan();
-                if (isDeterministic || removeNonDeterministicMethods) {
-                    final Path fullPathToClass = classDir.resolve(classInternalName + ".class");
-                    Set<String> methodsToRemove = new HashSet<>();
-                    if (removeNonDeterministicMethods && !isDeterministic) {
-                        methodsToRemove = candidacyStatus.getDisallowedMethods();
+                final byte[] classContents = Files.readAllBytes(classDir.resolve(classInternalName + ".class"));
+                final String cacheKey = WhitelistAnalysisCache.keyFor(classContents, removeNonDeterministicMethods, costAccountingMode);
+                WhitelistAnalysisCache.Verdict verdict = analysisCache.get(cacheKey);
+                if (verdict != null && removeNonDeterministicMethods) {
+                    // A verdict only saves the instrumentation. The classes this one refers to are
+                    // still walked, so that they are stripped and end up in the output jar too
+                    scan();
+                }
+                if (verdict == null) {
+                    // The loadable flag is shared by every class this classloader has
+                    // seen, so a verdict is only cached if no earlier class had failed
+                    final boolean previouslyLoadable = candidacyStatus.isLoadable();
+                    verdict = analyse(classContents);
+                    if (previouslyLoadable) {
+                        analysisCache.put(cacheKey, verdict);
                     }
-
-                    final byte[] classContents = Files.readAllBytes(fullPathToClass);
-                    final byte[] instrumentedBytes = instrumentWithCosts(classContents, methodsToRemove);
+                }
+                if (verdict.getTransformedClass() != null) {
+                    final byte[] instrumentedBytes = verdict.getTransformedClass();
                     if (!removeNonDeterministicMethods) {
                         // If we're in stripping mode, then trying to define the class
                         // will cause a transitive loading failure
@@ -186,7 +226,8 @@ public final class WhitelistClassLoader extends ClassLoader {
                     }
                     transformedClasses.put(sandboxed, instrumentedBytes);
                 } else {
-                    throw new ClassNotFoundException("Class " + qualifiedClassName + " could not be loaded.", reason());
+                    final WhitelistClassloadingException reason = verdict.getReason() == null ? null : new WhitelistClassloadingException(verdict.getReason());
+                    throw new ClassNotFoundException("Class " + qualifiedClassName + " could not be loaded.", reason);
                 }
             } catch (final IOException ex) {
                 throw new RuntimeException(ex);
@@ -206,6 +247,69 @@ public final class WhitelistClassLoader extends ClassLoader {
         return cls;
     }
 
+    /**
+     * Scans the current class and, if it is deterministic or non-deterministic
+     * methods are to be stripped, instruments it with runtime costs.
+     *
+     * @param classContents the original contents of the current class
+     * @return the verdict on the current class
+     * @throws IOException
+     */
+    private WhitelistAnalysisCache.Verdict analyse(final byte[] classContents) throws IOException {
+        final boolean isDeterministic = scan();
+        final WhitelistClassloadingException reason = isDeterministic ? null : reason();
+        final String reasonMessage = reason == null ? null : reason.getMessage();
+        if (isDeterministic || removeNonDeterministicMethods) {
+            Set<String> methodsToRemove = new HashSet<>();
+            if (removeNonDeterministicMethods && !isDeterministic) {
+                methodsToRemove = candidacyStatus.getDisallowedMethods();
+            }
+            final byte[] instrumentedBytes = instrumentWithCosts(classContents, methodsToRemove);
+            return new WhitelistAnalysisCache.Verdict(isDeterministic, reasonMessage, methodsToRemove, instrumentedBytes);
+        }
+        return new WhitelistAnalysisCache.Verdict(false, reasonMessage, candidacyStatus.getDisallowedMethods(), null);
+    }
+
+    /**
+     * Analyses independent classes in parallel on the given executor, so that later
+     * loads of them and of the classes they refer to are served from the analysis
+     * cache. Analysing one class recursively analyses everything it refers to, and
+     * that walk shares its state, so each class is given a classloader of its own
+     * with the same search path and cache as this one.
+     *
+     * @param qualifiedClassNames
+     * @param executor
+     * @return whether each class can be loaded, keyed by class name
+     * @throws InterruptedException
+     */
+    public Map<String, Boolean> analyseInParallel(final Collection<String> qualifiedClassNames, final ExecutorService executor) throws InterruptedException {
+        final Map<String, Future<Boolean>> futures = new LinkedHashMap<>();
+        for (final String qualifiedClassName : qualifiedClassNames) {
+            futures.put(qualifiedClassName, executor.submit(() -> {
+                final WhitelistClassLoader worker = new WhitelistClassLoader(removeNonDeterministicMethods, analysisCache);
+                worker.candidacyStatus.setContextLoader(worker);
+                worker.costAccountingMode = costAccountingMode;
+                worker.primaryClasspathSearchPath.addAll(primaryClasspathSearchPath);
+                worker.fileSystemSearchPath.addAll(fileSystemSearchPath);
+                try {
+                    worker.loadClass(qualifiedClassName);
+                    return true;
+                } catch (ClassNotFoundException ex) {
+                    return false;
+                }
+            }));
+        }
+        final Map<String, Boolean> out = new LinkedHashMap<>();
+        for (final Map.Entry<String, Future<Boolean>> entry : futures.entrySet()) {
+            try {
+                out.put(entry.getKey(), entry.getValue().get());
+            } catch (final ExecutionException ex) {
+                throw new RuntimeException(ex.getCause());
+            }
+        }
+        return out;
+    }
+
     /**
      * Using the ASM library read in the currentClass's byte code and visit the call
      * sites within it.  Whilst visiting, check to see if the classes/methods visited
@@ -285,6 +389,19 @@ public final class WhitelistClassLoader extends ClassLoader {
     public byte[] instrumentWithCosts(final byte[] originalClassContents, final Set<String> methodsToRemove) {
         final ClassReader reader = new ClassReader(originalClassContents);
         final ClassWriter writer = new SandboxAwareClassWriter(this, reader, ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        if (costAccountingMode == CostAccountingMode.BATCHED) {
+            // The batching visitor comes after the remapper, so that the cost
+            // accounting classes it refers to are not moved into the sandbox
+            final ClassVisitor batchingCoster = new ClassVisitor(Opcodes.ASM5, writer) {
+                @Override
+                public MethodVisitor visitMethod(final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+                    final MethodVisitor baseMethodVisitor = super.visitMethod(access, name, desc, signature, exceptions);
+                    return new BatchedCostInstrumentingMethodVisitor(baseMethodVisitor, access, name, desc, signature, exceptions);
+                }
+            };
+            reader.accept(new ClassRemapper(batchingCoster, new SandboxRemapper()), ClassReader.EXPAND_FRAMES);
+            return writer.toByteArray();
+        }
         final ClassVisitor remapper = new ClassRemapper(writer, new SandboxRemapper());
         final ClassVisitor coster = new ClassVisitor(Opcodes.ASM5, remapper) {
             @Override
@@ -342,6 +459,19 @@ public final class WhitelistClassLoader extends ClassLoader {
         return candidacyStatus;
     }
 
+    public CostAccountingMode getCostAccountingMode() {
+        return costAccountingMode;
+    }
+
+    /**
+     * Sets how classes loaded from now on are instrumented with runtime costs.
+     *
+     * @param costAccountingMode
+     */
+    public void setCostAccountingMode(final CostAccountingMode costAccountingMode) {
+        this.costAccountingMode = costAccountingMode;
+    }
+
     public Path getOutpurJarPath() {
         return outputJarPath;
     }
@@ -353,4 +483,8 @@ public final class WhitelistClassLoader extends ClassLoader {
     public Set<String> cachedClasses() {
         return loadedClasses.keySet();
     }
+
+    public WhitelistAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
 }
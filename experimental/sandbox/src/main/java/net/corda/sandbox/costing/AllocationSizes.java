@@ -0,0 +1,75 @@
+package net.corda.sandbox.costing;
+
+import net.corda.sandbox.Utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Approximate shallow sizes of objects, in bytes, for charging allocations when code
+ * is instrumented. Sizes assume a 64-bit JVM with compressed references. The fields of
+ * JDK types are found by reflection; other types, which may not have been loaded yet,
+ * are charged a default size.
+ *
+ * @author ben
+ */
+public final class AllocationSizes {
+
+    private static final int OBJECT_HEADER_SIZE = 12;
+
+    private static final int REFERENCE_SIZE = 4;
+
+    private static final int OBJECT_ALIGNMENT = 8;
+
+    static final int DEFAULT_OBJECT_SIZE = 16;
+
+    private static final ConcurrentMap<String, Integer> sizes = new ConcurrentHashMap<>();
+
+    // Hide constructor
+    private AllocationSizes() {
+    }
+
+    /**
+     * @param internalClassName the type being allocated, in internal form and possibly sandboxed
+     * @return the approximate size of an instance of the type
+     */
+    public static int of(final String internalClassName) {
+        return sizes.computeIfAbsent(Utils.unsandboxNameIfNeedBe(internalClassName), AllocationSizes::estimate);
+    }
+
+    private static int estimate(final String internalClassName) {
+        if (!internalClassName.startsWith("java/")) {
+            return DEFAULT_OBJECT_SIZE;
+        }
+        try {
+            Class<?> type = Class.forName(Utils.convertInternalFormToQualifiedClassName(internalClassName), false, null);
+            int size = OBJECT_HEADER_SIZE;
+            while (type != null) {
+                for (final Field field : type.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += fieldSize(field.getType());
+                    }
+                }
+                type = type.getSuperclass();
+            }
+            return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+        } catch (ClassNotFoundException | LinkageError | SecurityException ex) {
+            return DEFAULT_OBJECT_SIZE;
+        }
+    }
+
+    private static int fieldSize(final Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+}
@@ -0,0 +1,22 @@
+package net.corda.sandbox.costing;
+
+/**
+ * How instrumented code accounts for its runtime costs.
+ *
+ * @author ben
+ */
+public enum CostAccountingMode {
+    /**
+     * Every jump, invocation, allocation and throw calls a static method of
+     * RuntimeCostAccounter, which looks up the counters for the current thread.
+     */
+    PER_INSTRUCTION,
+
+    /**
+     * Each method fetches the CostContext of the current execution once, on entry,
+     * and each basic block charges it once, with the costs of the whole block
+     * computed when the class is instrumented. Objects are charged an approximate
+     * size in bytes rather than a count, against a limit on bytes allocated.
+     */
+    BATCHED
+}
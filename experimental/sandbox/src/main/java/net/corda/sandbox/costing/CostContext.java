@@ -0,0 +1,151 @@
+package net.corda.sandbox.costing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The runtime costs of a single execution of sandboxed code. Code instrumented in the
+ * batched mode holds a reference to its context in a local variable, so charging a cost
+ * is a field update and a comparison rather than a thread local lookup. A context is
+ * only ever used by the thread that is executing the code.
+ *
+ * @author ben
+ */
+public final class CostContext {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CostContext.class);
+
+    /**
+     * The limit on allocation in the per instruction mode, which counts each object as one and each array as its
+     * size in bytes
+     */
+    static final long BASELINE_ALLOC_KILL_THRESHOLD = 1024 * 1024;
+
+    /**
+     * The limit on allocation in the batched mode, which charges objects and arrays by their size in bytes. It
+     * allows as many objects of the default size as the per instruction mode allows objects.
+     */
+    static final long BATCHED_ALLOC_KILL_THRESHOLD = BASELINE_ALLOC_KILL_THRESHOLD * AllocationSizes.DEFAULT_OBJECT_SIZE;
+
+    static final long BASELINE_JUMP_KILL_THRESHOLD = 100;
+
+    static final long BASELINE_INVOKE_KILL_THRESHOLD = 100;
+
+    static final long BASELINE_THROW_KILL_THRESHOLD = 50;
+
+    /**
+     * A context that is never charged, for code running on the primary thread
+     */
+    static final CostContext UNMETERED = new CostContext(false);
+
+    private final boolean metered;
+
+    private long allocationCost;
+
+    private long allocatedBytes;
+
+    private long jumpCost;
+
+    private long invokeCost;
+
+    private long throwCost;
+
+    public CostContext() {
+        this(true);
+    }
+
+    private CostContext(final boolean metered) {
+        this.metered = metered;
+    }
+
+    /**
+     * Charges the costs of a basic block, which are computed when the code is instrumented
+     * in the batched mode.
+     *
+     * @param jumps
+     * @param invokes
+     * @param throwCount
+     * @param allocation the approximate size in bytes of the objects allocated
+     */
+    public void charge(final int jumps, final int invokes, final int throwCount, final long allocation) {
+        if (!metered)
+            return;
+
+        jumpCost += jumps;
+        invokeCost += invokes;
+        throwCost += throwCount;
+        allocatedBytes += allocation;
+        if (jumpCost > BASELINE_JUMP_KILL_THRESHOLD)
+            terminate("excessive use of looping");
+        if (invokeCost > BASELINE_INVOKE_KILL_THRESHOLD)
+            terminate("excessive method calling");
+        if (throwCost > BASELINE_THROW_KILL_THRESHOLD)
+            terminate("excessive exception throwing");
+        if (allocatedBytes > BATCHED_ALLOC_KILL_THRESHOLD)
+            terminate("overallocation");
+    }
+
+    /**
+     * Charges the allocation of an array in the batched mode, as its length is only known at runtime.
+     *
+     * @param length
+     * @param elementSize
+     */
+    public void chargeArray(final int length, final int elementSize) {
+        charge(0, 0, 0, (long) length * elementSize);
+    }
+
+    /**
+     * Charges an allocation in the per instruction mode.
+     *
+     * @param cost one for an object, or the size in bytes of an array
+     */
+    void chargeAllocation(final long cost) {
+        if (!metered)
+            return;
+
+        allocationCost += cost;
+        if (allocationCost > BASELINE_ALLOC_KILL_THRESHOLD)
+            terminate("overallocation");
+    }
+
+    private void terminate(final String reason) {
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Contract " + Thread.currentThread() + " terminated for " + reason);
+        throw new ThreadDeath();
+    }
+
+    /**
+     * @return the allocation charged in the per instruction mode
+     */
+    public long getAllocationCost() {
+        return allocationCost;
+    }
+
+    /**
+     * @return the allocation charged in the batched mode, in bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getJumpCost() {
+        return jumpCost;
+    }
+
+    public long getInvokeCost() {
+        return invokeCost;
+    }
+
+    public long getThrowCost() {
+        return throwCost;
+    }
+
+    public void reset() {
+        allocationCost = 0;
+        allocatedBytes = 0;
+        jumpCost = 0;
+        invokeCost = 0;
+        throwCost = 0;
+    }
+}
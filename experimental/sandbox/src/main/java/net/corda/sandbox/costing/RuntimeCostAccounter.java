@@ -1,178 +1,90 @@
 package net.corda.sandbox.costing;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
  *
  * @author ben
  */
 public class RuntimeCostAccounter {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeCostAccounter.class);
-
     private static Thread primaryThread;
 
-    private static final ThreadLocal<Long> allocationCost = new ThreadLocal<Long>() {
-        @Override
-        protected Long initialValue() {
-            return 0L;
-        }
-    };
-
-    private static final ThreadLocal<Long> jumpCost = new ThreadLocal<Long>() {
-        @Override
-        protected Long initialValue() {
-            return 0L;
-        }
-    };
-
-    private static final ThreadLocal<Long> invokeCost = new ThreadLocal<Long>() {
+    private static final ThreadLocal<CostContext> context = new ThreadLocal<CostContext>() {
         @Override
-        protected Long initialValue() {
-            return 0L;
+        protected CostContext initialValue() {
+            return new CostContext();
         }
     };
 
-    private static final ThreadLocal<Long> throwCost = new ThreadLocal<Long>() {
-        @Override
-        protected Long initialValue() {
-            return 0L;
-        }
-    };
-
-    private static final long BASELINE_ALLOC_KILL_THRESHOLD = 1024 * 1024;
-
-    private static final long BASELINE_JUMP_KILL_THRESHOLD = 100;
-
-    private static final long BASELINE_INVOKE_KILL_THRESHOLD = 100;
+    /**
+     * Returns the context of the execution on the current thread. Code instrumented in
+     * the batched mode calls this once on entry to each method.
+     *
+     * @return the cost context to charge
+     */
+    public static CostContext context() {
+        if (Thread.currentThread() == primaryThread)
+            return CostContext.UNMETERED;
+
+        return context.get();
+    }
 
-    private static final long BASELINE_THROW_KILL_THRESHOLD = 50;
+    /**
+     * Starts a new execution on the current thread, with all its costs at zero.
+     *
+     * @return the context of the new execution
+     */
+    public static CostContext beginExecution() {
+        final CostContext out = new CostContext();
+        context.set(out);
+        return out;
+    }
 
     public static void recordJump() {
-        final Thread current = Thread.currentThread();
-        if (current == primaryThread)
-            return;
-
-        if (LOGGER.isDebugEnabled())
-            LOGGER.debug("In recordJump() at " + System.currentTimeMillis() + " on " + current.getName());
-        checkJumpCost(1);
+        context().charge(1, 0, 0, 0);
     }
 
     public static void recordAllocation(final String typeName) {
-        final Thread current = Thread.currentThread();
-        if (current == primaryThread)
-            return;
-
-        if (LOGGER.isDebugEnabled())
-            LOGGER.debug("In recordAllocation() at " + System.currentTimeMillis()
-                    + ", got object type: " + typeName + " on " + current.getName());
-
-        // More sophistication is clearly possible, e.g. caching approximate sizes for types that we encounter
-        checkAllocationCost(1);
+        // The batched mode charges an approximate size for each type, see AllocationSizes
+        context().chargeAllocation(1);
     }
 
     public static void recordArrayAllocation(final int length, final int multiplier) {
-        final Thread current = Thread.currentThread();
-        if (current == primaryThread)
-            return;
-
-        if (LOGGER.isDebugEnabled())
-            LOGGER.debug("In recordArrayAllocation() at " + System.currentTimeMillis()
-                    + ", got array element size: " + multiplier + " and size: " + length + " on " + current.getName());
-
-        checkAllocationCost(length * multiplier);
+        context().chargeAllocation((long) length * multiplier);
     }
 
     public static void recordMethodCall() {
-        final Thread current = Thread.currentThread();
-        if (current == primaryThread)
-            return;
-
-        if (LOGGER.isDebugEnabled())
-            LOGGER.debug("In recordMethodCall() at " + System.currentTimeMillis() + " on " + current.getName());
-
-        checkInvokeCost(1);
+        context().charge(0, 1, 0, 0);
     }
 
     public static void recordThrow() {
-        final Thread current = Thread.currentThread();
-        if (current == primaryThread)
-            return;
-
-        if (LOGGER.isDebugEnabled())
-            LOGGER.debug("In recordThrow() at " + System.currentTimeMillis() + " on " + current.getName());
-        checkThrowCost(1);
+        context().charge(0, 0, 1, 0);
     }
 
     public static void setPrimaryThread(final Thread toBeIgnored) {
         primaryThread = toBeIgnored;
     }
 
-    private static void checkAllocationCost(final long additional) {
-        final long newValue = additional + allocationCost.get();
-        allocationCost.set(newValue);
-        if (newValue > BASELINE_ALLOC_KILL_THRESHOLD) {
-            final Thread current = Thread.currentThread();
-            if (LOGGER.isDebugEnabled())
-                LOGGER.debug("Contract " + current + " terminated for overallocation");
-            throw new ThreadDeath();
-        }
-    }
-
-    private static void checkJumpCost(final long additional) {
-        final long newValue = additional + jumpCost.get();
-        jumpCost.set(newValue);
-        if (newValue > BASELINE_JUMP_KILL_THRESHOLD) {
-            final Thread current = Thread.currentThread();
-            if (LOGGER.isDebugEnabled())
-                LOGGER.debug("Contract " + current + " terminated for excessive use of looping");
-            throw new ThreadDeath();
-        }
-    }
-
-    private static void checkInvokeCost(final long additional) {
-        final long newValue = additional + invokeCost.get();
-        invokeCost.set(newValue);
-        if (newValue > BASELINE_INVOKE_KILL_THRESHOLD) {
-            final Thread current = Thread.currentThread();
-            if (LOGGER.isDebugEnabled())
-                LOGGER.debug("Contract " + current + " terminated for excessive method calling");
-            throw new ThreadDeath();
-        }
-    }
-
-    private static void checkThrowCost(final long additional) {
-        final long newValue = additional + throwCost.get();
-        throwCost.set(newValue);
-        if (newValue > BASELINE_THROW_KILL_THRESHOLD) {
-            final Thread current = Thread.currentThread();
-            if (LOGGER.isDebugEnabled())
-                LOGGER.debug("Contract " + current + " terminated for excessive exception throwing");
-            throw new ThreadDeath();
-        }
+    public static long getAllocationCost() {
+        return context.get().getAllocationCost();
     }
 
-    public static long getAllocationCost() {
-        return allocationCost.get();
+    public static long getAllocatedBytes() {
+        return context.get().getAllocatedBytes();
     }
 
     public static long getJumpCost() {
-        return jumpCost.get();
+        return context.get().getJumpCost();
     }
 
     public static long getInvokeCost() {
-        return invokeCost.get();
+        return context.get().getInvokeCost();
     }
 
     public static long getThrowCost() {
-        return throwCost.get();
+        return context.get().getThrowCost();
     }
 
     public static void resetCounters() {
-        allocationCost.set(0L);
-        jumpCost.set(0L);
-        invokeCost.set(0L);
-        throwCost.set(0L);
+        context.get().reset();
     }
 }
@@ -0,0 +1,198 @@
+package net.corda.sandbox.visitors;
+
+import net.corda.sandbox.costing.AllocationSizes;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.*;
+
+/**
+ * Instruments a method with batched runtime cost accounting. The method is buffered,
+ * and once it has been read in full the cost context is fetched into a new local
+ * variable on entry, and each basic block is prefixed with a single charge of its
+ * jumps, invocations, throws and (approximate) object allocations. Only arrays, whose
+ * sizes are not known until runtime, are charged as they are allocated.
+ *
+ * This visitor must see the method after it has been remapped into the sandbox, so that
+ * the references it adds to the cost accounting classes are left as they are.
+ *
+ * @author ben
+ */
+public final class BatchedCostInstrumentingMethodVisitor extends MethodNode {
+
+    private static final String CONTEXT_TYPE_NAME = "net/corda/sandbox/costing/CostContext";
+
+    private static final String ACCOUNTER_TYPE_NAME = "net/corda/sandbox/costing/RuntimeCostAccounter";
+
+    private final MethodVisitor next;
+
+    private int contextLocal;
+
+    public BatchedCostInstrumentingMethodVisitor(final MethodVisitor next, final int access, final String name, final String desc, final String signature, final String[] exceptions) {
+        super(Opcodes.ASM5, access, name, desc, signature, exceptions);
+        this.next = next;
+    }
+
+    @Override
+    public void visitInsn(final int opcode) {
+        switch (opcode) {
+            case Opcodes.MONITORENTER:
+            case Opcodes.MONITOREXIT:
+                // Strip the synchronization out of any sandboxed code
+                super.visitInsn(Opcodes.POP);
+                return;
+            case CostInstrumentingMethodVisitor.OP_BREAKPOINT:
+                throw new IllegalStateException("Illegal opcode BREAKPOINT seen");
+        }
+        super.visitInsn(opcode);
+    }
+
+    @Override
+    public void visitEnd() {
+        super.visitEnd();
+        if (instructions.size() > 0) {
+            instrument();
+        }
+        accept(next);
+    }
+
+    private void instrument() {
+        // The frames are recomputed by the class writer, so the new local can simply
+        // be added after the existing ones
+        contextLocal = maxLocals;
+        maxLocals += 1;
+
+        final Set<LabelNode> blockStarts = findBlockStarts();
+        AbstractInsnNode blockStart = instructions.getFirst();
+        int jumps = 0;
+        int invokes = 0;
+        int throwCount = 0;
+        long allocation = 0;
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof LabelNode && blockStarts.contains(insn)) {
+                insertCharge(blockStart, jumps, invokes, throwCount, allocation);
+                blockStart = insn;
+                jumps = invokes = throwCount = 0;
+                allocation = 0;
+            }
+            switch (insn.getType()) {
+                case AbstractInsnNode.JUMP_INSN:
+                    jumps++;
+                    break;
+                case AbstractInsnNode.METHOD_INSN:
+                    invokes++;
+                    break;
+                case AbstractInsnNode.TYPE_INSN:
+                    if (insn.getOpcode() == Opcodes.NEW) {
+                        allocation += AllocationSizes.of(((TypeInsnNode) insn).desc);
+                    } else if (insn.getOpcode() == Opcodes.ANEWARRAY) {
+                        insertArrayCharge(insn, 8);
+                    }
+                    break;
+                case AbstractInsnNode.INT_INSN:
+                    if (insn.getOpcode() == Opcodes.NEWARRAY) {
+                        insertArrayCharge(insn, primitiveSize(((IntInsnNode) insn).operand));
+                    }
+                    break;
+                case AbstractInsnNode.INSN:
+                    if (insn.getOpcode() == Opcodes.ATHROW) {
+                        throwCount++;
+                    }
+                    break;
+            }
+        }
+        insertCharge(blockStart, jumps, invokes, throwCount, allocation);
+
+        final InsnList prologue = new InsnList();
+        prologue.add(new MethodInsnNode(Opcodes.INVOKESTATIC, ACCOUNTER_TYPE_NAME, "context", "()L" + CONTEXT_TYPE_NAME + ";", false));
+        prologue.add(new VarInsnNode(Opcodes.ASTORE, contextLocal));
+        instructions.insert(prologue);
+    }
+
+    /**
+     * A basic block starts at the target of any jump, switch or exception handler, and
+     * after any instruction that does not fall through to the next.
+     */
+    private Set<LabelNode> findBlockStarts() {
+        final Set<LabelNode> out = new HashSet<>();
+        for (final TryCatchBlockNode tryCatch : tryCatchBlocks) {
+            out.add(tryCatch.handler);
+        }
+        for (AbstractInsnNode insn = instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof JumpInsnNode) {
+                out.add(((JumpInsnNode) insn).label);
+            } else if (insn instanceof TableSwitchInsnNode) {
+                out.add(((TableSwitchInsnNode) insn).dflt);
+                out.addAll(((TableSwitchInsnNode) insn).labels);
+            } else if (insn instanceof LookupSwitchInsnNode) {
+                out.add(((LookupSwitchInsnNode) insn).dflt);
+                out.addAll(((LookupSwitchInsnNode) insn).labels);
+            } else {
+                continue;
+            }
+            // The fall through from a conditional jump starts a block too
+            if (insn.getNext() instanceof LabelNode) {
+                out.add((LabelNode) insn.getNext());
+            } else {
+                final LabelNode fallThrough = new LabelNode();
+                instructions.insert(insn, fallThrough);
+                out.add(fallThrough);
+            }
+        }
+        return out;
+    }
+
+    private void insertCharge(final AbstractInsnNode blockStart, final int jumps, final int invokes, final int throwCount, final long allocation) {
+        if (jumps == 0 && invokes == 0 && throwCount == 0 && allocation == 0) {
+            return;
+        }
+        final InsnList charge = new InsnList();
+        charge.add(new VarInsnNode(Opcodes.ALOAD, contextLocal));
+        charge.add(new LdcInsnNode(jumps));
+        charge.add(new LdcInsnNode(invokes));
+        charge.add(new LdcInsnNode(throwCount));
+        charge.add(new LdcInsnNode(allocation));
+        charge.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, CONTEXT_TYPE_NAME, "charge", "(IIIJ)V", false));
+        // Skip past the label and any frame or line number that belong to it
+        AbstractInsnNode insertAfter = blockStart instanceof LabelNode ? blockStart : null;
+        while (insertAfter != null && (insertAfter.getNext() instanceof FrameNode || insertAfter.getNext() instanceof LineNumberNode)) {
+            insertAfter = insertAfter.getNext();
+        }
+        if (insertAfter == null) {
+            instructions.insertBefore(blockStart, charge);
+        } else {
+            instructions.insert(insertAfter, charge);
+        }
+    }
+
+    private void insertArrayCharge(final AbstractInsnNode allocation, final int elementSize) {
+        // Stack: length -> length, length, context -> length, context, length -> length
+        final InsnList charge = new InsnList();
+        charge.add(new InsnNode(Opcodes.DUP));
+        charge.add(new VarInsnNode(Opcodes.ALOAD, contextLocal));
+        charge.add(new InsnNode(Opcodes.SWAP));
+        charge.add(new LdcInsnNode(elementSize));
+        charge.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, CONTEXT_TYPE_NAME, "chargeArray", "(II)V", false));
+        instructions.insertBefore(allocation, charge);
+    }
+
+    private static int primitiveSize(final int operand) {
+        switch (operand) {
+            case Opcodes.T_BOOLEAN:
+            case Opcodes.T_BYTE:
+                return 1;
+            case Opcodes.T_SHORT:
+            case Opcodes.T_CHAR:
+                return 2;
+            case Opcodes.T_INT:
+            case Opcodes.T_FLOAT:
+                return 4;
+            case Opcodes.T_LONG:
+            case Opcodes.T_DOUBLE:
+                return 8;
+            default:
+                throw new IllegalStateException("Illegal operand to NEWARRAY seen: " + operand);
+        }
+    }
+}
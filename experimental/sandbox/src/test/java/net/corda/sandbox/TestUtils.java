@@ -62,10 +62,22 @@ public class TestUtils {
         assertEquals(throwCost, RuntimeCostAccounter.getThrowCost());
     }
 
+    public static void checkAllBatchedCosts(final int allocatedBytes, final int jumpCost, final int invokeCost, final int throwCost) {
+        assertEquals(allocatedBytes, RuntimeCostAccounter.getAllocatedBytes());
+        assertEquals(0, RuntimeCostAccounter.getAllocationCost());
+        assertEquals(jumpCost, RuntimeCostAccounter.getJumpCost());
+        assertEquals(invokeCost, RuntimeCostAccounter.getInvokeCost());
+        assertEquals(throwCost, RuntimeCostAccounter.getThrowCost());
+    }
+
     public static Class<?> transformClass(final String classFName, final int originalLength, final int newLength) throws Exception {
+        return transformClass(classFName, originalLength, newLength, CostAccountingMode.PER_INSTRUCTION);
+    }
+
+    public static Class<?> transformClass(final String classFName, final int originalLength, final int newLength, final CostAccountingMode mode) throws Exception {
         byte[] basic = getBytes(classFName);
         assertEquals(originalLength, basic.length);
-        final byte[] tfmd = instrumentWithCosts(basic, new HashSet<>());
+        final byte[] tfmd = instrumentWithCosts(basic, new HashSet<>(), mode);
         final Path testdir = Files.createTempDirectory("greymalkin-test-");
         final Path out = testdir.resolve(classFName);
         Files.createDirectories(out.getParent());
@@ -85,6 +97,10 @@ public class TestUtils {
         return transformClass(resourceMethodAccessIsRewrittenclass, i, -1);
     }
 
+    public static Class<?> transformClass(final String classFName, int originalLength, final CostAccountingMode mode) throws Exception {
+        return transformClass(classFName, originalLength, -1, mode);
+    }
+
     public static byte[] getBytes(final String original) throws IOException {
         return Files.readAllBytes(jarFSDir.resolve(original));
     }
@@ -115,7 +131,12 @@ public class TestUtils {
     }
 
     public static byte[] instrumentWithCosts(byte[] basic, Set<String> hashSet) throws Exception {
+        return instrumentWithCosts(basic, hashSet, CostAccountingMode.PER_INSTRUCTION);
+    }
+
+    public static byte[] instrumentWithCosts(byte[] basic, Set<String> hashSet, CostAccountingMode mode) throws Exception {
         final WhitelistClassLoader wlcl = WhitelistClassLoader.of("/tmp");
+        wlcl.setCostAccountingMode(mode);
         return wlcl.instrumentWithCosts(basic, hashSet);
     }
 
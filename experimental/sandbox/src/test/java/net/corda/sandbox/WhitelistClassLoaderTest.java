@@ -4,6 +4,10 @@ import static org.junit.Assert.*;
 import org.junit.Test;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.*;
 
@@ -67,6 +71,52 @@ public class WhitelistClassLoaderTest {
         assertNotNull("Created object appears to be null", o);
     }
 
+    @Test
+    public void given_SharedAnalysisCache_then_SecondLoaderReusesVerdicts() throws Exception {
+        final WhitelistAnalysisCache cache = WhitelistAnalysisCache.inMemory();
+        final Class<?> first = WhitelistClassLoader.of(TestUtils.getJarFSRoot(), false, cache).loadClass("resource.ARefersToB");
+        assertNotNull("Loaded class appears to be null", first);
+        final long missesAfterFirstLoad = cache.misses();
+        assertTrue("Cache should hold the analysed classes", cache.size() > 0);
+
+        final Class<?> second = WhitelistClassLoader.of(TestUtils.getJarFSRoot(), false, cache).loadClass("resource.ARefersToB");
+        assertNotNull("Loaded class appears to be null", second);
+        assertNotSame("Each classloader should define its own class", first, second);
+        assertEquals("Second load should not analyse anything", missesAfterFirstLoad, cache.misses());
+        assertTrue("Second load should be served from the cache", cache.hits() > 0);
+    }
+
+    @Test
+    public void given_SharedAnalysisCache_when_Stripping_then_SecondLoaderWalksDependencies() throws Exception {
+        final WhitelistAnalysisCache cache = WhitelistAnalysisCache.inMemory();
+        final WhitelistClassLoader first = WhitelistClassLoader.of(TestUtils.getJarFSRoot(), true, cache);
+        first.loadClass("resource.ARefersToB");
+        final long missesAfterFirstLoad = cache.misses();
+
+        final WhitelistClassLoader second = WhitelistClassLoader.of(TestUtils.getJarFSRoot(), true, cache);
+        second.loadClass("resource.ARefersToB");
+        assertEquals("Second load should not analyse anything", missesAfterFirstLoad, cache.misses());
+        assertTrue("Root class should refer to others", first.cachedClasses().size() > 2);
+        assertEquals("Second load should reach the same classes", first.cachedClasses(), second.cachedClasses());
+    }
+
+    @Test
+    public void given_IndependentClasses_then_AnalysedInParallel() throws Exception {
+        final WhitelistAnalysisCache cache = WhitelistAnalysisCache.inMemory();
+        final WhitelistClassLoader loader = WhitelistClassLoader.of(TestUtils.getJarFSRoot(), false, cache);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Map<String, Boolean> verdicts = loader.analyseInParallel(
+                    Arrays.asList("resource.CallObjectMethods", "resource.CallPrintln"), executor);
+            assertTrue(verdicts.get("resource.CallObjectMethods"));
+            assertFalse(verdicts.get("resource.CallPrintln"));
+        } finally {
+            executor.shutdown();
+        }
+        assertNotNull(loader.loadClass("resource.CallObjectMethods"));
+        assertTrue("Load after analysis should be served from the cache", cache.hits() > 0);
+    }
+
     //TODO This code frequently throws StackOverflowException, despite this being explicitly what the code is trying to prevent!!
     @Ignore
     @Test(expected = ClassNotFoundException.class)
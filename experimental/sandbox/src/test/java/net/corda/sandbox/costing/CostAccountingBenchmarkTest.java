@@ -0,0 +1,115 @@
+package net.corda.sandbox.costing;
+
+import net.corda.sandbox.TestUtils;
+import static net.corda.sandbox.TestUtils.*;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time taken by a ContractExecutor to run uninstrumented code with the time
+ * taken to run the same code instrumented in each cost accounting mode. The timings are
+ * logged rather than asserted on, as they depend on the machine, and the benchmark is
+ * only run by hand.
+ */
+@Ignore("Benchmark, to be run by hand")
+public class CostAccountingBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CostAccountingBenchmarkTest.class);
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+
+    private static final int ITERATIONS = 200_000;
+
+    @BeforeClass
+    public static void setup_resource_jar() throws Exception {
+        TestUtils.setPathToTmpJar("/resource.jar");
+    }
+
+    @AfterClass
+    public static void kill_resource_jar() throws Exception {
+        TestUtils.cleanupTmpJar();
+    }
+
+    @Test
+    public void compare_instrumented_and_uninstrumented_execution() throws Exception {
+        final byte[] original = getBytes("resource/CallObjectMethods.class");
+        final Class<?> uninstrumented = new UninstrumentedClassloader().define(original);
+        final Class<?> perInstruction = transformClass("resource/CallObjectMethods.class", 525, CostAccountingMode.PER_INSTRUCTION);
+        final Class<?> batched = transformClass("resource/CallObjectMethods.class", 525, CostAccountingMode.BATCHED);
+
+        final long baseline = time(uninstrumented);
+        final long perInstructionNanos = time(perInstruction);
+        final long batchedNanos = time(batched);
+        LOGGER.info(String.format("%d executions: uninstrumented %d ms, per instruction %d ms (%.1fx), batched %d ms (%.1fx)",
+                ITERATIONS, TimeUnit.NANOSECONDS.toMillis(baseline),
+                TimeUnit.NANOSECONDS.toMillis(perInstructionNanos), (double) perInstructionNanos / baseline,
+                TimeUnit.NANOSECONDS.toMillis(batchedNanos), (double) batchedNanos / baseline));
+    }
+
+    private static long time(final Class<?> code) throws Exception {
+        run(code, WARMUP_ITERATIONS);
+        return run(code, ITERATIONS);
+    }
+
+    private static long run(final Class<?> code, final int iterations) throws Exception {
+        final RepeatingExecutor executor = new RepeatingExecutor(iterations);
+        final Contract contract = new Contract(code, executor);
+        assertTrue(contract.isViable());
+        contract.start();
+        contract.getThread().join();
+        assertNull("Execution failed", executor.failure);
+        return executor.elapsedNanos;
+    }
+
+    private static final class UninstrumentedClassloader extends ClassLoader {
+
+        Class<?> define(final byte[] classContents) {
+            return defineClass(null, classContents, 0, classContents.length);
+        }
+    }
+
+    /**
+     * Calls the contract's method repeatedly, each call being a new execution with its
+     * own costs.
+     */
+    private static final class RepeatingExecutor implements ContractExecutor {
+
+        private final int iterations;
+
+        private volatile long elapsedNanos;
+
+        private volatile Throwable failure;
+
+        RepeatingExecutor(final int iterations) {
+            this.iterations = iterations;
+        }
+
+        @Override
+        public void execute(final Contract contract) {
+            try {
+                final Object o = contract.getCode().newInstance();
+                final Method m = contract.getCode().getMethod("callBasicMethodsOnObject");
+                final long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    RuntimeCostAccounter.beginExecution();
+                    m.invoke(o);
+                }
+                elapsedNanos = System.nanoTime() - start;
+            } catch (Throwable t) {
+                failure = t;
+            }
+        }
+
+        @Override
+        public boolean isSuitable(final Contract contract) {
+            return true;
+        }
+    }
+}
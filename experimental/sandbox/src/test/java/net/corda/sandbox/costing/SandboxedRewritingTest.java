@@ -118,4 +118,55 @@ public class SandboxedRewritingTest {
         checkAllCosts(778, 1, 0, 0);
     }
 
+    @Test
+    public void batched_accounting_charges_the_same_jumps_and_invocations() throws Exception {
+        final Class<?> clz = transformClass("resource/CallObjectMethods.class", 525, CostAccountingMode.BATCHED);
+        final Object o = clz.newInstance();
+        final Method m = clz.getMethod("callBasicMethodsOnObject");
+        assertTrue((Boolean) m.invoke(o));
+        checkAllBatchedCosts(0, 2, 3, 0);
+    }
+
+    @Test
+    public void batched_accounting_charges_approximate_object_sizes() throws Exception {
+        final Class<?> clz = transformClass("resource/MethodAccessIsRewritten.class", 412, CostAccountingMode.BATCHED);
+        final Object o = clz.newInstance();
+        final Method m = clz.getMethod("makeObject");
+        assertTrue(Object.class == m.invoke(o).getClass());
+        // An Object is a header of 12 bytes, padded to 16
+        checkAllBatchedCosts(16, 0, 2, 0);
+    }
+
+    @Test
+    public void batched_accounting_charges_primitive_arrays_at_runtime() throws Exception {
+        final Class<?> clz = transformClass("resource/SimpleArrayAlloc.class", 727, CostAccountingMode.BATCHED);
+        final Method m = clz.getMethod("allocPrimitiveArrays");
+        assertNull(m.invoke(null));
+        checkAllBatchedCosts(778, 1, 0, 0);
+    }
+
+    @Test
+    public void batched_allocation_is_limited_in_bytes() throws Exception {
+        final CostContext context = new CostContext();
+        // A million bytes is well under the batched limit, though over the per instruction one
+        context.charge(0, 0, 0, CostContext.BASELINE_ALLOC_KILL_THRESHOLD + 1);
+        assertEquals(CostContext.BASELINE_ALLOC_KILL_THRESHOLD + 1, context.getAllocatedBytes());
+        try {
+            context.charge(0, 0, 0, CostContext.BATCHED_ALLOC_KILL_THRESHOLD);
+            fail("Allocation over the batched limit should terminate the execution");
+        } catch (ThreadDeath expected) {
+        }
+    }
+
+    @Test
+    public void per_instruction_allocation_is_limited_in_objects() throws Exception {
+        final CostContext context = new CostContext();
+        context.chargeAllocation(CostContext.BASELINE_ALLOC_KILL_THRESHOLD);
+        try {
+            context.chargeAllocation(1);
+            fail("Allocation over the per instruction limit should terminate the execution");
+        } catch (ThreadDeath expected) {
+        }
+    }
+
 }
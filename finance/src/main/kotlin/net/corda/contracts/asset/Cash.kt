@@ -180,20 +180,20 @@ class Cash : OnLedgerAsset<Currency, Cash.Commands, Cash.State>() {
  * if there are none, or if any of the cash states cannot be added together (i.e. are
  * different currencies or issuers).
  */
-fun Iterable<ContractState>.sumCashBy(owner: AbstractParty): Amount<Issued<Currency>> = filterIsInstance<Cash.State>().filter { it.owner == owner }.map { it.amount }.sumOrThrow()
+fun Iterable<ContractState>.sumCashBy(owner: AbstractParty): Amount<Issued<Currency>> = sumAmountsOrNull { if (it is Cash.State && it.owner == owner) it.amount else null } ?: throw UnsupportedOperationException("No cash owned by $owner")
 
 /**
  * Sums the cash states in the list, throwing an exception if there are none, or if any of the cash
  * states cannot be added together (i.e. are different currencies or issuers).
  */
-fun Iterable<ContractState>.sumCash(): Amount<Issued<Currency>> = filterIsInstance<Cash.State>().map { it.amount }.sumOrThrow()
+fun Iterable<ContractState>.sumCash(): Amount<Issued<Currency>> = sumCashOrNull() ?: throw UnsupportedOperationException("No cash states to sum")
 
 /** Sums the cash states in the list, returning null if there are none. */
-fun Iterable<ContractState>.sumCashOrNull(): Amount<Issued<Currency>>? = filterIsInstance<Cash.State>().map { it.amount }.sumOrNull()
+fun Iterable<ContractState>.sumCashOrNull(): Amount<Issued<Currency>>? = sumAmountsOrNull { (it as? Cash.State)?.amount }
 
 /** Sums the cash states in the list, returning zero of the given currency+issuer if there are none. */
 fun Iterable<ContractState>.sumCashOrZero(currency: Issued<Currency>): Amount<Issued<Currency>> {
-    return filterIsInstance<Cash.State>().map { it.amount }.sumOrZero(currency)
+    return sumCashOrNull() ?: Amount.zero(currency)
 }
 
 fun Cash.State.ownedBy(owner: AbstractParty) = copy(owner = owner)
@@ -0,0 +1,148 @@
+package net.corda.contracts.asset
+
+import net.corda.core.contracts.FungibleAsset
+import net.corda.core.contracts.StateAndRef
+import net.corda.core.contracts.StateRef
+import java.util.*
+
+/**
+ * Chooses which of a set of acceptable asset states ("coins") to spend in order to cover an amount. The choice decides
+ * how many inputs a spend has and how much change and dust it leaves behind, which in turn decides the size of later
+ * transactions, their notarisation cost and the length of their back chains.
+ *
+ * [OnLedgerAsset.generateSpend] takes all of the change from the output of the issued token with the largest total, so
+ * a selection must not leave more change than that. A selection in which no coin is superfluous always satisfies this,
+ * as its change is smaller than its smallest coin.
+ */
+interface CoinSelectionStrategy {
+    /**
+     * Returns the coins to spend, totalling at least [quantity], or null if all of [coins] together can't cover it.
+     * Quantities are in the smallest unit of the token, and all coins are presumed to be of the same product.
+     */
+    fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>?
+}
+
+object CoinSelection {
+    /** Takes coins in the order given until the amount is covered. This is the historical behaviour. */
+    object FirstFit : CoinSelectionStrategy {
+        override fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long) = takeUntilCovered(coins, quantity)
+    }
+
+    /** Takes the largest coins first, which spends the fewest inputs at the cost of leaving small coins behind. */
+    object LargestFirst : CoinSelectionStrategy {
+        override fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>? {
+            return takeUntilCovered(coins.sortedByDescending { it.state.data.amount.quantity }, quantity)
+        }
+    }
+
+    /**
+     * Spends the smallest single coin which covers the amount on its own, keeping large coins intact. If no single
+     * coin is big enough, falls back to [LargestFirst].
+     */
+    object SmallestSufficient : CoinSelectionStrategy {
+        override fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>? {
+            val smallest = coins.filter { it.state.data.amount.quantity >= quantity }.minBy { it.state.data.amount.quantity }
+            return if (smallest != null) listOf(smallest) else LargestFirst.select(coins, quantity)
+        }
+    }
+
+    /**
+     * Searches for a set of coins whose total lies between the amount and the amount plus [costOfChange], so the spend
+     * creates little or no change. Of the matches found the one with the fewest inputs wins. The depth first search
+     * over the coins, largest first, is abandoned after [maxTries] steps, in which case, or if there is no match, the
+     * [fallback] strategy is used.
+     */
+    class BranchAndBound @JvmOverloads constructor(val costOfChange: Long = 0,
+                                                   val maxTries: Int = 100000,
+                                                   val fallback: CoinSelectionStrategy = LargestFirst) : CoinSelectionStrategy {
+        init {
+            require(costOfChange >= 0) { "Cost of change must not be negative" }
+            require(maxTries > 0) { "Must allow at least one try" }
+        }
+
+        override fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>? {
+            val sorted = coins.sortedByDescending { it.state.data.amount.quantity }
+            val quantities = LongArray(sorted.size) { sorted[it].state.data.amount.quantity }
+            // remaining[i] is the total of the coins from i onwards, used to prune branches which can't reach the amount.
+            val remaining = LongArray(sorted.size + 1)
+            for (i in sorted.indices.reversed()) remaining[i] = Math.addExact(remaining[i + 1], quantities[i])
+            if (remaining[0] < quantity) return null
+            val upperBound = if (quantity > Long.MAX_VALUE - costOfChange) Long.MAX_VALUE else quantity + costOfChange
+
+            val selected = BooleanArray(sorted.size)
+            var best: BooleanArray? = null
+            var bestCount = Int.MAX_VALUE
+            var total = 0L
+            var count = 0
+            var index = 0
+            var tries = 0
+            while (tries++ < maxTries) {
+                val backtrack = if (total + remaining[index] < quantity || total > upperBound || count >= bestCount) {
+                    true
+                } else if (total >= quantity) {
+                    // The coin just added was the smallest selected and was needed to reach the amount, so no coin
+                    // in this selection is superfluous.
+                    best = selected.copyOf()
+                    bestCount = count
+                    true
+                } else {
+                    false
+                }
+                if (backtrack) {
+                    // Undo the most recent inclusion and explore the branch which omits that coin instead.
+                    var last = index - 1
+                    while (last >= 0 && !selected[last]) last--
+                    if (last < 0) break
+                    selected[last] = false
+                    total -= quantities[last]
+                    count--
+                    index = last + 1
+                } else {
+                    selected[index] = true
+                    total += quantities[index]
+                    count++
+                    index++
+                }
+            }
+            val match = best ?: return fallback.select(coins, quantity)
+            return sorted.filterIndexed { i, _ -> match[i] }
+        }
+    }
+
+    /**
+     * Wraps another strategy and sweeps up to [maxExtraInputs] dust coins, those smaller than [dustThreshold], into the
+     * spend, so the vault consolidates as a side effect of normal payments. Only dust of the issued token with the
+     * largest total in the underlying selection is added: that output absorbs the extra change, so the change stays
+     * within a single output.
+     */
+    class Consolidating(val delegate: CoinSelectionStrategy,
+                        val dustThreshold: Long,
+                        val maxExtraInputs: Int) : CoinSelectionStrategy {
+        override fun <S : FungibleAsset<*>> select(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>? {
+            val selection = delegate.select(coins, quantity) ?: return null
+            val totals = HashMap<Any, Long>()
+            for (coin in selection) {
+                val amount = coin.state.data.amount
+                totals[amount.token] = Math.addExact(totals[amount.token] ?: 0L, amount.quantity)
+            }
+            val token = totals.maxBy { it.value }?.key ?: return selection
+            val selectedRefs = selection.mapTo(HashSet<StateRef>()) { it.ref }
+            val dust = coins.filter {
+                val amount = it.state.data.amount
+                it.ref !in selectedRefs && amount.token == token && amount.quantity < dustThreshold
+            }.sortedBy { it.state.data.amount.quantity }.take(maxExtraInputs)
+            return selection + dust
+        }
+    }
+
+    private fun <S : FungibleAsset<*>> takeUntilCovered(coins: List<StateAndRef<S>>, quantity: Long): List<StateAndRef<S>>? {
+        val gathered = ArrayList<StateAndRef<S>>()
+        var total = 0L
+        for (coin in coins) {
+            if (total >= quantity) break
+            gathered += coin
+            total = Math.addExact(total, coin.state.data.amount.quantity)
+        }
+        return if (total >= quantity) gathered else null
+    }
+}
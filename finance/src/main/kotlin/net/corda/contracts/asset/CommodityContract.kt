@@ -168,10 +168,10 @@ class CommodityContract : OnLedgerAsset<Commodity, CommodityContract.Commands, C
  * Sums the cash states in the list, throwing an exception if there are none, or if any of the cash
  * states cannot be added together (i.e. are different currencies).
  */
-fun Iterable<ContractState>.sumCommodities() = filterIsInstance<CommodityContract.State>().map { it.amount }.sumOrThrow()
+fun Iterable<ContractState>.sumCommodities() = sumCommoditiesOrNull() ?: throw UnsupportedOperationException("No commodity states to sum")
 
 /** Sums the cash states in the list, returning null if there are none. */
-@Suppress("unused") fun Iterable<ContractState>.sumCommoditiesOrNull() = filterIsInstance<CommodityContract.State>().map { it.amount }.sumOrNull()
+fun Iterable<ContractState>.sumCommoditiesOrNull() = sumAmountsOrNull { (it as? CommodityContract.State)?.amount }
 
 /** Sums the cash states in the list, returning zero of the given currency if there are none. */
-fun Iterable<ContractState>.sumCommoditiesOrZero(currency: Issued<Commodity>) = filterIsInstance<CommodityContract.State>().map { it.amount }.sumOrZero(currency)
+fun Iterable<ContractState>.sumCommoditiesOrZero(currency: Issued<Commodity>) = sumCommoditiesOrNull() ?: Amount.zero(currency)
@@ -0,0 +1,183 @@
+package net.corda.contracts.asset
+
+import net.corda.core.identity.AbstractParty
+import java.util.*
+
+/**
+ * Nets amounts owed between any number of parties. Each party is given an ordinal when first seen, and balances are
+ * kept as primitive longs indexed by that ordinal, so adding an obligation costs one hash lookup per party and no
+ * allocation once the parties are known.
+ *
+ * Netting multilaterally cancels every cycle of obligations, not just those between a pair of parties: the result of
+ * [settlements] leaves every party with the same net position as the obligations added, using as few payments as it
+ * can find.
+ *
+ * @param P type of party to operate on.
+ */
+class MultilateralNetting<P : AbstractParty> {
+    companion object {
+        /** The most parties with a non-zero position for which [settlements] searches for the fewest payments. */
+        const val MAX_EXACT_PARTIES = 16
+    }
+
+    /** A payment of [quantity] from [obligor] to [beneficiary], in the smallest unit of the token being netted. */
+    data class Payment<out P : AbstractParty>(val obligor: P, val beneficiary: P, val quantity: Long)
+
+    private val ordinals = HashMap<P, Int>()
+    private val parties = ArrayList<P>()
+    private var positions = LongArray(16)
+
+    /** The number of distinct parties seen so far. */
+    val size: Int get() = parties.size
+
+    /** Records that [obligor] owes [quantity] to [beneficiary]. */
+    fun add(obligor: P, beneficiary: P, quantity: Long) {
+        require(quantity >= 0) { "Quantity must be non-negative" }
+        val obligorOrdinal = ordinalOf(obligor)
+        val beneficiaryOrdinal = ordinalOf(beneficiary)
+        positions[obligorOrdinal] = Math.subtractExact(positions[obligorOrdinal], quantity)
+        positions[beneficiaryOrdinal] = Math.addExact(positions[beneficiaryOrdinal], quantity)
+    }
+
+    /**
+     * The net amount each party is owed, negative where the party owes more than it is owed. Parties whose position
+     * nets to zero are left out.
+     */
+    fun netPositions(): Map<P, Long> {
+        val result = HashMap<P, Long>()
+        for (ordinal in parties.indices) {
+            if (positions[ordinal] != 0L) result[parties[ordinal]] = positions[ordinal]
+        }
+        return result
+    }
+
+    /**
+     * Produces a set of payments which settles the net positions. Each payment clears at least one party, so a group of
+     * k parties whose positions sum to zero can be settled with k-1 payments. The fewest payments therefore come from
+     * splitting the parties into as many such groups as possible. The split is found exactly for up to
+     * [MAX_EXACT_PARTIES] parties with a non-zero position. Beyond that, debtors and creditors with equal and opposite
+     * positions are paired off and everybody else is settled together. Ties are broken by the order the parties were
+     * first seen, so the result is deterministic for a given order of [add] calls.
+     */
+    fun settlements(): List<Payment<P>> {
+        val nonZero = parties.indices.filter { positions[it] != 0L }
+        val payments = ArrayList<Payment<P>>()
+        for (group in zeroSumGroups(nonZero)) {
+            settle(group.sorted(), payments)
+        }
+        return payments
+    }
+
+    private fun zeroSumGroups(ordinals: List<Int>): List<List<Int>> {
+        return if (ordinals.size <= MAX_EXACT_PARTIES && subsetSumsFit(ordinals)) {
+            exactZeroSumGroups(ordinals)
+        } else {
+            pairedZeroSumGroups(ordinals)
+        }
+    }
+
+    /** Whether no sum of a subset of the positions can overflow, which holds if the debts and credits each fit. */
+    private fun subsetSumsFit(ordinals: List<Int>): Boolean {
+        var debts = 0L
+        var credits = 0L
+        return try {
+            for (ordinal in ordinals) {
+                if (positions[ordinal] < 0) debts = Math.subtractExact(debts, positions[ordinal])
+                else credits = Math.addExact(credits, positions[ordinal])
+            }
+            true
+        } catch (e: ArithmeticException) {
+            false
+        }
+    }
+
+    /**
+     * Finds the largest number of zero sum groups by dynamic programming over the subsets of the parties: the best
+     * count for a subset is the best for the subset less one party, plus one if the subset itself sums to zero.
+     * Walking back from the full set gives an order of the parties in which every zero sum prefix ends a group.
+     */
+    private fun exactZeroSumGroups(ordinals: List<Int>): List<List<Int>> {
+        val subsets = 1 shl ordinals.size
+        val sums = LongArray(subsets)
+        val groupCounts = IntArray(subsets)
+        for (mask in 1 until subsets) {
+            val lowest = Integer.numberOfTrailingZeros(mask)
+            sums[mask] = sums[mask and (mask - 1)] + positions[ordinals[lowest]]
+            var best = 0
+            for (i in ordinals.indices) {
+                if (mask and (1 shl i) != 0) best = Math.max(best, groupCounts[mask xor (1 shl i)])
+            }
+            groupCounts[mask] = if (sums[mask] == 0L) best + 1 else best
+        }
+        val order = ArrayList<Int>(ordinals.size)
+        var mask = subsets - 1
+        while (mask != 0) {
+            val rest = groupCounts[mask] - if (sums[mask] == 0L) 1 else 0
+            val i = ordinals.indices.first { mask and (1 shl it) != 0 && groupCounts[mask xor (1 shl it)] == rest }
+            order += ordinals[i]
+            mask = mask xor (1 shl i)
+        }
+        order.reverse()
+        val groups = ArrayList<List<Int>>()
+        var group = ArrayList<Int>()
+        var sum = 0L
+        for (ordinal in order) {
+            group.add(ordinal)
+            sum += positions[ordinal]
+            if (sum == 0L) {
+                groups += group
+                group = ArrayList()
+            }
+        }
+        return groups
+    }
+
+    /** Pairs off debtors with creditors of the same amount, and puts every other party in a single group. */
+    private fun pairedZeroSumGroups(ordinals: List<Int>): List<List<Int>> {
+        val creditorsByAmount = HashMap<Long, ArrayDeque<Int>>()
+        for (ordinal in ordinals) {
+            if (positions[ordinal] > 0) creditorsByAmount.getOrPut(positions[ordinal]) { ArrayDeque() } += ordinal
+        }
+        val groups = ArrayList<List<Int>>()
+        val paired = HashSet<Int>()
+        for (ordinal in ordinals) {
+            if (positions[ordinal] >= 0) continue
+            val creditor = creditorsByAmount[-positions[ordinal]]?.poll() ?: continue
+            groups += listOf(ordinal, creditor)
+            paired += ordinal
+            paired += creditor
+        }
+        val rest = ordinals.filter { it !in paired }
+        if (rest.isNotEmpty()) groups += rest
+        return groups
+    }
+
+    /** Settles a group of parties whose positions sum to zero, matching debtors with creditors in order. */
+    private fun settle(group: List<Int>, payments: MutableList<Payment<P>>) {
+        val debtors = group.filter { positions[it] < 0 }
+        val creditors = group.filter { positions[it] > 0 }
+        var creditorIndex = 0
+        var owedToCreditor = if (creditors.isEmpty()) 0L else positions[creditors[0]]
+        for (debtor in debtors) {
+            var owedByDebtor = -positions[debtor]
+            while (owedByDebtor > 0) {
+                val quantity = Math.min(owedByDebtor, owedToCreditor)
+                payments += Payment(parties[debtor], parties[creditors[creditorIndex]], quantity)
+                owedByDebtor -= quantity
+                owedToCreditor -= quantity
+                if (owedToCreditor == 0L && ++creditorIndex < creditors.size) {
+                    owedToCreditor = positions[creditors[creditorIndex]]
+                }
+            }
+        }
+    }
+
+    private fun ordinalOf(party: P): Int {
+        return ordinals.getOrPut(party) {
+            val ordinal = parties.size
+            parties += party
+            if (ordinal == positions.size) positions = positions.copyOf(ordinal * 2)
+            ordinal
+        }
+    }
+}
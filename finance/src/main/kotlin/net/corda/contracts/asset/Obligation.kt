@@ -488,29 +488,93 @@ class Obligation<P : Any> : Contract {
             "all states are in the normal lifecycle state " using (states.all { it.lifecycle == Lifecycle.NORMAL })
         }
         val groups = states.groupBy { it.multilateralNetState }
-        val partyLookup = HashMap<PublicKey, AbstractParty>()
         val signers = states.map { it.beneficiary }.union(states.map { it.obligor }).toSet()
 
-        // Create a lookup table of the party that each public key represents.
-        states.map { it.obligor }.forEach { partyLookup.put(it.owningKey, it) }
-
-        // Suppress compiler warning as 'groupStates' is an unused variable when destructuring 'groups'.
-        @Suppress("UNUSED_VARIABLE")
         for ((netState, groupStates) in groups) {
-            // Extract the net balances
-            val netBalances = netAmountsDue(extractAmountsDue(issued.product, states.asIterable()))
-
-            netBalances
-                    // Convert the balances into obligation state objects
-                    .map { entry ->
-                        State(Lifecycle.NORMAL, entry.key.first,
-                                netState.template, entry.value.quantity, entry.key.second)
-                    }
-                    // Add the new states to the TX
-                    .forEach { tx.addOutputState(it, notary) }
-            tx.addCommand(Commands.Net(NetType.PAYMENT), signers.map { it.owningKey })
+            // Net the balances multilaterally and convert the remaining payments into obligation state objects
+            netPayments(groupStates).forEach { (obligor, beneficiary, quantity) ->
+                tx.addOutputState(State(Lifecycle.NORMAL, obligor, netState.template, quantity, beneficiary), notary)
+            }
+        }
+        tx.addCommand(Commands.Net(NetType.PAYMENT), signers.map { it.owningKey })
+    }
+
+    /**
+     * Generate transactions which net the given obligation states multilaterally, using as many transactions as
+     * needed to keep each within [maxStatesPerTransaction] input and output states.
+     *
+     * As every transaction must leave each party's net position unchanged, the obligations are split along the
+     * groups of parties connected by what they owe each other, and whole groups are packed into each transaction.
+     * A group which is larger than the limit on its own gets a transaction to itself. A group whose obligations can't
+     * be settled with fewer payments than there are already is left alone, as netting it would only re-issue the same
+     * debts. If no group can be reduced then no transactions are returned.
+     */
+    fun generatePaymentNettingTransactions(statesAndRefs: List<StateAndRef<State<P>>>,
+                                           notary: Party,
+                                           maxStatesPerTransaction: Int): List<TransactionBuilder> {
+        requireThat {
+            "all states are in the normal lifecycle state " using (statesAndRefs.all { it.state.data.lifecycle == Lifecycle.NORMAL })
+        }
+        val builders = ArrayList<TransactionBuilder>()
+        var builder = TransactionType.General.Builder(notary)
+        var stateCount = 0
+        val signers = HashSet<AbstractParty>()
+
+        fun finishTransaction() {
+            builder.addCommand(Commands.Net(NetType.PAYMENT), signers.map { it.owningKey })
+            builders += builder
+            builder = TransactionType.General.Builder(notary)
+            stateCount = 0
+            signers.clear()
+        }
+
+        for ((netState, groupStates) in statesAndRefs.groupBy { it.state.data.multilateralNetState }) {
+            for (component in connectedObligations(groupStates)) {
+                val payments = netPayments(component.map { it.state.data })
+                if (payments.size >= component.size) continue
+                val size = component.size + payments.size
+                if (stateCount > 0 && stateCount + size > maxStatesPerTransaction) finishTransaction()
+                component.forEach {
+                    builder.addInputState(it)
+                    signers += it.state.data.obligor
+                    signers += it.state.data.beneficiary
+                }
+                payments.forEach { (obligor, beneficiary, quantity) ->
+                    builder.addOutputState(State(Lifecycle.NORMAL, obligor, netState.template, quantity, beneficiary), notary)
+                }
+                stateCount += size
+            }
         }
+        if (stateCount > 0) finishTransaction()
+        return builders
+    }
+
+    private fun netPayments(states: List<State<P>>): List<MultilateralNetting.Payment<AbstractParty>> {
+        val netting = MultilateralNetting<AbstractParty>()
+        states.forEach { netting.add(it.obligor, it.beneficiary, it.quantity) }
+        return netting.settlements()
+    }
 
+    /** Splits the states into the groups connected by a common obligor or beneficiary, using union-find. */
+    private fun connectedObligations(statesAndRefs: List<StateAndRef<State<P>>>): Collection<List<StateAndRef<State<P>>>> {
+        val parents = HashMap<AbstractParty, AbstractParty>()
+        fun root(party: AbstractParty): AbstractParty {
+            var current = party
+            while (true) {
+                val parent = parents.getOrPut(current) { current }
+                if (parent == current) return current
+                // Path halving keeps the trees shallow.
+                val grandparent = parents[parent]!!
+                parents[current] = grandparent
+                current = grandparent
+            }
+        }
+        statesAndRefs.forEach {
+            val obligorRoot = root(it.state.data.obligor)
+            val beneficiaryRoot = root(it.state.data.beneficiary)
+            if (obligorRoot != beneficiaryRoot) parents[obligorRoot] = beneficiaryRoot
+        }
+        return statesAndRefs.groupByTo(LinkedHashMap()) { root(it.state.data.obligor) }.values
     }
 
     /**
@@ -632,15 +696,17 @@ class Obligation<P : Any> : Contract {
  * @return a map of obligor/beneficiary pairs to the balance due.
  */
 fun <P : Any> extractAmountsDue(product: Obligation.Terms<P>, states: Iterable<Obligation.State<P>>): Map<Pair<AbstractParty, AbstractParty>, Amount<Obligation.Terms<P>>> {
-    val balances = HashMap<Pair<AbstractParty, AbstractParty>, Amount<Obligation.Terms<P>>>()
+    // Sum as primitive longs and only create the amounts at the end.
+    val balances = HashMap<Pair<AbstractParty, AbstractParty>, Long>()
 
     states.forEach { state ->
+        val stateProduct = state.amount.token.product
+        require(stateProduct == product) { "Token mismatch: $stateProduct vs $product" }
         val key = Pair(state.obligor, state.beneficiary)
-        val balance = balances[key] ?: Amount(0L, product)
-        balances[key] = balance + Amount(state.amount.quantity, state.amount.token.product)
+        balances[key] = Math.addExact(balances[key] ?: 0L, state.amount.quantity)
     }
 
-    return balances
+    return balances.mapValues { Amount(it.value, product) }
 }
 
 /**
@@ -649,15 +715,13 @@ fun <P : Any> extractAmountsDue(product: Obligation.Terms<P>, states: Iterable<O
 fun <P: AbstractParty, T : Any> netAmountsDue(balances: Map<Pair<P, P>, Amount<T>>): Map<Pair<P, P>, Amount<T>> {
     val nettedBalances = HashMap<Pair<P, P>, Amount<T>>()
 
-    balances.forEach { balance ->
-        val (obligor, beneficiary) = balance.key
-        val oppositeKey = Pair(beneficiary, obligor)
-        val opposite = (balances[oppositeKey] ?: Amount(0L, balance.value.token))
-        // Drop zero balances
-        if (balance.value > opposite) {
-            nettedBalances[balance.key] = (balance.value - opposite)
-        } else if (opposite > balance.value) {
-            nettedBalances[oppositeKey] = (opposite - balance.value)
+    for ((key, amount) in balances) {
+        val opposite = balances[Pair(key.second, key.first)]
+        // Each pair is netted when its larger direction is reached, and zero balances are dropped.
+        if (opposite == null) {
+            if (amount.quantity > 0L) nettedBalances[key] = amount
+        } else if (amount > opposite) {
+            nettedBalances[key] = amount - opposite
         }
     }
 
@@ -674,45 +738,26 @@ fun <P: AbstractParty, T : Any> netAmountsDue(balances: Map<Pair<P, P>, Amount<T
  * @param T token that balances represent
  */
 fun <P: AbstractParty, T : Any> sumAmountsDue(balances: Map<Pair<P, P>, Amount<T>>): Map<P, Long> {
-    val sum = HashMap<P, Long>()
-
-    // Fill the map with zeroes initially
-    balances.keys.forEach {
-        sum[it.first] = 0L
-        sum[it.second] = 0L
-    }
-
+    val netting = MultilateralNetting<P>()
     for ((key, amount) in balances) {
-        val (obligor, beneficiary) = key
-        // Subtract it from the obligor
-        sum[obligor] = sum[obligor]!! - amount.quantity
-        // Add it to the beneficiary
-        sum[beneficiary] = sum[beneficiary]!! + amount.quantity
+        netting.add(key.first, key.second, amount.quantity)
     }
-
-    // Strip zero balances
-    val iterator = sum.iterator()
-    while (iterator.hasNext()) {
-        val amount = iterator.next().value
-        if (amount == 0L) {
-            iterator.remove()
-        }
-    }
-
-    return sum
+    return netting.netPositions()
 }
 
 /** Sums the obligation states in the list, throwing an exception if there are none. All state objects in the list are presumed to be nettable. */
+@Suppress("UNCHECKED_CAST")
 fun <P : Any> Iterable<ContractState>.sumObligations(): Amount<Issued<Obligation.Terms<P>>>
-        = filterIsInstance<Obligation.State<P>>().map { it.amount }.sumOrThrow()
+        = sumAmountsOrNull { (it as? Obligation.State<P>)?.amount } ?: throw UnsupportedOperationException("No obligation states to sum")
 
 /** Sums the obligation states in the list, returning null if there are none. */
+@Suppress("UNCHECKED_CAST")
 fun <P : Any> Iterable<ContractState>.sumObligationsOrNull(): Amount<Issued<Obligation.Terms<P>>>?
-        = filterIsInstance<Obligation.State<P>>().filter { it.lifecycle == Obligation.Lifecycle.NORMAL }.map { it.amount }.sumOrNull()
+        = sumAmountsOrNull { if (it is Obligation.State<*> && it.lifecycle == Obligation.Lifecycle.NORMAL) (it as Obligation.State<P>).amount else null }
 
 /** Sums the obligation states in the list, returning zero of the given product if there are none. */
 fun <P : Any> Iterable<ContractState>.sumObligationsOrZero(issuanceDef: Issued<Obligation.Terms<P>>): Amount<Issued<Obligation.Terms<P>>>
-        = filterIsInstance<Obligation.State<P>>().filter { it.lifecycle == Obligation.Lifecycle.NORMAL }.map { it.amount }.sumOrZero(issuanceDef)
+        = sumObligationsOrNull<P>() ?: Amount.zero(issuanceDef)
 
 infix fun <T : Any> Obligation.State<T>.at(dueBefore: Instant) = copy(template = template.copy(dueBefore = dueBefore))
 infix fun <T : Any> Obligation.State<T>.between(parties: Pair<AbstractParty, AbstractParty>) = copy(obligor = parties.first, beneficiary = parties.second)
@@ -42,6 +42,8 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
          * @param acceptableStates a list of acceptable input states to use.
          * @param deriveState a function to derive an output state based on an input state, amount for the output
          * and public key to pay to.
+         * @param selection the strategy choosing which of [acceptableStates] to spend. Defaults to taking them in the
+         * order given.
          * @return A [Pair] of the same transaction builder passed in as [tx], and the list of keys that need to sign
          *         the resulting transaction for it to be valid.
          * @throws InsufficientBalanceException when a cash spending transaction fails because
@@ -49,12 +51,14 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
          */
         @Throws(InsufficientBalanceException::class)
         @JvmStatic
+        @JvmOverloads
         fun <S : FungibleAsset<T>, T: Any> generateSpend(tx: TransactionBuilder,
                                                          amount: Amount<T>,
                                                          to: AbstractParty,
                                                          acceptableStates: List<StateAndRef<S>>,
                                                          deriveState: (TransactionState<S>, Amount<Issued<T>>, AbstractParty) -> TransactionState<S>,
-                                                         generateMoveCommand: () -> CommandData): Pair<TransactionBuilder, List<PublicKey>> {
+                                                         generateMoveCommand: () -> CommandData,
+                                                         selection: CoinSelectionStrategy = CoinSelection.FirstFit): Pair<TransactionBuilder, List<PublicKey>> {
             // Discussion
             //
             // This code is analogous to the Wallet.send() set of methods in bitcoinj, and has the same general outline.
@@ -82,7 +86,7 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
             // notary may be associated with locked state only
             tx.notary = acceptableStates.firstOrNull()?.state?.notary
 
-            val (gathered, gatheredAmount) = gatherCoins(acceptableStates, amount)
+            val (gathered, gatheredAmount) = gatherCoins(acceptableStates, amount, selection)
 
             val takeChangeFrom = gathered.firstOrNull()
             val change = if (takeChangeFrom != null && gatheredAmount > amount) {
@@ -94,7 +98,7 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
 
             val states = gathered.groupBy { it.state.data.amount.token.issuer }.map {
                 val coins = it.value
-                val totalAmount = coins.map { it.state.data.amount }.sumOrThrow()
+                val totalAmount = coins.sumAmountsOrNull { it.state.data.amount }!!
                 deriveState(coins.first().state, totalAmount, to)
             }.sortedBy { it.data.amount.quantity }
 
@@ -128,24 +132,21 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
          *
          * @param acceptableCoins list of states to use as inputs.
          * @param amount the amount to gather states up to.
+         * @param selection the strategy choosing which states to use.
          * @throws InsufficientBalanceException if there isn't enough value in the states to cover the requested amount.
          */
         @Throws(InsufficientBalanceException::class)
-        private fun <S : FungibleAsset<T>, T : Any> gatherCoins(acceptableCoins: Collection<StateAndRef<S>>,
-                                                                amount: Amount<T>): Pair<ArrayList<StateAndRef<S>>, Amount<T>> {
+        private fun <S : FungibleAsset<T>, T : Any> gatherCoins(acceptableCoins: List<StateAndRef<S>>,
+                                                                amount: Amount<T>,
+                                                                selection: CoinSelectionStrategy): Pair<List<StateAndRef<S>>, Amount<T>> {
             require(amount.quantity > 0) { "Cannot gather zero coins" }
-            val gathered = arrayListOf<StateAndRef<S>>()
-            var gatheredAmount = Amount(0, amount.token)
-            for (c in acceptableCoins) {
-                if (gatheredAmount >= amount) break
-                gathered.add(c)
-                gatheredAmount += Amount(c.state.data.amount.quantity, amount.token)
-            }
-
-            if (gatheredAmount < amount) {
-                log.trace { "Insufficient balance: requested $amount, available $gatheredAmount" }
-                throw InsufficientBalanceException(amount - gatheredAmount)
+            val gathered = selection.select(acceptableCoins, amount.quantity)
+            if (gathered == null) {
+                val available = Amount(acceptableCoins.fold(0L) { sum, coin -> Math.addExact(sum, coin.state.data.amount.quantity) }, amount.displayTokenSize, amount.token)
+                log.trace { "Insufficient balance: requested $amount, available $available" }
+                throw InsufficientBalanceException(amount - available)
             }
+            val gatheredAmount = Amount(gathered.fold(0L) { sum, coin -> Math.addExact(sum, coin.state.data.amount.quantity) }, amount.displayTokenSize, amount.token)
 
             log.trace { "Gathered coins: requested $amount, available $gatheredAmount, change: ${gatheredAmount - amount}" }
 
@@ -178,7 +179,7 @@ abstract class OnLedgerAsset<T : Any, C : CommandData, S : FungibleAsset<T>> : C
             // highest total value
             acceptableCoins = acceptableCoins.filter { it.state.notary == tx.notary }
 
-            val (gathered, gatheredAmount) = gatherCoins(acceptableCoins, amount)
+            val (gathered, gatheredAmount) = gatherCoins(acceptableCoins, amount, CoinSelection.FirstFit)
             val takeChangeFrom = gathered.lastOrNull()
             val change = if (takeChangeFrom != null && gatheredAmount > amount) {
                 Amount(gatheredAmount.quantity - amount.quantity, takeChangeFrom.state.data.amount.token)
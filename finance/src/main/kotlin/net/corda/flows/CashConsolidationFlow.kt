@@ -0,0 +1,70 @@
+package net.corda.flows
+
+import co.paralleluniverse.fibers.Suspendable
+import net.corda.contracts.asset.Cash
+import net.corda.core.contracts.Amount
+import net.corda.core.contracts.TransactionType
+import net.corda.core.contracts.sumAmountsOrNull
+import net.corda.core.flows.StartableByRPC
+import net.corda.core.identity.AnonymousParty
+import net.corda.core.identity.Party
+import net.corda.core.node.services.unconsumedStates
+import net.corda.core.transactions.SignedTransaction
+import net.corda.core.transactions.TransactionBuilder
+import net.corda.core.utilities.ProgressTracker
+import java.util.*
+
+/**
+ * Merges the smallest unlocked cash states of a currency held in the vault into a single state owned by a fresh key,
+ * so that later spends need fewer inputs and the vault holds fewer rows. Only states of the same issued token and
+ * notary are merged; the group with the most states is chosen. The flow is meant to be started periodically, for
+ * example over RPC when the node is idle.
+ *
+ * @param currency the currency whose states to merge.
+ * @param maxInputs the most states to merge in one transaction.
+ * @return the consolidating transaction, or null if there were fewer than two states to merge.
+ */
+@StartableByRPC
+class CashConsolidationFlow(val currency: Currency,
+                            val maxInputs: Int,
+                            progressTracker: ProgressTracker) : AbstractCashFlow<SignedTransaction?>(progressTracker) {
+    constructor(currency: Currency) : this(currency, 50, tracker())
+
+    companion object {
+        fun tracker() = ProgressTracker(GENERATING_TX, SIGNING_TX, FINALISING_TX)
+    }
+
+    init {
+        require(maxInputs >= 2) { "Must merge at least two states at a time" }
+    }
+
+    @Suspendable
+    @Throws(CashException::class)
+    override fun call(): SignedTransaction? {
+        progressTracker.currentStep = GENERATING_TX
+        val candidates = serviceHub.vaultService.unconsumedStates<Cash.State>(includeSoftLockedStates = false)
+                .filter { it.state.data.amount.token.product == currency }
+                .groupBy { Pair(it.state.data.amount.token, it.state.notary) }
+                .values
+                .maxBy { it.size }
+        if (candidates == null || candidates.size < 2) return null
+        val inputs = candidates.sortedBy { it.state.data.amount.quantity }.take(maxInputs)
+
+        val builder: TransactionBuilder = TransactionType.General.Builder(inputs.first().state.notary)
+        // Reserve the states so that a concurrent spend doesn't select them too.
+        serviceHub.vaultService.softLockReserve(builder.lockId, inputs.map { it.ref }.toSet())
+        val total = inputs.sumAmountsOrNull { it.state.data.amount }!!
+        val owner = AnonymousParty(serviceHub.keyManagementService.freshKey())
+        inputs.forEach { builder.addInputState(it) }
+        builder.addOutputState(Cash.State(total, owner))
+        val signers = inputs.map { it.state.data.owner.owningKey }.toSet()
+        builder.addCommand(Cash().generateMoveCommand(), signers.toList())
+
+        progressTracker.currentStep = SIGNING_TX
+        val tx = serviceHub.signInitialTransaction(builder, signers)
+
+        progressTracker.currentStep = FINALISING_TX
+        finaliseTx(emptySet<Party>(), tx, "Unable to notarise consolidation")
+        return tx
+    }
+}
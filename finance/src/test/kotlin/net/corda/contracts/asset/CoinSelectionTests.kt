@@ -0,0 +1,58 @@
+package net.corda.contracts.asset
+
+import net.corda.core.contracts.*
+import net.corda.core.crypto.SecureHash
+import net.corda.core.serialization.OpaqueBytes
+import net.corda.core.utilities.DUMMY_NOTARY
+import net.corda.testing.MEGA_CORP
+import net.corda.testing.MINI_CORP
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class CoinSelectionTests {
+    private val megaCorpIssuer = MEGA_CORP.ref(OpaqueBytes.of(1))
+    private val miniCorpIssuer = MINI_CORP.ref(OpaqueBytes.of(1))
+
+    private fun coin(pennies: Long, issuer: PartyAndReference = megaCorpIssuer): StateAndRef<Cash.State> {
+        val state = Cash.State(Amount(pennies, Issued(issuer, USD)), MEGA_CORP)
+        return StateAndRef(TransactionState(state, DUMMY_NOTARY), StateRef(SecureHash.randomSHA256(), 0))
+    }
+
+    private fun List<StateAndRef<Cash.State>>?.quantities() = this?.map { it.state.data.amount.quantity }
+
+    private val coins = listOf(coin(300), coin(50), coin(700), coin(250), coin(100))
+
+    @Test
+    fun `first fit takes coins in order`() {
+        assertEquals(listOf(300L, 50L, 700L), CoinSelection.FirstFit.select(coins, 1000).quantities())
+        assertNull(CoinSelection.FirstFit.select(coins, 1401))
+    }
+
+    @Test
+    fun `largest first spends the fewest coins`() {
+        assertEquals(listOf(700L, 300L), CoinSelection.LargestFirst.select(coins, 1000).quantities())
+    }
+
+    @Test
+    fun `smallest sufficient keeps large coins intact`() {
+        assertEquals(listOf(250L), CoinSelection.SmallestSufficient.select(coins, 200).quantities())
+        assertEquals(listOf(700L, 300L), CoinSelection.SmallestSufficient.select(coins, 800).quantities())
+    }
+
+    @Test
+    fun `branch and bound finds an exact match`() {
+        assertEquals(listOf(700L, 50L), CoinSelection.BranchAndBound().select(coins, 750).quantities())
+        assertEquals(listOf(300L, 250L, 100L), CoinSelection.BranchAndBound().select(coins, 650).quantities())
+        // No exact match for 1001, so it falls back to largest first.
+        assertEquals(listOf(700L, 300L, 250L), CoinSelection.BranchAndBound().select(coins, 1001).quantities())
+        assertNull(CoinSelection.BranchAndBound().select(coins, 1401))
+    }
+
+    @Test
+    fun `consolidating sweeps dust of the main token`() {
+        val withDust = coins + coin(5) + coin(7) + coin(3, miniCorpIssuer)
+        val strategy = CoinSelection.Consolidating(CoinSelection.LargestFirst, dustThreshold = 10, maxExtraInputs = 5)
+        assertEquals(listOf(700L, 5L, 7L), strategy.select(withDust, 600).quantities())
+    }
+}
@@ -827,6 +827,15 @@ class ObligationTests {
         assertEquals(expected, actual)
     }
 
+    @Test
+    fun `extracting amounts due rejects states for other terms`() {
+        val fiveKPoundsFromMegaToMini = Obligation.State(Lifecycle.NORMAL, MEGA_CORP, megaCorpPoundSettlement,
+                5000.POUNDS.quantity, MINI_CORP)
+        assertFailsWith<IllegalArgumentException> {
+            extractAmountsDue(megaCorpDollarSettlement, listOf(fiveKPoundsFromMegaToMini))
+        }
+    }
+
     @Test
     fun `netting equal balances due between parties`() {
         // Now try it with two balances, which cancel each other out
@@ -880,4 +889,71 @@ class ObligationTests {
         val actual = sumAmountsDue(balanced)
         assertEquals(expected, actual)
     }
+
+    @Test
+    fun `multilateral netting cancels cycles of obligations`() {
+        val netting = MultilateralNetting<AbstractParty>()
+        netting.add(ALICE, BOB, 100)
+        netting.add(BOB, CHARLIE, 100)
+        netting.add(CHARLIE, ALICE, 100)
+        assertEquals(emptyMap<AbstractParty, Long>(), netting.netPositions())
+        assertEquals(emptyList<MultilateralNetting.Payment<AbstractParty>>(), netting.settlements())
+    }
+
+    @Test
+    fun `multilateral netting settles a chain with one payment per creditor`() {
+        val netting = MultilateralNetting<AbstractParty>()
+        netting.add(ALICE, BOB, 100)
+        netting.add(BOB, CHARLIE, 60)
+        assertEquals(mapOf<AbstractParty, Long>(ALICE to -100L, BOB to 40L, CHARLIE to 60L), netting.netPositions())
+        assertEquals(listOf<MultilateralNetting.Payment<AbstractParty>>(
+                MultilateralNetting.Payment(ALICE, BOB, 40),
+                MultilateralNetting.Payment(ALICE, CHARLIE, 60)
+        ), netting.settlements())
+    }
+
+    @Test
+    fun `multilateral netting settles with the fewest payments`() {
+        val netting = MultilateralNetting<AbstractParty>()
+        netting.add(ALICE, CHARLIE, 3)
+        netting.add(ALICE, MINI_CORP, 2)
+        netting.add(BOB, MINI_CORP, 3)
+        // Matching debtors with creditors in order would take three payments.
+        assertEquals(setOf<MultilateralNetting.Payment<AbstractParty>>(
+                MultilateralNetting.Payment(ALICE, MINI_CORP, 5),
+                MultilateralNetting.Payment(BOB, CHARLIE, 3)
+        ), netting.settlements().toSet())
+    }
+
+    @Test
+    fun `generate payment netting transactions split by connected parties`() {
+        fun stateAndRef(state: Obligation.State<Currency>) = StateAndRef(TransactionState(state, DUMMY_NOTARY), StateRef(SecureHash.randomSHA256(), 0))
+        val aliceToBob = stateAndRef(oneMillionDollars.OBLIGATION between Pair(ALICE, BOB))
+        val bobToAlice = stateAndRef((2000000.DOLLARS `issued by` defaultIssuer).OBLIGATION between Pair(BOB, ALICE))
+        val charlieToMiniCorp = stateAndRef(oneMillionDollars.OBLIGATION between Pair(CHARLIE, MINI_CORP))
+        val miniCorpToMegaCorp = stateAndRef(oneMillionDollars.OBLIGATION between Pair(MINI_CORP, MEGA_CORP))
+        val megaCorpToMiniCorp = stateAndRef(oneMillionDollars.OBLIGATION between Pair(MEGA_CORP, MINI_CORP))
+
+        val builders = Obligation<Currency>().generatePaymentNettingTransactions(
+                listOf(aliceToBob, charlieToMiniCorp, bobToAlice, miniCorpToMegaCorp, megaCorpToMiniCorp), DUMMY_NOTARY, 3)
+
+        assertEquals(2, builders.size)
+        val first = builders[0].toWireTransaction()
+        assertEquals(setOf(aliceToBob.ref, bobToAlice.ref), first.inputs.toSet())
+        assertEquals(listOf(oneMillionDollars.OBLIGATION between Pair(BOB, ALICE)), first.outputs.map { it.data })
+        val second = builders[1].toWireTransaction()
+        assertEquals(setOf(miniCorpToMegaCorp.ref, megaCorpToMiniCorp.ref), second.inputs.toSet())
+        assertTrue(second.outputs.isEmpty())
+    }
+
+    @Test
+    fun `generate payment netting transactions leaves obligations which can't be reduced`() {
+        fun stateAndRef(state: Obligation.State<Currency>) = StateAndRef(TransactionState(state, DUMMY_NOTARY), StateRef(SecureHash.randomSHA256(), 0))
+        val aliceToBob = stateAndRef(oneMillionDollars.OBLIGATION between Pair(ALICE, BOB))
+        val aliceToCharlie = stateAndRef(oneMillionDollars.OBLIGATION between Pair(ALICE, CHARLIE))
+
+        val builders = Obligation<Currency>().generatePaymentNettingTransactions(listOf(aliceToBob, aliceToCharlie), DUMMY_NOTARY, 10)
+
+        assertTrue(builders.isEmpty())
+    }
 }
@@ -0,0 +1,11 @@
+package net.corda.plugins
+
+/**
+ * Settings of the {@link QuasarPlugin}, available as the "quasar" block of a project.
+ */
+class QuasarExtension {
+    /** Whether the classes in the project's JAR should be instrumented at build time rather than by the node. */
+    boolean instrumentAheadOfTime = false
+    /** Whether the instrumentation task should list each method it instruments. */
+    boolean verbose = false
+}
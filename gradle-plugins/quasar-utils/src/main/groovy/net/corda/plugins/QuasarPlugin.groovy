@@ -7,8 +7,17 @@ import org.gradle.api.tasks.JavaExec
 
 /**
  * QuasarPlugin creates a "quasar" configuration and adds quasar as a dependency.
+ *
+ * It also adds a "quasarInstrument" task which instruments the project's compiled classes ahead of time. Quasar's
+ * agent recognises classes it has already instrumented and leaves them alone, so a node loading such a JAR doesn't
+ * have to analyse and rewrite its suspendable methods at class-load time. The task writes the instrumented classes to
+ * their own directory. Set "quasar.instrumentAheadOfTime = true" to package those in the project's JAR in place of the
+ * compiled classes; the JAR is then marked with a "Quasar-Instrumented" manifest attribute.
  */
 class QuasarPlugin implements Plugin<Project> {
+    /** Read by the node, as AbstractNode.QUASAR_INSTRUMENTED_MANIFEST_ATTRIBUTE, to tell which CorDapps are instrumented. */
+    static final String INSTRUMENTED_MANIFEST_ATTRIBUTE = "Quasar-Instrumented"
+
     void apply(Project project) {
         project.configurations.create("quasar")
 //        To add a local .jar dependency:
@@ -24,5 +33,51 @@ class QuasarPlugin implements Plugin<Project> {
             jvmArgs "-javaagent:${project.configurations.quasar.singleFile}"
             jvmArgs "-Dco.paralleluniverse.fibers.verifyInstrumentation"
         }
+
+        def extension = project.extensions.create("quasar", QuasarExtension)
+        project.plugins.withId("java") {
+            configureAheadOfTimeInstrumentation(project, extension)
+        }
+    }
+
+    private static void configureAheadOfTimeInstrumentation(Project project, QuasarExtension extension) {
+        def classesDir = project.sourceSets.main.output.classesDir
+        def instrumentedDir = new File(project.buildDir, "quasar-instrumented/main")
+        def instrument = project.task('quasarInstrument') {
+            group = 'build'
+            description = 'Instruments copies of the compiled main classes for Quasar ahead of time.'
+            dependsOn project.tasks.classes
+            inputs.files classesDir
+            inputs.files project.sourceSets.main.compileClasspath
+            outputs.dir instrumentedDir
+            doLast {
+                // Quasar's Ant task rewrites the class files in place, so it's run over a copy of the compiled classes. The
+                // originals are left alone so that compilation stays incremental and this task's outputs stay its own.
+                project.delete instrumentedDir
+                project.copy {
+                    from classesDir
+                    into instrumentedDir
+                }
+                ant.taskdef(name: 'quasarInstrumentation',
+                        classname: 'co.paralleluniverse.fibers.instrument.InstrumentationTask',
+                        classpath: project.files(instrumentedDir, project.sourceSets.main.compileClasspath).asPath)
+                ant.quasarInstrumentation(check: 'true', verbose: "${extension.verbose}", allowMonitors: 'true', allowBlocking: 'true') {
+                    fileset(dir: instrumentedDir)
+                }
+            }
+        }
+        project.afterEvaluate {
+            instrument.inputs.property('verbose', extension.verbose)
+            if (extension.instrumentAheadOfTime) {
+                def classesPath = classesDir.toPath()
+                project.tasks.jar {
+                    dependsOn instrument
+                    // The instrumented copies take the place of the compiled classes, and everything else is kept.
+                    from instrumentedDir
+                    exclude { it.file.toPath().startsWith(classesPath) }
+                    manifest.attributes((INSTRUMENTED_MANIFEST_ATTRIBUTE): 'true')
+                }
+            }
+        }
     }
 }
@@ -13,6 +13,11 @@ object VerifierApi {
     val VERIFICATION_RESPONSES_QUEUE_NAME_PREFIX = "verifier.responses"
     private val VERIFICATION_ID_FIELD_NAME = "id"
     private val RESULT_EXCEPTION_FIELD_NAME = "result-exception"
+    private val BATCH_FIELD_NAME = "batch"
+
+    private fun ClientMessage.isBatch() = containsProperty(BATCH_FIELD_NAME) && getBooleanProperty(BATCH_FIELD_NAME)
+
+    private fun ClientMessage.bodyBytes() = ByteArray(bodySize).apply { bodyBuffer.readBytes(this) }
 
     data class VerificationRequest(
             val verificationId: Long,
@@ -23,10 +28,29 @@ object VerifierApi {
             fun fromClientMessage(message: ClientMessage): VerificationRequest {
                 return VerificationRequest(
                         message.getLongProperty(VERIFICATION_ID_FIELD_NAME),
-                        ByteArray(message.bodySize).apply { message.bodyBuffer.readBytes(this) }.deserialize(),
+                        message.bodyBytes().deserialize(),
                         MessageUtil.getJMSReplyTo(message)
                 )
             }
+
+            /** Reads the requests carried by [message], which may hold a single request or a batch. */
+            fun listFromClientMessage(message: ClientMessage): List<VerificationRequest> {
+                if (!message.isBatch()) return listOf(fromClientMessage(message))
+                val responseAddress = MessageUtil.getJMSReplyTo(message)
+                return message.bodyBytes().deserialize<List<Pair<Long, LedgerTransaction>>>().map { (verificationId, transaction) ->
+                    VerificationRequest(verificationId, transaction, responseAddress)
+                }
+            }
+
+            /** Writes several requests, which must share a response address, into a single message. */
+            fun writeBatchToClientMessage(requests: List<VerificationRequest>, message: ClientMessage) {
+                if (requests.size == 1) return requests[0].writeToClientMessage(message)
+                val responseAddress = requests.first().responseAddress
+                require(requests.all { it.responseAddress == responseAddress }) { "All requests in a batch must have the same response address" }
+                message.putBooleanProperty(BATCH_FIELD_NAME, true)
+                message.writeBodyBufferBytes(requests.map { Pair(it.verificationId, it.transaction) }.serialize().bytes)
+                MessageUtil.setJMSReplyTo(message, responseAddress)
+            }
         }
 
         fun writeToClientMessage(message: ClientMessage) {
@@ -47,13 +71,43 @@ object VerifierApi {
                         message.getBytesProperty(RESULT_EXCEPTION_FIELD_NAME)?.deserialize()
                 )
             }
+
+            /** Reads the responses carried by [message], which may hold a single response or a batch. */
+            fun listFromClientMessage(message: ClientMessage): List<VerificationResponse> {
+                if (!message.isBatch()) return listOf(fromClientMessage(message))
+                return message.bodyBytes().deserialize<List<Pair<Long, Throwable?>>>().map { (verificationId, exception) ->
+                    VerificationResponse(verificationId, exception)
+                }
+            }
+
+            /** Writes several responses into a single message. */
+            fun writeBatchToClientMessage(responses: List<VerificationResponse>, message: ClientMessage) {
+                if (responses.size == 1) return responses[0].writeToClientMessage(message)
+                message.putBooleanProperty(BATCH_FIELD_NAME, true)
+                message.writeBodyBufferBytes(responses.map { Pair(it.verificationId, it.serializableException()) }.serialize().bytes)
+            }
         }
 
         fun writeToClientMessage(message: ClientMessage) {
             message.putLongProperty(VERIFICATION_ID_FIELD_NAME, verificationId)
+            val exception = serializableException()
             if (exception != null) {
                 message.putBytesProperty(RESULT_EXCEPTION_FIELD_NAME, exception.serialize().bytes)
             }
         }
+
+        /**
+         * The [exception], or if it can't be serialised (e.g. it is thrown by contract code and not whitelisted) a
+         * generic one describing it, so that it doesn't fail the other responses in a batch.
+         */
+        private fun serializableException(): Throwable? {
+            if (exception == null) return null
+            return try {
+                exception.serialize()
+                exception
+            } catch (e: Exception) {
+                IllegalStateException("Verification failed with ${exception.javaClass.name}, which could not be serialised: ${exception.message}")
+            }
+        }
     }
 }
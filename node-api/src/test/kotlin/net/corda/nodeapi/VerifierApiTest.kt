@@ -0,0 +1,77 @@
+package net.corda.nodeapi
+
+import net.corda.core.contracts.TransactionType
+import net.corda.core.crypto.SecureHash
+import net.corda.core.transactions.LedgerTransaction
+import org.apache.activemq.artemis.api.core.Message
+import org.apache.activemq.artemis.api.core.SimpleString
+import org.apache.activemq.artemis.api.core.client.ClientMessage
+import org.apache.activemq.artemis.core.client.impl.ClientMessageImpl
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.Test
+
+class VerifierApiTest {
+    private val responseAddress = SimpleString("${VerifierApi.VERIFICATION_RESPONSES_QUEUE_NAME_PREFIX}.test")
+
+    @Test
+    fun `batch of requests round trips`() {
+        val requests = (1L..3L).map { VerifierApi.VerificationRequest(it, ledgerTransaction(), responseAddress) }
+        val message = createMessage()
+        VerifierApi.VerificationRequest.writeBatchToClientMessage(requests, message)
+        val received = VerifierApi.VerificationRequest.listFromClientMessage(message)
+        assertThat(received.map { it.verificationId }).containsExactly(1L, 2L, 3L)
+        assertThat(received.map { it.transaction.id }).isEqualTo(requests.map { it.transaction.id })
+        assertThat(received.map { it.responseAddress }).containsOnly(responseAddress)
+    }
+
+    @Test
+    fun `single request uses the single message format`() {
+        val request = VerifierApi.VerificationRequest(1L, ledgerTransaction(), responseAddress)
+        val message = createMessage()
+        VerifierApi.VerificationRequest.writeBatchToClientMessage(listOf(request), message)
+        val received = VerifierApi.VerificationRequest.fromClientMessage(message)
+        assertThat(received.verificationId).isEqualTo(1L)
+        assertThat(received.transaction.id).isEqualTo(request.transaction.id)
+    }
+
+    @Test
+    fun `batch of responses round trips`() {
+        val responses = listOf(
+                VerifierApi.VerificationResponse(1L, null),
+                VerifierApi.VerificationResponse(2L, IllegalArgumentException("Bad transaction")))
+        val message = createMessage()
+        VerifierApi.VerificationResponse.writeBatchToClientMessage(responses, message)
+        val received = VerifierApi.VerificationResponse.listFromClientMessage(message)
+        assertThat(received.map { it.verificationId }).containsExactly(1L, 2L)
+        assertThat(received[0].exception).isNull()
+        assertThat(received[1].exception).isInstanceOf(IllegalArgumentException::class.java).hasMessage("Bad transaction")
+    }
+
+    @Test
+    fun `exception which cannot be serialised only replaces its own response`() {
+        val responses = listOf(
+                VerifierApi.VerificationResponse(1L, UnlistedException()),
+                VerifierApi.VerificationResponse(2L, IllegalArgumentException("Bad transaction")),
+                VerifierApi.VerificationResponse(3L, null))
+        val message = createMessage()
+        VerifierApi.VerificationResponse.writeBatchToClientMessage(responses, message)
+        val received = VerifierApi.VerificationResponse.listFromClientMessage(message)
+        assertThat(received.map { it.verificationId }).containsExactly(1L, 2L, 3L)
+        assertThat(received[0].exception).isInstanceOf(IllegalStateException::class.java)
+        assertThat(received[0].exception!!.message).contains(UnlistedException::class.java.name)
+        assertThat(received[1].exception).isInstanceOf(IllegalArgumentException::class.java)
+        assertThat(received[2].exception).isNull()
+    }
+
+    private fun createMessage(): ClientMessage {
+        return ClientMessageImpl(Message.DEFAULT_TYPE, false, 0, System.currentTimeMillis(), 4, 1024)
+    }
+
+    private fun ledgerTransaction(): LedgerTransaction {
+        return LedgerTransaction(emptyList(), emptyList(), emptyList(), emptyList(), SecureHash.randomSHA256(), null,
+                emptyList(), null, TransactionType.General)
+    }
+
+    /** Not whitelisted for serialisation. */
+    private class UnlistedException : Exception("Thrown by contract code")
+}
@@ -15,4 +15,11 @@ interface Attachment : Persistable {
     @get:Column(name = "content")
     @get:Convert(BlobConverter::class)
     var content: ByteArray
+
+    /**
+     * Where the content is stored if it is kept in a file rather than in [content], relative to the attachment store
+     * directory. Null if the content is in the database.
+     */
+    @get:Column(name = "content_file", nullable = true)
+    var contentFile: String?
 }
\ No newline at end of file
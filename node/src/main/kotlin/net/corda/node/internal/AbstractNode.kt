@@ -81,9 +81,12 @@ import java.security.KeyStoreException
 import java.security.cert.*
 import java.time.Clock
 import java.util.*
+import java.util.concurrent.Callable
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit.SECONDS
+import java.util.jar.JarFile
 import java.util.stream.Collectors.toList
 import kotlin.collections.ArrayList
 import kotlin.reflect.KClass
@@ -103,6 +106,13 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
                             val advertisedServices: Set<ServiceInfo>,
                             val platformClock: Clock,
                             @VisibleForTesting val busyNodeLatch: ReusableLatch = ReusableLatch()) : SingletonSerializeAsToken() {
+    companion object {
+        /**
+         * The manifest attribute which the quasar-utils gradle plugin sets on a JAR whose classes it has instrumented ahead
+         * of time. This must match QuasarPlugin.INSTRUMENTED_MANIFEST_ATTRIBUTE, as the node can't depend on the plugin.
+         */
+        const val QUASAR_INSTRUMENTED_MANIFEST_ATTRIBUTE = "Quasar-Instrumented"
+    }
 
     // TODO: Persist this, as well as whether the node is registered.
     /**
@@ -151,7 +161,8 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
         override val rpcFlows: List<Class<out FlowLogic<*>>> get() = this@AbstractNode.rpcFlows
 
         // Internal only
-        override val monitoringService: MonitoringService = MonitoringService(MetricRegistry())
+        // Lazy as the configuration may be overridden by a subclass, and so not be set yet.
+        override val monitoringService: MonitoringService by lazy { MonitoringService(MetricRegistry(), configuration.detailedMetrics) }
 
         override fun <T> startFlow(logic: FlowLogic<T>, flowInitiator: FlowInitiator): FlowStateMachineImpl<T> {
             return serverThread.fetchFrom { smm.add(logic, flowInitiator) }
@@ -189,6 +200,8 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
     lateinit var netMapCache: NetworkMapCacheInternal
     lateinit var scheduler: NodeSchedulerService
     lateinit var schemas: SchemaService
+    /** Shared by the vault query service and the observer which persists states to their schemas. */
+    protected lateinit var hibernateConfig: HibernateConfiguration
     lateinit var auditService: AuditService
     protected val runOnStop = ArrayList<() -> Any?>()
     lateinit var database: Database
@@ -230,11 +243,18 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
         }
 
         log.info("Node starting up ...")
+        val startupTimer = StartupTimer(services.monitoringService.metrics)
+        // Scanning the CorDapps doesn't need the database, so it's done in the background while the services are built.
+        val cordappScanner = Executors.newSingleThreadExecutor { Thread(it, "CorDapp scanner").apply { isDaemon = true } }
+        val cordappScan = cordappScanner.submit(Callable { startupTimer.phase("ScanCordapps") { scanCordapps() } })
+        cordappScanner.shutdown()
 
         // Do all of this in a database transaction so anything that might need a connection has one.
         initialiseDatabasePersistence {
-            val keyStoreWrapper = KeyStoreWrapper(configuration.trustStoreFile, configuration.trustStorePassword)
-            val tokenizableServices = makeServices(keyStoreWrapper)
+            val tokenizableServices = startupTimer.phase("MakeServices") {
+                val keyStoreWrapper = KeyStoreWrapper(configuration.trustStoreFile, configuration.trustStorePassword)
+                makeServices(keyStoreWrapper)
+            }
 
             smm = StateMachineManager(services,
                     checkpointStorage,
@@ -259,16 +279,18 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
                 isPreviousCheckpointsPresent = true
                 false
             }
-            startMessagingService(rpcOps)
+            startupTimer.phase("StartMessaging") { startMessagingService(rpcOps) }
             installCoreFlows()
 
-            val scanResult = scanCordapps()
-            if (scanResult != null) {
-                installCordaServices(scanResult)
-                registerInitiatedFlows(scanResult)
-                rpcFlows = findRPCFlows(scanResult)
-            } else {
-                rpcFlows = emptyList()
+            startupTimer.phase("InstallCordapps") {
+                val scanResult = cordappScan.getOrThrow()
+                if (scanResult != null) {
+                    installCordaServices(scanResult)
+                    registerInitiatedFlows(scanResult)
+                    rpcFlows = findRPCFlows(scanResult)
+                } else {
+                    rpcFlows = emptyList()
+                }
             }
 
             // TODO: Investigate having class path scanning find this flow
@@ -280,11 +302,12 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
 
             runOnStop += network::stop
             _networkMapRegistrationFuture.setFuture(registerWithNetworkMapIfConfigured())
-            smm.start()
+            startupTimer.phase("StartStateMachines") { smm.start() }
             // Shut down the SMM so no Fibers are scheduled.
             runOnStop += { smm.stop(acceptableLiveFiberCountOnStop()) }
             scheduler.start()
         }
+        log.info("Node started in ${startupTimer.report()}")
         started = true
         return this
     }
@@ -350,7 +373,16 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
     private fun handleCustomNotaryService(service: NotaryService) {
         runOnStop += service::stop
         service.start()
+        installNotaryFlows(service)
+    }
+
+    private fun installNotaryFlows(service: NotaryService) {
         installCoreFlow(NotaryFlow.Client::class, { party: Party, version: Int -> service.createServiceFlow(party, version) })
+        installCoreFlow(NotaryFlow.BatchClient::class, { party: Party, version: Int ->
+            service.createBatchServiceFlow(party, version) ?:
+                    throw SessionRejectException("${service.javaClass.name} does not support batch notarisation",
+                            "Batch notarisation request from $party rejected")
+        })
     }
 
     private inline fun <reified A : Annotation> Class<*>.requireAnnotation(): A {
@@ -446,7 +478,8 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
                         // TODO Remove all Cash flows from default list once they are split into separate CorDapp.
                         CashIssueFlow::class.java,
                         CashExitFlow::class.java,
-                        CashPaymentFlow::class.java)
+                        CashPaymentFlow::class.java,
+                        CashConsolidationFlow::class.java)
     }
 
     /**
@@ -486,7 +519,9 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
         network = makeMessagingService()
         schemas = makeSchemaService()
         vault = makeVaultService(configuration.dataSourceProperties)
-        vaultQuery = makeVaultQueryService(schemas)
+        // Creates or updates the tables of the registered schemas now, as part of the start-up transaction.
+        hibernateConfig = HibernateConfiguration(schemas)
+        vaultQuery = makeVaultQueryService(hibernateConfig)
         txVerifierService = makeTransactionVerifierService()
         auditService = DummyAuditService()
 
@@ -535,11 +570,20 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
         }
 
         log.info("Scanning CorDapps in $paths")
+        val notInstrumented = paths.filter { it.toString().endsWith(".jar") && !isInstrumentedAheadOfTime(it) }
+        if (notInstrumented.isNotEmpty()) {
+            log.info("CorDapps not instrumented ahead of time, which Quasar will instrument as they load: $notInstrumented")
+        }
 
         // This will only scan the plugin jars and nothing else
         return if (paths.isNotEmpty()) FastClasspathScanner().overrideClasspath(paths).scan() else null
     }
 
+    /** Whether the JAR was built with the quasar-utils plugin's ahead of time instrumentation. */
+    private fun isInstrumentedAheadOfTime(jar: Path): Boolean {
+        return JarFile(jar.toFile()).use { it.manifest?.mainAttributes?.getValue(QUASAR_INSTRUMENTED_MANIFEST_ATTRIBUTE) == "true" }
+    }
+
     private fun <T : Any> ScanResult.getClassesWithAnnotation(type: KClass<T>, annotation: KClass<out Annotation>): List<Class<out T>> {
         fun loadClass(className: String): Class<out T>? {
             return try {
@@ -567,7 +611,7 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
         VaultSoftLockManager(vault, smm)
         CashBalanceAsMetricsObserver(services, database)
         ScheduledActivityObserver(services)
-        HibernateObserver(vault.rawUpdates, HibernateConfiguration(schemas))
+        HibernateObserver(vault.rawUpdates, hibernateConfig)
     }
 
     private fun makeInfo(): NodeInfo {
@@ -615,7 +659,7 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
     protected open fun initialiseDatabasePersistence(insideTransaction: () -> Unit) {
         val props = configuration.dataSourceProperties
         if (props.isNotEmpty()) {
-            val (toClose, database) = configureDatabase(props)
+            val (toClose, database) = configureDatabase(props, services.monitoringService.metrics)
             this.database = database
             // Now log the vendor string as this will also cause a connection to be tested eagerly.
             log.info("Connected to ${database.vendor} database.")
@@ -699,7 +743,7 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
     }
 
     protected open fun makeKeyManagementService(identityService: IdentityService): KeyManagementService {
-        return PersistentKeyManagementService(identityService, partyKeys)
+        return PersistentKeyManagementService(identityService, partyKeys, services.monitoringService.metrics)
     }
 
     open protected fun makeNetworkMapService() {
@@ -724,7 +768,7 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
             runOnStop += this::stop
             start()
         }
-        installCoreFlow(NotaryFlow.Client::class, { party: Party, version: Int -> service.createServiceFlow(party, version) })
+        installNotaryFlows(service)
     }
 
     protected open fun makeIdentityService(trustRoot: X509Certificate,
@@ -747,7 +791,7 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
     // TODO: sort out ordering of open & protected modifiers of functions in this class.
     protected open fun makeVaultService(dataSourceProperties: Properties): VaultService = NodeVaultService(services, dataSourceProperties)
 
-    protected open fun makeVaultQueryService(schemas: SchemaService): VaultQueryService = HibernateVaultQueryImpl(HibernateConfiguration(schemas), vault.updatesPublisher)
+    protected open fun makeVaultQueryService(hibernateConfig: HibernateConfiguration): VaultQueryService = HibernateVaultQueryImpl(hibernateConfig, vault.updatesPublisher)
 
     protected open fun makeSchemaService(): SchemaService = NodeSchemaService(pluginRegistries.flatMap { it.requiredSchemas }.toSet())
 
@@ -842,7 +886,8 @@ abstract class AbstractNode(open val configuration: NodeConfiguration,
 
     private fun createAttachmentStorage(): NodeAttachmentService {
         val attachmentsDir = (configuration.baseDirectory / "attachments").createDirectories()
-        return NodeAttachmentService(attachmentsDir, configuration.dataSourceProperties, services.monitoringService.metrics)
+        return NodeAttachmentService(attachmentsDir, configuration.dataSourceProperties, services.monitoringService.metrics,
+                configuration.attachmentContentOnDisk)
     }
 }
 
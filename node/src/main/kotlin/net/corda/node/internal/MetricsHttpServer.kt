@@ -0,0 +1,76 @@
+package net.corda.node.internal
+
+import com.codahale.metrics.*
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.common.net.HostAndPort
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import java.net.InetSocketAddress
+
+/**
+ * Serves a snapshot of the node's metrics as JSON at `/metrics`, for tools which cannot use JMX. It uses the HTTP
+ * server built into the JDK, on a single thread of its own, so costs nothing until it is asked for the metrics.
+ * Durations are in milliseconds and rates are per second.
+ */
+class MetricsHttpServer(address: HostAndPort, private val metrics: MetricRegistry) {
+    companion object {
+        const val PATH = "/metrics"
+        private const val NANOS_PER_MILLI = 1e6
+    }
+
+    private val mapper = ObjectMapper()
+    private val server = HttpServer.create(InetSocketAddress(address.host, address.port), 0).apply {
+        createContext(PATH) { exchange ->
+            try {
+                respond(exchange)
+            } finally {
+                exchange.close()
+            }
+        }
+    }
+
+    /** The address the server is listening on, which has the actual port if the port asked for was zero. */
+    val address: InetSocketAddress get() = server.address
+
+    fun start() = server.start()
+
+    fun stop() = server.stop(0)
+
+    private fun respond(exchange: HttpExchange) {
+        if (exchange.requestMethod != "GET") {
+            exchange.sendResponseHeaders(405, -1)
+            return
+        }
+        val body = mapper.writeValueAsBytes(snapshot())
+        exchange.responseHeaders.add("Content-Type", "application/json")
+        exchange.sendResponseHeaders(200, body.size.toLong())
+        exchange.responseBody.write(body)
+    }
+
+    private fun snapshot(): Map<String, Any?> {
+        return metrics.metrics.entries.sortedBy { it.key }.associate { (name, metric) -> name to describe(metric) }
+    }
+
+    private fun describe(metric: Metric): Any? = when (metric) {
+        is Gauge<*> -> metric.value
+        is Counter -> mapOf("count" to metric.count)
+        is Timer -> mapOf("count" to metric.count) + rates(metric) + distribution(metric.snapshot, NANOS_PER_MILLI)
+        is Histogram -> mapOf("count" to metric.count) + distribution(metric.snapshot, 1.0)
+        is Meter -> mapOf("count" to metric.count) + rates(metric)
+        else -> metric.toString()
+    }
+
+    private fun rates(metered: Metered) = mapOf(
+            "meanRate" to metered.meanRate,
+            "oneMinuteRate" to metered.oneMinuteRate,
+            "fiveMinuteRate" to metered.fiveMinuteRate,
+            "fifteenMinuteRate" to metered.fifteenMinuteRate)
+
+    private fun distribution(snapshot: Snapshot, divisor: Double) = mapOf(
+            "min" to snapshot.min / divisor,
+            "mean" to snapshot.mean / divisor,
+            "p50" to snapshot.median / divisor,
+            "p95" to snapshot.get95thPercentile() / divisor,
+            "p99" to snapshot.get99thPercentile() / divisor,
+            "max" to snapshot.max / divisor)
+}
@@ -315,6 +315,12 @@ open class Node(override val configuration: FullNodeConfiguration,
                     }.
                     build().
                     start()
+            configuration.metricsHttpAddress?.let {
+                val metricsServer = MetricsHttpServer(it, services.monitoringService.metrics)
+                metricsServer.start()
+                runOnStop += metricsServer::stop
+                log.info("Serving metrics over HTTP at http://${metricsServer.address.hostString}:${metricsServer.address.port}${MetricsHttpServer.PATH}")
+            }
 
             (startupComplete as SettableFuture<Unit>).set(Unit)
         }
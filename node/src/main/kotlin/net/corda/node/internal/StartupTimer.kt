@@ -0,0 +1,33 @@
+package net.corda.node.internal
+
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.MetricRegistry
+import java.util.concurrent.TimeUnit
+
+/**
+ * Times the phases of node start-up, so that a slow start can be attributed to the database, the services or the
+ * CorDapps. Each phase's duration is published as a gauge named `Startup.<phase>`, in milliseconds.
+ */
+class StartupTimer(private val metrics: MetricRegistry) {
+    private val phases = LinkedHashMap<String, Long>()
+    private val startNanos = System.nanoTime()
+
+    fun <T> phase(name: String, block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            val millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            synchronized(phases) { phases[name] = millis }
+            metrics.remove("Startup.$name")
+            metrics.register("Startup.$name", Gauge<Long> { millis })
+        }
+    }
+
+    /** A summary of the phases, in the order they finished, and of the time taken overall. */
+    fun report(): String {
+        val total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        val breakdown = synchronized(phases) { phases.entries.joinToString { "${it.key} ${it.value} ms" } }
+        return "$total ms ($breakdown)"
+    }
+}
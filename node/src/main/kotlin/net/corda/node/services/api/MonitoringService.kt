@@ -2,10 +2,37 @@ package net.corda.node.services.api
 
 import com.codahale.metrics.MetricRegistry
 import net.corda.core.serialization.SingletonSerializeAsToken
+import java.util.concurrent.TimeUnit
 
 
 /**
  * Provides access to various metrics and ways to notify monitoring services of things, for sysadmin purposes.
  * This is not an interface because it is too lightweight to bother mocking out.
+ *
+ * Besides the metrics which are always kept, the node can record a detailed breakdown of where time goes: how long each
+ * class of flow spends suspended and checkpointing, how large its checkpoints are, and how long messaging, the vault and
+ * the notary take. There are many of these, so they are only recorded if [detailedMetrics] is set. Otherwise recording
+ * one costs a field read, and callers building metric names should check [detailedMetrics] first.
  */
-class MonitoringService(val metrics: MetricRegistry) : SingletonSerializeAsToken()
+class MonitoringService(val metrics: MetricRegistry, val detailedMetrics: Boolean = false) : SingletonSerializeAsToken() {
+    /** Records a duration in the timer [name], if detailed metrics are enabled. */
+    fun recordNanos(name: String, nanos: Long) {
+        if (detailedMetrics) metrics.timer(name).update(nanos, TimeUnit.NANOSECONDS)
+    }
+
+    /** Records a value, such as a size, in the histogram [name], if detailed metrics are enabled. */
+    fun recordValue(name: String, value: Long) {
+        if (detailedMetrics) metrics.histogram(name).update(value)
+    }
+
+    /** Runs [block], recording how long it took in the timer [name] if detailed metrics are enabled. */
+    inline fun <T> time(name: String, block: () -> T): T {
+        if (!detailedMetrics) return block()
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            recordNanos(name, System.nanoTime() - start)
+        }
+    }
+}
@@ -90,7 +90,9 @@ interface ServiceHubInternal : PluginServiceHub {
 
     override fun recordTransactions(txs: Iterable<SignedTransaction>) {
         val stateMachineRunId = FlowStateMachineImpl.currentStateMachine()?.id
-        val recordedTransactions = txs.filter { validatedTransactions.addTransaction(it) }
+        val recordedTransactions = monitoringService.time("Transactions.Storage.Duration") {
+            txs.filter { validatedTransactions.addTransaction(it) }
+        }
         if (stateMachineRunId != null) {
             recordedTransactions.forEach {
                 stateMachineRecordedTransactionMapping.addMapping(stateMachineRunId, it.id)
@@ -98,7 +100,7 @@ interface ServiceHubInternal : PluginServiceHub {
         } else {
             log.warn("Transactions recorded from outside of a state machine")
         }
-        vaultService.notifyAll(recordedTransactions.map { it.tx })
+        monitoringService.time("Vault.NotifyAll.Duration") { vaultService.notifyAll(recordedTransactions.map { it.tx }) }
     }
 
     /**
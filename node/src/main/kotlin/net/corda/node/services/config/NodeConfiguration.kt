@@ -29,6 +29,9 @@ interface NodeConfiguration : NodeSSLConfiguration {
     val bftReplicaId: Int?
     val notaryNodeAddress: HostAndPort?
     val notaryClusterAddresses: List<HostAndPort>
+    val attachmentContentOnDisk: Boolean
+    val parallelContractVerification: Boolean
+    val detailedMetrics: Boolean
 }
 
 data class FullNodeConfiguration(
@@ -62,7 +65,11 @@ data class FullNodeConfiguration(
         override val certificateChainCheckPolicies: List<CertChainPolicyConfig>,
         override val devMode: Boolean = false,
         val useTestClock: Boolean = false,
-        val detectPublicIp: Boolean = true
+        val detectPublicIp: Boolean = true,
+        override val attachmentContentOnDisk: Boolean = false,
+        override val parallelContractVerification: Boolean = false,
+        override val detailedMetrics: Boolean = false,
+        val metricsHttpAddress: HostAndPort? = null
 ) : NodeConfiguration {
     /** This is not retrieved from the config file but rather from a command line argument. */
     @Suppress("DEPRECATION")
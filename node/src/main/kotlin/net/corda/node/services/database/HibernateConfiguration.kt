@@ -16,28 +16,54 @@ import org.hibernate.service.UnknownUnwrapTypeException
 import org.jetbrains.exposed.sql.transactions.TransactionManager
 import java.sql.Connection
 import java.util.concurrent.ConcurrentHashMap
+import javax.persistence.Embeddable
 
 class HibernateConfiguration(val schemaService: SchemaService, val useDefaultLogging: Boolean = false) {
     constructor(schemaService: SchemaService) : this(schemaService, false)
 
     companion object {
         val logger = loggerFor<HibernateConfiguration>()
+
+        /**
+         * Describes what a mapped type contributes to the tables generated for it: its fields and their types, and the
+         * JPA and Hibernate annotations on the class and its members (table name and indexes, column length and
+         * nullability and so on), for the type and each of its superclasses, such as [net.corda.core.schemas.PersistentState],
+         * and for the embeddable types of its fields, such as [net.corda.core.schemas.PersistentStateRef].
+         */
+        internal fun describeMapping(type: Class<*>): String {
+            return generateSequence(type) { it.superclass }.takeWhile { it != Any::class.java }.joinToString("<") { clazz ->
+                val fields = clazz.declaredFields.filterNot { it.isSynthetic }.map {
+                    val embedded = if (it.type.isAnnotationPresent(Embeddable::class.java)) "{${describeMapping(it.type)}}" else ""
+                    "${it.name}:${it.genericType.typeName}${describeAnnotations(it.annotations)}$embedded"
+                }
+                val methods = clazz.declaredMethods.filterNot { it.isSynthetic }.mapNotNull {
+                    val annotations = describeAnnotations(it.annotations)
+                    if (annotations.isEmpty()) null else "${it.name}()$annotations"
+                }
+                clazz.name + describeAnnotations(clazz.annotations) + (fields + methods).sorted().joinToString(",", "(", ")")
+            }
+        }
+
+        private fun describeAnnotations(annotations: Array<Annotation>): String {
+            return annotations.filter {
+                val name = it.annotationClass.java.name
+                name.startsWith("javax.persistence.") || name.startsWith("org.hibernate.annotations.")
+            }.map { it.toString() }.sorted().joinToString("")
+        }
     }
 
     // TODO: make this a guava cache or similar to limit ability for this to grow forever.
     val sessionFactories = ConcurrentHashMap<MappedSchema, SessionFactory>()
 
-    init {
-        schemaService.schemaOptions.map { it.key }.forEach { mappedSchema ->
-            sessionFactories.computeIfAbsent(mappedSchema, { makeSessionFactoryForSchema(mappedSchema) })
-        }
-    }
+    // A single session factory maps the types of all of the registered schemas, so their metadata is built once.  It is
+    // built here, in the node's start-up transaction, so that any schema update is done then rather than in the
+    // transaction of whichever flow happens to persist a state first.
+    private val registeredSessionFactory: SessionFactory = makeSessionFactoryForSchemas(schemaService.schemaOptions.keys.iterator())
 
-    fun sessionFactoryForRegisteredSchemas(): SessionFactory {
-        return sessionFactoryForSchemas(*schemaService.schemaOptions.map { it.key }.toTypedArray())
-    }
+    fun sessionFactoryForRegisteredSchemas(): SessionFactory = registeredSessionFactory
 
     fun sessionFactoryForSchema(schema: MappedSchema): SessionFactory {
+        if (schema in schemaService.schemaOptions) return registeredSessionFactory
         return sessionFactories.computeIfAbsent(schema, { sessionFactoryForSchemas(schema) })
     }
 
@@ -45,30 +71,38 @@ class HibernateConfiguration(val schemaService: SchemaService, val useDefaultLog
         return makeSessionFactoryForSchemas(schemas.iterator())
     }
 
-    private fun makeSessionFactoryForSchema(schema: MappedSchema): SessionFactory {
-        return makeSessionFactoryForSchemas(setOf(schema).iterator())
-    }
-
     private fun makeSessionFactoryForSchemas(schemas: Iterator<MappedSchema>): SessionFactory {
-        logger.info("Creating session factory for schemas: $schemas")
+        val schemaList = schemas.asSequence().toList()
+        logger.info("Creating session factory for schemas: $schemaList")
+        // Skip Hibernate's check of every table against the database metadata if the schemas haven't changed.
+        val versions = schemaList.associate { "hibernate:${it.name}" to schemaVersion(it) }
+        val schemasAreCurrent = SchemaVersions.areCurrent(versions)
         val serviceRegistry = BootstrapServiceRegistryBuilder().build()
         val metadataSources = MetadataSources(serviceRegistry)
         // We set a connection provider as the auto schema generation requires it.  The auto schema generation will not
         // necessarily remain and would likely be replaced by something like Liquibase.  For now it is very convenient though.
         // TODO: replace auto schema generation as it isn't intended for production use, according to Hibernate docs.
         val config = Configuration(metadataSources).setProperty("hibernate.connection.provider_class", HibernateConfiguration.NodeDatabaseConnectionProvider::class.java.name)
-                .setProperty("hibernate.hbm2ddl.auto", "update")
+                .setProperty("hibernate.hbm2ddl.auto", if (schemasAreCurrent) "none" else "update")
+                // Fail rather than log a failed update, so that the schema versions aren't recorded without their tables.
+                .setProperty("hibernate.hbm2ddl.halt_on_error", "true")
                 .setProperty("hibernate.show_sql", "$useDefaultLogging")
                 .setProperty("hibernate.format_sql", "$useDefaultLogging")
-        schemas.forEach { schema ->
+        schemaList.forEach { schema ->
             // TODO: require mechanism to set schemaOptions (databaseSchema, tablePrefix) which are not global to session
             schema.mappedTypes.forEach { config.addAnnotatedClass(it) }
         }
         val sessionFactory = buildSessionFactory(config, metadataSources, "")
-        logger.info("Created session factory for schemas: $schemas")
+        if (!schemasAreCurrent) SchemaVersions.record(versions)
+        logger.info("Created session factory for schemas: $schemaList")
         return sessionFactory
     }
 
+    private fun schemaVersion(schema: MappedSchema): String {
+        val description = schema.mappedTypes.sortedBy { it.name }.joinToString(";") { describeMapping(it) }
+        return SchemaVersions.fingerprint("${schema.version}|$description")
+    }
+
     private fun buildSessionFactory(config: Configuration, metadataSources: MetadataSources, tablePrefix: String): SessionFactory {
         config.standardServiceRegistryBuilder.applySettings(config.properties)
         val metadata = metadataSources.getMetadataBuilder(config.standardServiceRegistryBuilder.build()).run {
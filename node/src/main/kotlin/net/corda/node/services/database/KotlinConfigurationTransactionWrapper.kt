@@ -15,16 +15,15 @@ import net.corda.core.schemas.requery.converters.StateRefConverter
 import net.corda.core.schemas.requery.converters.VaultStateStatusConverter
 import org.jetbrains.exposed.sql.transactions.TransactionManager
 import java.sql.Connection
+import java.sql.Savepoint
 import java.util.*
 import java.util.concurrent.Executor
-import javax.sql.DataSource
 
 /**
  * Requery KotlinConfiguration wrapper class to enable us to pass in an existing database connection and
  * associated transaction context.
  */
 class KotlinConfigurationTransactionWrapper(private val model: EntityModel,
-                                            dataSource: DataSource,
                                             private val mapping: Mapping? = null,
                                             private val platform: Platform? = null,
                                             private val cache: EntityCache = WeakEntityCache(),
@@ -42,7 +41,7 @@ class KotlinConfigurationTransactionWrapper(private val model: EntityModel,
                                             private val transactionListeners: Set<Supplier<TransactionListener>> = LinkedHashSet(),
                                             private val writeExecutor: Executor? = null) : Configuration {
 
-    private val connectionProvider = CordaDataSourceConnectionProvider(dataSource)
+    private val connectionProvider = CordaTransactionConnectionProvider()
 
     override fun getBatchUpdateSize(): Int {
         return batchUpdateSize
@@ -127,7 +126,8 @@ class KotlinConfigurationTransactionWrapper(private val model: EntityModel,
         return writeExecutor
     }
 
-    class CordaDataSourceConnectionProvider(val dataSource: DataSource) : ConnectionProvider {
+    /** Hands out the connection of the current Exposed transaction, so Requery shares the node's single pool. */
+    class CordaTransactionConnectionProvider : ConnectionProvider {
         override fun getConnection(): Connection {
             val tx = TransactionManager.manager.currentOrNull()
             return CordaConnection(
@@ -136,7 +136,14 @@ class KotlinConfigurationTransactionWrapper(private val model: EntityModel,
         }
     }
 
+    /**
+     * The connection of the enclosing Exposed transaction, as seen by a Requery transaction. Requery transactions are
+     * nested in the enclosing one using a savepoint rather than committing the connection themselves, so their changes
+     * are committed, or rolled back, together with everything else done in that transaction.
+     */
     class CordaConnection(val connection: Connection) : Connection by connection {
+        private var savepoint: Savepoint? = null
+
         override fun close() {
             // TODO: address requery auto-closing the connection in SchemaModifier upon table creation
             // https://github.com/requery/requery/issues/424
@@ -146,6 +153,19 @@ class KotlinConfigurationTransactionWrapper(private val model: EntityModel,
             // TODO: address requery bug in ConnectionTransaction commit()
             // https://github.com/requery/requery/issues/423
             connection.autoCommit = false
+            // Requery begins a transaction by disabling auto-commit.
+            if (!autoCommit && savepoint == null) savepoint = connection.setSavepoint()
+        }
+
+        override fun commit() {
+            savepoint?.let { connection.releaseSavepoint(it) }
+            savepoint = null
+        }
+
+        override fun rollback() {
+            val savepoint = this.savepoint ?: return connection.rollback()
+            connection.rollback(savepoint)
+            this.savepoint = null
         }
     }
 }
\ No newline at end of file
@@ -1,7 +1,5 @@
 package net.corda.node.services.database
 
-import com.zaxxer.hikari.HikariConfig
-import com.zaxxer.hikari.HikariDataSource
 import io.requery.Persistable
 import io.requery.meta.EntityModel
 import io.requery.sql.KotlinEntityDataStore
@@ -13,6 +11,11 @@ import java.sql.Connection
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * Provides Requery sessions for entity models. Sessions have no connection pool of their own: they run on the
+ * connection of the current Exposed transaction, and their transactions nest within it (see
+ * [KotlinConfigurationTransactionWrapper.CordaConnection]).
+ */
 class RequeryConfiguration(val properties: Properties, val useDefaultLogging: Boolean = false) {
 
     companion object {
@@ -27,24 +30,58 @@ class RequeryConfiguration(val properties: Properties, val useDefaultLogging: Bo
     // 5. Consider database schema deployment/upgrade strategies to replace dynamic table creation.
 
     // Note: Annotations are pre-processed using (kapt) so no need to register dynamically
-    val config = HikariConfig(properties)
-    val dataSource = HikariDataSource(config)
 
     // TODO: make this a guava cache or similar to limit ability for this to grow forever.
     private val sessionFactories = ConcurrentHashMap<EntityModel, KotlinEntityDataStore<Persistable>>()
 
-    fun sessionForModel(model: EntityModel): KotlinEntityDataStore<Persistable> {
-        return sessionFactories.computeIfAbsent(model, { makeSessionFactoryForModel(it) })
+    /**
+     * Returns a session for [model], creating its tables if they don't exist. If the model has changed since its tables
+     * were last brought up to date, [migrations] are run to make the changes that creating missing tables can't, and
+     * start-up fails if any of the model's columns is still missing afterwards.
+     */
+    fun sessionForModel(model: EntityModel, migrations: List<SchemaMigration> = emptyList()): KotlinEntityDataStore<Persistable> {
+        return sessionFactories.computeIfAbsent(model, { makeSessionFactoryForModel(it, migrations) })
     }
 
-    fun makeSessionFactoryForModel(model: EntityModel): KotlinEntityDataStore<Persistable> {
-        val configuration = KotlinConfigurationTransactionWrapper(model, dataSource, useDefaultLogging = this.useDefaultLogging)
-        val tables = SchemaModifier(configuration)
-        val mode = TableCreationMode.CREATE_NOT_EXISTS
-        tables.createTables(mode)
+    fun makeSessionFactoryForModel(model: EntityModel, migrations: List<SchemaMigration> = emptyList()): KotlinEntityDataStore<Persistable> {
+        val configuration = KotlinConfigurationTransactionWrapper(model, useDefaultLogging = this.useDefaultLogging)
+        val name = "requery:${model.name}"
+        val version = schemaVersion(model)
+        // The tables are created, migrated and checked, and the version recorded, all in the enclosing transaction.
+        if (SchemaVersions.recordedVersion(name) != version) {
+            val tables = SchemaModifier(configuration)
+            val mode = TableCreationMode.CREATE_NOT_EXISTS
+            tables.createTables(mode)
+            val connection = jdbcSession()
+            migrations.forEach { it.migrate(connection) }
+            checkColumnsExist(model, connection)
+            SchemaVersions.record(mapOf(name to version))
+        }
         return KotlinEntityDataStore(configuration)
     }
 
+    private fun checkColumnsExist(model: EntityModel, connection: Connection) {
+        val missing = model.types.flatMap { type ->
+            val existing = columnNames(connection, type.name)
+            type.attributes
+                    .filter { !it.isAssociation || it.isForeignKey }
+                    .filter { it.name.toLowerCase(Locale.ROOT) !in existing }
+                    .map { "${type.name}.${it.name}" }
+        }
+        check(missing.isEmpty()) {
+            "Schema ${model.name} has changed since its tables were created, and no migration adds the columns $missing"
+        }
+    }
+
+    private fun schemaVersion(model: EntityModel): String {
+        val description = model.types.sortedBy { it.name }.joinToString(";") { type ->
+            type.name + type.attributes.sortedBy { it.name }.joinToString(",", "(", ")") {
+                "${it.name}:${it.classType.name}:${it.length}:${it.isNullable}:${it.isKey}:${it.isUnique}:${it.indexNames.sorted()}"
+            }
+        }
+        return SchemaVersions.fingerprint(description)
+    }
+
     // TODO: remove once Requery supports QUERY WITH COMPOSITE_KEY IN
     fun jdbcSession(): Connection {
         val ctx = TransactionManager.manager.currentOrNull()
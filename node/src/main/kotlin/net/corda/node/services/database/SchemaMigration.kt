@@ -0,0 +1,39 @@
+package net.corda.node.services.database
+
+import java.sql.Connection
+import java.util.*
+
+/**
+ * A change to the existing tables of a Requery entity model which [io.requery.sql.TableCreationMode.CREATE_NOT_EXISTS]
+ * can't make, such as adding a column to a table created by an earlier version of the node. Migrations are run whenever
+ * the version recorded for their model isn't its current one, including when none is recorded, so each must leave
+ * tables which already have its change alone.
+ */
+interface SchemaMigration {
+    fun migrate(connection: Connection)
+}
+
+/** Adds [column], declared as [definition], to [table] if the table doesn't have it already. */
+class AddColumn(val table: String, val column: String, val definition: String) : SchemaMigration {
+    override fun migrate(connection: Connection) {
+        if (column.toLowerCase(Locale.ROOT) in columnNames(connection, table)) return
+        connection.createStatement().use {
+            it.execute("ALTER TABLE $table ADD COLUMN $column $definition")
+        }
+    }
+}
+
+/** The names of the columns of [table], in lower case, or none if there is no such table. */
+internal fun columnNames(connection: Connection, table: String): Set<String> {
+    val metaData = connection.metaData
+    val escape = metaData.searchStringEscape
+    val names = HashSet<String>()
+    // Unquoted names may be stored in either case, depending on the database.
+    for (name in setOf(table, table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT))) {
+        val pattern = name.replace(escape, escape + escape).replace("_", "${escape}_").replace("%", "$escape%")
+        metaData.getColumns(null, null, pattern, null).use {
+            while (it.next()) names += it.getString("COLUMN_NAME").toLowerCase(Locale.ROOT)
+        }
+    }
+    return names
+}
@@ -0,0 +1,65 @@
+package net.corda.node.services.database
+
+import net.corda.core.crypto.SecureHash
+import net.corda.node.utilities.NODE_DATABASE_PREFIX
+import org.jetbrains.exposed.sql.transactions.TransactionManager
+import java.sql.Connection
+
+/**
+ * Records the version of each set of tables created by Hibernate and Requery in the node's database, so that their
+ * DDL checks, which inspect the database metadata table by table, are only made at start-up when a schema is new or
+ * has changed since it was last created. A version is a fingerprint of the schema's mapped types, so a change to an
+ * entity during development is picked up without bumping a version number by hand.
+ *
+ * The table is read and written in the enclosing transaction, so that a version is only recorded along with the DDL
+ * that brought its schema up to date. Without an enclosing transaction there is no database to use, so every schema is
+ * treated as out of date.
+ */
+object SchemaVersions {
+    const val TABLE_NAME = "${NODE_DATABASE_PREFIX}schema_versions"
+
+    /** Returns true if every one of [versions], keyed by schema name, is the one recorded in the database. */
+    fun areCurrent(versions: Map<String, String>): Boolean {
+        return inCurrentTransaction { connection ->
+            versions.all { (name, version) -> recordedVersion(connection, name) == version }
+        } ?: false
+    }
+
+    /** Returns the version recorded for the schema called [name], or null if there is none. */
+    fun recordedVersion(name: String): String? = inCurrentTransaction { recordedVersion(it, name) }
+
+    /** Records [versions], keyed by schema name, as those whose tables now exist. */
+    fun record(versions: Map<String, String>) {
+        inCurrentTransaction { connection ->
+            for ((name, version) in versions) {
+                connection.prepareStatement("DELETE FROM $TABLE_NAME WHERE schema_name = ?").use {
+                    it.setString(1, name)
+                    it.executeUpdate()
+                }
+                connection.prepareStatement("INSERT INTO $TABLE_NAME (schema_name, schema_version) VALUES (?, ?)").use {
+                    it.setString(1, name)
+                    it.setString(2, version)
+                    it.executeUpdate()
+                }
+            }
+        }
+    }
+
+    /** A fingerprint of the given description of a schema, suitable for use as its version. */
+    fun fingerprint(description: String): String = SecureHash.sha256(description).toString()
+
+    private fun recordedVersion(connection: Connection, name: String): String? {
+        return connection.prepareStatement("SELECT schema_version FROM $TABLE_NAME WHERE schema_name = ?").use {
+            it.setString(1, name)
+            it.executeQuery().use { if (it.next()) it.getString(1) else null }
+        }
+    }
+
+    private fun <T> inCurrentTransaction(block: (Connection) -> T): T? {
+        val connection = TransactionManager.manager.currentOrNull()?.connection ?: return null
+        connection.createStatement().use {
+            it.execute("CREATE TABLE IF NOT EXISTS $TABLE_NAME (schema_name VARCHAR(255) NOT NULL PRIMARY KEY, schema_version VARCHAR(64) NOT NULL)")
+        }
+        return block(connection)
+    }
+}
@@ -1,5 +1,6 @@
 package net.corda.node.services.events
 
+import com.google.common.primitives.UnsignedBytes
 import com.google.common.util.concurrent.SettableFuture
 import net.corda.core.ThreadBox
 import net.corda.core.contracts.SchedulableState
@@ -21,6 +22,7 @@ import org.jetbrains.exposed.sql.Database
 import org.jetbrains.exposed.sql.ResultRow
 import org.jetbrains.exposed.sql.statements.InsertStatement
 import java.time.Instant
+import java.util.*
 import java.util.concurrent.Executor
 import java.util.concurrent.Executors
 import javax.annotation.concurrent.ThreadSafe
@@ -50,6 +52,11 @@ class NodeSchedulerService(private val services: ServiceHubInternal,
 
     companion object {
         private val log = loggerFor<NodeSchedulerService>()
+
+        // Activities for different states may be due at the same time, so they are told apart by their state reference.
+        private val scheduleOrder = compareBy<ScheduledStateRef> { it.scheduledAt }
+                .thenBy(UnsignedBytes.lexicographicalComparator()) { it.ref.txhash.bytes }
+                .thenBy { it.ref.index }
     }
 
     private object Table : JDBCHashedTable("${NODE_DATABASE_PREFIX}scheduled_states") {
@@ -78,11 +85,15 @@ class NodeSchedulerService(private val services: ServiceHubInternal,
             }
 
         }
+        // The values of [scheduledStates] ordered by time, so the earliest activity can be found without sorting every
+        // scheduled state. It must be kept in step with the map whenever an entry is added, replaced or removed.
+        val scheduledQueue = TreeSet<ScheduledStateRef>(scheduleOrder).apply { addAll(scheduledStates.values) }
         var earliestState: ScheduledStateRef? = null
         var rescheduled: SettableFuture<Boolean>? = null
 
         internal fun recomputeEarliest() {
-            earliestState = scheduledStates.values.sortedBy { it.scheduledAt }.firstOrNull()
+            // Use the instance held in the map as that is what is compared against when the activity fires.
+            earliestState = scheduledQueue.firstOrNull()?.let { scheduledStates[it.ref] }
         }
     }
 
@@ -99,9 +110,13 @@ class NodeSchedulerService(private val services: ServiceHubInternal,
     override fun scheduleStateActivity(action: ScheduledStateRef) {
         log.trace { "Schedule $action" }
         mutex.locked {
-            if (scheduledStates.put(action.ref, action) == null) {
+            val previousAction = scheduledStates.put(action.ref, action)
+            if (previousAction == null) {
                 unfinishedSchedules.countUp()
+            } else {
+                scheduledQueue -= previousAction
             }
+            scheduledQueue += action
             if (action.scheduledAt.isBefore(earliestState?.scheduledAt ?: Instant.MAX)) {
                 // We are earliest
                 earliestState = action
@@ -119,6 +134,7 @@ class NodeSchedulerService(private val services: ServiceHubInternal,
         mutex.locked {
             val removedAction = scheduledStates.remove(ref)
             if (removedAction != null) {
+                scheduledQueue -= removedAction
                 unfinishedSchedules.countDown()
                 if (removedAction == earliestState) {
                     recomputeEarliest()
@@ -181,13 +197,14 @@ class NodeSchedulerService(private val services: ServiceHubInternal,
             // need to remove us from those scheduled, but only if we are still next
             scheduledStates.compute(scheduledState.ref) { _, value ->
                 if (value === scheduledState) {
+                    scheduledQueue -= value
                     if (scheduledActivity == null) {
                         log.info("Scheduled state $scheduledState has rescheduled to never.")
                         unfinishedSchedules.countDown()
                         null
                     } else if (scheduledActivity.scheduledAt.isAfter(services.clock.instant())) {
                         log.info("Scheduled state $scheduledState has rescheduled to ${scheduledActivity.scheduledAt}.")
-                        ScheduledStateRef(scheduledState.ref, scheduledActivity.scheduledAt)
+                        ScheduledStateRef(scheduledState.ref, scheduledActivity.scheduledAt).apply { scheduledQueue += this }
                     } else {
                         // TODO: FlowLogicRefFactory needs to sort out the class loader etc
                         val flowLogic = FlowLogicRefFactoryImpl.toFlowLogic(scheduledActivity.logicRef)
@@ -1,7 +1,10 @@
 package net.corda.node.services.identity
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import net.corda.core.contracts.PartyAndReference
 import net.corda.core.crypto.Crypto
+import net.corda.core.crypto.SecureHash
 import net.corda.core.crypto.cert
 import net.corda.core.crypto.subject
 import net.corda.core.crypto.toStringShort
@@ -20,6 +23,7 @@ import java.security.PublicKey
 import java.security.cert.*
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
 import javax.annotation.concurrent.ThreadSafe
 import javax.security.auth.x500.X500Principal
 import kotlin.collections.ArrayList
@@ -40,6 +44,19 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
                 trustRoot: X509CertificateHolder) : this(identities, certPaths, trustRoot.cert)
     companion object {
         private val log = loggerFor<InMemoryIdentityService>()
+        private const val MAX_VALIDATED_ISSUER_PATHS = 10000L
+    }
+
+    /**
+     * The issuing part of a certificate path, which is every certificate but the end one, once it has passed validation.
+     * Holds the parameters for validating an end certificate against the issuer, and the window in which all of the
+     * issuing certificates are valid.
+     */
+    private class ValidatedIssuerPath(certificates: List<X509Certificate>) {
+        val endCertificateParameters = PKIXParameters(setOf(TrustAnchor(certificates.first(), null))).apply { isRevocationEnabled = false }
+        private val notBefore: Date = certificates.map { it.notBefore }.max()!!
+        private val notAfter: Date = certificates.map { it.notAfter }.min()!!
+        fun isValidAt(time: Date) = !time.before(notBefore) && !time.after(notAfter)
     }
 
     /**
@@ -51,12 +68,25 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
     private val keyToParties = ConcurrentHashMap<PublicKey, PartyAndCertificate>()
     private val principalToParties = ConcurrentHashMap<X500Name, PartyAndCertificate>()
     private val partyToPath = ConcurrentHashMap<AbstractParty, CertPath>()
+    private val nameIndex = X500NameIndex()
+    private val validatorParameters = PKIXParameters(setOf(trustAnchor)).apply { isRevocationEnabled = false }
+    // Validators are pooled rather than thread local, as flows move between threads.
+    private val validators = ConcurrentLinkedQueue<CertPathValidator>()
+    /**
+     * The issuing parts of certificate paths which have already been validated, keyed by the fingerprints of their
+     * certificates. A well known identity issues many confidential identities, each with its own end certificate but
+     * all with the same issuing path, so only the end certificate of each has to be validated.
+     */
+    private val validatedIssuerPaths: Cache<List<SecureHash>, ValidatedIssuerPath> = CacheBuilder.newBuilder()
+            .maximumSize(MAX_VALIDATED_ISSUER_PATHS)
+            .build()
 
     init {
         val caCertificatesWithRoot: Set<X509Certificate> = caCertificates.toSet() + trustRoot
         caCertStore = CertStore.getInstance("Collection", CollectionCertStoreParameters(caCertificatesWithRoot))
         keyToParties.putAll(identities.associateBy { it.owningKey } )
         principalToParties.putAll(identities.associateBy { it.name })
+        principalToParties.keys.forEach { nameIndex.add(it) }
         partyToPath.putAll(certPaths)
     }
 
@@ -73,6 +103,7 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
         partyToPath[party.party] = party.certPath
         keyToParties[party.owningKey] = party
         principalToParties[party.name] = party
+        nameIndex.add(party.name)
     }
 
     override fun certificateFromParty(party: Party): PartyAndCertificate? = principalToParties[party.name]
@@ -91,26 +122,8 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
     }
 
     override fun partiesFromName(query: String, exactMatch: Boolean): Set<Party> {
-        val results = HashSet<Party>()
-        for ((x500name, partyAndCertificate) in principalToParties) {
-            val party = partyAndCertificate.party
-            for (rdn in x500name.rdNs) {
-                val component = rdn.first.value.toString()
-                if (exactMatch && component == query) {
-                    results += party
-                } else if (!exactMatch) {
-                    // We can imagine this being a query over a lucene index in future.
-                    //
-                    // Kostas says: We can easily use the Jaro-Winkler distance metric as it is best suited for short
-                    // strings such as entity/company names, and to detect small typos. We can also apply it for city
-                    // or any keyword related search in lists of records (not raw text - for raw text we need indexing)
-                    // and we can return results in hierarchical order (based on normalised String similarity 0.0-1.0).
-                    if (component.contains(query, ignoreCase = true))
-                        results += party
-                }
-            }
-        }
-        return results
+        val names = if (exactMatch) nameIndex.exactMatches(query) else nameIndex.substringMatches(query)
+        return names.mapNotNullTo(HashSet()) { principalToParties[it]?.party }
     }
 
     @Throws(IdentityService.UnknownAnonymousPartyException::class)
@@ -139,14 +152,22 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
         partyToPath[anonymousParty] = path
         keyToParties[anonymousParty.owningKey] = fullParty
         principalToParties[fullParty.name] = fullParty
+        nameIndex.add(fullParty.name)
     }
 
     /**
      * Verify that the given certificate path is valid and leads to the owning key of the party.
+     *
+     * The issuing part of the path is validated against the trust root once, and then cached for as long as all of its
+     * certificates are valid, as nothing else that its validation depends on can change: the trust root is fixed and
+     * revocation is not checked. The end certificate is always validated, against its issuer.
      */
-    private fun validateCertificatePath(party: AbstractParty, path: CertPath): PKIXCertPathValidatorResult {
+    private fun validateCertificatePath(party: AbstractParty, path: CertPath) {
+        require(path.certificates.all { it is X509Certificate }) { "Certificate path must only contain X.509 certificates" }
+        @Suppress("UNCHECKED_CAST")
+        val certificates = path.certificates as List<X509Certificate>
         // Check that the path ends with a certificate for the correct party.
-        val endCertificate = path.certificates.first()
+        val endCertificate = certificates.first()
         // Ensure the key is in the correct format for comparison.
         // TODO: Replace with a Bouncy Castle cert path so we can avoid Sun internal classes appearing unexpectedly.
         //       For now we have to deal with this potentially being an [X509Key] which is Sun's equivalent to
@@ -154,9 +175,36 @@ class InMemoryIdentityService(identities: Iterable<PartyAndCertificate> = emptyS
         val endKey = Crypto.decodePublicKey(endCertificate.publicKey.encoded)
         require(endKey == party.owningKey) { "Certificate path validation must end at owning key ${party.owningKey.toStringShort()}, found ${endKey.toStringShort()}" }
 
-        val validatorParameters = PKIXParameters(setOf(trustAnchor))
-        val validator = CertPathValidator.getInstance("PKIX")
-        validatorParameters.isRevocationEnabled = false
-        return validator.validate(path, validatorParameters) as PKIXCertPathValidatorResult
+        if (certificates.size == 1) {
+            validate(path, validatorParameters)
+        } else {
+            val issuerPath = validatedIssuerPath(certificates.drop(1))
+            val certFactory = CertificateFactory.getInstance("X509")
+            validate(certFactory.generateCertPath(listOf(endCertificate)), issuerPath.endCertificateParameters)
+        }
+    }
+
+    private fun validatedIssuerPath(certificates: List<X509Certificate>): ValidatedIssuerPath {
+        val fingerprints = certificates.map { SecureHash.sha256(it.encoded) }
+        val validated = validatedIssuerPaths.getIfPresent(fingerprints)
+        if (validated != null && validated.isValidAt(Date())) return validated
+
+        // Validating the issuing path on its own treats the issuer as an end certificate, so the constraints that
+        // validating the whole path would place on it, and on the authorities above it, are checked here.
+        certificates.forEachIndexed { index, certificate ->
+            require(certificate == trustRoot || certificate.basicConstraints >= index) { "Certificate ${certificate.subject} may not issue certificates at this depth" }
+        }
+        val certFactory = CertificateFactory.getInstance("X509")
+        validate(certFactory.generateCertPath(certificates), validatorParameters)
+        return ValidatedIssuerPath(certificates).apply { validatedIssuerPaths.put(fingerprints, this) }
+    }
+
+    private fun validate(path: CertPath, parameters: PKIXParameters) {
+        val validator = validators.poll() ?: CertPathValidator.getInstance("PKIX")
+        try {
+            validator.validate(path, parameters)
+        } finally {
+            validators.offer(validator)
+        }
     }
 }
@@ -0,0 +1,62 @@
+package net.corda.node.services.identity
+
+import org.bouncycastle.asn1.x500.X500Name
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import javax.annotation.concurrent.ThreadSafe
+
+/**
+ * An index of the components of X.500 names, for finding names by a component without scanning every name.
+ *
+ * Exact lookups are a single hash lookup. Case insensitive substring lookups, which lower case in the root locale so
+ * that matching doesn't depend on the node's default locale, use an index of the trigrams of each
+ * distinct component: only the components containing the query's rarest trigram are checked, so the cost depends on
+ * how many components could match rather than on how many names there are. Queries shorter than a trigram check
+ * every distinct component, which is still fewer than the names when components are shared (countries, for example).
+ *
+ * Names are only ever added, as identities are never removed from the identity service.
+ */
+@ThreadSafe
+class X500NameIndex {
+    private companion object {
+        const val GRAM_SIZE = 3
+    }
+
+    private val exact = ConcurrentHashMap<String, MutableSet<X500Name>>()
+    private val byLowerCaseComponent = ConcurrentHashMap<String, MutableSet<X500Name>>()
+    private val componentsByTrigram = ConcurrentHashMap<String, MutableSet<String>>()
+
+    fun add(name: X500Name) {
+        for (rdn in name.rdNs) {
+            val component = rdn.first.value.toString()
+            exact.getOrPut(component) { ConcurrentHashMap.newKeySet() }.add(name)
+            val lowerCase = component.toLowerCase(Locale.ROOT)
+            byLowerCaseComponent.getOrPut(lowerCase) { ConcurrentHashMap.newKeySet() }.add(name)
+            for (trigram in trigramsOf(lowerCase)) {
+                componentsByTrigram.getOrPut(trigram) { ConcurrentHashMap.newKeySet() }.add(lowerCase)
+            }
+        }
+    }
+
+    /** Returns the names with a component equal to [query]. */
+    fun exactMatches(query: String): Set<X500Name> = exact[query] ?: emptySet()
+
+    /** Returns the names with a component containing [query], ignoring case. */
+    fun substringMatches(query: String): Set<X500Name> {
+        // We can imagine this being a query over a lucene index in future, ranked by a string similarity measure such
+        // as the Jaro-Winkler distance, which suits short strings like entity names and tolerates small typos.
+        val lowerCase = query.toLowerCase(Locale.ROOT)
+        val candidates: Collection<String> = if (lowerCase.length < GRAM_SIZE) {
+            byLowerCaseComponent.keys
+        } else {
+            trigramsOf(lowerCase).map { componentsByTrigram[it] ?: return emptySet() }.minBy { it.size }!!
+        }
+        val results = HashSet<X500Name>()
+        for (component in candidates) {
+            if (component.contains(lowerCase)) byLowerCaseComponent[component]?.let { results += it }
+        }
+        return results
+    }
+
+    private fun trigramsOf(text: String): Set<String> = (0..text.length - GRAM_SIZE).mapTo(HashSet()) { text.substring(it, it + GRAM_SIZE) }
+}
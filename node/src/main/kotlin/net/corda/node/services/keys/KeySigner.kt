@@ -0,0 +1,47 @@
+package net.corda.node.services.keys
+
+import net.corda.core.crypto.Crypto
+import net.corda.core.crypto.DigitalSignature
+import java.security.PrivateKey
+import java.security.PublicKey
+import java.security.Signature
+import java.util.concurrent.ConcurrentLinkedQueue
+import javax.annotation.concurrent.ThreadSafe
+
+/**
+ * Signs with a single private key, keeping a pool of [Signature] engines that have already been initialised with the
+ * key, so that signing does not have to look up the signature scheme and create and initialise a new engine each time.
+ * The pool grows to the number of threads signing with the key at once.
+ */
+@ThreadSafe
+class KeySigner(val publicKey: PublicKey, private val privateKey: PrivateKey) {
+    private val signatureScheme = Crypto.findSignatureScheme(privateKey)
+    private val engines = ConcurrentLinkedQueue<Signature>()
+
+    fun sign(bytes: ByteArray): DigitalSignature.WithKey {
+        checkNotEmpty(bytes)
+        return withEngine { sign(it, bytes) }
+    }
+
+    fun signAll(payloads: List<ByteArray>): List<DigitalSignature.WithKey> {
+        payloads.forEach { checkNotEmpty(it) }
+        return withEngine { engine -> payloads.map { sign(engine, it) } }
+    }
+
+    private fun checkNotEmpty(bytes: ByteArray) {
+        if (bytes.isEmpty()) throw Exception("Signing of an empty array is not permitted!")
+    }
+
+    private fun sign(engine: Signature, bytes: ByteArray): DigitalSignature.WithKey {
+        engine.update(bytes)
+        return DigitalSignature.WithKey(publicKey, engine.sign())
+    }
+
+    private inline fun <T> withEngine(block: (Signature) -> T): T {
+        val engine = engines.poll() ?: Crypto.newSignature(signatureScheme).apply { initSign(privateKey) }
+        // An engine which failed part way through may hold a partial message, so only return it to the pool on success.
+        val result = block(engine)
+        engines.offer(engine)
+        return result
+    }
+}
@@ -1,10 +1,12 @@
 package net.corda.node.services.keys
 
+import com.codahale.metrics.MetricRegistry
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import net.corda.core.ThreadBox
 import net.corda.core.crypto.DigitalSignature
 import net.corda.core.crypto.generateKeyPair
 import net.corda.core.crypto.keys
-import net.corda.core.crypto.sign
 import net.corda.core.identity.PartyAndCertificate
 import net.corda.core.node.services.IdentityService
 import net.corda.core.node.services.KeyManagementService
@@ -25,10 +27,16 @@ import java.security.cert.CertPath
  *
  * This is not the long-term implementation.  See the list of items in the above class.
  *
- * This class needs database transactions to be in-flight during method calls and init.
+ * This class needs database transactions to be in-flight during method calls and init, except when signing with a key
+ * that has been used recently: the deserialised private keys of recently used keys are held in memory, along with
+ * signature engines already initialised with them.
  */
 class PersistentKeyManagementService(val identityService: IdentityService,
-                                     initialKeys: Set<KeyPair>) : SingletonSerializeAsToken(), KeyManagementService {
+                                     initialKeys: Set<KeyPair>,
+                                     metrics: MetricRegistry) : SingletonSerializeAsToken(), KeyManagementService {
+    private companion object {
+        const val MAX_CACHED_SIGNERS = 1000L
+    }
 
     private object Table : JDBCHashedTable("${NODE_DATABASE_PREFIX}our_key_pairs") {
         val publicKey = publicKey("public_key")
@@ -52,6 +60,15 @@ class PersistentKeyManagementService(val identityService: IdentityService,
     }
 
     private val mutex = ThreadBox(InnerState())
+    // Keys are never removed, so a cached signer never needs invalidating.
+    private val signers: Cache<PublicKey, KeySigner> = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SIGNERS).build()
+
+    // Metrics
+    private fun metric(name: String) = "KeyManagementService.$name"
+
+    private val signTimer = metrics.timer(metric("Sign.Duration"))
+    private val signAllTimer = metrics.timer(metric("SignAll.Duration"))
+    private val signAllBatchSize = metrics.histogram(metric("SignAll.BatchSize"))
 
     init {
         mutex.locked {
@@ -86,10 +103,20 @@ class PersistentKeyManagementService(val identityService: IdentityService,
         }
     }
 
-    override fun sign(bytes: ByteArray, publicKey: PublicKey): DigitalSignature.WithKey {
+    private fun signerFor(publicKey: PublicKey): KeySigner {
+        signers.getIfPresent(publicKey)?.let { return it }
         val keyPair = getSigningKeyPair(publicKey)
-        val signature = keyPair.sign(bytes)
-        return signature
+        val signer = KeySigner(keyPair.public, keyPair.private)
+        signers.put(publicKey, signer)
+        return signer
     }
 
+    override fun sign(bytes: ByteArray, publicKey: PublicKey): DigitalSignature.WithKey {
+        return signTimer.time { signerFor(publicKey).sign(bytes) }
+    }
+
+    override fun signAll(payloads: List<ByteArray>, publicKey: PublicKey): List<DigitalSignature.WithKey> {
+        signAllBatchSize.update(payloads.size)
+        return signAllTimer.time { signerFor(publicKey).signAll(payloads) }
+    }
 }
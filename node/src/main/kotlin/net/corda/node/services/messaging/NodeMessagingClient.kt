@@ -40,6 +40,7 @@ import org.jetbrains.exposed.sql.Database
 import org.jetbrains.exposed.sql.ResultRow
 import org.jetbrains.exposed.sql.statements.InsertStatement
 import java.security.PublicKey
+import java.time.Duration
 import java.time.Instant
 import java.util.*
 import java.util.concurrent.*
@@ -115,7 +116,10 @@ class NodeMessagingClient(override val config: NodeConfiguration,
     val scheduledMessageRedeliveries = ConcurrentHashMap<Long, ScheduledFuture<*>>()
 
     val verifierService = when (config.verifierType) {
-        VerifierType.InMemory -> InMemoryTransactionVerifierService(numberOfWorkers = 4)
+        VerifierType.InMemory -> InMemoryTransactionVerifierService(
+                numberOfWorkers = 4,
+                metrics = monitoringService.metrics,
+                parallelContractVerification = config.parallelContractVerification)
         VerifierType.OutOfProcess -> createOutOfProcessVerifierService()
     }
 
@@ -198,9 +202,11 @@ class NodeMessagingClient(override val config: NodeConfiguration,
             rpcServer = RPCServer(rpcOps, NODE_USER, NODE_USER, locator, userService, config.myLegalName)
 
             fun checkVerifierCount() {
-                if (session.queueQuery(SimpleString(VERIFICATION_REQUESTS_QUEUE_NAME)).consumerCount == 0) {
+                val consumerCount = session.queueQuery(SimpleString(VERIFICATION_REQUESTS_QUEUE_NAME)).consumerCount
+                if (consumerCount == 0) {
                     log.warn("No connected verifier listening on $VERIFICATION_REQUESTS_QUEUE_NAME!")
                 }
+                (verifierService as? OutOfProcessTransactionVerifierService)?.verifierCount = consumerCount
             }
 
             if (config.verifierType == VerifierType.OutOfProcess) {
@@ -354,6 +360,12 @@ class NodeMessagingClient(override val config: NodeConfiguration,
         // Because handlers is a COW list, the loop inside filter will operate on a snapshot. Handlers being added
         // or removed whilst the filter is executing will not affect anything.
         val deliverTo = handlers.filter { it.topicSession.isBlank() || it.topicSession == msg.topicSession }
+        if (monitoringService.detailedMetrics) {
+            // This relies on the sender's clock, so is only a rough measure of the time the message spent in transit.
+            val latency = Duration.between(msg.debugTimestamp, Instant.now())
+            if (!latency.isNegative) monitoringService.recordNanos("Messaging.Deliver.Latency", latency.toNanos())
+        }
+        val deliverStart = System.nanoTime()
         try {
             // This will perform a BLOCKING call onto the executor. Thus if the handlers are slow, we will
             // be slow, and Artemis can handle that case intelligently. We don't just invoke the handler
@@ -382,6 +394,7 @@ class NodeMessagingClient(override val config: NodeConfiguration,
         } catch(e: Exception) {
             log.error("Caught exception whilst executing message handler for ${msg.topicSession}", e)
         }
+        monitoringService.recordNanos("Messaging.Deliver.Duration", System.nanoTime() - deliverStart)
         return true
     }
 
@@ -425,6 +438,12 @@ class NodeMessagingClient(override val config: NodeConfiguration,
     }
 
     override fun send(message: Message, target: MessageRecipients, retryId: Long?) {
+        monitoringService.recordValue("Messaging.Send.Size", message.data.size.toLong())
+        // The duration includes any time spent waiting for the messaging thread.
+        monitoringService.time("Messaging.Send.Duration") { sendOnMessagingThread(message, target, retryId) }
+    }
+
+    private fun sendOnMessagingThread(message: Message, target: MessageRecipients, retryId: Long?) {
         // We have to perform sending on a different thread pool, since using the same pool for messaging and
         // fibers leads to Netty buffer memory leaks, caused by both Netty and Quasar fiddling with thread-locals.
         messagingExecutor.fetchFrom {
@@ -554,12 +573,14 @@ class NodeMessagingClient(override val config: NodeConfiguration,
 
     private fun createOutOfProcessVerifierService(): TransactionVerifierService {
         return object : OutOfProcessTransactionVerifierService(monitoringService) {
-            override fun sendRequest(nonce: Long, transaction: LedgerTransaction) {
+            override fun sendRequests(requests: List<Pair<Long, LedgerTransaction>>) {
                 messagingExecutor.fetchFrom {
                     state.locked {
                         val message = session!!.createMessage(false)
-                        val request = VerifierApi.VerificationRequest(nonce, transaction, SimpleString(verifierResponseAddress))
-                        request.writeToClientMessage(message)
+                        val responseAddress = SimpleString(verifierResponseAddress)
+                        VerifierApi.VerificationRequest.writeBatchToClientMessage(
+                                requests.map { (nonce, transaction) -> VerifierApi.VerificationRequest(nonce, transaction, responseAddress) },
+                                message)
                         producer!!.send(VERIFICATION_REQUESTS_QUEUE_NAME, message)
                     }
                 }
@@ -10,11 +10,13 @@ import net.corda.core.map
 import net.corda.core.messaging.DataFeed
 import net.corda.core.messaging.SingleMessageRecipient
 import net.corda.core.node.NodeInfo
+import net.corda.core.node.ServiceEntry
 import net.corda.core.node.ServiceHub
 import net.corda.core.node.services.DEFAULT_SESSION_ID
 import net.corda.core.node.services.IdentityService
 import net.corda.core.node.services.NetworkMapCache.MapChange
 import net.corda.core.node.services.PartyInfo
+import net.corda.core.node.services.ServiceType
 import net.corda.core.serialization.SingletonSerializeAsToken
 import net.corda.core.serialization.deserialize
 import net.corda.core.serialization.serialize
@@ -29,11 +31,13 @@ import net.corda.node.services.network.NetworkMapService.SubscribeResponse
 import net.corda.node.utilities.AddOrRemove
 import net.corda.node.utilities.bufferUntilDatabaseCommit
 import net.corda.node.utilities.wrapWithDatabaseTransaction
+import org.bouncycastle.asn1.x500.X500Name
 import rx.Observable
 import rx.subjects.PublishSubject
 import java.security.PublicKey
 import java.security.SignatureException
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 import javax.annotation.concurrent.ThreadSafe
 
 /**
@@ -49,7 +53,38 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
         val logger = loggerFor<InMemoryNetworkMapCache>()
     }
 
-    override val partyNodes: List<NodeInfo> get() = registeredNodes.map { it.value }
+    /**
+     * An immutable view of the registered nodes, along with the indexes needed by the lookups done on every message
+     * send. A new snapshot is built whenever a node is added or removed, so readers never need to take a lock.
+     */
+    private class Snapshot(val nodesByKey: Map<PublicKey, NodeInfo>) {
+        val nodes: List<NodeInfo> = nodesByKey.values.toList()
+        // Names shared by more than one node are left out, so an ambiguous lookup gives null as a scan would.
+        val nodesByName: Map<X500Name, NodeInfo> = nodes.groupBy { it.legalIdentity.name }
+                .filterValues { it.size == 1 }
+                .mapValues { it.value.single() }
+        val servicesByParty: Map<Party, ServiceEntry> = HashMap<Party, ServiceEntry>().apply {
+            for (node in nodes) {
+                for (service in node.advertisedServices) {
+                    putIfAbsent(service.identity.party, service)
+                }
+            }
+        }
+        val nodesByServiceKey: Map<PublicKey, List<NodeInfo>> = HashMap<PublicKey, MutableList<NodeInfo>>().apply {
+            for (node in nodes) {
+                // A node may advertise several services under the same identity, but should only be listed once.
+                for (serviceKey in node.advertisedServices.mapTo(HashSet()) { it.identity.owningKey }) {
+                    getOrPut(serviceKey) { ArrayList() } += node
+                }
+            }
+        }
+        // Service types are matched by sub-typing, so results are computed on demand and remembered for this snapshot.
+        val nodesByServiceType = ConcurrentHashMap<ServiceType, List<NodeInfo>>()
+    }
+
+    @Volatile private var snapshot = Snapshot(emptyMap())
+
+    override val partyNodes: List<NodeInfo> get() = snapshot.nodes
     override val networkMapNodes: List<NodeInfo> get() = getNodesWithService(NetworkMapService.type)
     private val _changed = PublishSubject.create<MapChange>()
     // We use assignment here so that multiple subscribers share the same wrapped Observable.
@@ -60,24 +95,50 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
     override val mapServiceRegistered: ListenableFuture<Unit> get() = _registrationFuture
 
     private var registeredForPush = false
-    protected var registeredNodes: MutableMap<PublicKey, NodeInfo> = Collections.synchronizedMap(HashMap())
+
+    /**
+     * Add or replace the registration for a node without firing any change listeners. Returns the previous entry for
+     * the node's legal identity, if any.
+     */
+    protected fun putRegisteredNode(node: NodeInfo): NodeInfo? = synchronized(this) {
+        val current = snapshot.nodesByKey
+        snapshot = Snapshot(current + (node.legalIdentity.owningKey to node))
+        current[node.legalIdentity.owningKey]
+    }
+
+    /** Remove the registration for the given legal identity key without firing any change listeners. */
+    protected fun removeRegisteredNode(identityKey: PublicKey): NodeInfo? = synchronized(this) {
+        val current = snapshot.nodesByKey
+        val previous = current[identityKey]
+        if (previous != null) {
+            snapshot = Snapshot(current - identityKey)
+        }
+        previous
+    }
 
     override fun getPartyInfo(party: Party): PartyInfo? {
-        val node = registeredNodes[party.owningKey]
+        val snapshot = snapshot
+        val node = snapshot.nodesByKey[party.owningKey]
         if (node != null) {
             return PartyInfo.Node(node)
         }
-        for ((_, value) in registeredNodes) {
-            for (service in value.advertisedServices) {
-                if (service.identity.party == party) {
-                    return PartyInfo.Service(service)
-                }
-            }
+        return snapshot.servicesByParty[party]?.let { PartyInfo.Service(it) }
+    }
+
+    override fun getNodesWithService(serviceType: ServiceType): List<NodeInfo> {
+        val snapshot = snapshot
+        return snapshot.nodesByServiceType.computeIfAbsent(serviceType) { type ->
+            snapshot.nodes.filter { it.advertisedServices.any { it.info.type.isSubTypeOf(type) } }
         }
-        return null
     }
 
-    override fun getNodeByLegalIdentityKey(identityKey: PublicKey): NodeInfo? = registeredNodes[identityKey]
+    override fun getNodeByLegalName(principal: X500Name): NodeInfo? = snapshot.nodesByName[principal]
+
+    override fun getNodesByAdvertisedServiceIdentityKey(publicKey: PublicKey): List<NodeInfo> {
+        return snapshot.nodesByServiceKey[publicKey] ?: emptyList()
+    }
+
+    override fun getNodeByLegalIdentityKey(identityKey: PublicKey): NodeInfo? = snapshot.nodesByKey[identityKey]
     override fun getNodeByLegalIdentity(party: AbstractParty): NodeInfo? {
         val wellKnownParty = if (serviceHub != null) {
             serviceHub.identityService.partyFromAnonymous(party)
@@ -120,8 +181,7 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
         val req = NetworkMapService.FetchMapRequest(subscribe, ifChangedSinceVer, network.myAddress)
         val future = network.sendRequest<FetchMapResponse>(NetworkMapService.FETCH_TOPIC, req, networkMapAddress).map { (nodes) ->
             // We may not receive any nodes back, if the map hasn't changed since the version specified
-            nodes?.forEach { processRegistration(it) }
-            Unit
+            if (nodes != null) processRegistrations(nodes)
         }
         _registrationFuture.setFuture(future)
 
@@ -130,7 +190,7 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
 
     override fun addNode(node: NodeInfo) {
         synchronized(_changed) {
-            val previousNode = registeredNodes.put(node.legalIdentity.owningKey, node)
+            val previousNode = putRegisteredNode(node)
             if (previousNode == null) {
                 changePublisher.onNext(MapChange.Added(node))
             } else if (previousNode != node) {
@@ -141,7 +201,7 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
 
     override fun removeNode(node: NodeInfo) {
         synchronized(_changed) {
-            registeredNodes.remove(node.legalIdentity.owningKey)
+            removeRegisteredNode(node.legalIdentity.owningKey)
             changePublisher.onNext(MapChange.Removed(node))
         }
     }
@@ -180,6 +240,38 @@ open class InMemoryNetworkMapCache(private val serviceHub: ServiceHub?) : Single
         }
     }
 
+    /**
+     * Apply a batch of registrations, such as the initial fetch of the map, building the snapshot once rather than once
+     * per registration. Change events are published in the order the registrations were given.
+     */
+    private fun processRegistrations(regs: List<NodeRegistration>) {
+        synchronized(_changed) {
+            val changes = ArrayList<MapChange>(regs.size)
+            synchronized(this) {
+                val nodesByKey = LinkedHashMap(snapshot.nodesByKey)
+                for (reg in regs) {
+                    val key = reg.node.legalIdentity.owningKey
+                    when (reg.type) {
+                        AddOrRemove.ADD -> {
+                            val previousNode = nodesByKey.put(key, reg.node)
+                            if (previousNode == null) {
+                                changes += MapChange.Added(reg.node)
+                            } else if (previousNode != reg.node) {
+                                changes += MapChange.Modified(reg.node, previousNode)
+                            }
+                        }
+                        AddOrRemove.REMOVE -> {
+                            nodesByKey.remove(key)
+                            changes += MapChange.Removed(reg.node)
+                        }
+                    }
+                }
+                snapshot = Snapshot(nodesByKey)
+            }
+            changes.forEach { changePublisher.onNext(it) }
+        }
+    }
+
     @VisibleForTesting
     override fun runWithoutMapService() {
         _registrationFuture.set(Unit)
@@ -8,15 +8,13 @@ import com.google.common.hash.HashingInputStream
 import com.google.common.io.CountingInputStream
 import net.corda.core.contracts.AbstractAttachment
 import net.corda.core.contracts.Attachment
-import net.corda.core.createDirectory
+import net.corda.core.*
 import net.corda.core.crypto.SecureHash
-import net.corda.core.div
-import net.corda.core.extractZipFile
-import net.corda.core.isDirectory
 import net.corda.core.node.services.AttachmentStorage
 import net.corda.core.serialization.*
 import net.corda.core.utilities.loggerFor
 import net.corda.node.services.api.AcceptsFileUpload
+import net.corda.node.services.database.AddColumn
 import net.corda.node.services.database.RequeryConfiguration
 import net.corda.node.services.persistence.schemas.requery.AttachmentEntity
 import net.corda.node.services.persistence.schemas.requery.Models
@@ -25,24 +23,37 @@ import java.io.FilterInputStream
 import java.io.IOException
 import java.io.InputStream
 import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.nio.file.StandardCopyOption.ATOMIC_MOVE
+import java.nio.file.StandardCopyOption.REPLACE_EXISTING
 import java.util.*
 import java.util.jar.JarInputStream
 import javax.annotation.concurrent.ThreadSafe
 
 /**
  * Stores attachments in H2 database.
+ *
+ * If [contentOnDisk] is set then only the attachment metadata goes into the database, and the content itself is
+ * streamed into a file under [storePath] named after its hash. This avoids holding whole attachments in memory when
+ * they are imported or opened.
  */
 @ThreadSafe
-class NodeAttachmentService(override var storePath: Path, dataSourceProperties: Properties, metrics: MetricRegistry)
+class NodeAttachmentService(override var storePath: Path,
+                            dataSourceProperties: Properties,
+                            metrics: MetricRegistry,
+                            contentOnDisk: Boolean = false)
     : AttachmentStorage, AcceptsFileUpload, SingletonSerializeAsToken() {
     companion object {
         private val log = loggerFor<NodeAttachmentService>()
+        private const val CONTENT_DIRECTORY = "content"
+        // Attachment tables created before content could be kept on disk have no column for the file.
+        private val MIGRATIONS = listOf(AddColumn("attachments", "content_file", "VARCHAR(255)"))
     }
 
     val configuration = RequeryConfiguration(dataSourceProperties)
-    val session = configuration.sessionForModel(Models.PERSISTENCE)
+    val session = configuration.sessionForModel(Models.PERSISTENCE, MIGRATIONS)
 
     @VisibleForTesting
     var checkAttachmentsOnLoad = true
@@ -50,8 +61,11 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
     private val attachmentCount = metrics.counter("Attachments")
     @Volatile override var automaticallyExtractAttachments = false
 
+    private val contentDirectory: Path?
+
     init {
         require(storePath.isDirectory()) { "$storePath must be a directory" }
+        contentDirectory = if (contentOnDisk) (storePath / CONTENT_DIRECTORY).createDirectories() else null
 
         session.withTransaction {
             attachmentCount.inc(session.count(AttachmentEntity::class).get().value().toLong())
@@ -71,7 +85,7 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
      */
     @VisibleForTesting @CordaSerializable
     class HashCheckingStream(val expected: SecureHash.SHA256,
-                             val expectedSize: Int,
+                             val expectedSize: Long,
                              input: InputStream,
                              private val counter: CountingInputStream = CountingInputStream(input),
                              private val stream: HashingInputStream = HashingInputStream(Hashing.sha256(), counter)) : FilterInputStream(stream) {
@@ -102,7 +116,7 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
         }
 
         private fun validate() {
-            if (counter.count != expectedSize.toLong()) return
+            if (counter.count != expectedSize) return
 
             val actual = SecureHash.SHA256(hash.asBytes())
             if (actual != expected)
@@ -126,7 +140,7 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
         override fun open(): InputStream {
             val stream = super.open()
             // This is just an optional safety check. If it slows things down too much it can be disabled.
-            return if (checkOnLoad && id is SecureHash.SHA256) HashCheckingStream(id, attachmentData.size, stream) else stream
+            return if (checkOnLoad && id is SecureHash.SHA256) HashCheckingStream(id, attachmentData.size.toLong(), stream) else stream
         }
 
         private class Token(private val id: SecureHash, private val checkOnLoad: Boolean) : SerializationToken {
@@ -137,6 +151,23 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
 
     }
 
+    /**
+     * An attachment whose content lives in a file. [open] streams directly from the file rather than loading it into
+     * memory first, which only happens if the attachment is serialised as a token and resolved elsewhere.
+     */
+    private class FileAttachmentImpl(override val id: SecureHash, private val file: Path, private val checkOnLoad: Boolean) : AbstractAttachment({ file.readAll() }), SerializeAsToken {
+        override fun open(): InputStream {
+            val stream = Files.newInputStream(file)
+            return if (checkOnLoad && id is SecureHash.SHA256) HashCheckingStream(id, Files.size(file), stream) else stream
+        }
+
+        private class Token(private val id: SecureHash, private val checkOnLoad: Boolean) : SerializationToken {
+            override fun fromToken(context: SerializeAsTokenContext) = AttachmentImpl(id, context.attachmentDataLoader(id), checkOnLoad)
+        }
+
+        override fun toToken(context: SerializeAsTokenContext) = Token(id, checkOnLoad)
+    }
+
     override fun openAttachment(id: SecureHash): Attachment? = session.withTransaction {
         try {
             session.select(AttachmentEntity::class)
@@ -146,12 +177,25 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
         } catch (e: NoSuchElementException) {
             null
         }
-    }?.run { AttachmentImpl(id, { content }, checkAttachmentsOnLoad) }
+    }?.run {
+        // Where the content is depends on how the attachment was stored, not on how the store is configured now.
+        val relativePath = contentFile
+        if (relativePath != null) {
+            val file = storePath / relativePath
+            if (!file.isRegularFile()) throw IllegalStateException("Content of attachment $id is missing: expected it in $file")
+            FileAttachmentImpl(id, file, checkAttachmentsOnLoad)
+        } else {
+            AttachmentImpl(id, { content }, checkAttachmentsOnLoad)
+        }
+    }
 
     // TODO: PLT-147: The attachment should be randomised to prevent brute force guessing and thus privacy leaks.
     override fun importAttachment(jar: InputStream): SecureHash {
         require(jar !is JarInputStream)
+        return if (contentDirectory != null) importAttachmentToFile(jar, contentDirectory) else importAttachmentToDatabase(jar)
+    }
 
+    private fun importAttachmentToDatabase(jar: InputStream): SecureHash {
         // Read the file into RAM, hashing it to find the ID as we go. The attachment must fit into memory.
         // TODO: Switch to a two-phase insert so we can handle attachments larger than RAM.
         // To do this we must pipe stream into the database without knowing its hash, which we will learn only once
@@ -161,7 +205,44 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
         val bytes = hs.readBytes()
         checkIsAValidJAR(ByteArrayInputStream(bytes))
         val id = SecureHash.SHA256(hs.hash().asBytes())
+        checkNotAlreadyStored(id)
+        insertAttachment(id, bytes)
+        extractAttachment(id) { ByteArrayInputStream(bytes) }
+        return id
+    }
+
+    private fun importAttachmentToFile(jar: InputStream, contentDirectory: Path): SecureHash {
+        // Stream into a temporary file, hashing as we go, and only move it to its content addressed name once we know
+        // what that is. The move is atomic so readers never see a partially written attachment.
+        val tempFile = Files.createTempFile(contentDirectory, "upload", ".tmp")
+        try {
+            val hs = HashingInputStream(Hashing.sha256(), jar)
+            hs.copyTo(tempFile, REPLACE_EXISTING)
+            tempFile.read { checkIsAValidJAR(it) }
+            val id = SecureHash.SHA256(hs.hash().asBytes())
+            checkNotAlreadyStored(id)
+            val file = contentDirectory / id.toString()
+            // Insert the row before moving the file into place, in the same transaction, so that a failed insert leaves
+            // no file behind and a failed move leaves no row. If the insert fails because another import of the same
+            // attachment got there first, the file is theirs and must be left alone.
+            var moved = false
+            try {
+                insertAttachment(id, ByteArray(0), storePath.relativize(file).toString()) {
+                    tempFile.moveTo(file, ATOMIC_MOVE, REPLACE_EXISTING)
+                    moved = true
+                }
+            } catch (e: Exception) {
+                if (moved) file.deleteIfExists()
+                throw e
+            }
+            extractAttachment(id) { Files.newInputStream(file) }
+            return id
+        } finally {
+            tempFile.deleteIfExists()
+        }
+    }
 
+    private fun checkNotAlreadyStored(id: SecureHash) {
         val count = session.withTransaction {
             session.count(AttachmentEntity::class)
                     .where(AttachmentEntity.ATT_ID.eq(id))
@@ -171,23 +252,29 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
         if (count > 0) {
             throw FileAlreadyExistsException(id.toString())
         }
+    }
 
+    private fun insertAttachment(id: SecureHash, content: ByteArray, contentFile: String? = null, afterInsert: () -> Unit = {}) {
         session.withTransaction {
             val attachment = AttachmentEntity()
             attachment.attId = id
-            attachment.content = bytes
+            attachment.content = content
+            attachment.contentFile = contentFile
             session.insert(attachment)
+            afterInsert()
         }
 
         attachmentCount.inc()
 
         log.info("Stored new attachment $id")
+    }
 
+    private fun extractAttachment(id: SecureHash, open: () -> InputStream) {
         if (automaticallyExtractAttachments) {
             val extractTo = storePath / "$id.jar"
             try {
                 extractTo.createDirectory()
-                extractZipFile(ByteArrayInputStream(bytes), extractTo)
+                extractZipFile(open(), extractTo)
             } catch(e: FileAlreadyExistsException) {
                 log.trace("Did not extract attachment jar to directory because it already exists")
             } catch(e: Exception) {
@@ -195,8 +282,6 @@ class NodeAttachmentService(override var storePath: Path, dataSourceProperties:
                 // TODO: Delete the extractTo directory here.
             }
         }
-
-        return id
     }
 
     private fun checkIsAValidJAR(stream: InputStream) {
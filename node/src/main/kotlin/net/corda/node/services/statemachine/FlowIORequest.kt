@@ -43,6 +43,32 @@ data class SendOnly(override val session: FlowSession, override val message: Ses
     override val stackTraceInCaseOfProblems: StackSnapshot = StackSnapshot()
 }
 
+/** Sends a message on each of several sessions with a single suspension. */
+data class SendAll(val requests: List<SendOnly>) : FlowIORequest {
+    init {
+        require(requests.isNotEmpty()) { "Nothing to send" }
+    }
+
+    @Transient
+    override val stackTraceInCaseOfProblems: StackSnapshot = StackSnapshot()
+}
+
+/**
+ * Waits for a message on each of several sessions with a single suspension. The flow is resumed once every session has
+ * a message at the head of its queue, or as soon as any session has a [SessionEnd] at its head, since the wait can then
+ * only end in that session's error. A [SessionEnd] only counts if it is at the head, since a counterparty may reply and
+ * then end its session before the others have replied.
+ */
+data class ReceiveAll<T : SessionMessage>(val requests: List<ReceiveOnly<T>>) : WaitingRequest {
+    @Transient
+    override val stackTraceInCaseOfProblems: StackSnapshot = StackSnapshot()
+
+    fun isComplete(): Boolean {
+        val heads = requests.map { it.session.receivedMessages.peek()?.message }
+        return heads.all { it != null } || heads.any { it is SessionEnd }
+    }
+}
+
 data class WaitForLedgerCommit(val hash: SecureHash, val fiber: FlowStateMachineImpl<*>) : WaitingRequest {
     @Transient
     override val stackTraceInCaseOfProblems: StackSnapshot = StackSnapshot()
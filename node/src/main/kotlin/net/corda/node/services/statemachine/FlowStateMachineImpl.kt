@@ -74,6 +74,8 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
     @Transient internal lateinit var actionOnEnd: (ErrorOr<R>, Boolean) -> Unit
     @Transient internal var fromCheckpoint: Boolean = false
     @Transient private var txTrampoline: Transaction? = null
+    // When the current suspension began, or zero if the fiber has since been restored from a checkpoint.
+    @Transient private var suspendedAt: Long = 0
 
     /**
      * Return the logger for this state machine. The logger name incorporates [id] and so including it in the log message
@@ -201,6 +203,30 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
         }
     }
 
+    @Suspendable
+    override fun <T : Any> sendAndReceiveAll(receiveType: Class<T>,
+                                             payloads: Map<Party, Any>,
+                                             sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>> {
+        logger.debug { "sendAndReceiveAll(${receiveType.name}, ${payloads.keys}) ..." }
+        val sessions = sendAllInternal(payloads, sessionFlow)
+        return receiveAllInternal(receiveType, sessions)
+    }
+
+    @Suspendable
+    override fun <T : Any> receiveAll(receiveType: Class<T>,
+                                      otherParties: Set<Party>,
+                                      sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>> {
+        logger.debug { "receiveAll(${receiveType.name}, $otherParties) ..." }
+        val sessions = sendAllInternal(otherParties.associate { it to null }, sessionFlow)
+        return receiveAllInternal(receiveType, sessions)
+    }
+
+    @Suspendable
+    override fun sendAll(payloads: Map<Party, Any>, sessionFlow: FlowLogic<*>) {
+        logger.debug { "sendAll(${payloads.keys})" }
+        sendAllInternal(payloads, sessionFlow)
+    }
+
     @Suspendable
     override fun waitForLedgerCommit(hash: SecureHash, sessionFlow: FlowLogic<*>): SignedTransaction {
         logger.debug { "waitForLedgerCommit($hash) ..." }
@@ -258,12 +284,16 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
      */
     @Suspendable
     private fun FlowSession.waitForConfirmation() {
-        val (peerParty, sessionInitResponse) = receiveInternal<SessionInitResponse>(this, null)
+        confirm(receiveInternal<SessionInitResponse>(this, null))
+    }
+
+    private fun FlowSession.confirm(response: ReceivedSessionMessage<SessionInitResponse>) {
+        val (peerParty, sessionInitResponse) = response
         if (sessionInitResponse is SessionConfirm) {
             state = FlowSessionState.Initiated(peerParty, sessionInitResponse.initiatedSessionId)
         } else {
             sessionInitResponse as SessionReject
-            throw FlowSessionException("Party ${state.sendToParty} rejected session request: ${sessionInitResponse.errorMessage}")
+            throw FlowSessionRejectedException("Party ${state.sendToParty} rejected session request: ${sessionInitResponse.errorMessage}")
         }
     }
 
@@ -316,11 +346,7 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
                                 firstPayload: Any?,
                                 waitForConfirmation: Boolean,
                                 retryable: Boolean = false): FlowSession {
-        logger.trace { "Initiating a new session with $otherParty" }
-        val session = FlowSession(sessionFlow, random63BitValue(), null, FlowSessionState.Initiating(otherParty), retryable)
-        openSessions[Pair(sessionFlow, otherParty)] = session
-        val (version, initiatingFlowClass) = sessionFlow.javaClass.flowVersionAndInitiatingClass
-        val sessionInit = SessionInit(session.ourSessionId, initiatingFlowClass, version, firstPayload)
+        val (session, sessionInit) = createNewSession(otherParty, sessionFlow, firstPayload, retryable)
         sendInternal(session, sessionInit)
         if (waitForConfirmation) {
             session.waitForConfirmation()
@@ -328,6 +354,82 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
         return session
     }
 
+    private fun createNewSession(otherParty: Party,
+                                 sessionFlow: FlowLogic<*>,
+                                 firstPayload: Any?,
+                                 retryable: Boolean): Pair<FlowSession, SessionInit> {
+        logger.trace { "Initiating a new session with $otherParty" }
+        val session = FlowSession(sessionFlow, random63BitValue(), null, FlowSessionState.Initiating(otherParty), retryable)
+        openSessions[Pair(sessionFlow, otherParty)] = session
+        val (version, initiatingFlowClass) = sessionFlow.javaClass.flowVersionAndInitiatingClass
+        return Pair(session, SessionInit(session.ourSessionId, initiatingFlowClass, version, firstPayload))
+    }
+
+    /**
+     * Sends the payload to each party, initiating sessions where necessary, with a single suspension rather than one
+     * per party. A null payload only makes sure the session exists. Returns the session used for each party.
+     */
+    @Suspendable
+    private fun sendAllInternal(payloads: Map<Party, Any?>, sessionFlow: FlowLogic<*>): List<Pair<Party, FlowSession>> {
+        val requests = ArrayList<SendOnly>()
+        val sessions = payloads.map { (party, payload) ->
+            val session = getConfirmedSession(party, sessionFlow)
+            if (session == null) {
+                val (newSession, sessionInit) = createNewSession(party, sessionFlow, payload, retryable = false)
+                requests += SendOnly(newSession, sessionInit)
+                Pair(party, newSession)
+            } else {
+                if (payload != null) {
+                    requests += SendOnly(session, createSessionData(session, payload))
+                }
+                Pair(party, session)
+            }
+        }
+        if (requests.isNotEmpty()) {
+            suspend(SendAll(requests))
+        }
+        return sessions
+    }
+
+    /**
+     * Receives a [SessionData] from each of the given sessions, confirming any which are still initiating first. Each
+     * step suspends at most once, however many sessions are involved.
+     */
+    @Suspendable
+    private fun <T : Any> receiveAllInternal(receiveType: Class<T>,
+                                             sessions: List<Pair<Party, FlowSession>>): Map<Party, UntrustworthyData<T>> {
+        val initiating = sessions.map { it.second }.filter { it.state is FlowSessionState.Initiating }
+        if (initiating.isNotEmpty()) {
+            val responses = waitForMessages(initiating.map { ReceiveOnly(it, SessionInitResponse::class.java, null) })
+            initiating.zip(responses).forEach { (session, response) -> session.confirm(response) }
+        }
+        val received = waitForMessages(sessions.map { ReceiveOnly(it.second, SessionData::class.java, receiveType) })
+        return sessions.zip(received).associate { (partyAndSession, sessionData) ->
+            logger.debug { "Received ${sessionData.message.payload.toString().abbreviate(300)} from ${partyAndSession.first}" }
+            Pair(partyAndSession.first, sessionData.checkPayloadIs(receiveType))
+        }
+    }
+
+    @Suspendable
+    private fun <M : ExistingSessionMessage> waitForMessages(receiveRequests: List<ReceiveOnly<M>>): List<ReceivedSessionMessage<M>> {
+        val receiveAll = ReceiveAll(receiveRequests)
+        if (!receiveAll.isComplete()) {
+            suspend(receiveAll)
+        }
+        // If any of the counterparties has ended its session then report that, rather than the others being missing.
+        for (request in receiveRequests) {
+            val head = request.session.receivedMessages.peek()
+            if (head?.message is SessionEnd) {
+                head.confirmReceiveType(request)
+            }
+        }
+        return receiveRequests.map { request ->
+            val polledMessage = request.session.receivedMessages.poll() ?:
+                    throw IllegalStateException("Was expecting a ${request.receiveType.simpleName} but instead got nothing for $request")
+            polledMessage.confirmReceiveType(request)
+        }
+    }
+
     @Suspendable
     private fun <M : ExistingSessionMessage> waitForMessage(receiveRequest: ReceiveRequest<M>): ReceivedSessionMessage<M> {
         return receiveRequest.suspendAndExpectReceive().confirmReceiveType(receiveRequest)
@@ -393,6 +495,7 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
             waitingForResponse = ioRequest
 
         var exceptionDuringSuspend: Throwable? = null
+        suspendedAt = System.nanoTime()
         parkAndSerialize { _, _ ->
             logger.trace { "Suspended on $ioRequest" }
             // restore the Tx onto the ThreadLocal so that we can commit the ensuing checkpoint to the DB
@@ -410,6 +513,7 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
         }
 
         createTransaction()
+        recordSuspension(ioRequest)
         // TODO Now that we're throwing outside of the suspend the FlowLogic can catch it. We need Quasar to terminate
         // the fiber when exceptions occur inside a suspend.
         exceptionDuringSuspend?.let { throw it }
@@ -433,6 +537,27 @@ class FlowStateMachineImpl<R>(override val id: StateMachineRunId,
         }
     }
 
+    /**
+     * Records how long this flow was suspended on [ioRequest], if detailed metrics are enabled. Waits for a message are
+     * also recorded against the flow which owns the session, so that, for example, time spent waiting for the notary is
+     * recorded against [net.corda.flows.NotaryFlow.Client] whichever flow called it.
+     */
+    private fun recordSuspension(ioRequest: FlowIORequest) {
+        val monitoringService = serviceHub.monitoringService
+        if (!monitoringService.detailedMetrics || suspendedAt == 0L) return
+        val duration = System.nanoTime() - suspendedAt
+        suspendedAt = 0
+        monitoringService.recordNanos("FlowSuspend.${ioRequest.javaClass.simpleName}.${logic.javaClass.name}", duration)
+        val session = when (ioRequest) {
+            is ReceiveRequest<*> -> ioRequest.session
+            is ReceiveAll<*> -> ioRequest.requests.first().session
+            else -> null
+        }
+        if (session != null) {
+            monitoringService.recordNanos("FlowSessionWait.${session.flow.javaClass.name}", duration)
+        }
+    }
+
     /**
      * Records the duration of this flow – from call() to completion or failure.
      * Note that the duration will include the time the flow spent being parked, and not just the total
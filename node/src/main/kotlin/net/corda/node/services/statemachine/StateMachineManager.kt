@@ -138,7 +138,8 @@ class StateMachineManager(val serviceHub: ServiceHubInternal,
 
 
     // Monitoring support.
-    private val metrics = serviceHub.monitoringService.metrics
+    private val monitoringService = serviceHub.monitoringService
+    private val metrics = monitoringService.metrics
 
     init {
         metrics.register("Flows.InFlight", Gauge<Int> { mutex.content.stateMachines.size })
@@ -344,6 +345,7 @@ class StateMachineManager(val serviceHub: ServiceHubInternal,
     private fun resumeOnMessage(message: ExistingSessionMessage, session: FlowSession): Boolean {
         val waitingForResponse = session.fiber.waitingForResponse
         return (waitingForResponse as? ReceiveRequest<*>)?.session === session ||
+                waitingForResponse is ReceiveAll<*> && waitingForResponse.requests.any { it.session === session } && waitingForResponse.isComplete() ||
                 waitingForResponse is WaitForLedgerCommit && message is ErrorSessionEnd
     }
 
@@ -501,13 +503,21 @@ class StateMachineManager(val serviceHub: ServiceHubInternal,
 
     private fun updateCheckpoint(fiber: FlowStateMachineImpl<*>) {
         check(fiber.state != Strand.State.RUNNING) { "Fiber cannot be running when checkpointing" }
+        val start = System.nanoTime()
         val newCheckpoint = Checkpoint(serializeFiber(fiber))
+        val serialized = System.nanoTime()
         val previousCheckpoint = mutex.locked { stateMachines.put(fiber, newCheckpoint) }
         if (previousCheckpoint != null) {
             checkpointStorage.removeCheckpoint(previousCheckpoint)
         }
         checkpointStorage.addCheckpoint(newCheckpoint)
         checkpointingMeter.mark()
+        if (monitoringService.detailedMetrics) {
+            val flowClass = fiber.logic.javaClass.name
+            monitoringService.recordNanos("FlowCheckpoint.Serialization.$flowClass", serialized - start)
+            monitoringService.recordNanos("FlowCheckpoint.Storage.$flowClass", System.nanoTime() - serialized)
+            monitoringService.recordValue("FlowCheckpoint.Size.$flowClass", newCheckpoint.serializedFiber.size.toLong())
+        }
     }
 
     private fun resumeFiber(fiber: FlowStateMachineImpl<*>) {
@@ -527,11 +537,25 @@ class StateMachineManager(val serviceHub: ServiceHubInternal,
         executor.checkOnThread()
         when (ioRequest) {
             is SendRequest -> processSendRequest(ioRequest)
+            is SendAll -> processSendAllRequest(ioRequest)
             is WaitForLedgerCommit -> processWaitForCommitRequest(ioRequest)
         }
     }
 
     private fun processSendRequest(ioRequest: SendRequest) {
+        sendRequestMessage(ioRequest)
+        if (ioRequest !is ReceiveRequest<*>) {
+            // We sent a message, but don't expect a response, so re-enter the continuation to let it keep going.
+            resumeFiber(ioRequest.session.fiber)
+        }
+    }
+
+    private fun processSendAllRequest(ioRequest: SendAll) {
+        ioRequest.requests.forEach { sendRequestMessage(it) }
+        resumeFiber(ioRequest.requests[0].session.fiber)
+    }
+
+    private fun sendRequestMessage(ioRequest: SendRequest) {
         val retryId = if (ioRequest.message is SessionInit) {
             with(ioRequest.session) {
                 openSessions[ourSessionId] = this
@@ -539,10 +563,6 @@ class StateMachineManager(val serviceHub: ServiceHubInternal,
             }
         } else null
         sendSessionMessage(ioRequest.session.state.sendToParty, ioRequest.message, ioRequest.session.fiber, retryId)
-        if (ioRequest !is ReceiveRequest<*>) {
-            // We sent a message, but don't expect a response, so re-enter the continuation to let it keep going.
-            resumeFiber(ioRequest.session.fiber)
-        }
     }
 
     private fun processWaitForCommitRequest(ioRequest: WaitForLedgerCommit) {
@@ -14,6 +14,8 @@ import net.corda.core.transactions.FilteredTransaction
 import net.corda.core.utilities.debug
 import net.corda.core.utilities.loggerFor
 import net.corda.core.utilities.unwrap
+import net.corda.flows.NotarisationResult
+import net.corda.flows.NotaryError
 import net.corda.flows.NotaryException
 import net.corda.node.services.api.ServiceHubInternal
 import kotlin.concurrent.thread
@@ -58,6 +60,10 @@ class BFTNonValidatingNotaryService(override val services: ServiceHubInternal) :
         return ServiceFlow(otherParty, this)
     }
 
+    override fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): FlowLogic<Void?> {
+        return BatchServiceFlow(otherParty, this)
+    }
+
     private class ServiceFlow(val otherSide: Party, val service: BFTNonValidatingNotaryService) : FlowLogic<Void?>() {
         @Suspendable
         override fun call(): Void? {
@@ -79,6 +85,33 @@ class BFTNonValidatingNotaryService(override val services: ServiceHubInternal) :
         }
     }
 
+    /**
+     * Each transaction of the batch still goes through its own round of consensus, but the client saves a session
+     * and a checkpoint per transaction.
+     */
+    private class BatchServiceFlow(val otherSide: Party, val service: BFTNonValidatingNotaryService) : FlowLogic<Void?>() {
+        @Suspendable
+        override fun call(): Void? {
+            val requests = receive<List<Any>>(otherSide).unwrap { it }
+            send(otherSide, requests.map { commit(it) })
+            return null
+        }
+
+        private fun commit(request: Any): NotarisationResult {
+            if (request !is FilteredTransaction) {
+                return NotarisationResult.Failure(NotaryError.TransactionInvalid("Expected a filtered transaction but got ${request.javaClass.name}"))
+            }
+            val response = service.commitTransaction(request, otherSide)
+            return when (response) {
+                is BFTSMaRt.ClusterResponse.Error -> NotarisationResult.Failure(response.error)
+                is BFTSMaRt.ClusterResponse.Signatures -> {
+                    log.debug("All input states of transaction ${request.rootHash} have been committed")
+                    NotarisationResult.Success(response.txSignatures.map { it as DigitalSignature.WithKey })
+                }
+            }
+        }
+    }
+
     private class Replica(config: BFTSMaRtConfig,
                           replicaId: Int,
                           tableName: String,
@@ -0,0 +1,20 @@
+package net.corda.node.services.transactions
+
+import net.corda.core.contracts.StateRef
+import net.corda.core.crypto.SecureHash
+import net.corda.core.identity.Party
+import net.corda.core.node.services.UniquenessProvider
+import net.corda.node.services.api.MonitoringService
+
+/** Records how long a notary's commits take, and how large its batches are, if detailed metrics are enabled. */
+class InstrumentedUniquenessProvider(private val delegate: UniquenessProvider,
+                                     private val monitoringService: MonitoringService) : UniquenessProvider {
+    override fun commit(states: List<StateRef>, txId: SecureHash, callerIdentity: Party) {
+        monitoringService.time("Notary.Commit.Duration") { delegate.commit(states, txId, callerIdentity) }
+    }
+
+    override fun commitAll(transactions: List<Pair<List<StateRef>, SecureHash>>, callerIdentity: Party): List<UniquenessProvider.Conflict?> {
+        monitoringService.recordValue("Notary.CommitAll.BatchSize", transactions.size.toLong())
+        return monitoringService.time("Notary.CommitAll.Duration") { delegate.commitAll(transactions, callerIdentity) }
+    }
+}
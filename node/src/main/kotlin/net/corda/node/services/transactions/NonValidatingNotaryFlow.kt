@@ -5,6 +5,8 @@ import net.corda.core.identity.Party
 import net.corda.core.node.services.TrustedAuthorityNotaryService
 import net.corda.core.transactions.FilteredTransaction
 import net.corda.core.utilities.unwrap
+import net.corda.flows.NotaryError
+import net.corda.flows.NotaryException
 import net.corda.flows.NotaryFlow
 import net.corda.flows.TransactionParts
 
@@ -19,10 +21,21 @@ class NonValidatingNotaryFlow(otherSide: Party, service: TrustedAuthorityNotaryS
      */
     @Suspendable
     override fun receiveAndVerifyTx(): TransactionParts {
-        val ftx = receive<FilteredTransaction>(otherSide).unwrap {
-            it.verify()
-            it
-        }
-        return TransactionParts(ftx.rootHash, ftx.filteredLeaves.inputs, ftx.filteredLeaves.timeWindow)
+        return receive<FilteredTransaction>(otherSide).unwrap { verifyFilteredTransaction(it) }
     }
 }
+
+/** Handles batches from [NotaryFlow.BatchClient], checking each transaction in the same way as [NonValidatingNotaryFlow]. */
+class NonValidatingNotaryBatchFlow(otherSide: Party, service: TrustedAuthorityNotaryService) : NotaryFlow.BatchService(otherSide, service) {
+    @Suspendable
+    override fun verifyTx(request: Any): TransactionParts {
+        val ftx = request as? FilteredTransaction ?:
+                throw NotaryException(NotaryError.TransactionInvalid("Expected a filtered transaction but got ${request.javaClass.name}"))
+        return verifyFilteredTransaction(ftx)
+    }
+}
+
+private fun verifyFilteredTransaction(ftx: FilteredTransaction): TransactionParts {
+    ftx.verify()
+    return TransactionParts(ftx.rootHash, ftx.filteredLeaves.inputs, ftx.filteredLeaves.timeWindow)
+}
@@ -14,12 +14,17 @@ import net.corda.node.services.api.MonitoringService
 import net.corda.nodeapi.VerifierApi
 import org.apache.activemq.artemis.api.core.client.ClientConsumer
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 abstract class OutOfProcessTransactionVerifierService(
         val monitoringService: MonitoringService
 ) : SingletonSerializeAsToken(), TransactionVerifierService {
     companion object {
         val log = loggerFor<OutOfProcessTransactionVerifierService>()
+        /** The most requests sent to the verifiers in a single message. */
+        val MAX_REQUEST_BATCH_SIZE = 16
     }
 
     private data class VerificationHandle(
@@ -29,6 +34,15 @@ abstract class OutOfProcessTransactionVerifierService(
     )
 
     private val verificationHandles = ConcurrentHashMap<Long, VerificationHandle>()
+    private val pendingRequests = ConcurrentLinkedQueue<Pair<Long, LedgerTransaction>>()
+    private val pendingCount = AtomicInteger()
+    private val sending = AtomicBoolean(false)
+
+    /**
+     * The number of verifiers consuming requests, as last seen by the node. The requests waiting to be sent are spread
+     * across this many messages, so that each verifier gets a share of them rather than one taking the whole batch.
+     */
+    @Volatile var verifierCount: Int = 1
 
     // Metrics
     private fun metric(name: String) = "OutOfProcessTransactionVerifierService.$name"
@@ -44,29 +58,81 @@ abstract class OutOfProcessTransactionVerifierService(
         log.info("Starting out of process verification service")
         monitoringService.metrics.register(metric("VerificationsInFlight"), Gauge { verificationHandles.size })
         responseConsumer.setMessageHandler { message ->
-            val response = VerifierApi.VerificationResponse.fromClientMessage(message)
-            val handle = verificationHandles.remove(response.verificationId) ?:
-                    throw VerificationResultForUnknownTransaction(response.verificationId)
-            handle.durationTimerContext.stop()
-            val exception = response.exception
-            if (exception == null) {
-                successMeter.mark()
-                handle.resultFuture.set(Unit)
-            } else {
-                failureMeter.mark()
-                handle.resultFuture.setException(exception)
-            }
+            VerifierApi.VerificationResponse.listFromClientMessage(message).forEach { onResponse(it) }
+        }
+    }
+
+    private fun onResponse(response: VerifierApi.VerificationResponse) {
+        val handle = verificationHandles.remove(response.verificationId) ?:
+                throw VerificationResultForUnknownTransaction(response.verificationId)
+        handle.durationTimerContext.stop()
+        val exception = response.exception
+        if (exception == null) {
+            successMeter.mark()
+            handle.resultFuture.set(Unit)
+        } else {
+            failureMeter.mark()
+            handle.resultFuture.setException(exception)
         }
     }
 
-    abstract fun sendRequest(nonce: Long, transaction: LedgerTransaction)
+    /** Sends the given requests, as (nonce, transaction) pairs, to the verifiers in a single message. */
+    abstract fun sendRequests(requests: List<Pair<Long, LedgerTransaction>>)
 
     override fun verify(transaction: LedgerTransaction): ListenableFuture<*> {
         log.info("Verifying ${transaction.id}")
         val future = SettableFuture.create<Unit>()
         val nonce = random63BitValue()
         verificationHandles[nonce] = VerificationHandle(transaction.id, future, durationTimer.time())
-        sendRequest(nonce, transaction)
+        pendingRequests += Pair(nonce, transaction)
+        pendingCount.incrementAndGet()
+        sendPendingRequests()
         return future
     }
-}
\ No newline at end of file
+
+    /**
+     * Only one thread sends at a time. Requests which arrive while it is sending are picked up by it afterwards and
+     * go out together, so under load the requests are batched without delaying any of them when the node is idle.
+     * The requests waiting at the start of each round are split evenly between the verifiers, up to
+     * [MAX_REQUEST_BATCH_SIZE] in a message.
+     */
+    private fun sendPendingRequests() {
+        while (pendingRequests.isNotEmpty() && sending.compareAndSet(false, true)) {
+            try {
+                rounds@ while (true) {
+                    val waiting = Math.max(pendingCount.get(), 1)
+                    val verifiers = Math.max(verifierCount, 1)
+                    val batchSize = Math.min((waiting + verifiers - 1) / verifiers, MAX_REQUEST_BATCH_SIZE)
+                    var remaining = waiting
+                    while (remaining > 0) {
+                        val batch = ArrayList<Pair<Long, LedgerTransaction>>(batchSize)
+                        while (batch.size < batchSize) {
+                            batch += pendingRequests.poll() ?: break
+                        }
+                        if (batch.isEmpty()) break@rounds
+                        remaining -= batch.size
+                        pendingCount.addAndGet(-batch.size)
+                        send(batch)
+                    }
+                }
+            } finally {
+                sending.set(false)
+            }
+        }
+    }
+
+    /** Sends [batch], failing the verification of every request in it if it can't be sent. */
+    private fun send(batch: List<Pair<Long, LedgerTransaction>>) {
+        try {
+            sendRequests(batch)
+        } catch (e: Exception) {
+            log.error("Unable to send ${batch.size} verification requests", e)
+            for ((nonce, _) in batch) {
+                val handle = verificationHandles.remove(nonce) ?: continue
+                handle.durationTimerContext.stop()
+                failureMeter.mark()
+                handle.resultFuture.setException(e)
+            }
+        }
+    }
+}
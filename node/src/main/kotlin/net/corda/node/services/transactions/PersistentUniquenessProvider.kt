@@ -60,24 +60,34 @@ class PersistentUniquenessProvider : UniquenessProvider, SingletonSerializeAsTok
     })
 
     override fun commit(states: List<StateRef>, txId: SecureHash, callerIdentity: Party) {
-        val conflict = committedStates.locked {
-            val conflictingStates = LinkedHashMap<StateRef, UniquenessProvider.ConsumingTx>()
-            for (inputState in states) {
-                val consumingTx = get(inputState)
-                if (consumingTx != null) conflictingStates[inputState] = consumingTx
-            }
-            if (conflictingStates.isNotEmpty()) {
-                log.debug("Failure, input states already committed: ${conflictingStates.keys}")
-                UniquenessProvider.Conflict(conflictingStates)
-            } else {
-                states.forEachIndexed { i, stateRef ->
-                    put(stateRef, UniquenessProvider.ConsumingTx(txId, i, callerIdentity))
-                }
-                log.debug("Successfully committed all input states: $states")
-                null
-            }
+        val conflict = committedStates.locked { commitLocked(states, txId, callerIdentity) }
+        if (conflict != null) throw UniquenessException(conflict)
+    }
+
+    /** Commits the whole batch while holding the lock once, rather than once per transaction. */
+    override fun commitAll(transactions: List<Pair<List<StateRef>, SecureHash>>, callerIdentity: Party): List<UniquenessProvider.Conflict?> {
+        return committedStates.locked {
+            transactions.map { (states, txId) -> commitLocked(states, txId, callerIdentity) }
         }
+    }
 
-        if (conflict != null) throw UniquenessException(conflict)
+    private fun MutableMap<StateRef, UniquenessProvider.ConsumingTx>.commitLocked(states: List<StateRef>,
+                                                                                   txId: SecureHash,
+                                                                                   callerIdentity: Party): UniquenessProvider.Conflict? {
+        val conflictingStates = LinkedHashMap<StateRef, UniquenessProvider.ConsumingTx>()
+        for (inputState in states) {
+            val consumingTx = get(inputState)
+            if (consumingTx != null) conflictingStates[inputState] = consumingTx
+        }
+        return if (conflictingStates.isNotEmpty()) {
+            log.debug("Failure, input states already committed: ${conflictingStates.keys}")
+            UniquenessProvider.Conflict(conflictingStates)
+        } else {
+            states.forEachIndexed { i, stateRef ->
+                put(stateRef, UniquenessProvider.ConsumingTx(txId, i, callerIdentity))
+            }
+            log.debug("Successfully committed all input states: $states")
+            null
+        }
     }
 }
@@ -19,6 +19,10 @@ class RaftNonValidatingNotaryService(override val services: ServiceHubInternal)
         return NonValidatingNotaryFlow(otherParty, this)
     }
 
+    override fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.BatchService {
+        return NonValidatingNotaryBatchFlow(otherParty, this)
+    }
+
     override fun start() {
         uniquenessProvider.start()
     }
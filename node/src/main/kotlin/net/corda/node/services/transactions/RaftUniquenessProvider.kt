@@ -156,6 +156,23 @@ class RaftUniquenessProvider(services: ServiceHubInternal) : UniquenessProvider,
         log.debug("All input states of transaction $txId have been committed")
     }
 
+    /**
+     * Submits the commands for all the transactions before waiting on any of them, so the batch is replicated in a
+     * pipeline rather than one round of consensus at a time. Copycat applies commands from a client session in the
+     * order they were submitted, so conflicts within the batch are still detected in order.
+     */
+    override fun commitAll(transactions: List<Pair<List<StateRef>, SecureHash>>, callerIdentity: Party): List<UniquenessProvider.Conflict?> {
+        log.debug("Attempting to commit input states of ${transactions.size} transactions")
+        val results = transactions.map { (states, txId) ->
+            val entries = states.mapIndexed { i, stateRef -> stateRef to UniquenessProvider.ConsumingTx(txId, i, callerIdentity) }
+            client.submit(DistributedImmutableMap.Commands.PutAll(encode(entries)))
+        }
+        return results.map {
+            val conflicts = it.get()
+            if (conflicts.isNotEmpty()) UniquenessProvider.Conflict(decode(conflicts)) else null
+        }
+    }
+
     /**
      * Copycat uses its own serialization framework so we convert and store entries as String -> ByteArray
      * here to avoid having to define additional serializers for our custom types.
@@ -19,6 +19,10 @@ class RaftValidatingNotaryService(override val services: ServiceHubInternal) : T
         return ValidatingNotaryFlow(otherParty, this)
     }
 
+    override fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.BatchService {
+        return ValidatingNotaryBatchFlow(otherParty, this)
+    }
+
     override fun start() {
         uniquenessProvider.start()
     }
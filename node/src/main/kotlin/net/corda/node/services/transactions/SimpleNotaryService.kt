@@ -14,12 +14,16 @@ class SimpleNotaryService(override val services: ServiceHubInternal) : TrustedAu
     }
 
     override val timeWindowChecker = TimeWindowChecker(services.clock)
-    override val uniquenessProvider = PersistentUniquenessProvider()
+    override val uniquenessProvider = InstrumentedUniquenessProvider(PersistentUniquenessProvider(), services.monitoringService)
 
     override fun createServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.Service {
         return NonValidatingNotaryFlow(otherParty, this)
     }
 
+    override fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.BatchService {
+        return NonValidatingNotaryBatchFlow(otherParty, this)
+    }
+
     override fun start() {}
     override fun stop() {}
 }
\ No newline at end of file
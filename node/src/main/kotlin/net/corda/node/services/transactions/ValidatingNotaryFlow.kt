@@ -2,6 +2,7 @@ package net.corda.node.services.transactions
 
 import co.paralleluniverse.fibers.Suspendable
 import net.corda.core.contracts.TransactionVerificationException
+import net.corda.core.flows.FlowLogic
 import net.corda.core.identity.Party
 import net.corda.core.node.services.TrustedAuthorityNotaryService
 import net.corda.core.transactions.SignedTransaction
@@ -25,34 +26,49 @@ class ValidatingNotaryFlow(otherSide: Party, service: TrustedAuthorityNotaryServ
     @Suspendable
     override fun receiveAndVerifyTx(): TransactionParts {
         val stx = receive<SignedTransaction>(otherSide).unwrap { it }
-        checkSignatures(stx)
-        val wtx = stx.tx
-        validateTransaction(wtx)
-        return TransactionParts(wtx.id, wtx.inputs, wtx.timeWindow)
+        return verifySignedTransaction(stx, otherSide)
     }
 
-    private fun checkSignatures(stx: SignedTransaction) {
-        try {
-            stx.verifySignatures(serviceHub.myInfo.notaryIdentity.owningKey)
-        } catch(e: SignedTransaction.SignaturesMissingException) {
-            throw NotaryException(NotaryError.SignaturesMissing(e))
-        }
-    }
+    @Suspendable
+    fun validateTransaction(wtx: WireTransaction) = validateTransaction(wtx, otherSide)
+}
 
+/** Handles batches from [NotaryFlow.BatchClient], checking each transaction in the same way as [ValidatingNotaryFlow]. */
+class ValidatingNotaryBatchFlow(otherSide: Party, service: TrustedAuthorityNotaryService) : NotaryFlow.BatchService(otherSide, service) {
     @Suspendable
-    fun validateTransaction(wtx: WireTransaction) {
-        try {
-            resolveTransaction(wtx)
-            wtx.toLedgerTransaction(serviceHub).verify()
-        } catch (e: Exception) {
-            throw when (e) {
-                is TransactionVerificationException -> NotaryException(NotaryError.TransactionInvalid(e.toString()))
-                is SignatureException -> NotaryException(NotaryError.SignaturesInvalid(e.toString()))
-                else -> e
-            }
-        }
+    override fun verifyTx(request: Any): TransactionParts {
+        val stx = request as? SignedTransaction ?:
+                throw NotaryException(NotaryError.TransactionInvalid("Expected a signed transaction but got ${request.javaClass.name}"))
+        return verifySignedTransaction(stx, otherSide)
     }
+}
 
-    @Suspendable
-    private fun resolveTransaction(wtx: WireTransaction) = subFlow(ResolveTransactionsFlow(wtx, otherSide))
+@Suspendable
+private fun FlowLogic<*>.verifySignedTransaction(stx: SignedTransaction, otherSide: Party): TransactionParts {
+    checkSignatures(stx)
+    val wtx = stx.tx
+    validateTransaction(wtx, otherSide)
+    return TransactionParts(wtx.id, wtx.inputs, wtx.timeWindow)
+}
+
+private fun FlowLogic<*>.checkSignatures(stx: SignedTransaction) {
+    try {
+        stx.verifySignatures(serviceHub.myInfo.notaryIdentity.owningKey)
+    } catch(e: SignedTransaction.SignaturesMissingException) {
+        throw NotaryException(NotaryError.SignaturesMissing(e))
+    }
+}
+
+@Suspendable
+private fun FlowLogic<*>.validateTransaction(wtx: WireTransaction, otherSide: Party) {
+    try {
+        subFlow(ResolveTransactionsFlow(wtx, otherSide))
+        wtx.toLedgerTransaction(serviceHub).verify()
+    } catch (e: Exception) {
+        throw when (e) {
+            is TransactionVerificationException -> NotaryException(NotaryError.TransactionInvalid(e.toString()))
+            is SignatureException -> NotaryException(NotaryError.SignaturesInvalid(e.toString()))
+            else -> e
+        }
+    }
 }
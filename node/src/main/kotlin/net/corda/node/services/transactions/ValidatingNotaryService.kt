@@ -14,12 +14,16 @@ class ValidatingNotaryService(override val services: ServiceHubInternal) : Trust
     }
 
     override val timeWindowChecker = TimeWindowChecker(services.clock)
-    override val uniquenessProvider = PersistentUniquenessProvider()
+    override val uniquenessProvider = InstrumentedUniquenessProvider(PersistentUniquenessProvider(), services.monitoringService)
 
     override fun createServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.Service {
         return ValidatingNotaryFlow(otherParty, this)
     }
 
+    override fun createBatchServiceFlow(otherParty: Party, platformVersion: Int): NotaryFlow.BatchService {
+        return ValidatingNotaryBatchFlow(otherParty, this)
+    }
+
     override fun start() {}
     override fun stop() {}
 }
\ No newline at end of file
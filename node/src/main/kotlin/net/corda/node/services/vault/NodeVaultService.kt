@@ -147,9 +147,13 @@ class NodeVaultService(private val services: ServiceHub, dataSourceProperties: P
 
     @Suppress("UNCHECKED_CAST")
     private fun sumCashStates(states: Iterable<StateAndRef<ContractState>>): Map<Currency, Amount<Currency>> {
-        return states.mapNotNull { (it.state.data as? FungibleAsset<Currency>)?.amount }
-                .groupBy { it.token.product }
-                .mapValues { it.value.map { Amount(it.quantity, it.token.product) }.sumOrThrow() }
+        val byIssuedToken = states.sumAmountsByToken { (it.state.data as? FungibleAsset<Currency>)?.amount }
+        val result = HashMap<Currency, Amount<Currency>>()
+        for ((token, amount) in byIssuedToken) {
+            val product = token.product
+            result[product] = result[product]?.let { it + Amount(amount.quantity, product) } ?: Amount(amount.quantity, product)
+        }
+        return result
     }
 
     override val cashBalances: Map<Currency, Amount<Currency>> get() {
@@ -82,6 +82,18 @@ class InteractiveShellTest {
             throw UnsupportedOperationException("not implemented")
         }
 
+        override fun <T : Any> sendAndReceiveAll(receiveType: Class<T>, payloads: Map<Party, Any>, sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>> {
+            throw UnsupportedOperationException("not implemented")
+        }
+
+        override fun <T : Any> receiveAll(receiveType: Class<T>, otherParties: Set<Party>, sessionFlow: FlowLogic<*>): Map<Party, UntrustworthyData<T>> {
+            throw UnsupportedOperationException("not implemented")
+        }
+
+        override fun sendAll(payloads: Map<Party, Any>, sessionFlow: FlowLogic<*>) {
+            throw UnsupportedOperationException("not implemented")
+        }
+
         override fun waitForLedgerCommit(hash: SecureHash, sessionFlow: FlowLogic<*>): SignedTransaction {
             throw UnsupportedOperationException("not implemented")
         }
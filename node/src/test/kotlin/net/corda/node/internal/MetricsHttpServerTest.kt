@@ -0,0 +1,47 @@
+package net.corda.node.internal
+
+import com.codahale.metrics.MetricRegistry
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.google.common.net.HostAndPort
+import net.corda.node.services.api.MonitoringService
+import org.junit.After
+import org.junit.Test
+import java.net.URL
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class MetricsHttpServerTest {
+    private val metrics = MetricRegistry()
+    private val server = MetricsHttpServer(HostAndPort.fromParts("localhost", 0), metrics).apply { start() }
+
+    @After
+    fun cleanUp() {
+        server.stop()
+    }
+
+    @Test
+    fun `detailed metrics are only recorded if enabled`() {
+        MonitoringService(metrics).apply {
+            time("Test.Disabled") { }
+            recordValue("Test.DisabledSize", 1)
+        }
+        assertTrue(metrics.metrics.isEmpty())
+
+        MonitoringService(metrics, detailedMetrics = true).apply {
+            assertEquals(42, time("Test.Enabled") { 42 })
+            recordValue("Test.EnabledSize", 1)
+        }
+        assertEquals(setOf("Test.Enabled", "Test.EnabledSize"), metrics.metrics.keys)
+    }
+
+    @Test
+    fun `metrics are served as json`() {
+        metrics.counter("Test.Counter").inc(3)
+        metrics.histogram("Test.Histogram").update(10)
+        metrics.timer("Test.Timer")
+        val json = ObjectMapper().readTree(URL("http://localhost:${server.address.port}${MetricsHttpServer.PATH}"))
+        assertEquals(3, json["Test.Counter"]["count"].asInt())
+        assertEquals(10.0, json["Test.Histogram"]["max"].asDouble())
+        assertEquals(0, json["Test.Timer"]["count"].asInt())
+    }
+}
@@ -36,6 +36,7 @@ import org.junit.Test
 import java.io.Closeable
 import java.time.Instant
 import java.util.*
+import kotlin.test.assertFailsWith
 
 class RequeryConfigurationTest {
 
@@ -124,6 +125,33 @@ class RequeryConfigurationTest {
         }
     }
 
+    @Test
+    fun `failed requery transaction rolls back only its own changes`() {
+        val txn = newTransaction()
+        val failedTxn = newTransaction(1)
+
+        database.transaction {
+            transactionStorage.addTransaction(txn)
+            requerySession.withTransaction {
+                insert(createVaultStateEntity(txn))
+            }
+            assertFailsWith<IllegalStateException> {
+                requerySession.withTransaction {
+                    insert(createVaultStateEntity(failedTxn))
+                    throw IllegalStateException("Abandoned")
+                }
+            }
+        }
+
+        database.transaction {
+            Assertions.assertThat(transactionStorage.transactions).containsOnly(txn)
+            requerySession.withTransaction {
+                val query = select(VaultSchema.VaultStates::class)
+                Assertions.assertThat(query.get().map { it.txId }).containsOnly(txn.tx.inputs[0].txhash.toString())
+            }
+        }
+    }
+
     @Test
     fun `bounded iteration`() {
         // insert 100 entities
@@ -0,0 +1,121 @@
+package net.corda.node.services.database
+
+import net.corda.core.schemas.PersistentState
+import net.corda.node.services.persistence.schemas.requery.Models
+import net.corda.node.utilities.configureDatabase
+import net.corda.node.utilities.transaction
+import net.corda.testing.node.makeTestDataSourceProperties
+import org.jetbrains.exposed.sql.Database
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.Closeable
+import javax.persistence.Column
+import javax.persistence.Entity
+import javax.persistence.Index
+import javax.persistence.Table
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class SchemaVersionsTest {
+    lateinit var dataSource: Closeable
+    lateinit var database: Database
+    val dataSourceProperties = makeTestDataSourceProperties()
+
+    @Before
+    fun setUp() {
+        val dataSourceAndDatabase = configureDatabase(dataSourceProperties)
+        dataSource = dataSourceAndDatabase.first
+        database = dataSourceAndDatabase.second
+    }
+
+    @After
+    fun cleanUp() {
+        dataSource.close()
+    }
+
+    @Test
+    fun `versions are current only once recorded`() {
+        database.transaction {
+            assertFalse(SchemaVersions.areCurrent(mapOf("a" to "1")))
+            SchemaVersions.record(mapOf("a" to "1", "b" to "1"))
+            assertTrue(SchemaVersions.areCurrent(mapOf("a" to "1", "b" to "1")))
+            assertFalse(SchemaVersions.areCurrent(mapOf("a" to "1", "b" to "2")))
+            SchemaVersions.record(mapOf("b" to "2"))
+            assertTrue(SchemaVersions.areCurrent(mapOf("a" to "1", "b" to "2")))
+        }
+    }
+
+    @Test
+    fun `versions are never current outside a transaction`() {
+        database.transaction {
+            SchemaVersions.record(mapOf("a" to "1"))
+        }
+        assertFalse(SchemaVersions.areCurrent(mapOf("a" to "1")))
+    }
+
+    @Test
+    fun `versions are recorded in the enclosing transaction`() {
+        database.transaction {
+            SchemaVersions.record(mapOf("a" to "1"))
+            rollback()
+        }
+        database.transaction {
+            assertFalse(SchemaVersions.areCurrent(mapOf("a" to "1")))
+        }
+    }
+
+    @Test
+    fun `requery tables missing a column fail unless a migration adds it`() {
+        val versionName = "requery:${Models.PERSISTENCE.name}"
+        database.transaction {
+            // The attachments table as an earlier version of the node created it.
+            connection.createStatement().use { it.execute("CREATE TABLE attachments (att_id VARCHAR(255) NOT NULL PRIMARY KEY, content BLOB)") }
+            assertFailsWith<IllegalStateException> { RequeryConfiguration(dataSourceProperties).sessionForModel(Models.PERSISTENCE) }
+            assertNull(SchemaVersions.recordedVersion(versionName))
+
+            val migration = AddColumn("attachments", "content_file", "VARCHAR(255)")
+            RequeryConfiguration(dataSourceProperties).sessionForModel(Models.PERSISTENCE, listOf(migration))
+            assertTrue("content_file" in columnNames(connection, "attachments"))
+            assertNotNull(SchemaVersions.recordedVersion(versionName))
+        }
+    }
+
+    @Test
+    fun `mapping description covers column and table annotations`() {
+        val shortColumn = describeIgnoringName(ShortColumn::class.java)
+        assertEquals(shortColumn, describeIgnoringName(SameColumn::class.java))
+        assertNotEquals(shortColumn, describeIgnoringName(LongColumn::class.java))
+        assertNotEquals(shortColumn, describeIgnoringName(NullableColumn::class.java))
+        assertNotEquals(shortColumn, describeIgnoringName(IndexedColumn::class.java))
+    }
+
+    private fun describeIgnoringName(type: Class<*>) = HibernateConfiguration.describeMapping(type).replace(type.name, "")
+
+    @Test
+    fun `mapping description covers superclasses and embedded keys`() {
+        val description = HibernateConfiguration.describeMapping(ShortColumn::class.java)
+        assertTrue("net.corda.core.schemas.PersistentState" in description)
+        assertTrue("transaction_id" in description)
+    }
+
+    @Entity @Table(name = "test")
+    class ShortColumn(@Column(name = "value", length = 16, nullable = false) var value: String = "") : PersistentState()
+
+    @Entity @Table(name = "test")
+    class SameColumn(@Column(name = "value", length = 16, nullable = false) var value: String = "") : PersistentState()
+
+    @Entity @Table(name = "test")
+    class LongColumn(@Column(name = "value", length = 32, nullable = false) var value: String = "") : PersistentState()
+
+    @Entity @Table(name = "test")
+    class NullableColumn(@Column(name = "value", length = 16, nullable = true) var value: String = "") : PersistentState()
+
+    @Entity @Table(name = "test", indexes = arrayOf(Index(name = "value_idx", columnList = "value")))
+    class IndexedColumn(@Column(name = "value", length = 16, nullable = false) var value: String = "") : PersistentState()
+}
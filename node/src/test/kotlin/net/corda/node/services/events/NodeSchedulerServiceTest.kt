@@ -270,6 +270,69 @@ class NodeSchedulerServiceTest : SingletonSerializeAsToken() {
         assertTrue(backgroundExecutor.awaitTermination(60, TimeUnit.SECONDS))
     }
 
+    @Test
+    fun `test activity due in the future and schedule another later then unschedule it`() {
+        val time = stoppedClock.instant() + 1.days
+        scheduleTX(time)
+
+        val backgroundExecutor = Executors.newSingleThreadExecutor()
+        backgroundExecutor.execute { schedulerGatedExecutor.waitAndRun() }
+        assertThat(calls).isEqualTo(0)
+        val scheduledRef2 = scheduleTX(time + 1.days, 3)
+        database.transaction {
+            scheduler.unscheduleStateActivity(scheduledRef2!!.ref)
+        }
+
+        testClock.advanceBy(1.days)
+        countDown.await()
+        assertThat(calls).isEqualTo(1)
+        backgroundExecutor.shutdown()
+        assertTrue(backgroundExecutor.awaitTermination(60, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `test activity due in the future then rescheduled later`() {
+        val time = stoppedClock.instant() + 1.days
+        val scheduledRef1 = scheduleTX(time)
+
+        val backgroundExecutor = Executors.newSingleThreadExecutor()
+        backgroundExecutor.execute { schedulerGatedExecutor.waitAndRun() }
+        assertThat(calls).isEqualTo(0)
+        database.transaction {
+            scheduler.scheduleStateActivity(ScheduledStateRef(scheduledRef1!!.ref, time + 1.days))
+        }
+
+        backgroundExecutor.execute { schedulerGatedExecutor.waitAndRun() }
+        testClock.advanceBy(1.days)
+        assertThat(calls).isEqualTo(0)
+        testClock.advanceBy(1.days)
+        countDown.await()
+        assertThat(calls).isEqualTo(1)
+        backgroundExecutor.shutdown()
+        assertTrue(backgroundExecutor.awaitTermination(60, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `test activities rescheduled past each other fire in their new order`() {
+        val time = stoppedClock.instant() + 1.days
+        val scheduledRef1 = scheduleTX(time)
+
+        val backgroundExecutor = Executors.newSingleThreadExecutor()
+        backgroundExecutor.execute { schedulerGatedExecutor.waitAndRun() }
+        assertThat(calls).isEqualTo(0)
+        scheduleTX(time + 1.days, 3)
+        database.transaction {
+            scheduler.scheduleStateActivity(ScheduledStateRef(scheduledRef1!!.ref, time + 2.days))
+        }
+
+        backgroundExecutor.execute { schedulerGatedExecutor.waitAndRun() }
+        testClock.advanceBy(2.days)
+        countDown.await()
+        assertThat(calls).isEqualTo(3)
+        backgroundExecutor.shutdown()
+        assertTrue(backgroundExecutor.awaitTermination(60, TimeUnit.SECONDS))
+    }
+
     private fun scheduleTX(instant: Instant, increment: Int = 1): ScheduledStateRef? {
         var scheduledRef: ScheduledStateRef? = null
         database.transaction {
@@ -0,0 +1,41 @@
+package net.corda.node.services.keys
+
+import net.corda.core.crypto.Crypto
+import net.corda.core.crypto.sign
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class KeySignerTest {
+    private val payloads = (1..10).map { "Payload $it".toByteArray() }
+
+    @Test
+    fun `reused engines produce valid signatures`() {
+        for (scheme in listOf(Crypto.EDDSA_ED25519_SHA512, Crypto.ECDSA_SECP256R1_SHA256, Crypto.RSA_SHA256)) {
+            val keyPair = Crypto.generateKeyPair(scheme)
+            val signer = KeySigner(keyPair.public, keyPair.private)
+            payloads.forEach { signer.sign(it).verify(it) }
+            val signatures = signer.signAll(payloads)
+            assertEquals(payloads.size, signatures.size)
+            payloads.zip(signatures).forEach { (payload, signature) -> signature.verify(payload) }
+        }
+    }
+
+    @Test
+    fun `signatures match those from a fresh engine`() {
+        // EdDSA signatures are deterministic, so a reused engine must produce exactly the same bytes.
+        val keyPair = Crypto.generateKeyPair(Crypto.EDDSA_ED25519_SHA512)
+        val signer = KeySigner(keyPair.public, keyPair.private)
+        val expected = payloads.map { keyPair.sign(it) }
+        assertEquals(expected.map { it.bytes.toList() }, signer.signAll(payloads).map { it.bytes.toList() })
+    }
+
+    @Test
+    fun `empty payloads are rejected before signing`() {
+        val keyPair = Crypto.generateKeyPair()
+        val signer = KeySigner(keyPair.public, keyPair.private)
+        assertFailsWith<Exception> { signer.signAll(listOf(payloads[0], ByteArray(0))) }
+        // The failed batch must not leave a partial message behind.
+        signer.sign(payloads[1]).verify(payloads[1])
+    }
+}
@@ -9,11 +9,15 @@ import net.corda.core.utilities.*
 import net.corda.flows.AnonymisedIdentity
 import net.corda.flows.TxKeyFlow
 import net.corda.node.services.identity.InMemoryIdentityService
+import net.corda.node.services.identity.X500NameIndex
 import net.corda.testing.ALICE_PUBKEY
 import net.corda.testing.BOB_PUBKEY
 import org.bouncycastle.asn1.x500.X500Name
 import org.junit.Test
+import java.security.KeyPair
+import java.security.cert.CertPathValidatorException
 import java.security.cert.CertificateFactory
+import java.util.*
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
 import kotlin.test.assertNull
@@ -68,6 +72,34 @@ class InMemoryIdentityServiceTests {
         assertEquals(setOf(BOB), service.partiesFromName("Bob Plc", true))
     }
 
+    @Test
+    fun `get identity by short or differently cased substring`() {
+        val service = InMemoryIdentityService(trustRoot = DUMMY_CA.certificate)
+        service.registerIdentity(ALICE_IDENTITY)
+        service.registerIdentity(BOB_IDENTITY)
+        assertEquals(setOf(ALICE), service.partiesFromName("aLiCe", false))
+        assertEquals(setOf(ALICE), service.partiesFromName("li", false))
+        assertEquals(setOf(ALICE, BOB), service.partiesFromName("o", false))
+        assertEquals(emptySet<Party>(), service.partiesFromName("Carol", false))
+        assertEquals(emptySet<Party>(), service.partiesFromName("alice corp", true))
+    }
+
+    @Test
+    fun `name index matches substrings regardless of the default locale`() {
+        val defaultLocale = Locale.getDefault()
+        // In Turkish the lower case of "I" is a dotless "ı", so "INTEL" wouldn't contain "intel".
+        Locale.setDefault(Locale("tr", "TR"))
+        try {
+            val name = X500Name("CN=INTEL,O=INTEL,L=Istanbul,C=TR")
+            val index = X500NameIndex()
+            index.add(name)
+            assertEquals(setOf(name), index.substringMatches("intel"))
+            assertEquals(setOf(name), index.substringMatches("ISTAN"))
+        } finally {
+            Locale.setDefault(defaultLocale)
+        }
+    }
+
     @Test
     fun `get identity by name`() {
         val service = InMemoryIdentityService(trustRoot = DUMMY_CA.certificate)
@@ -137,6 +169,42 @@ class InMemoryIdentityServiceTests {
         }
     }
 
+    @Test
+    fun `previously validated path must still end at the party`() {
+        val (alice, aliceTxIdentity) = createParty(ALICE.name, DUMMY_CA)
+        val service = InMemoryIdentityService(setOf(alice), emptyMap(), DUMMY_CA.certificate.cert)
+        service.registerAnonymousIdentity(aliceTxIdentity.identity, alice.party, aliceTxIdentity.certPath)
+        // Registering again is served from the validated path cache
+        service.registerAnonymousIdentity(aliceTxIdentity.identity, alice.party, aliceTxIdentity.certPath)
+        assertFailsWith<IllegalArgumentException> {
+            service.registerAnonymousIdentity(AnonymousParty(generateKeyPair().public), alice.party, aliceTxIdentity.certPath)
+        }
+    }
+
+    @Test
+    fun `end certificates are validated against a previously validated issuer`() {
+        val certFactory = CertificateFactory.getInstance("X509")
+        val issuerKeyPair = generateKeyPair()
+        val alice = getTestPartyAndCertificate(ALICE.name, issuerKeyPair.public, DUMMY_CA)
+        val service = InMemoryIdentityService(setOf(alice), emptyMap(), DUMMY_CA.certificate.cert)
+        fun txIdentity(signingKeyPair: KeyPair): AnonymousParty {
+            val txKey = Crypto.generateKeyPair()
+            val txCert = X509Utilities.createCertificate(CertificateType.IDENTITY, alice.certificate, signingKeyPair, ALICE.name, txKey.public)
+            val txCertPath = certFactory.generateCertPath(listOf(txCert.cert) + alice.certPath.certificates)
+            val anonymousParty = AnonymousParty(txKey.public)
+            service.registerAnonymousIdentity(anonymousParty, alice.party, txCertPath)
+            return anonymousParty
+        }
+
+        val first = txIdentity(issuerKeyPair)
+        // The issuing path is now cached, so only the end certificate of the second identity is validated
+        val second = txIdentity(issuerKeyPair)
+        assertEquals(alice.party, service.partyFromKey(first.owningKey))
+        assertEquals(alice.party, service.partyFromKey(second.owningKey))
+        // An end certificate which claims the cached issuer but was not signed by it must still be rejected
+        assertFailsWith<CertPathValidatorException> { txIdentity(generateKeyPair()) }
+    }
+
     private fun createParty(x500Name: X500Name, ca: CertificateAndKeyPair): Pair<PartyAndCertificate, AnonymisedIdentity> {
         val certFactory = CertificateFactory.getInstance("X509")
         val issuerKeyPair = generateKeyPair()
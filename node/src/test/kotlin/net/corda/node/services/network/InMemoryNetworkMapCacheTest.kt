@@ -1,16 +1,24 @@
 package net.corda.node.services.network
 
+import net.corda.core.crypto.generateKeyPair
 import net.corda.core.getOrThrow
+import net.corda.core.node.NodeInfo
+import net.corda.core.node.ServiceEntry
 import net.corda.core.node.services.NetworkMapCache
 import net.corda.core.node.services.ServiceInfo
+import net.corda.core.node.services.ServiceType
 import net.corda.core.utilities.ALICE
 import net.corda.core.utilities.BOB
+import net.corda.core.utilities.DUMMY_NOTARY
+import net.corda.core.utilities.getTestPartyAndCertificate
 import net.corda.node.utilities.transaction
 import net.corda.testing.node.MockNetwork
+import org.bouncycastle.asn1.x500.X500Name
 import org.junit.After
 import org.junit.Test
 import java.math.BigInteger
 import kotlin.test.assertEquals
+import kotlin.test.assertNull
 
 class InMemoryNetworkMapCacheTest {
     private val mockNet = MockNetwork()
@@ -59,4 +67,35 @@ class InMemoryNetworkMapCacheTest {
 
         // TODO: Should have a test case with anonymous lookup
     }
+
+    @Test
+    fun `ambiguous legal name is not resolved`() {
+        val node = mockNet.createNode()
+        val first = testNodeInfo(BOB.name)
+        val second = testNodeInfo(BOB.name)
+        node.database.transaction {
+            node.netMapCache.addNode(first)
+            assertEquals(first, node.netMapCache.getNodeByLegalName(BOB.name))
+            node.netMapCache.addNode(second)
+        }
+        assertNull(node.netMapCache.getNodeByLegalName(BOB.name))
+    }
+
+    @Test
+    fun `node advertising several services under one key is listed once`() {
+        val node = mockNet.createNode()
+        val serviceIdentity = getTestPartyAndCertificate(DUMMY_NOTARY)
+        val info = testNodeInfo(BOB.name, listOf(
+                ServiceEntry(ServiceInfo(ServiceType.notary), serviceIdentity),
+                ServiceEntry(ServiceInfo(ServiceType.regulator), serviceIdentity)))
+        node.database.transaction {
+            node.netMapCache.addNode(info)
+        }
+        assertEquals(listOf(info), node.netMapCache.getNodesByAdvertisedServiceIdentityKey(DUMMY_NOTARY.owningKey))
+    }
+
+    private fun testNodeInfo(name: X500Name, services: List<ServiceEntry> = emptyList()): NodeInfo {
+        val identity = getTestPartyAndCertificate(name, generateKeyPair().public)
+        return NodeInfo(emptyList(), identity, setOf(identity), 1, services)
+    }
 }
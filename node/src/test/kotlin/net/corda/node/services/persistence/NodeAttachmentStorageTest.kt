@@ -24,6 +24,7 @@ import java.io.Closeable
 import java.nio.charset.Charset
 import java.nio.file.FileAlreadyExistsException
 import java.nio.file.FileSystem
+import java.nio.file.Files
 import java.nio.file.Path
 import java.util.*
 import java.util.jar.JarEntry
@@ -86,6 +87,67 @@ class NodeAttachmentStorageTest {
         }
     }
 
+    @Test
+    fun `insert and retrieve with content on disk`() {
+        val testJar = makeTestJar()
+        val expectedHash = testJar.readAll().sha256()
+
+        database.transaction {
+            val storage = NodeAttachmentService(fs.getPath("/"), dataSourceProperties, MetricRegistry(), contentOnDisk = true)
+            val id = testJar.read { storage.importAttachment(it) }
+            assertEquals(expectedHash, id)
+            assertEquals(expectedHash, fs.getPath("/content/$id").readAll().sha256())
+
+            val stream = storage.openAttachment(id)!!.openAsJAR()
+            val e1 = stream.nextJarEntry!!
+            assertEquals("test1.txt", e1.name)
+            assertEquals(stream.readBytes().toString(Charset.defaultCharset()), "This is some useful content")
+            stream.close()
+
+            assertEquals(expectedHash, storage.openAttachment(id)!!.open().use { it.readBytes() }.sha256())
+            assertFailsWith<FileAlreadyExistsException> {
+                testJar.read { storage.importAttachment(it) }
+            }
+        }
+    }
+
+    @Test
+    fun `content on disk is found after the option is turned off`() {
+        val testJar = makeTestJar()
+        val expectedHash = testJar.readAll().sha256()
+
+        database.transaction {
+            val id = testJar.read { NodeAttachmentService(fs.getPath("/"), dataSourceProperties, MetricRegistry(), contentOnDisk = true).importAttachment(it) }
+            val storage = NodeAttachmentService(fs.getPath("/"), dataSourceProperties, MetricRegistry())
+            assertEquals(expectedHash, storage.openAttachment(id)!!.open().use { it.readBytes() }.sha256())
+        }
+    }
+
+    @Test
+    fun `attachments table from before content on disk is migrated`() {
+        val testJar = makeTestJar()
+        val expectedHash = testJar.readAll().sha256()
+
+        database.transaction {
+            connection.createStatement().use { it.execute("CREATE TABLE attachments (att_id VARCHAR(255) NOT NULL PRIMARY KEY, content BLOB)") }
+            val storage = NodeAttachmentService(fs.getPath("/"), dataSourceProperties, MetricRegistry(), contentOnDisk = true)
+            val id = testJar.read { storage.importAttachment(it) }
+            assertEquals(expectedHash, storage.openAttachment(id)!!.open().use { it.readBytes() }.sha256())
+        }
+    }
+
+    @Test
+    fun `missing content file fails loudly`() {
+        val testJar = makeTestJar()
+
+        database.transaction {
+            val storage = NodeAttachmentService(fs.getPath("/"), dataSourceProperties, MetricRegistry(), contentOnDisk = true)
+            val id = testJar.read { storage.importAttachment(it) }
+            Files.delete(fs.getPath("/content/$id"))
+            assertFailsWith<IllegalStateException> { storage.openAttachment(id) }
+        }
+    }
+
     @Test
     fun `duplicates not allowed`() {
         val testJar = makeTestJar()
@@ -305,6 +305,66 @@ class FlowFrameworkTests {
         )
     }
 
+    @Test
+    fun `send and receive from multiple parties at once`() {
+        val node3 = mockNet.createNode(node1.network.myAddress)
+        mockNet.runNetwork()
+        node2.registerFlowFactory(SendAndReceiveAllFlow::class) { EchoFlow(it) }
+        node3.registerFlowFactory(SendAndReceiveAllFlow::class) { EchoFlow(it) }
+        val payloads = mapOf(node2.info.legalIdentity to "Hello 2", node3.info.legalIdentity to "Hello 3")
+        val result = node1.services.startFlow(SendAndReceiveAllFlow(payloads)).resultFuture
+        mockNet.runNetwork()
+        assertThat(result.getOrThrow()).isEqualTo(payloads)
+
+        assertSessionTransfers(node2,
+                node1 sent sessionInit(SendAndReceiveAllFlow::class, payload = "Hello 2") to node2,
+                node2 sent sessionConfirm to node1,
+                node2 sent sessionData("Hello 2") to node1,
+                node2 sent normalEnd to node1
+        )
+        assertSessionTransfers(node3,
+                node1 sent sessionInit(SendAndReceiveAllFlow::class, payload = "Hello 3") to node3,
+                node3 sent sessionConfirm to node1,
+                node3 sent sessionData("Hello 3") to node1,
+                node3 sent normalEnd to node1
+        )
+    }
+
+    @Test
+    fun `receive from multiple parties when one ends its session before another replies`() {
+        val node3 = mockNet.createNode(node1.network.myAddress)
+        val node4 = mockNet.createNode(node1.network.myAddress)
+        mockNet.runNetwork()
+        node2.registerFlowFactory(SendAndReceiveAllFlow::class) { EchoFlow(it) }
+        // node3 has to go to node4 before it can reply, so node2's reply and session end arrive first
+        node3.registerFlowFactory(SendAndReceiveAllFlow::class) { RelayEchoFlow(it, node4.info.legalIdentity) }
+        node4.registerFlowFactory(RelayEchoFlow::class) { EchoFlow(it) }
+        val payloads = mapOf(node2.info.legalIdentity to "Hello 2", node3.info.legalIdentity to "Hello 3")
+        val result = node1.services.startFlow(SendAndReceiveAllFlow(payloads)).resultFuture
+        mockNet.runNetwork()
+        assertThat(result.getOrThrow()).isEqualTo(payloads)
+
+        val toNode1 = sessionTransfers.filter { it.to == node1.network.myAddress }
+        val node2End = toNode1.indexOfFirst { it.from == node2.id && it.message is NormalSessionEnd }
+        val node3Data = toNode1.indexOfFirst { it.from == node3.id && it.message is SessionData }
+        assertThat(node2End).isLessThan(node3Data)
+    }
+
+    @Test
+    fun `receive from multiple parties throws the error of one without waiting for the others`() {
+        val node3 = mockNet.createNode(node1.network.myAddress)
+        mockNet.runNetwork()
+        node2.registerFlowFactory(SendAndReceiveAllFlow::class) { ExceptionFlow { MyFlowException("Nothing useful") } }
+        // node3 confirms the session but never replies
+        node3.registerFlowFactory(SendAndReceiveAllFlow::class) { NoOpFlow(nonTerminating = true) }
+        val payloads = mapOf(node2.info.legalIdentity to "Hello 2", node3.info.legalIdentity to "Hello 3")
+        val result = node1.services.startFlow(SendAndReceiveAllFlow(payloads)).resultFuture
+        mockNet.runNetwork()
+        assertThatExceptionOfType(MyFlowException::class.java)
+                .isThrownBy { result.getOrThrow() }
+                .withMessage("Nothing useful")
+    }
+
     @Test
     fun `both sides do a send as their first IO request`() {
         node2.registerFlowFactory(PingPongFlow::class) { PingPongFlow(it, 20L) }
@@ -816,6 +876,26 @@ class FlowFrameworkTests {
         override fun call(): Any = sendAndReceive<Any>(otherParty, payload).unwrap { it }
     }
 
+    @InitiatingFlow
+    private class SendAndReceiveAllFlow(val payloads: Map<Party, String>) : FlowLogic<Map<Party, String>>() {
+        @Suspendable
+        override fun call(): Map<Party, String> = sendAndReceiveAll<String>(payloads).mapValues { it.value.unwrap { it } }
+    }
+
+    private class EchoFlow(val otherParty: Party) : FlowLogic<Unit>() {
+        @Suspendable
+        override fun call() = send(otherParty, receive<String>(otherParty).unwrap { it })
+    }
+
+    @InitiatingFlow
+    private class RelayEchoFlow(val otherParty: Party, val relay: Party) : FlowLogic<Unit>() {
+        @Suspendable
+        override fun call() {
+            val payload = receive<String>(otherParty).unwrap { it }
+            send(otherParty, sendAndReceive<String>(relay, payload).unwrap { it })
+        }
+    }
+
     private class InlinedSendFlow(val payload: String, val otherParty: Party) : FlowLogic<Unit>() {
         @Suspendable
         override fun call() = send(otherParty, payload)
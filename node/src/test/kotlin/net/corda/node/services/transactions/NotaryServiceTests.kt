@@ -11,11 +11,14 @@ import net.corda.core.node.services.ServiceInfo
 import net.corda.core.seconds
 import net.corda.core.transactions.SignedTransaction
 import net.corda.core.utilities.DUMMY_NOTARY
+import net.corda.flows.FinalityFlow
+import net.corda.flows.NotarisationResult
 import net.corda.flows.NotaryError
 import net.corda.flows.NotaryException
 import net.corda.flows.NotaryFlow
 import net.corda.node.internal.AbstractNode
 import net.corda.node.services.network.NetworkMapService
+import net.corda.node.utilities.transaction
 import net.corda.testing.node.MockNetwork
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.Before
@@ -24,6 +27,8 @@ import java.time.Instant
 import java.util.*
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
 
 class NotaryServiceTests {
     lateinit var mockNet: MockNetwork
@@ -120,6 +125,85 @@ class NotaryServiceTests {
         notaryError.conflict.verified()
     }
 
+    @Test fun `should sign a batch and report conflicts per transaction`() {
+        val inputState = issueState(clientNode)
+        val stx = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(inputState)
+            clientNode.services.signInitialTransaction(tx)
+        }
+        val stx2 = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(issueState(clientNode))
+            clientNode.services.signInitialTransaction(tx)
+        }
+        val stx3 = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(inputState)
+            tx.addInputState(issueState(clientNode))
+            clientNode.services.signInitialTransaction(tx)
+        }
+
+        val future = clientNode.services.startFlow(NotaryFlow.BatchClient(listOf(stx, stx2, stx3))).resultFuture
+        mockNet.runNetwork()
+
+        val results = future.getOrThrow()
+        assertEquals(3, results.size)
+        (results[0] as NotarisationResult.Success).signatures.forEach { it.verify(stx.id) }
+        (results[1] as NotarisationResult.Success).signatures.forEach { it.verify(stx2.id) }
+        val notaryError = (results[2] as NotarisationResult.Failure).error as NotaryError.Conflict
+        assertEquals(notaryError.txId, stx3.id)
+    }
+
+    @Test fun `should not accept a batch with a transaction which does not need notarising`() {
+        val stx = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(issueState(clientNode))
+            clientNode.services.signInitialTransaction(tx)
+        }
+        val issueTx = run {
+            val tx = DummyContract.generateInitial(Random().nextInt(), notaryNode.info.notaryIdentity, clientNode.info.legalIdentity.ref(0))
+            clientNode.services.signInitialTransaction(tx)
+        }
+
+        val future = clientNode.services.startFlow(NotaryFlow.BatchClient(listOf(stx, issueTx))).resultFuture
+        mockNet.runNetwork()
+
+        assertFailsWith(IllegalStateException::class) { future.getOrThrow() }
+    }
+
+    @Test fun `batches are split to the maximum size`() {
+        val stx = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(issueState(clientNode))
+            clientNode.services.signInitialTransaction(tx)
+        }
+        val transactions = List(NotaryFlow.BatchClient.MAX_BATCH_SIZE * 2 + 1) { stx }
+
+        val batches = NotaryFlow.BatchClient.batches(transactions)
+
+        assertEquals(listOf(NotaryFlow.BatchClient.MAX_BATCH_SIZE, NotaryFlow.BatchClient.MAX_BATCH_SIZE, 1), batches.map { it.size })
+        assertEquals(transactions, batches.flatten())
+    }
+
+    @Test fun `finality records the transactions the notary signed before reporting a rejection`() {
+        val inputState = issueState(clientNode)
+        val stx = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(inputState)
+            clientNode.services.signInitialTransaction(tx)
+        }
+        val stx2 = run {
+            val tx = TransactionType.General.Builder(notaryNode.info.notaryIdentity).withItems(inputState)
+            tx.addInputState(issueState(clientNode))
+            clientNode.services.signInitialTransaction(tx)
+        }
+
+        val future = clientNode.services.startFlow(FinalityFlow(listOf(stx, stx2), emptySet(), FinalityFlow.tracker())).resultFuture
+        mockNet.runNetwork()
+
+        val ex = assertFailsWith(NotaryException::class) { future.getOrThrow() }
+        assertEquals(stx2.id, (ex.error as NotaryError.Conflict).txId)
+        clientNode.database.transaction {
+            assertNotNull(clientNode.services.validatedTransactions.getTransaction(stx.id))
+            assertNull(clientNode.services.validatedTransactions.getTransaction(stx2.id))
+        }
+    }
+
     private fun runNotaryClient(stx: SignedTransaction): ListenableFuture<List<DigitalSignature.WithKey>> {
         val flow = NotaryFlow.Client(stx)
         val future = clientNode.services.startFlow(flow).resultFuture
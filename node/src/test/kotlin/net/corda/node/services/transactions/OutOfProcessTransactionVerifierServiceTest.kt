@@ -0,0 +1,46 @@
+package net.corda.node.services.transactions
+
+import com.codahale.metrics.MetricRegistry
+import net.corda.core.contracts.TransactionType
+import net.corda.core.crypto.SecureHash
+import net.corda.core.getOrThrow
+import net.corda.core.transactions.LedgerTransaction
+import net.corda.node.services.api.MonitoringService
+import org.junit.Test
+import java.io.IOException
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class OutOfProcessTransactionVerifierServiceTest {
+    private fun transaction() = LedgerTransaction(emptyList(), emptyList(), emptyList(), emptyList(), SecureHash.randomSHA256(),
+            null, emptyList(), null, TransactionType.General())
+
+    @Test
+    fun `verification fails if its request can't be sent`() {
+        val service = object : OutOfProcessTransactionVerifierService(MonitoringService(MetricRegistry())) {
+            override fun sendRequests(requests: List<Pair<Long, LedgerTransaction>>) = throw IOException("No session")
+        }
+        val future = service.verify(transaction())
+        assertFailsWith<IOException> { future.getOrThrow() }
+    }
+
+    @Test
+    fun `waiting requests are split between the verifiers`() {
+        val batchSizes = ArrayList<Int>()
+        var holdFirstSend = true
+        lateinit var service: OutOfProcessTransactionVerifierService
+        service = object : OutOfProcessTransactionVerifierService(MonitoringService(MetricRegistry())) {
+            override fun sendRequests(requests: List<Pair<Long, LedgerTransaction>>) {
+                batchSizes += requests.size
+                if (holdFirstSend) {
+                    // More requests arrive while the first one is being sent.
+                    holdFirstSend = false
+                    repeat(8) { service.verify(transaction()) }
+                }
+            }
+        }
+        service.verifierCount = 2
+        service.verify(transaction())
+        assertEquals(listOf(1, 4, 4), batchSizes)
+    }
+}
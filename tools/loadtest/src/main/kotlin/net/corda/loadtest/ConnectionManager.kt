@@ -61,7 +61,7 @@ fun setupJSchWithSshAgent(): JSch {
 }
 
 class ConnectionManager(private val jSch: JSch) {
-    fun connectToNode(remoteNode: RemoteNode, localTunnelAddress: HostAndPort): NodeConnection {
+    fun connectToNode(remoteNode: RemoteNode, localTunnelAddress: HostAndPort): RemoteNodeConnection {
         val session = jSch.getSession(remoteNode.sshUserName, remoteNode.hostname, 22)
         // We don't check the host fingerprints because they may change often
         session.setConfig("StrictHostKeyChecking", "no")
@@ -73,7 +73,7 @@ class ConnectionManager(private val jSch: JSch) {
         session.setPortForwardingL(localTunnelAddress.port, localTunnelAddress.host, remoteNode.rpcPort)
         log.info("Tunnel created!")
 
-        val connection = NodeConnection(remoteNode, session, localTunnelAddress)
+        val connection = RemoteNodeConnection(remoteNode, session, localTunnelAddress)
         connection.startNode()
         connection.waitUntilUp()
         connection.startRPCClient()
@@ -92,7 +92,7 @@ class ConnectionManager(private val jSch: JSch) {
  * @param withConnections An action to run once we're connected to the nodes.
  * @return The return value of [withConnections]
  */
-fun <A> connectToNodes(remoteNodes: List<RemoteNode>, tunnelPortAllocation: PortAllocation, withConnections: (List<NodeConnection>) -> A): A {
+fun <A> connectToNodes(remoteNodes: List<RemoteNode>, tunnelPortAllocation: PortAllocation, withConnections: (List<RemoteNodeConnection>) -> A): A {
     val manager = ConnectionManager(setupJSchWithSshAgent())
     val connections = remoteNodes.parallelStream().map { remoteNode ->
         manager.connectToNode(remoteNode, tunnelPortAllocation.nextHostAndPort())
@@ -100,7 +100,7 @@ fun <A> connectToNodes(remoteNodes: List<RemoteNode>, tunnelPortAllocation: Port
     return try {
         withConnections(connections)
     } finally {
-        connections.forEach(NodeConnection::close)
+        connections.forEach(RemoteNodeConnection::close)
     }
 }
 
@@ -45,30 +45,33 @@ data class DisruptionSpec(
 
 val isNetworkMap = { node: NodeConnection -> node.info.advertisedServices.any { it.info.type == NetworkMapService.type } }
 val isNotary = { node: NodeConnection -> node.info.advertisedServices.any { it.info.type.isNotary() } }
+private val NodeConnection.remote: RemoteNodeConnection
+    get() = this as? RemoteNodeConnection ?: throw UnsupportedOperationException("Disruptions need shell access to the node")
+
 fun <A> ((A) -> Boolean).or(other: (A) -> Boolean): (A) -> Boolean = { this(it) || other(it) }
 
 fun hang(hangIntervalRange: LongRange) = Disruption("Hang randomly") { node, random ->
     val hangIntervalMs = Generator.longRange(hangIntervalRange).generateOrFail(random)
-    node.doWhileSigStopped { Thread.sleep(hangIntervalMs) }
+    node.remote.doWhileSigStopped { Thread.sleep(hangIntervalMs) }
 }
 
 val restart = Disruption("Restart randomly") { connection, _ ->
-    connection.restartNode()
-    connection.waitUntilUp()
+    connection.remote.restartNode()
+    connection.remote.waitUntilUp()
 }
 
 val kill = Disruption("Kill randomly") { node, _ ->
-    node.kill()
+    node.remote.kill()
 }
 
 val deleteDb = Disruption("Delete persistence database without restart") { connection, _ ->
-    connection.runShellCommandGetOutput("sudo rm ${connection.remoteNode.nodeDirectory}/persistence.mv.db").getResultOrThrow()
+    connection.remote.runShellCommandGetOutput("sudo rm ${connection.remote.remoteNode.nodeDirectory}/persistence.mv.db").getResultOrThrow()
 }
 
 // DOCS START 2
 fun strainCpu(parallelism: Int, durationSeconds: Int) = Disruption("Put strain on cpu") { connection, _ ->
     val shell = "for c in {1..$parallelism} ; do openssl enc -aes-128-cbc -in /dev/urandom -pass pass: -e > /dev/null & done && JOBS=\$(jobs -p) && (sleep $durationSeconds && kill \$JOBS) & wait"
-    connection.runShellCommandGetOutput(shell).getResultOrThrow()
+    connection.remote.runShellCommandGetOutput(shell).getResultOrThrow()
 }
 // DOCS END 2
 
@@ -90,7 +93,7 @@ fun <A> Nodes.withDisruptions(disruptions: List<DisruptionSpec>, mainRandom: Spl
                 executor.invokeAll(nodes.map { node ->
                     val nodeRandom = random.split()
                     Callable {
-                        log.info("Disrupting ${node.remoteNode.hostname} with '${disruption.disruption.name}'")
+                        log.info("Disrupting ${node.info.legalIdentity.name} with '${disruption.disruption.name}'")
                         disruption.disruption.disrupt(node, nodeRandom)
                     }
                 })
@@ -6,11 +6,14 @@ import net.corda.client.rpc.notUsed
 import net.corda.core.crypto.toBase58String
 import net.corda.node.services.network.NetworkMapService
 import net.corda.testing.driver.PortAllocation
+import org.HdrHistogram.ConcurrentHistogram
 import org.slf4j.LoggerFactory
 import java.util.*
 import java.util.concurrent.Callable
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
 
 private val log = LoggerFactory.getLogger(LoadTest::class.java)
 
@@ -69,7 +72,11 @@ data class LoadTest<T, S>(
     )
     // DOCS END 2
 
-    fun run(nodes: Nodes, parameters: RunParameters, random: SplittableRandom) {
+    /**
+     * Runs the test once for each of the [RunParameters.disruptionPatterns], returning a report of the performance
+     * seen in each run.
+     */
+    fun run(nodes: Nodes, parameters: RunParameters, random: SplittableRandom): List<LoadTestReport> {
         log.info("Running '$testName' with parameters $parameters")
         if (parameters.clearDatabaseBeforeRun) {
             log.info("Clearing databases as clearDatabaseBeforeRun=true")
@@ -86,8 +93,12 @@ data class LoadTest<T, S>(
         }
         val executor = Executors.newFixedThreadPool(parameters.parallelism)
 
-        parameters.disruptionPatterns.forEach { disruptions ->
+        val reports = parameters.disruptionPatterns.map { disruptions ->
             log.info("Running test '$testName' with disruptions ${disruptions.map { it.disruption.name }}")
+            // Latencies of successful commands, in microseconds.
+            val latencies = ConcurrentHistogram(3)
+            val failures = AtomicLong()
+            var executionNanos = 0L
             nodes.withDisruptions(disruptions, random) {
                 var state = nodes.gatherRemoteState(null)
                 var count = parameters.generateCount
@@ -102,21 +113,28 @@ data class LoadTest<T, S>(
                     // Interpret commands
                     val newState = commands.fold(state, interpret)
                     // Execute commands
+                    val batchStart = System.nanoTime()
                     executor.invokeAll(
                             commands.map {
                                 Callable<Unit> {
                                     rateLimiter?.acquire()
                                     log.info("Executing $it")
+                                    val start = System.nanoTime()
                                     try {
                                         nodes.execute(it)
                                     } catch (exception: Throwable) {
+                                        // Failures are only counted, as how quickly a command fails says nothing
+                                        // about how long it takes to succeed.
+                                        failures.incrementAndGet()
                                         val diagnostic = executeDiagnostic(state, newState, it, exception)
                                         log.error(diagnostic)
                                         throw Exception(diagnostic)
                                     }
+                                    latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start))
                                 }
                             }
                     )
+                    executionNanos += System.nanoTime() - batchStart
                     countSinceLastCheck += commands.size
                     if (countSinceLastCheck >= parameters.gatherFrequency) {
                         log.info("Checking consistency...")
@@ -138,8 +156,10 @@ data class LoadTest<T, S>(
                 }
                 log.info("'$testName' done!")
             }
+            LoadTestReport.create(testName, disruptions, latencies, failures.get(), executionNanos, nodes)
         }
         executor.shutdown()
+        return reports
     }
 
     companion object {
@@ -161,20 +181,47 @@ data class Nodes(
 }
 
 /**
- * Runs the given [LoadTest]s using the given configuration.
+ * Runs the given [LoadTest]s using the given configuration. The reports of the runs are written to
+ * [LoadTestConfiguration.reportDirectory].
  */
 fun runLoadTests(configuration: LoadTestConfiguration, tests: List<Pair<LoadTest<*, *>, LoadTest.RunParameters>>) {
     val seed = configuration.seed ?: Random().nextLong()
     log.info("Using seed $seed")
     val random = SplittableRandom(seed)
 
+    val reports = withLoadTestNodes(configuration) { nodes ->
+        tests.flatMap { (test, parameters) ->
+            if (configuration.local && parameters.disruptionPatterns.any { it.isNotEmpty() }) {
+                log.warn("Disruptions need shell access to the nodes, running '${test.testName}' without them")
+                test.run(nodes, parameters.copy(disruptionPatterns = listOf(emptyList())), random)
+            } else {
+                test.run(nodes, parameters, random)
+            }
+        }
+    }
+    LoadTestReportWriter(configuration.reportDirectory).write(seed, reports)
+}
+
+/**
+ * Runs [withNodes] against the remote nodes in [LoadTestConfiguration.nodeHosts] or, if [LoadTestConfiguration.local]
+ * is set, against a network started in this process.
+ */
+fun <A> withLoadTestNodes(configuration: LoadTestConfiguration, withNodes: (Nodes) -> A): A {
+    return if (configuration.local) {
+        startLocalNodes(configuration, withNodes)
+    } else {
+        connectToRemoteNodes(configuration, withNodes)
+    }
+}
+
+private fun <A> connectToRemoteNodes(configuration: LoadTestConfiguration, withNodes: (Nodes) -> A): A {
     val remoteNodes = configuration.nodeHosts.map { hostname ->
         configuration.let {
             RemoteNode(hostname, it.remoteSystemdServiceName, it.sshUser, it.rpcUser, it.rpcPort, it.remoteNodeDirectory)
         }
     }
 
-    connectToNodes(remoteNodes, PortAllocation.Incremental(configuration.localTunnelStartingPort)) { connections ->
+    return connectToNodes(remoteNodes, PortAllocation.Incremental(configuration.localTunnelStartingPort)) { connections ->
         log.info("Connected to all nodes!")
         val hostNodeMap = ConcurrentHashMap<String, NodeConnection>()
         connections.parallelStream().forEach { connection ->
@@ -204,8 +251,6 @@ fun runLoadTests(configuration: LoadTestConfiguration, tests: List<Pair<LoadTest
                 }
         )
 
-        tests.forEach { (test, parameters) ->
-            test.run(nodes, parameters, random)
-        }
+        withNodes(nodes)
     }
 }
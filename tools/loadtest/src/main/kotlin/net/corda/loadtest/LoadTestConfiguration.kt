@@ -2,6 +2,7 @@ package net.corda.loadtest
 
 import net.corda.nodeapi.User
 import java.nio.file.Path
+import java.nio.file.Paths
 import java.util.concurrent.ForkJoinPool
 
 /**
@@ -22,6 +23,12 @@ import java.util.concurrent.ForkJoinPool
  *     exceed this, it is used just for cutoff.
  * @param parallelism Number of concurrent threads to use to run commands. Note that the actual parallelism may be
  *     further limited by the batches that [generate] returns.
+ * @param local Whether to start the nodes in this process with the node driver instead of connecting to [nodeHosts].
+ *     Disruptions are not applied to local nodes.
+ * @param localNodeCount The number of nodes, besides the network map and notary, to start when running locally.
+ * @param reportDirectory Where the throughput and latency reports of each run are written.
+ * @param openLoopStepSeconds How long the open loop test holds each of its arrival rates, which step up to
+ *     [executionFrequency].
  */
 data class LoadTestConfiguration(
         val sshUser: String = System.getProperty("user.name"),
@@ -35,11 +42,16 @@ data class LoadTestConfiguration(
         val mode: TestMode = TestMode.LOAD_TEST,
         val executionFrequency: Int = 2,
         val generateCount: Int = 10000,
-        val parallelism: Int = ForkJoinPool.getCommonPoolParallelism())
+        val parallelism: Int = ForkJoinPool.getCommonPoolParallelism(),
+        val local: Boolean = false,
+        val localNodeCount: Int = 3,
+        val reportDirectory: Path = Paths.get("build", "load-test", "reports"),
+        val openLoopStepSeconds: Int = 60)
 
 data class RemoteNode(val hostname: String, val systemdServiceName: String, val sshUserName: String, val rpcUser: User, val rpcPort: Int, val nodeDirectory: Path)
 
 enum class TestMode {
     LOAD_TEST,
-    STABILITY_TEST
+    STABILITY_TEST,
+    OPEN_LOOP_TEST
 }
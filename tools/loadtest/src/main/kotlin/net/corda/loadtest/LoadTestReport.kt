@@ -0,0 +1,107 @@
+package net.corda.loadtest
+
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.fasterxml.jackson.databind.ObjectMapper
+import net.corda.core.div
+import org.HdrHistogram.Histogram
+import org.slf4j.LoggerFactory
+import java.io.PrintStream
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption.APPEND
+import java.nio.file.StandardOpenOption.CREATE
+import java.util.concurrent.TimeUnit
+
+private val log = LoggerFactory.getLogger(LoadTestReport::class.java)
+
+/**
+ * The performance seen in one run of a [LoadTest], that is one of its disruption patterns.
+ *
+ * @param commandCount the number of commands with a recorded latency.
+ * @param failureCount the number of commands which failed. A [LoadTest] doesn't record the latency of these, so they
+ *     are not part of [commandCount] either.
+ * @param latencyMillis the distribution of the time taken by [LoadTest.execute], not counting time spent waiting for
+ *     the rate limiter.
+ * @param throughputPerSecond the number of commands executed per second spent executing commands, which excludes the
+ *     time spent generating commands and gathering remote state.
+ * @param nodeMetrics the metrics of each node at the end of the run, where they can be read.
+ */
+data class LoadTestReport(
+        val testName: String,
+        val disruptions: List<String>,
+        val commandCount: Long,
+        val failureCount: Long,
+        val executionMillis: Long,
+        val throughputPerSecond: Double,
+        val latencyMillis: Latency,
+        val nodeMetrics: Map<String, Map<String, Any>>,
+        @get:JsonIgnore val histogram: Histogram
+) {
+    data class Latency(val mean: Double, val min: Double, val p50: Double, val p90: Double, val p99: Double, val p999: Double, val max: Double)
+
+    companion object {
+        /** Creates the report of a run from the latencies recorded, in microseconds, and the time spent executing. */
+        fun create(testName: String,
+                   disruptions: List<DisruptionSpec>,
+                   latencies: Histogram,
+                   failureCount: Long,
+                   executionNanos: Long,
+                   nodes: Nodes): LoadTestReport {
+            fun millis(micros: Double) = micros / 1000.0
+            val latency = Latency(
+                    mean = millis(latencies.mean),
+                    min = millis(latencies.minValue.toDouble()),
+                    p50 = millis(latencies.getValueAtPercentile(50.0).toDouble()),
+                    p90 = millis(latencies.getValueAtPercentile(90.0).toDouble()),
+                    p99 = millis(latencies.getValueAtPercentile(99.0).toDouble()),
+                    p999 = millis(latencies.getValueAtPercentile(99.9).toDouble()),
+                    max = millis(latencies.maxValue.toDouble())
+            )
+            val executionSeconds = executionNanos / TimeUnit.SECONDS.toNanos(1).toDouble()
+            return LoadTestReport(
+                    testName = testName,
+                    disruptions = disruptions.map { it.disruption.name },
+                    commandCount = latencies.totalCount,
+                    failureCount = failureCount,
+                    executionMillis = TimeUnit.NANOSECONDS.toMillis(executionNanos),
+                    throughputPerSecond = if (executionSeconds > 0) latencies.totalCount / executionSeconds else 0.0,
+                    latencyMillis = latency,
+                    nodeMetrics = nodes.allNodes.associate { it.info.legalIdentity.name.toString() to it.metrics() },
+                    histogram = latencies
+            )
+        }
+    }
+}
+
+/**
+ * Writes [LoadTestReport]s to [directory] in forms that can be compared between builds:
+ *
+ * - `<run>.json` holding the whole report,
+ * - `<run>.hgrm` holding the full latency distribution in HdrHistogram's percentile format, in milliseconds,
+ * - `summary.csv`, to which a row per run is appended.
+ */
+class LoadTestReportWriter(val directory: Path) {
+    private val mapper = ObjectMapper().writerWithDefaultPrettyPrinter()
+
+    fun write(seed: Long, reports: List<LoadTestReport>) {
+        Files.createDirectories(directory)
+        val timestamp = System.currentTimeMillis()
+        val summary = directory / "summary.csv"
+        if (!Files.exists(summary)) {
+            Files.write(summary, listOf("timestamp,seed,test,disruptions,commands,failures,executionMillis,throughputPerSecond,meanMillis,p50Millis,p90Millis,p99Millis,p999Millis,maxMillis"))
+        }
+        reports.forEachIndexed { index, report ->
+            val name = "${report.testName.toLowerCase().replace(Regex("[^a-z0-9]+"), "-")}-$timestamp-$index"
+            Files.newBufferedWriter(directory / "$name.json").use { mapper.writeValue(it, report) }
+            PrintStream(Files.newOutputStream(directory / "$name.hgrm")).use { report.histogram.outputPercentileDistribution(it, 1000.0) }
+            val latency = report.latencyMillis
+            val row = listOf(timestamp, seed, "\"${report.testName}\"", "\"${report.disruptions.joinToString(";")}\"",
+                    report.commandCount, report.failureCount, report.executionMillis, report.throughputPerSecond,
+                    latency.mean, latency.p50, latency.p90, latency.p99, latency.p999, latency.max).joinToString(",")
+            Files.write(summary, listOf(row), CREATE, APPEND)
+            log.info("'${report.testName}': ${report.commandCount} commands, ${report.failureCount} failed, " +
+                    "${"%.1f".format(report.throughputPerSecond)}/s, latency ms p50=${latency.p50} p99=${latency.p99} max=${latency.max}")
+        }
+        log.info("Load test reports written to $directory")
+    }
+}
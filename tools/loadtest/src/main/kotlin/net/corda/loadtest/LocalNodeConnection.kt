@@ -0,0 +1,75 @@
+package net.corda.loadtest
+
+import com.codahale.metrics.Counting
+import com.codahale.metrics.Gauge
+import com.codahale.metrics.Metered
+import com.codahale.metrics.Sampling
+import net.corda.core.getOrThrow
+import net.corda.core.messaging.CordaRPCOps
+import net.corda.core.node.NodeInfo
+import net.corda.core.node.services.ServiceInfo
+import net.corda.core.utilities.DUMMY_NOTARY
+import net.corda.node.services.transactions.ValidatingNotaryService
+import net.corda.testing.driver.NetworkMapStartStrategy
+import net.corda.testing.driver.NodeHandle
+import net.corda.testing.driver.PortAllocation
+import net.corda.testing.driver.driver
+import org.bouncycastle.asn1.x500.X500Name
+import java.util.concurrent.TimeUnit
+
+/**
+ * A node started in this process by the node driver. Its metrics can be read directly, but it can't be disrupted.
+ */
+class LocalNodeConnection(val handle: NodeHandle) : NodeConnection {
+    override val proxy: CordaRPCOps get() = handle.rpc
+    override val info: NodeInfo get() = handle.nodeInfo
+
+    // Local nodes are started with empty databases, so there is nothing to clear.
+    override fun clearDb() {}
+
+    override fun metrics(): Map<String, Any> {
+        val registry = (handle as? NodeHandle.InProcess)?.node?.services?.monitoringService?.metrics ?: return emptyMap()
+        val snapshot = LinkedHashMap<String, Any>()
+        for ((name, metric) in registry.metrics) {
+            if (metric is Counting) snapshot["$name.count"] = metric.count
+            if (metric is Metered) snapshot["$name.meanRate"] = metric.meanRate
+            if (metric is Sampling) {
+                // Timers sample nanoseconds, histograms whatever they were given.
+                val scale = if (metric is Metered) TimeUnit.MILLISECONDS.toNanos(1).toDouble() else 1.0
+                val sample = metric.snapshot
+                snapshot["$name.mean"] = sample.mean / scale
+                snapshot["$name.p99"] = sample.get99thPercentile() / scale
+                snapshot["$name.max"] = sample.max / scale
+            }
+            if (metric is Gauge<*>) metric.value?.let { snapshot[name] = it }
+        }
+        return snapshot
+    }
+
+    override fun close() {
+        // The driver shuts the node down.
+    }
+}
+
+/**
+ * Starts a network map, a validating notary and [LoadTestConfiguration.localNodeCount] nodes in this process with
+ * the node driver, and runs [withNodes] against them. The network is shut down when [withNodes] returns.
+ */
+fun <A> startLocalNodes(configuration: LoadTestConfiguration, withNodes: (Nodes) -> A): A {
+    return driver(
+            portAllocation = PortAllocation.Incremental(configuration.localTunnelStartingPort),
+            networkMapStartStrategy = NetworkMapStartStrategy.Dedicated(startAutomatically = false),
+            startNodesInProcess = true
+    ) {
+        val networkMap = startDedicatedNetworkMapService()
+        val notary = startNode(DUMMY_NOTARY.name, setOf(ServiceInfo(ValidatingNotaryService.type)))
+        val simpleNodes = (1..configuration.localNodeCount).map {
+            startNode(X500Name("CN=Load Test Node $it,O=R3,OU=corda,L=London,C=GB"))
+        }
+        withNodes(Nodes(
+                notary = LocalNodeConnection(notary.getOrThrow()),
+                networkMap = LocalNodeConnection(networkMap.getOrThrow()),
+                simpleNodes = simpleNodes.map { LocalNodeConnection(it.getOrThrow()) }
+        ))
+    }
+}
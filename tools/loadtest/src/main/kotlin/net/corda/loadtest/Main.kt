@@ -4,9 +4,12 @@ import com.typesafe.config.ConfigFactory
 import com.typesafe.config.ConfigParseOptions
 import net.corda.loadtest.tests.StabilityTest
 import net.corda.loadtest.tests.crossCashTest
+import net.corda.loadtest.tests.dummyNotarisationTest
+import net.corda.loadtest.tests.issueAndNotariseOpenLoopTest
 import net.corda.loadtest.tests.selfIssueTest
 import net.corda.nodeapi.config.parseAs
 import java.io.File
+import java.util.concurrent.TimeUnit
 
 /**
  * This is how load testing works:
@@ -40,6 +43,21 @@ import java.io.File
  *   provided via system properties using vm arguments, e.g. -Dloadtest.nodeHosts.0="host" see [LoadTestConfiguration] for
  *   list of configurable properties.
  *
+ * Open loop tests:
+ *   [LoadTest]s wait for each batch of commands to complete before sending the next, so when the nodes fall behind
+ *   the load drops and the latencies reported are too low. In OPEN_LOOP_TEST mode an [OpenLoopLoadTest] sends flows at
+ *   a target arrival rate instead, regardless of how quickly they complete, and measures latency from the time each
+ *   flow was meant to be started.
+ *
+ * Running locally:
+ *   With `local = true` no remote nodes are needed: a network map, a notary and [LoadTestConfiguration.localNodeCount]
+ *   nodes are started in this process with the node driver and the tests run against them, without disruptions. This
+ *   is meant for measuring throughput and latency of a build on a developer machine.
+ *
+ * Reports:
+ *   The throughput, latency distribution and, for local nodes, node metrics of each run are written to
+ *   [LoadTestConfiguration.reportDirectory] (see [LoadTestReportWriter]).
+ *
  * Diagnostic:
  *   TODO currently the diagnostic is quite poor, all we can say is that the predicted state is different from the real
  *   one, or that some piece of work failed to execute in some state. Logs need to be checked manually.
@@ -60,17 +78,22 @@ fun main(args: Array<String>) {
     val resolvedConfig = customConfig.withFallback(defaultConfig).resolve()
     val loadTestConfiguration = resolvedConfig.parseAs<LoadTestConfiguration>()
 
-    if (loadTestConfiguration.nodeHosts.isEmpty()) {
+    if (!loadTestConfiguration.local && loadTestConfiguration.nodeHosts.isEmpty()) {
         throw IllegalArgumentException("Please specify at least one node host")
     }
 
     when (loadTestConfiguration.mode) {
         TestMode.LOAD_TEST -> runLoadTest(loadTestConfiguration)
         TestMode.STABILITY_TEST -> runStabilityTest(loadTestConfiguration)
+        TestMode.OPEN_LOOP_TEST -> runOpenLoopTest(loadTestConfiguration)
     }
 }
 
 private fun runLoadTest(loadTestConfiguration: LoadTestConfiguration) {
+    if (loadTestConfiguration.local) {
+        runLocalLoadTest(loadTestConfiguration)
+        return
+    }
     runLoadTests(loadTestConfiguration, listOf(
             selfIssueTest to LoadTest.RunParameters(
                     parallelism = 100,
@@ -131,6 +154,22 @@ private fun runLoadTest(loadTestConfiguration: LoadTestConfiguration) {
     ))
 }
 
+private fun runLocalLoadTest(loadTestConfiguration: LoadTestConfiguration) {
+    fun parameters(gatherFrequency: Int) = LoadTest.RunParameters(
+            parallelism = loadTestConfiguration.parallelism,
+            generateCount = loadTestConfiguration.generateCount,
+            clearDatabaseBeforeRun = false,
+            executionFrequency = loadTestConfiguration.executionFrequency,
+            gatherFrequency = gatherFrequency,
+            disruptionPatterns = listOf(listOf())
+    )
+    runLoadTests(loadTestConfiguration, listOf(
+            selfIssueTest to parameters(gatherFrequency = 1000),
+            crossCashTest to parameters(gatherFrequency = 10),
+            dummyNotarisationTest to parameters(gatherFrequency = 1000)
+    ))
+}
+
 private fun runStabilityTest(loadTestConfiguration: LoadTestConfiguration) {
     runLoadTests(loadTestConfiguration, listOf(
             // Self issue cash. This is a pre test step to make sure vault have enough cash to work with.
@@ -153,3 +192,17 @@ private fun runStabilityTest(loadTestConfiguration: LoadTestConfiguration) {
             )
     ))
 }
+
+private fun runOpenLoopTest(loadTestConfiguration: LoadTestConfiguration) {
+    val targetRate = loadTestConfiguration.executionFrequency.toDouble()
+    runOpenLoopLoadTests(loadTestConfiguration, listOf(
+            // Step up to the target rate, so the latency at each load level can be compared.
+            issueAndNotariseOpenLoopTest to OpenLoopLoadTest.RunParameters(
+                    profile = LoadProfile.Step(
+                            rates = listOf(0.25, 0.5, 0.75, 1.0).map { it * targetRate },
+                            stepMillis = TimeUnit.SECONDS.toMillis(loadTestConfiguration.openLoopStepSeconds.toLong())
+                    ),
+                    arrivals = ArrivalProcess.Poisson
+            )
+    ))
+}
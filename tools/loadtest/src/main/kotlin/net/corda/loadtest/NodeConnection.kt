@@ -16,15 +16,30 @@ import java.io.Closeable
 import java.io.OutputStream
 
 /**
- * [NodeConnection] allows executing remote shell commands on the node as well as executing RPCs.
+ * A node taking part in a load test, reached either over SSH ([RemoteNodeConnection]) or in this process
+ * ([LocalNodeConnection]). [Disruption]s need shell access and so only work with remote nodes.
+ */
+interface NodeConnection : Closeable {
+    val proxy: CordaRPCOps
+    val info: NodeInfo
+
+    /** Deletes the node's database, for [LoadTest.RunParameters.clearDatabaseBeforeRun]. */
+    fun clearDb()
+
+    /** A snapshot of the node's metrics by name, or an empty map if they can't be read from here. */
+    fun metrics(): Map<String, Any> = emptyMap()
+}
+
+/**
+ * [RemoteNodeConnection] allows executing remote shell commands on the node as well as executing RPCs.
  * The RPC Client start/stop must be controlled externally with [startClient] and [doWhileClientStopped]. For example
  * if we want to do some action on the node that requires bringing down of the node we should nest it in a
  * [doWhileClientStopped], otherwise the RPC link will be broken.
  * TODO: Auto reconnect has been enable for RPC connection, investigate if we still need [doWhileClientStopped].
  */
-class NodeConnection(val remoteNode: RemoteNode, private val jSchSession: Session, private val localTunnelAddress: HostAndPort) : Closeable {
+class RemoteNodeConnection(val remoteNode: RemoteNode, private val jSchSession: Session, private val localTunnelAddress: HostAndPort) : NodeConnection {
     companion object {
-        val log = loggerFor<NodeConnection>()
+        val log = loggerFor<RemoteNodeConnection>()
     }
 
     init {
@@ -35,8 +50,8 @@ class NodeConnection(val remoteNode: RemoteNode, private val jSchSession: Sessio
 
     private val client = CordaRPCClient(localTunnelAddress)
     private var rpcConnection: CordaRPCConnection? = null
-    val proxy: CordaRPCOps get() = rpcConnection?.proxy ?: throw IllegalStateException("proxy requested, but the client is not running")
-    val info: NodeInfo by lazy { proxy.nodeIdentity() }
+    override val proxy: CordaRPCOps get() = rpcConnection?.proxy ?: throw IllegalStateException("proxy requested, but the client is not running")
+    override val info: NodeInfo by lazy { proxy.nodeIdentity() }
 
     fun <A> doWhileClientStopped(action: () -> A): A {
         val connection = rpcConnection
@@ -160,7 +175,9 @@ class NodeConnection(val remoteNode: RemoteNode, private val jSchSession: Sessio
         }
     }
 
-    fun clearDb() = doWhileStopped { runShellCommandGetOutput("sudo rm ${remoteNode.nodeDirectory}/persistence.mv.db").getResultOrThrow() }
+    override fun clearDb() {
+        doWhileStopped { runShellCommandGetOutput("sudo rm ${remoteNode.nodeDirectory}/persistence.mv.db").getResultOrThrow() }
+    }
 
     override fun close() {
         rpcConnection?.close()
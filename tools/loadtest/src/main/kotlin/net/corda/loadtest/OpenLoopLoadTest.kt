@@ -0,0 +1,266 @@
+package net.corda.loadtest
+
+import net.corda.client.mock.Generator
+import net.corda.client.mock.generateOrFail
+import net.corda.core.messaging.CordaRPCOps
+import net.corda.core.messaging.FlowHandle
+import net.corda.core.then
+import org.HdrHistogram.ConcurrentHistogram
+import org.HdrHistogram.Histogram
+import org.slf4j.LoggerFactory
+import java.util.*
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+private val log = LoggerFactory.getLogger(OpenLoopLoadTest::class.java)
+
+/**
+ * A single flow to start over RPC.
+ *
+ * @param flowType The name under which the latency of the flow is reported, usually the flow's class name.
+ * @param node The node to start the flow on.
+ * @param start Starts the flow, for example with [CordaRPCOps.startFlow].
+ */
+class FlowRequest(val flowType: String, val node: NodeConnection, val start: (CordaRPCOps) -> FlowHandle<*>) {
+    override fun toString() = "$flowType on ${node.info.legalIdentity.name}"
+}
+
+/** The spacing between the intended send times of consecutive requests at a given arrival rate. */
+sealed class ArrivalProcess {
+    abstract fun nextGapNanos(ratePerSecond: Double, random: SplittableRandom): Long
+
+    /** Requests arrive evenly spaced. */
+    object Constant : ArrivalProcess() {
+        override fun nextGapNanos(ratePerSecond: Double, random: SplittableRandom) = (NANOS_PER_SECOND / ratePerSecond).toLong()
+    }
+
+    /** Requests arrive independently of each other, so the gaps are exponentially distributed. */
+    object Poisson : ArrivalProcess() {
+        override fun nextGapNanos(ratePerSecond: Double, random: SplittableRandom): Long {
+            return (-Math.log(1.0 - random.nextDouble()) * NANOS_PER_SECOND / ratePerSecond).toLong()
+        }
+    }
+}
+
+/** The target arrival rate, in requests per second, over the course of a run. */
+sealed class LoadProfile {
+    abstract val durationMillis: Long
+    abstract fun rateAt(elapsedMillis: Long): Double
+
+    /** A linear change of the rate from [fromRate] to [toRate], for finding the rate at which a node saturates. */
+    data class Ramp(val fromRate: Double, val toRate: Double, override val durationMillis: Long) : LoadProfile() {
+        init {
+            require(durationMillis > 0) { "A ramp must last for some time" }
+        }
+
+        override fun rateAt(elapsedMillis: Long) = fromRate + (toRate - fromRate) * elapsedMillis / durationMillis
+    }
+
+    /** A sequence of constant rates, each held for [stepMillis], for measuring latency at several load levels. */
+    data class Step(val rates: List<Double>, val stepMillis: Long) : LoadProfile() {
+        init {
+            require(rates.isNotEmpty()) { "There must be at least one step" }
+            require(stepMillis > 0) { "Each step must last for some time" }
+        }
+
+        override val durationMillis get() = rates.size * stepMillis
+        override fun rateAt(elapsedMillis: Long) = rates[Math.min((elapsedMillis / stepMillis).toInt(), rates.size - 1)]
+    }
+
+    /** A constant rate held for a long time, for finding leaks and degradation. */
+    data class Soak(val rate: Double, override val durationMillis: Long) : LoadProfile() {
+        override fun rateAt(elapsedMillis: Long) = rate
+    }
+}
+
+/**
+ * An open loop load test: unlike [LoadTest], which waits for each batch of commands to finish before sending more,
+ * requests are sent at the arrival rate of the [LoadProfile] regardless of how quickly the nodes respond. The latency
+ * of a request is measured from the time it was meant to be sent to the completion of [FlowHandle.returnValue], so time
+ * spent queueing behind slow requests, in the client as well as on the node, is counted instead of being omitted.
+ *
+ * There is no model of the expected state, so [generate] must produce requests which are valid in any order.
+ *
+ * @param testName The name of the test, used in reports.
+ * @param generate Generator of the requests to send.
+ */
+class OpenLoopLoadTest(val testName: String, val generate: Nodes.() -> Generator<FlowRequest>) {
+    /**
+     * @param profile The target arrival rate over time.
+     * @param arrivals The spacing of requests at the target rate.
+     * @param maxOutstanding The most requests which may be waiting for completion. Requests due while this many are
+     *     outstanding are not sent and are reported as failures, so a saturated node can't exhaust the client.
+     * @param drainTimeoutMillis How long to wait for outstanding requests once the profile has finished.
+     */
+    data class RunParameters(
+            val profile: LoadProfile,
+            val arrivals: ArrivalProcess = ArrivalProcess.Poisson,
+            val maxOutstanding: Int = 10000,
+            val drainTimeoutMillis: Long = 60000
+    )
+
+    /** Returns a report of the latency of each flow type, followed by one of all requests together. */
+    fun run(nodes: Nodes, parameters: RunParameters, random: SplittableRandom): List<LoadTestReport> {
+        log.info("Running open loop test '$testName' with parameters $parameters")
+        val generator = nodes.generate()
+        val recorder = LatencyRecorder()
+        val sendLag = ConcurrentHistogram(3)
+        // Starting a flow blocks until the node replies, so requests are sent from a pool which grows as needed to
+        // keep the schedule.
+        val senders = Executors.newCachedThreadPool()
+
+        val startNanos = System.nanoTime()
+        var sent = 0L
+        for (offsetNanos in scheduleNanos(parameters.profile, parameters.arrivals, random)) {
+            val intendedNanos = startNanos + offsetNanos
+            val request = generator.generateOrFail(random)
+            while (true) {
+                val wait = intendedNanos - System.nanoTime()
+                if (wait <= 0) break
+                LockSupport.parkNanos(wait)
+            }
+            if (recorder.outstandingCount >= parameters.maxOutstanding) {
+                log.warn("${parameters.maxOutstanding} requests outstanding, dropping $request")
+                recorder.drop(request.flowType)
+                continue
+            }
+            sent++
+            val id = recorder.start(request.flowType, intendedNanos)
+            senders.execute {
+                sendLag.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0L, System.nanoTime() - intendedNanos)))
+                try {
+                    val handle = request.start(request.node.proxy)
+                    handle.returnValue.then {
+                        val failed = try {
+                            handle.returnValue.get()
+                            false
+                        } catch (exception: Exception) {
+                            log.error("Failure of $request", exception)
+                            true
+                        }
+                        recorder.complete(id, System.nanoTime(), failed)
+                    }
+                } catch (exception: Exception) {
+                    log.error("Failed to start $request", exception)
+                    recorder.complete(id, System.nanoTime(), failed = true)
+                }
+            }
+        }
+        // The run is the time spent sending to the schedule, so that the throughput reported is the rate achieved
+        // rather than being diluted by however long the last requests took to drain.
+        val executionNanos = System.nanoTime() - startNanos
+        log.info("Sent $sent requests, waiting for ${recorder.outstandingCount} outstanding")
+        val drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(parameters.drainTimeoutMillis)
+        while (recorder.outstandingCount > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100)
+        }
+        val expired = recorder.expireOutstanding(Math.min(System.nanoTime(), drainDeadline))
+        if (expired > 0) log.warn("Gave up waiting for $expired outstanding requests, recorded them as failures")
+        senders.shutdown()
+        log.info("'$testName' done, sending lagged behind the schedule by up to " +
+                "${TimeUnit.MICROSECONDS.toMillis(sendLag.maxValue)} ms")
+
+        val total = Histogram(3)
+        val reports = recorder.flowTypes.map { flowType ->
+            val histogram = recorder.latencies(flowType)
+            total.add(histogram)
+            LoadTestReport.create("$testName: $flowType", emptyList(), histogram, recorder.failures(flowType), executionNanos, nodes)
+        }
+        return reports + LoadTestReport.create(testName, emptyList(), total, recorder.totalFailures, executionNanos, nodes)
+    }
+}
+
+/**
+ * The intended send times of the requests of a run, in nanoseconds after its start. The gap before each request is
+ * drawn from [arrivals] at the rate [profile] gives for the time of the previous request.
+ */
+internal fun scheduleNanos(profile: LoadProfile, arrivals: ArrivalProcess, random: SplittableRandom): Sequence<Long> {
+    val endNanos = TimeUnit.MILLISECONDS.toNanos(profile.durationMillis)
+    var intendedNanos = 0L
+    return generateSequence {
+        val rate = profile.rateAt(TimeUnit.NANOSECONDS.toMillis(intendedNanos))
+        // A rate of zero, for example at the start of a ramp, is treated as one request per second.
+        intendedNanos += arrivals.nextGapNanos(Math.max(rate, 1.0), random)
+        if (intendedNanos < endNanos) intendedNanos else null
+    }
+}
+
+/**
+ * Records the latency of each request against its flow type, in microseconds from the time it was meant to be sent.
+ *
+ * Requests dropped because too many were outstanding were never sent, so they only count as failures. Requests still
+ * outstanding when the run stops waiting are recorded as failures with the latency they had reached by then, so that
+ * the slowest requests of a saturated node are not left out of the results.
+ */
+internal class LatencyRecorder {
+    private class Request(val flowType: String, val intendedNanos: Long)
+
+    private val outstanding = ConcurrentHashMap<Long, Request>()
+    private val nextId = AtomicLong()
+    private val latencies = ConcurrentHashMap<String, Histogram>()
+    private val failures = ConcurrentHashMap<String, AtomicLong>()
+
+    val outstandingCount: Int get() = outstanding.size
+
+    /** The flow types with any latency or failure recorded, in order. */
+    val flowTypes: SortedSet<String> get() = (latencies.keys + failures.keys).toSortedSet()
+
+    val totalFailures: Long get() = failures.values.fold(0L) { sum, count -> sum + count.get() }
+
+    /** Records that a request is being sent, returning the id with which to [complete] it. */
+    fun start(flowType: String, intendedNanos: Long): Long {
+        val id = nextId.getAndIncrement()
+        outstanding[id] = Request(flowType, intendedNanos)
+        return id
+    }
+
+    /** Records the completion of a request. Requests which have already been expired are not recorded again. */
+    fun complete(id: Long, nowNanos: Long, failed: Boolean) {
+        val request = outstanding.remove(id) ?: return
+        record(request, nowNanos, failed)
+    }
+
+    /** Records a request which was not sent. */
+    fun drop(flowType: String) = countFailure(flowType)
+
+    /** Records every outstanding request as failed at [deadlineNanos], returning how many there were. */
+    fun expireOutstanding(deadlineNanos: Long): Int {
+        var expired = 0
+        for (id in outstanding.keys) {
+            val request = outstanding.remove(id) ?: continue
+            record(request, deadlineNanos, failed = true)
+            expired++
+        }
+        return expired
+    }
+
+    fun latencies(flowType: String): Histogram = latencies[flowType] ?: Histogram(3)
+
+    fun failures(flowType: String): Long = failures[flowType]?.get() ?: 0L
+
+    private fun record(request: Request, endNanos: Long, failed: Boolean) {
+        val histogram = latencies.getOrPut(request.flowType) { ConcurrentHistogram(3) }
+        histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(0L, endNanos - request.intendedNanos)))
+        if (failed) countFailure(request.flowType)
+    }
+
+    private fun countFailure(flowType: String) {
+        failures.getOrPut(flowType) { AtomicLong() }.incrementAndGet()
+    }
+}
+
+/** Runs the given [OpenLoopLoadTest]s in turn and writes their reports to [LoadTestConfiguration.reportDirectory]. */
+fun runOpenLoopLoadTests(configuration: LoadTestConfiguration, tests: List<Pair<OpenLoopLoadTest, OpenLoopLoadTest.RunParameters>>) {
+    val seed = configuration.seed ?: Random().nextLong()
+    log.info("Using seed $seed")
+    val random = SplittableRandom(seed)
+    val reports = withLoadTestNodes(configuration) { nodes ->
+        tests.flatMap { (test, parameters) -> test.run(nodes, parameters, random) }
+    }
+    LoadTestReportWriter(configuration.reportDirectory).write(seed, reports)
+}
+
+private val NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1).toDouble()
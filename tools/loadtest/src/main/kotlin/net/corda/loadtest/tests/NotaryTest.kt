@@ -8,8 +8,8 @@ import net.corda.contracts.asset.DUMMY_CASH_ISSUER
 import net.corda.contracts.asset.DUMMY_CASH_ISSUER_KEY
 import net.corda.core.contracts.DummyContract
 import net.corda.core.flows.FlowException
+import net.corda.core.getOrThrow
 import net.corda.core.messaging.startFlow
-import net.corda.core.success
 import net.corda.core.transactions.SignedTransaction
 import net.corda.flows.FinalityFlow
 import net.corda.loadtest.LoadTest
@@ -41,10 +41,9 @@ val dummyNotarisationTest = LoadTest<NotariseCommand, Unit>(
         execute = { (issueTx, moveTx, node) ->
             try {
                 val proxy = node.proxy
-                val issueFlow = proxy.startFlow(::FinalityFlow, issueTx)
-                issueFlow.returnValue.success {
-                    val moveFlow = proxy.startFlow(::FinalityFlow, moveTx)
-                }
+                // Wait for both transactions so the time taken by the command is the notarisation latency.
+                proxy.startFlow(::FinalityFlow, issueTx).returnValue.getOrThrow()
+                proxy.startFlow(::FinalityFlow, moveTx).returnValue.getOrThrow()
             } catch (e: FlowException) {
                 log.error("Failure", e)
             }
@@ -0,0 +1,43 @@
+package net.corda.loadtest.tests
+
+import net.corda.client.mock.Generator
+import net.corda.client.mock.frequency
+import net.corda.client.mock.int
+import net.corda.client.mock.pickOne
+import net.corda.contracts.asset.DUMMY_CASH_ISSUER
+import net.corda.contracts.asset.DUMMY_CASH_ISSUER_KEY
+import net.corda.core.contracts.DummyContract
+import net.corda.core.contracts.USD
+import net.corda.core.getOrThrow
+import net.corda.core.messaging.startFlow
+import net.corda.flows.CashIssueFlow
+import net.corda.flows.FinalityFlow
+import net.corda.loadtest.FlowRequest
+import net.corda.loadtest.OpenLoopLoadTest
+
+/**
+ * Self issues cash, and issues and moves dummy states, on random nodes. Neither depends on the vault's contents, so the
+ * requests may be sent in any order and at any rate.
+ */
+val issueAndNotariseOpenLoopTest = OpenLoopLoadTest("Open loop issuance and notarisation") {
+    val issue = Generator.pickOne(simpleNodes).bind { node ->
+        generateIssue(1000, USD, notary.info.notaryIdentity, listOf(node.info.legalIdentity), anonymous = true).map {
+            FlowRequest(CashIssueFlow::class.java.simpleName, node) { proxy -> it.startFlow(proxy) }
+        }
+    }
+    val notarise = Generator.pickOne(simpleNodes).combine(Generator.int()) { node, magicNumber ->
+        val issueTx = DummyContract.generateInitial(magicNumber, notary.info.notaryIdentity, DUMMY_CASH_ISSUER).apply {
+            signWith(DUMMY_CASH_ISSUER_KEY)
+        }
+        val asset = issueTx.toWireTransaction().outRef<DummyContract.SingleOwnerState>(0)
+        val moveTx = DummyContract.move(asset, DUMMY_CASH_ISSUER.party).apply {
+            signWith(DUMMY_CASH_ISSUER_KEY)
+        }
+        // The issue has no inputs so only the move is sent to the notary, and it can't be until the issue is recorded.
+        FlowRequest(FinalityFlow::class.java.simpleName, node) { proxy ->
+            proxy.startFlow(::FinalityFlow, issueTx.toSignedTransaction(false)).returnValue.getOrThrow()
+            proxy.startFlow(::FinalityFlow, moveTx.toSignedTransaction(false))
+        }
+    }
+    Generator.frequency(0.5 to issue, 0.5 to notarise)
+}
@@ -0,0 +1,75 @@
+package net.corda.loadtest
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.Test
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+class OpenLoopLoadTestTest {
+    private val millis = TimeUnit.MILLISECONDS.toNanos(1)
+    private val random = SplittableRandom(0)
+
+    @Test
+    fun `constant arrivals are evenly spaced and stop before the end of the profile`() {
+        val schedule = scheduleNanos(LoadProfile.Soak(10.0, 1000), ArrivalProcess.Constant, random).toList()
+        assertThat(schedule).isEqualTo((1L..9L).map { it * 100 * millis })
+    }
+
+    @Test
+    fun `step profile changes the rate at each step`() {
+        val schedule = scheduleNanos(LoadProfile.Step(listOf(10.0, 20.0), 1000), ArrivalProcess.Constant, random).toList()
+        assertThat(schedule.count { it < 1000 * millis }).isEqualTo(9)
+        assertThat(schedule.count { it >= 1000 * millis }).isEqualTo(20)
+    }
+
+    @Test
+    fun `profiles must last for some time`() {
+        assertThatThrownBy { LoadProfile.Ramp(0.0, 10.0, 0) }.isInstanceOf(IllegalArgumentException::class.java)
+        assertThatThrownBy { LoadProfile.Step(listOf(10.0), 0) }.isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun `poisson arrivals keep to the rate on average`() {
+        val schedule = scheduleNanos(LoadProfile.Soak(100.0, 10000), ArrivalProcess.Poisson, random).toList()
+        assertThat(schedule.size).isBetween(900, 1100)
+        assertThat(schedule).isSorted
+    }
+
+    @Test
+    fun `completed request latency is measured from its intended start`() {
+        val recorder = LatencyRecorder()
+        val id = recorder.start("Flow", 1000 * millis)
+        recorder.complete(id, 1250 * millis, failed = false)
+        assertThat(recorder.latencies("Flow").totalCount).isEqualTo(1)
+        assertThat(recorder.latencies("Flow").maxValue).isBetween(249000L, 251000L)
+        assertThat(recorder.failures("Flow")).isZero()
+        assertThat(recorder.outstandingCount).isZero()
+    }
+
+    @Test
+    fun `dropped requests are failures without a latency`() {
+        val recorder = LatencyRecorder()
+        recorder.drop("Flow")
+        assertThat(recorder.flowTypes).containsExactly("Flow")
+        assertThat(recorder.failures("Flow")).isEqualTo(1)
+        assertThat(recorder.latencies("Flow").totalCount).isZero()
+    }
+
+    @Test
+    fun `outstanding requests are recorded at the deadline and late completions ignored`() {
+        val recorder = LatencyRecorder()
+        val slow = recorder.start("Flow", 0)
+        val fast = recorder.start("Flow", 0)
+        recorder.complete(fast, 100 * millis, failed = false)
+
+        assertThat(recorder.expireOutstanding(5000 * millis)).isEqualTo(1)
+        recorder.complete(slow, 9000 * millis, failed = false)
+
+        val histogram = recorder.latencies("Flow")
+        assertThat(histogram.totalCount).isEqualTo(2)
+        assertThat(histogram.maxValue).isBetween(4990000L, 5010000L)
+        assertThat(recorder.failures("Flow")).isEqualTo(1)
+        assertThat(recorder.totalFailures).isEqualTo(1)
+    }
+}
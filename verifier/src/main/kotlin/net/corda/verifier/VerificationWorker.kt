@@ -0,0 +1,76 @@
+package net.corda.verifier
+
+import net.corda.core.ErrorOr
+import net.corda.core.transactions.LedgerTransaction
+import net.corda.core.utilities.debug
+import net.corda.core.utilities.loggerFor
+import net.corda.nodeapi.VerifierApi
+import org.apache.activemq.artemis.api.core.SimpleString
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.Semaphore
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Verifies the requests handed to it on [parallelism] threads. [submit] blocks while every thread is busy, so that
+ * requests are not taken off the queue faster than they can be verified. Each result carries the message its request
+ * came from, so that the message can be acknowledged once all of its requests have been answered.
+ */
+internal class VerificationWorker<M>(parallelism: Int,
+                                     private val verifyTransaction: (LedgerTransaction) -> Unit = { it.verify() }) {
+    companion object {
+        private val log = loggerFor<VerificationWorker<*>>()
+    }
+
+    class RequestMessage<out M>(val message: M, requestCount: Int) {
+        private val outstanding = AtomicInteger(requestCount)
+
+        /** Records one of the requests in the message as answered, returning true once all of them have been. */
+        fun answered(): Boolean = outstanding.decrementAndGet() == 0
+    }
+
+    class Result<out M>(val requestMessage: RequestMessage<M>,
+                        val responseAddress: SimpleString,
+                        val response: VerifierApi.VerificationResponse)
+
+    private val verificationPool = Executors.newFixedThreadPool(parallelism)
+    private val verificationSlots = Semaphore(parallelism)
+    private val results = LinkedBlockingQueue<Result<M>>()
+
+    fun submit(message: M, requests: List<VerifierApi.VerificationRequest>) {
+        val requestMessage = RequestMessage(message, requests.size)
+        for (request in requests) {
+            verificationSlots.acquire()
+            verificationPool.execute {
+                try {
+                    results.put(Result(requestMessage, request.responseAddress, verify(request)))
+                } finally {
+                    verificationSlots.release()
+                }
+            }
+        }
+    }
+
+    private fun verify(request: VerifierApi.VerificationRequest): VerifierApi.VerificationResponse {
+        log.debug { "Received verification request with id ${request.verificationId}" }
+        val result = ErrorOr.catch {
+            verifyTransaction(request.transaction)
+        }
+        if (result.error != null) {
+            log.debug { "Verification returned with error ${result.error}" }
+        }
+        return VerifierApi.VerificationResponse(request.verificationId, result.error)
+    }
+
+    /** Waits for a result, then returns it along with any others that are ready, up to [maxResults] in all. */
+    fun takeResults(maxResults: Int): List<Result<M>> {
+        val batch = ArrayList<Result<M>>(maxResults)
+        batch += results.take()
+        results.drainTo(batch, maxResults - 1)
+        return batch
+    }
+
+    fun shutdown() {
+        verificationPool.shutdown()
+    }
+}
@@ -4,10 +4,8 @@ import com.google.common.net.HostAndPort
 import com.typesafe.config.Config
 import com.typesafe.config.ConfigFactory
 import com.typesafe.config.ConfigParseOptions
-import net.corda.core.ErrorOr
 import net.corda.nodeapi.internal.addShutdownHook
 import net.corda.core.div
-import net.corda.core.utilities.debug
 import net.corda.core.utilities.loggerFor
 import net.corda.nodeapi.ArtemisTcpTransport.Companion.tcpTransport
 import net.corda.nodeapi.ConnectionDirection
@@ -16,8 +14,13 @@ import net.corda.nodeapi.VerifierApi.VERIFICATION_REQUESTS_QUEUE_NAME
 import net.corda.nodeapi.config.NodeSSLConfiguration
 import net.corda.nodeapi.config.getValue
 import org.apache.activemq.artemis.api.core.client.ActiveMQClient
+import org.apache.activemq.artemis.api.core.client.ClientConsumer
+import org.apache.activemq.artemis.api.core.client.ClientMessage
+import org.apache.activemq.artemis.api.core.client.ClientSession
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.util.concurrent.LinkedBlockingQueue
+import kotlin.concurrent.thread
 
 data class VerifierConfiguration(
         override val baseDirectory: Path,
@@ -26,11 +29,20 @@ data class VerifierConfiguration(
     val nodeHostAndPort: HostAndPort by config
     override val keyStorePassword: String by config
     override val trustStorePassword: String by config
+    /** The number of transactions verified at the same time, or zero for one per available processor. */
+    val parallelism: Int by config
+    /**
+     * The size in bytes of the buffer of requests this verifier takes from the node ahead of processing them. Keeping
+     * it small leaves the remaining requests on the queue for other verifiers rather than hoarding them.
+     */
+    val consumerWindowSize: Int by config
 }
 
 class Verifier {
     companion object {
         private val log = loggerFor<Verifier>()
+        private val MAX_RESPONSE_BATCH_SIZE = 64
+        private val ACKNOWLEDGEMENT_INTERVAL_MILLIS = 100L
 
         fun loadConfiguration(baseDirectory: Path, configPath: Path): VerifierConfiguration {
             val defaultConfig = ConfigFactory.parseResources("verifier-reference.conf", ConfigParseOptions.defaults().setAllowMissing(false))
@@ -47,35 +59,81 @@ class Verifier {
             val locator = ActiveMQClient.createServerLocatorWithHA(
                     tcpTransport(ConnectionDirection.Outbound(), verifierConfig.nodeHostAndPort, verifierConfig)
             )
+            locator.consumerWindowSize = verifierConfig.consumerWindowSize
             val sessionFactory = locator.createSessionFactory()
-            val session = sessionFactory.createSession(
+            fun createSession() = sessionFactory.createSession(
                     VerifierApi.VERIFIER_USERNAME, VerifierApi.VERIFIER_USERNAME, false, true, true, locator.isPreAcknowledge, locator.ackBatchSize
             )
+            // Artemis sessions must not be shared between threads, so requests and replies each get their own.
+            val requestSession = createSession()
+            val replySession = createSession()
+            val parallelism = if (verifierConfig.parallelism > 0) verifierConfig.parallelism else Runtime.getRuntime().availableProcessors()
+            val worker = VerificationWorker<ClientMessage>(parallelism)
             addShutdownHook {
                 log.info("Shutting down")
-                session.close()
+                worker.shutdown()
+                requestSession.close()
+                replySession.close()
                 sessionFactory.close()
             }
-            val consumer = session.createConsumer(VERIFICATION_REQUESTS_QUEUE_NAME)
-            val replyProducer = session.createProducer()
-            consumer.setMessageHandler {
-                val request = VerifierApi.VerificationRequest.fromClientMessage(it)
-                log.debug { "Received verification request with id ${request.verificationId}" }
-                val result = ErrorOr.catch {
-                    request.transaction.verify()
+            val acknowledgements = LinkedBlockingQueue<ClientMessage>()
+            val consumer = requestSession.createConsumer(VERIFICATION_REQUESTS_QUEUE_NAME)
+            thread(name = "Verifier replies", isDaemon = true) { sendReplies(replySession, worker, acknowledgements) }
+            requestSession.start()
+            log.info("Verifier started with parallelism $parallelism")
+            receiveRequests(consumer, worker, acknowledgements)
+        }
+
+        /**
+         * Hands the requests received by [consumer] to the [worker]. Messages whose requests have all been answered
+         * are acknowledged here, as only the thread which receives from a session may use it.
+         */
+        private fun receiveRequests(consumer: ClientConsumer,
+                                    worker: VerificationWorker<ClientMessage>,
+                                    acknowledgements: LinkedBlockingQueue<ClientMessage>) {
+            while (!consumer.isClosed) {
+                val message = consumer.receive(ACKNOWLEDGEMENT_INTERVAL_MILLIS)
+                generateSequence { acknowledgements.poll() }.forEach { it.individualAcknowledge() }
+                if (message != null) {
+                    val requests = try {
+                        VerifierApi.VerificationRequest.listFromClientMessage(message)
+                    } catch (e: Exception) {
+                        log.error("Unable to read verification request message, dropping it", e)
+                        message.individualAcknowledge()
+                        continue
+                    }
+                    worker.submit(message, requests)
                 }
-                if (result.error != null) {
-                    log.debug { "Verification returned with error ${result.error}" }
+            }
+        }
+
+        /**
+         * Sends the responses from [worker] back to the node, batching together those which are ready at the same
+         * time. A request message is queued for acknowledgement once all of its responses have been sent.
+         */
+        private fun sendReplies(session: ClientSession,
+                                worker: VerificationWorker<ClientMessage>,
+                                acknowledgements: LinkedBlockingQueue<ClientMessage>) {
+            val producer = session.createProducer()
+            while (true) {
+                val batch = worker.takeResults(MAX_RESPONSE_BATCH_SIZE)
+                for ((responseAddress, resultsForAddress) in batch.groupBy { it.responseAddress }) {
+                    try {
+                        val reply = session.createMessage(false)
+                        VerifierApi.VerificationResponse.writeBatchToClientMessage(resultsForAddress.map { it.response }, reply)
+                        producer.send(responseAddress, reply)
+                    } catch (e: Exception) {
+                        // The request messages are left unacknowledged, so they are redelivered if the verifier restarts.
+                        log.error("Unable to send ${resultsForAddress.size} verification responses to $responseAddress", e)
+                        continue
+                    }
+                    for (result in resultsForAddress) {
+                        if (result.requestMessage.answered()) {
+                            acknowledgements.put(result.requestMessage.message)
+                        }
+                    }
                 }
-                val reply = session.createMessage(false)
-                val response = VerifierApi.VerificationResponse(request.verificationId, result.error)
-                response.writeToClientMessage(reply)
-                replyProducer.send(request.responseAddress, reply)
-                it.acknowledge()
             }
-            session.start()
-            log.info("Verifier started")
-            Thread.sleep(Long.MAX_VALUE)
         }
     }
-}
\ No newline at end of file
+}
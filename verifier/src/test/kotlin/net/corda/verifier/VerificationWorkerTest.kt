@@ -0,0 +1,78 @@
+package net.corda.verifier
+
+import net.corda.core.contracts.TransactionType
+import net.corda.core.crypto.SecureHash
+import net.corda.core.transactions.LedgerTransaction
+import net.corda.nodeapi.VerifierApi
+import org.apache.activemq.artemis.api.core.SimpleString
+import org.junit.After
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class VerificationWorkerTest {
+    private val responseAddress = SimpleString("responses")
+    private val workers = ArrayList<VerificationWorker<*>>()
+
+    @After
+    fun cleanUp() {
+        workers.forEach { it.shutdown() }
+    }
+
+    @Test
+    fun `no more requests are verified at once than the parallelism`() {
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        val worker = createWorker<String>(2) {
+            maxRunning.accumulateAndGet(running.incrementAndGet()) { a, b -> Math.max(a, b) }
+            Thread.sleep(20)
+            running.decrementAndGet()
+        }
+        worker.submit("message", requests(1L..8L))
+        val responses = takeResults(worker, 8).map { it.response }
+        assertEquals((1L..8L).toSet(), responses.map { it.verificationId }.toSet())
+        assertTrue(maxRunning.get() <= 2)
+    }
+
+    @Test
+    fun `message is answered once all of its requests are`() {
+        val worker = createWorker<String>(4) {}
+        worker.submit("message", requests(1L..3L))
+        val answered = takeResults(worker, 3).map { it.requestMessage.answered() }
+        assertEquals(listOf(false, false, true), answered)
+    }
+
+    @Test
+    fun `failures are reported against their own request`() {
+        val failure = IllegalArgumentException("Invalid")
+        val failingTransaction = ledgerTransaction()
+        val worker = createWorker<String>(2) { if (it === failingTransaction) throw failure }
+        worker.submit("message", listOf(
+                VerifierApi.VerificationRequest(1L, ledgerTransaction(), responseAddress),
+                VerifierApi.VerificationRequest(2L, failingTransaction, responseAddress)))
+        val responses = takeResults(worker, 2).map { it.response }.associateBy { it.verificationId }
+        assertNull(responses[1L]!!.exception)
+        assertEquals(failure, responses[2L]!!.exception)
+    }
+
+    private fun <M> createWorker(parallelism: Int, verify: (LedgerTransaction) -> Unit): VerificationWorker<M> {
+        return VerificationWorker<M>(parallelism, verify).apply { workers += this }
+    }
+
+    private fun <M> takeResults(worker: VerificationWorker<M>, count: Int): List<VerificationWorker.Result<M>> {
+        val results = ArrayList<VerificationWorker.Result<M>>()
+        while (results.size < count) {
+            results += worker.takeResults(count - results.size)
+        }
+        return results
+    }
+
+    private fun requests(ids: LongRange) = ids.map { VerifierApi.VerificationRequest(it, ledgerTransaction(), responseAddress) }
+
+    private fun ledgerTransaction(): LedgerTransaction {
+        return LedgerTransaction(emptyList(), emptyList(), emptyList(), emptyList(), SecureHash.randomSHA256(), null,
+                emptyList(), null, TransactionType.General)
+    }
+}
@@ -1,10 +1,11 @@
 package net.corda.webserver.api
 
 import net.corda.core.node.NodeInfo
+import org.glassfish.jersey.server.ChunkedOutput
 import java.time.LocalDateTime
-import javax.ws.rs.GET
-import javax.ws.rs.Path
-import javax.ws.rs.Produces
+import javax.ws.rs.*
+import javax.ws.rs.container.AsyncResponse
+import javax.ws.rs.container.Suspended
 import javax.ws.rs.core.MediaType
 import javax.ws.rs.core.Response
 
@@ -40,4 +41,37 @@ interface APIServer {
     @Path("info")
     @Produces(MediaType.APPLICATION_JSON)
     fun info(): NodeInfo
+
+    /**
+     * Responds once this node has registered with the network map service. The request is suspended until then, so
+     * waiting doesn't hold a server thread.
+     */
+    @GET
+    @Path("registered")
+    @Produces(MediaType.TEXT_PLAIN)
+    fun registered(@Suspended response: AsyncResponse)
+
+    /**
+     * Report a page of the unconsumed states in the vault, as a JSON array which is streamed as it is rendered. Pages
+     * are numbered from 0, and the total number of states available is given in the X-Total-States header.
+     */
+    @GET
+    @Path("vault/states")
+    @Produces(MediaType.APPLICATION_JSON)
+    fun vaultStates(@QueryParam("page") @DefaultValue("0") page: Int,
+                    @QueryParam("size") @DefaultValue("200") size: Int): Response
+
+    /**
+     * Report the transactions verified by this node as newline delimited JSON, one transaction per line. If
+     * [follow] is true the response is kept open and each newly verified transaction is sent as it is recorded, with a
+     * blank line sent periodically while there are none, which readers should skip.
+     */
+    @GET
+    @Path("transactions")
+    @Produces(NDJSON)
+    fun transactions(@QueryParam("follow") @DefaultValue("false") follow: Boolean): ChunkedOutput<String>
+
+    companion object {
+        const val NDJSON = "application/x-ndjson"
+    }
 }
\ No newline at end of file
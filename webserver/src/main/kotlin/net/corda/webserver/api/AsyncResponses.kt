@@ -0,0 +1,15 @@
+package net.corda.webserver.api
+
+import com.google.common.util.concurrent.ListenableFuture
+import net.corda.core.failure
+import net.corda.core.success
+import javax.ws.rs.container.AsyncResponse
+
+/**
+ * Resumes [response] with the result of this future, for example a flow's return value, once it completes. A web API
+ * which takes a [javax.ws.rs.container.Suspended] [AsyncResponse] can start a flow and return straight away, rather
+ * than holding a server thread while the flow runs.
+ */
+fun <T> ListenableFuture<T>.resumeOn(response: AsyncResponse): ListenableFuture<T> {
+    return success { response.resume(it) }.failure { response.resume(it) }
+}
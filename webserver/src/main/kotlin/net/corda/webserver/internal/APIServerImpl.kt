@@ -1,12 +1,38 @@
 package net.corda.webserver.internal
 
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.databind.SerializationFeature
+import net.corda.client.rpc.notUsed
+import net.corda.core.contracts.ContractState
 import net.corda.core.messaging.CordaRPCOps
+import net.corda.core.messaging.vaultQueryBy
+import net.corda.core.node.services.vault.PageSpecification
+import net.corda.core.map
+import net.corda.core.transactions.SignedTransaction
+import net.corda.core.utilities.loggerFor
+import net.corda.jackson.JacksonSupport
 import net.corda.webserver.api.APIServer
+import net.corda.webserver.api.resumeOn
+import org.glassfish.jersey.server.ChunkedOutput
+import rx.Observable
+import rx.Subscription
+import rx.schedulers.Schedulers
+import java.io.IOException
 import java.time.LocalDateTime
 import java.time.ZoneId
+import java.util.concurrent.TimeUnit
+import javax.ws.rs.container.AsyncResponse
+import javax.ws.rs.core.MediaType
 import javax.ws.rs.core.Response
+import javax.ws.rs.core.StreamingOutput
+
+class APIServerImpl(val rpcOps: CordaRPCOps, val mapper: ObjectMapper) : APIServer {
+    private companion object {
+        val log = loggerFor<APIServerImpl>()
+        const val registrationTimeoutSeconds = 60L
+        const val keepAliveSeconds = 30L
+    }
 
-class APIServerImpl(val rpcOps: CordaRPCOps) : APIServer {
     override fun serverTime(): LocalDateTime {
         return LocalDateTime.ofInstant(rpcOps.currentNodeTime(), ZoneId.of("UTC"))
     }
@@ -19,4 +45,68 @@ class APIServerImpl(val rpcOps: CordaRPCOps) : APIServer {
     }
 
     override fun info() = rpcOps.nodeIdentity()
+
+    override fun registered(response: AsyncResponse) {
+        response.setTimeout(registrationTimeoutSeconds, TimeUnit.SECONDS)
+        rpcOps.waitUntilRegisteredWithNetworkMap().map { "registered" }.resumeOn(response)
+    }
+
+    override fun vaultStates(page: Int, size: Int): Response {
+        val states = rpcOps.vaultQueryBy<ContractState>(paging = PageSpecification(page, size))
+        val body = StreamingOutput { output ->
+            val rendered = states.states.asSequence().map { mapOf("ref" to it.ref, "state" to it.state.data) }
+            JacksonSupport.writeArray(mapper, output, rendered.iterator())
+        }
+        return Response.ok(body, MediaType.APPLICATION_JSON).header("X-Total-States", states.totalStatesAvailable).build()
+    }
+
+    override fun transactions(follow: Boolean): ChunkedOutput<String> {
+        val output = SubscribedOutput()
+        val feed = rpcOps.verifiedTransactionsFeed()
+        val writer = mapper.writer().without(SerializationFeature.INDENT_OUTPUT)
+        val snapshot = Observable.from(feed.snapshot)
+        val lines = if (follow) {
+            // Nothing may be written for a long time while following the feed, so a blank line is sent every so often.
+            // Writing to a client which has gone away fails, which ends the subscription to the node's feed.
+            val keepAlives = Observable.interval(keepAliveSeconds, keepAliveSeconds, TimeUnit.SECONDS).map { "\n" }
+            snapshot.concatWith(feed.updates).map { writer.writeValueAsString(summarise(it)) + "\n" }.mergeWith(keepAlives)
+        } else {
+            feed.updates.notUsed()
+            snapshot.map { writer.writeValueAsString(summarise(it)) + "\n" }
+        }
+        // The snapshot is written from another thread, so that it is streamed to the client rather than queued. A
+        // failed write, when the client has gone away, ends the subscription.
+        output.subscription = lines.subscribeOn(Schedulers.io()).subscribe({
+            output.write(it)
+        }, {
+            if (it is IOException) log.debug("Client stopped reading the transaction feed", it) else log.warn("Transaction feed failed", it)
+            output.close()
+        }, {
+            output.close()
+        })
+        return output
+    }
+
+    /** Unsubscribes from the feed it is written from once it is closed, whether by the feed ending or by Jersey. */
+    private class SubscribedOutput : ChunkedOutput<String>(String::class.java) {
+        @Volatile var subscription: Subscription? = null
+            set(value) {
+                field = value
+                // The output may have been closed before there was a subscription to end.
+                if (isClosed) value?.unsubscribe()
+            }
+
+        override fun close() {
+            subscription?.unsubscribe()
+            super.close()
+        }
+    }
+
+    private fun summarise(stx: SignedTransaction): Map<String, Any?> = mapOf(
+            "id" to stx.id,
+            "inputs" to stx.tx.inputs,
+            "outputs" to stx.tx.outputs.map { it.data },
+            "commands" to stx.tx.commands.map { it.value.javaClass.name },
+            "notary" to stx.tx.notary
+    )
 }
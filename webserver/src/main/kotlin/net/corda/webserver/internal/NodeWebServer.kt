@@ -124,13 +124,16 @@ class NodeWebServer(val config: WebServerConfig) {
                 }
             }
             setAttribute("rpc", localRpc)
-            addServlet(DataUploadServlet::class.java, "/upload/*")
-            addServlet(AttachmentDownloadServlet::class.java, "/attachments/*")
+            // Uploads, downloads and API calls are handled asynchronously where they can be, so that slow clients and
+            // long running RPCs don't exhaust the server's thread pool.
+            addServlet(DataUploadServlet::class.java, "/upload/*").isAsyncSupported = true
+            addServlet(AttachmentDownloadServlet::class.java, "/attachments/*").isAsyncSupported = true
 
+            val objectMapperConfig = ObjectMapperConfig(localRpc)
             val resourceConfig = ResourceConfig()
-                .register(ObjectMapperConfig(localRpc))
+                .register(objectMapperConfig)
                 .register(ResponseFilter())
-                .register(APIServerImpl(localRpc))
+                .register(APIServerImpl(localRpc, objectMapperConfig.defaultObjectMapper))
 
             val webAPIsOnClasspath = pluginRegistries.flatMap { x -> x.webApis }
             for (webapi in webAPIsOnClasspath) {
@@ -169,6 +172,7 @@ class NodeWebServer(val config: WebServerConfig) {
 
             val container = ServletContainer(resourceConfig)
             val jerseyServlet = ServletHolder(container)
+            jerseyServlet.isAsyncSupported = true
             addServlet(jerseyServlet, "/api/*")
             jerseyServlet.initOrder = 0 // Initialise at server start
         }
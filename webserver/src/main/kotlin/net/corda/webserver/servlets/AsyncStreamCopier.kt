@@ -0,0 +1,48 @@
+package net.corda.webserver.servlets
+
+import net.corda.core.utilities.loggerFor
+import java.io.InputStream
+import javax.servlet.AsyncContext
+import javax.servlet.ServletOutputStream
+import javax.servlet.WriteListener
+
+/**
+ * Copies [input] to the response of [context] using non-blocking servlet IO. Chunks are only written while the
+ * client can accept them, so a slow client holds a buffer rather than a Jetty thread. The response has no length and
+ * so is sent with chunked transfer encoding. [input] is closed and the request completed once the copy finishes or
+ * fails.
+ */
+class AsyncStreamCopier(private val input: InputStream,
+                        private val context: AsyncContext,
+                        chunkSize: Int = DEFAULT_CHUNK_SIZE) : WriteListener {
+    companion object {
+        const val DEFAULT_CHUNK_SIZE = 64 * 1024
+        private val log = loggerFor<AsyncStreamCopier>()
+
+        /** Starts copying [input] to the response of [context]. */
+        fun start(input: InputStream, context: AsyncContext) {
+            context.response.outputStream.setWriteListener(AsyncStreamCopier(input, context))
+        }
+    }
+
+    private val output: ServletOutputStream = context.response.outputStream
+    private val buffer = ByteArray(chunkSize)
+
+    override fun onWritePossible() {
+        while (output.isReady) {
+            val read = input.read(buffer)
+            if (read < 0) {
+                input.close()
+                context.complete()
+                return
+            }
+            output.write(buffer, 0, read)
+        }
+    }
+
+    override fun onError(t: Throwable) {
+        log.warn("Failed to stream response to client", t)
+        input.close()
+        context.complete()
+    }
+}
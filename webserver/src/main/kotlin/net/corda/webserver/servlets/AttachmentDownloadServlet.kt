@@ -1,11 +1,11 @@
 package net.corda.webserver.servlets
 
-import net.corda.core.contracts.extractFile
 import net.corda.core.crypto.SecureHash
 import net.corda.core.messaging.CordaRPCOps
 import net.corda.core.utilities.loggerFor
 import java.io.FileNotFoundException
 import java.io.IOException
+import java.io.InputStream
 import java.util.jar.JarInputStream
 import javax.servlet.http.HttpServlet
 import javax.servlet.http.HttpServletRequest
@@ -21,6 +21,9 @@ import javax.ws.rs.core.MediaType
  *
  * Files are always forced to be downloads, they may not be embedded into web pages for security reasons.
  *
+ * The response is streamed asynchronously in chunks, see [AsyncStreamCopier], so that neither the attachment nor the
+ * file is held in memory and slow clients don't tie up the server's threads.
+ *
  * TODO: See if there's a way to prevent access by JavaScript.
  * TODO: Provide an endpoint that exposes attachment file listings, to make attachments browsable.
  */
@@ -43,18 +46,20 @@ class AttachmentDownloadServlet : HttpServlet() {
             // Don't allow case sensitive matches inside the jar, it'd just be confusing.
             val subPath = reqPath.substringAfter('/', missingDelimiterValue = "").toLowerCase()
 
-            resp.contentType = MediaType.APPLICATION_OCTET_STREAM
+            val content: InputStream
+            val filename: String
             if (subPath.isEmpty()) {
-                resp.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"$hash.zip\"")
-                attachment.use { it.copyTo(resp.outputStream) }
+                content = attachment
+                filename = "$hash.zip"
             } else {
-                val filename = subPath.split('/').last()
-                resp.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"$filename\"")
-                JarInputStream(attachment).use { it.extractFile(subPath, resp.outputStream) }
+                // Find the file before the response is started, so that a missing one can still be reported as such.
+                content = JarInputStream(attachment).apply { seekToFile(subPath) }
+                filename = subPath.split('/').last()
             }
 
-            // Closing the output stream commits our response. We cannot change the status code after this.
-            resp.outputStream.close()
+            resp.contentType = MediaType.APPLICATION_OCTET_STREAM
+            resp.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"$filename\"")
+            AsyncStreamCopier.start(content, req.startAsync())
         } catch(e: FileNotFoundException) {
             log.warn("404 Not Found whilst trying to handle attachment download request for ${servletContext.contextPath}/$reqPath")
             resp.sendError(HttpServletResponse.SC_NOT_FOUND)
@@ -62,3 +67,20 @@ class AttachmentDownloadServlet : HttpServlet() {
         }
     }
 }
+
+/**
+ * Positions the stream at the start of the file at [path], so that reading it reads just that file.
+ *
+ * @throws FileNotFoundException if there is no such file, in which case the stream is closed.
+ */
+@Throws(IOException::class)
+private fun JarInputStream.seekToFile(path: String) {
+    val p = path.toLowerCase().split('\\', '/')
+    while (true) {
+        val e = nextJarEntry ?: break
+        if (!e.isDirectory && e.name.toLowerCase().split('\\', '/') == p) return
+        closeEntry()
+    }
+    close()
+    throw FileNotFoundException(path)
+}
@@ -2,15 +2,27 @@ package net.corda.webserver.servlets
 
 import net.corda.core.messaging.CordaRPCOps
 import net.corda.core.utilities.loggerFor
+import org.apache.commons.fileupload.UploadContext
 import org.apache.commons.fileupload.servlet.ServletFileUpload
 import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.nio.file.Files
+import java.nio.file.Path
 import java.util.*
+import javax.servlet.AsyncContext
+import javax.servlet.ReadListener
+import javax.servlet.ServletInputStream
 import javax.servlet.http.HttpServlet
 import javax.servlet.http.HttpServletRequest
 import javax.servlet.http.HttpServletResponse
 
 /**
  * Uploads to the node via the [CordaRPCOps] uploadFile interface.
+ *
+ * The request body is read asynchronously, as it arrives, into a temporary file, and only parsed and passed on to
+ * the node once it has been received in full. A slow client therefore holds a file handle rather than a Jetty thread,
+ * and large uploads are never held in memory.
  */
 class DataUploadServlet : HttpServlet() {
     private val log = loggerFor<DataUploadServlet>()
@@ -19,34 +31,77 @@ class DataUploadServlet : HttpServlet() {
     override fun doPost(req: HttpServletRequest, resp: HttpServletResponse) {
         @Suppress("DEPRECATION") // Bogus warning due to superclass static method being deprecated.
         val isMultipart = ServletFileUpload.isMultipartContent(req)
-        val rpc = servletContext.getAttribute("rpc") as CordaRPCOps
 
         if (!isMultipart) {
             resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "This end point is for data uploads only.")
             return
         }
 
-        val upload = ServletFileUpload()
-        val iterator = upload.getItemIterator(req)
-        val messages = ArrayList<String>()
+        val spool = Files.createTempFile("upload", ".tmp")
+        val context = req.startAsync()
+        req.inputStream.setReadListener(Spooler(context, req.inputStream, spool))
+    }
 
-        if (!iterator.hasNext()) {
-            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Got an upload request with no files")
-            return
-        }
+    private inner class Spooler(val context: AsyncContext, val input: ServletInputStream, val spool: Path) : ReadListener {
+        private val output: OutputStream = Files.newOutputStream(spool)
+        private val buffer = ByteArray(AsyncStreamCopier.DEFAULT_CHUNK_SIZE)
 
-        while (iterator.hasNext()) {
-            val item = iterator.next()
-            log.info("Receiving ${item.name}")
+        override fun onDataAvailable() {
+            while (input.isReady) {
+                val read = input.read(buffer)
+                if (read < 0) return
+                output.write(buffer, 0, read)
+            }
+        }
 
+        override fun onAllDataRead() {
+            val resp = context.response as HttpServletResponse
             try {
-                val dataType = req.pathInfo.substring(1).substringBefore('/')
-                @Suppress("DEPRECATION") // TODO: Replace the use of uploadFile
-                messages += rpc.uploadFile(dataType, item.name, item.openStream())
-                log.info("${item.name} successfully accepted: ${messages.last()}")
-            } catch(e: RuntimeException) {
-                println(e)
-                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Got a file upload request for an unknown data type")
+                output.close()
+                upload(context.request as HttpServletRequest, resp, spool)
+            } catch (e: Exception) {
+                // Anything thrown from here would be passed to onError, which would complete the request a second time.
+                log.warn("Failed to process upload", e)
+                if (!resp.isCommitted) {
+                    resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Failed to process upload")
+                }
+            } finally {
+                Files.deleteIfExists(spool)
+            }
+            context.complete()
+        }
+
+        override fun onError(t: Throwable) {
+            log.warn("Failed to receive upload", t)
+            output.close()
+            Files.deleteIfExists(spool)
+            context.complete()
+        }
+    }
+
+    private fun upload(req: HttpServletRequest, resp: HttpServletResponse, spool: Path) {
+        val rpc = servletContext.getAttribute("rpc") as CordaRPCOps
+        val messages = ArrayList<String>()
+        Files.newInputStream(spool).use { content ->
+            val iterator = ServletFileUpload().getItemIterator(SpooledUploadContext(req, content, Files.size(spool)))
+            if (!iterator.hasNext()) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Got an upload request with no files")
+                return
+            }
+
+            while (iterator.hasNext()) {
+                val item = iterator.next()
+                log.info("Receiving ${item.name}")
+
+                try {
+                    val dataType = req.pathInfo.substring(1).substringBefore('/')
+                    @Suppress("DEPRECATION") // TODO: Replace the use of uploadFile
+                    messages += rpc.uploadFile(dataType, item.name, item.openStream())
+                    log.info("${item.name} successfully accepted: ${messages.last()}")
+                } catch(e: RuntimeException) {
+                    println(e)
+                    resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Got a file upload request for an unknown data type")
+                }
             }
         }
 
@@ -54,4 +109,16 @@ class DataUploadServlet : HttpServlet() {
         val writer = resp.writer
         messages.forEach { writer.println(it) }
     }
+
+    /** The multipart request as received, read back from the file it was spooled to, which the caller closes. */
+    private class SpooledUploadContext(val req: HttpServletRequest,
+                                       val content: InputStream,
+                                       val length: Long) : UploadContext {
+        override fun getCharacterEncoding(): String? = req.characterEncoding
+        override fun getContentType(): String? = req.contentType
+        @Suppress("OverridingDeprecatedMember")
+        override fun getContentLength(): Int = contentLength().toInt()
+        override fun contentLength(): Long = length
+        override fun getInputStream(): InputStream = content
+    }
 }
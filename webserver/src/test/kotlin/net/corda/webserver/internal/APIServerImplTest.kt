@@ -0,0 +1,43 @@
+package net.corda.webserver.internal
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.whenever
+import net.corda.core.messaging.CordaRPCOps
+import net.corda.core.messaging.DataFeed
+import net.corda.core.transactions.SignedTransaction
+import org.junit.Test
+import rx.subjects.PublishSubject
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class APIServerImplTest {
+    private val updates = PublishSubject.create<SignedTransaction>()
+    private val rpc = mock<CordaRPCOps>().apply {
+        whenever(verifiedTransactionsFeed()).thenReturn(DataFeed(emptyList(), updates))
+    }
+    private val api = APIServerImpl(rpc, ObjectMapper())
+
+    @Test
+    fun `following the transaction feed ends the subscription when the output is closed`() {
+        val output = api.transactions(follow = true)
+        waitUntil { updates.hasObservers() }
+        output.close()
+        assertFalse(updates.hasObservers())
+    }
+
+    @Test
+    fun `reading the transaction snapshot closes the output and leaves no subscription`() {
+        val output = api.transactions(follow = false)
+        waitUntil { output.isClosed }
+        assertFalse(updates.hasObservers())
+    }
+
+    private fun waitUntil(condition: () -> Boolean) {
+        val deadline = System.currentTimeMillis() + 5000
+        while (!condition()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the transaction feed")
+            Thread.sleep(10)
+        }
+    }
+}
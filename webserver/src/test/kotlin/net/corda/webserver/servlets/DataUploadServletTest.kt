@@ -0,0 +1,93 @@
+package net.corda.webserver.servlets
+
+import com.nhaarman.mockito_kotlin.any
+import com.nhaarman.mockito_kotlin.eq
+import com.nhaarman.mockito_kotlin.mock
+import com.nhaarman.mockito_kotlin.whenever
+import net.corda.core.messaging.CordaRPCOps
+import org.eclipse.jetty.server.Server
+import org.eclipse.jetty.server.ServerConnector
+import org.eclipse.jetty.servlet.ServletContextHandler
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import java.io.InputStream
+import java.net.HttpURLConnection
+import java.net.InetSocketAddress
+import java.net.URL
+import javax.servlet.http.HttpServletResponse
+import kotlin.test.assertEquals
+
+class DataUploadServletTest {
+    private companion object {
+        const val boundary = "upload-boundary"
+    }
+
+    private lateinit var server: Server
+    private lateinit var context: ServletContextHandler
+
+    @Before
+    fun startServer() {
+        server = Server(InetSocketAddress("localhost", 0))
+        context = ServletContextHandler().apply {
+            contextPath = "/"
+            addServlet(DataUploadServlet::class.java, "/upload/*").isAsyncSupported = true
+        }
+        server.handler = context
+        server.start()
+    }
+
+    @After
+    fun stopServer() {
+        server.stop()
+    }
+
+    @Test
+    fun `upload is received in full and passed to the node`() {
+        val rpc = mock<CordaRPCOps>()
+        @Suppress("DEPRECATION")
+        whenever(rpc.uploadFile(eq("attachment"), eq("data.txt"), any())).thenAnswer {
+            "received " + (it.arguments[2] as InputStream).readBytes().toString(Charsets.UTF_8)
+        }
+        context.setAttribute("rpc", rpc)
+
+        val connection = upload("data.txt", "x".repeat(200000))
+        assertEquals(HttpServletResponse.SC_OK, connection.responseCode)
+        assertEquals("received " + "x".repeat(200000), connection.inputStream.reader().readText().trim())
+    }
+
+    @Test
+    fun `failure to process an upload is reported as a server error`() {
+        // Without an RPC connection the upload can be received but not passed on.
+        val connection = upload("data.txt", "content")
+        assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, connection.responseCode)
+    }
+
+    @Test
+    fun `request which is not multipart is rejected`() {
+        val connection = open()
+        connection.setRequestProperty("Content-Type", "text/plain")
+        connection.outputStream.use { it.write("content".toByteArray()) }
+        assertEquals(HttpServletResponse.SC_BAD_REQUEST, connection.responseCode)
+    }
+
+    private fun upload(filename: String, content: String): HttpURLConnection {
+        val body = "--$boundary\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"$filename\"\r\n" +
+                "Content-Type: application/octet-stream\r\n\r\n" +
+                "$content\r\n" +
+                "--$boundary--\r\n"
+        val connection = open()
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=$boundary")
+        connection.outputStream.use { it.write(body.toByteArray()) }
+        return connection
+    }
+
+    private fun open(): HttpURLConnection {
+        val port = (server.connectors.single() as ServerConnector).localPort
+        return (URL("http://localhost:$port/upload/attachment").openConnection() as HttpURLConnection).apply {
+            requestMethod = "POST"
+            doOutput = true
+        }
+    }
+}